@@ -0,0 +1,65 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.trimou.engine.MustacheEngine;
+import org.trimou.engine.MustacheEngineBuilder;
+import org.trimou.engine.locator.ClassPathTemplateLocator;
+
+/**
+ * Common configuration of all benchmarks. Run with <code>-prof gc</code> to
+ * get the allocation rate per operation.
+ *
+ * @author Martin Kouba
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public abstract class AbstractBenchmark {
+
+    static final String TEMPLATES_ROOT = "templates";
+
+    static final String TEMPLATES_SUFFIX = "mustache";
+
+    /**
+     *
+     * @return a new engine with the benchmark templates available
+     */
+    static MustacheEngine newEngine() {
+        return newEngineBuilder().build();
+    }
+
+    /**
+     *
+     * @return a new engine builder with the benchmark templates available
+     */
+    static MustacheEngineBuilder newEngineBuilder() {
+        return MustacheEngineBuilder.newBuilder().addTemplateLocator(
+                new ClassPathTemplateLocator(1, TEMPLATES_ROOT,
+                        TEMPLATES_SUFFIX));
+    }
+
+}
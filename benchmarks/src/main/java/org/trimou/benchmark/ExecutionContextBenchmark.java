@@ -0,0 +1,96 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.trimou.benchmark.data.Data;
+import org.trimou.engine.context.ExecutionContext;
+import org.trimou.engine.context.ExecutionContexts;
+import org.trimou.engine.context.ValueWrapper;
+import org.trimou.engine.resolver.EnhancedResolver.Hint;
+
+/**
+ * Value lookup through the execution context and the resolver chain, with and
+ * without the pre-split key and resolver hint (see also
+ * <code>ValueSegment</code>).
+ *
+ * @author Martin Kouba
+ */
+@State(Scope.Benchmark)
+public class ExecutionContextBenchmark extends AbstractBenchmark {
+
+    @Param({ "title", "user.firstName", "user.address.country.code" })
+    public String key;
+
+    private ExecutionContext context;
+
+    private String[] keyParts;
+
+    private AtomicReference<Hint> hint;
+
+    @Setup
+    public void setup() {
+        Map<String, Object> data = Data.newPageData(10);
+        context = ExecutionContexts.newGlobalExecutionContext(
+                newEngine().getConfiguration()).setContextObject(data);
+        keyParts = key.split("\\.");
+        hint = new AtomicReference<Hint>();
+        // Initialize the hint the same way ValueSegment does
+        ValueWrapper value = context.getValue(key, keyParts, hint);
+        if (value.getHint() != null) {
+            hint.set(value.getHint());
+        }
+        value.release();
+    }
+
+    @Benchmark
+    public Object getValue() {
+        ValueWrapper value = context.getValue(key);
+        try {
+            return value.get();
+        } finally {
+            value.release();
+        }
+    }
+
+    @Benchmark
+    public Object getValueKeyParts() {
+        ValueWrapper value = context.getValue(key, keyParts, null);
+        try {
+            return value.get();
+        } finally {
+            value.release();
+        }
+    }
+
+    @Benchmark
+    public Object getValueKeyPartsAndHint() {
+        ValueWrapper value = context.getValue(key, keyParts, hint);
+        try {
+            return value.get();
+        } finally {
+            value.release();
+        }
+    }
+
+}
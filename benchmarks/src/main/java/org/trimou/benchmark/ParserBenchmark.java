@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.benchmark;
+
+import java.io.StringReader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.trimou.Mustache;
+import org.trimou.engine.MustacheEngine;
+import org.trimou.engine.config.EngineConfigurationKey;
+import org.trimou.engine.parser.ParserFactory;
+import org.trimou.engine.parser.ParsingHandler;
+import org.trimou.engine.parser.ParsingHandlerFactory;
+
+/**
+ * Parsing and compilation of a template, i.e. the cost of a template cache
+ * miss.
+ *
+ * @author Martin Kouba
+ */
+@State(Scope.Benchmark)
+public class ParserBenchmark extends AbstractBenchmark {
+
+    @Param({ "page", "sections", "each", "partial", "extend", "item" })
+    public String templateId;
+
+    @Param({ "false", "true" })
+    public boolean scanningParser;
+
+    private MustacheEngine engine;
+
+    private ParserFactory parserFactory;
+
+    private ParsingHandlerFactory parsingHandlerFactory;
+
+    private String source;
+
+    @Setup
+    public void setup() {
+        engine = newEngineBuilder().setProperty(
+                EngineConfigurationKey.SCANNING_PARSER_ENABLED, scanningParser)
+                .build();
+        parserFactory = new ParserFactory();
+        parsingHandlerFactory = new ParsingHandlerFactory();
+        source = engine.getMustacheSource(templateId);
+    }
+
+    @Benchmark
+    public Mustache parse() {
+        ParsingHandler handler = parsingHandlerFactory.createParsingHandler();
+        parserFactory.createParser(engine).parse(templateId,
+                new StringReader(source), handler);
+        return handler.getCompiledTemplate();
+    }
+
+    @Benchmark
+    public Mustache compileMustache() {
+        return engine.compileMustache(templateId, source);
+    }
+
+}
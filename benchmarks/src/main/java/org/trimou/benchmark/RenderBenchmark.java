@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.trimou.Mustache;
+import org.trimou.benchmark.data.Data;
+import org.trimou.engine.config.EngineConfigurationKey;
+
+/**
+ * Rendering of cached templates. The templates cover deep sections,
+ * <code>{{#each}}</code>, partials with indentation and template inheritance.
+ *
+ * @author Martin Kouba
+ */
+@State(Scope.Benchmark)
+public class RenderBenchmark extends AbstractBenchmark {
+
+    @Param({ "page", "sections", "each", "partial", "extend" })
+    public String templateId;
+
+    @Param({ "10", "100" })
+    public int items;
+
+    @Param({ "false", "true" })
+    public boolean staticSegmentsMerging;
+
+    @Param({ "false", "true" })
+    public boolean valueWrapperPooling;
+
+    private static final Charset UTF_8 = StandardCharsets.UTF_8;
+
+    private Mustache mustache;
+
+    private Map<String, Object> data;
+
+    @Setup
+    public void setup() {
+        mustache = newEngineBuilder()
+                .setProperty(
+                        EngineConfigurationKey.STATIC_SEGMENTS_MERGING_ENABLED,
+                        staticSegmentsMerging)
+                .setProperty(
+                        EngineConfigurationKey.VALUE_WRAPPER_POOLING_ENABLED,
+                        valueWrapperPooling).build().getMustache(templateId);
+        data = Data.newPageData(items);
+    }
+
+    @Benchmark
+    public String render() {
+        return mustache.render(data);
+    }
+
+    @Benchmark
+    public StringBuilder renderToAppendable() {
+        StringBuilder builder = new StringBuilder(4096);
+        mustache.render(builder, data);
+        return builder;
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream renderToWriter() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+        Writer writer = new OutputStreamWriter(out, UTF_8);
+        mustache.render(writer, data);
+        writer.flush();
+        return out;
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream renderToOutputStream() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+        mustache.render(out, data, UTF_8);
+        return out;
+    }
+
+}
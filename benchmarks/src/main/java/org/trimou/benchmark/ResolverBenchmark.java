@@ -0,0 +1,129 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.benchmark;
+
+import java.util.List;
+import java.util.Map;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.trimou.benchmark.data.Data;
+import org.trimou.benchmark.data.Item;
+import org.trimou.benchmark.data.User;
+import org.trimou.engine.MustacheEngine;
+import org.trimou.engine.context.ValueWrapper;
+import org.trimou.engine.resolver.ListIndexResolver;
+import org.trimou.engine.resolver.MapResolver;
+import org.trimou.engine.resolver.ReflectionResolver;
+import org.trimou.engine.resolver.Resolver;
+import org.trimou.gson.resolver.JsonElementResolver;
+
+import com.google.gson.JsonObject;
+
+/**
+ * Built-in resolvers invoked directly, i.e. without the execution context
+ * overhead.
+ *
+ * @author Martin Kouba
+ */
+@State(Scope.Benchmark)
+public class ResolverBenchmark extends AbstractBenchmark {
+
+    @Param({ "false", "true" })
+    public boolean methodHandlesEnabled;
+
+    private ReflectionResolver reflectionResolver;
+
+    private MapResolver mapResolver;
+
+    private ListIndexResolver listIndexResolver;
+
+    private JsonElementResolver jsonElementResolver;
+
+    private User user;
+
+    private Map<String, Object> map;
+
+    private List<Item> list;
+
+    private JsonObject json;
+
+    private ValueWrapper context;
+
+    @Setup
+    public void setup() {
+        MustacheEngine engine = newEngineBuilder()
+                .addResolver(new ListIndexResolver())
+                .setProperty(ReflectionResolver.METHOD_HANDLES_ENABLED_KEY,
+                        methodHandlesEnabled).build();
+        for (Resolver resolver : engine.getConfiguration().getResolvers()) {
+            if (resolver instanceof ReflectionResolver) {
+                reflectionResolver = (ReflectionResolver) resolver;
+            } else if (resolver instanceof MapResolver) {
+                mapResolver = (MapResolver) resolver;
+            } else if (resolver instanceof ListIndexResolver) {
+                listIndexResolver = (ListIndexResolver) resolver;
+            } else if (resolver instanceof JsonElementResolver) {
+                jsonElementResolver = (JsonElementResolver) resolver;
+            }
+        }
+        if (reflectionResolver == null || mapResolver == null
+                || listIndexResolver == null || jsonElementResolver == null) {
+            throw new IllegalStateException(
+                    "Not all benchmarked resolvers are registered: "
+                            + engine.getConfiguration().getResolvers());
+        }
+        user = Data.newUser();
+        map = Data.newPageData(10);
+        list = Data.newItems(10);
+        json = Data.newJsonUser();
+        context = new ValueWrapper("foo");
+    }
+
+    @Benchmark
+    public Object reflectionResolverMethod() {
+        return reflectionResolver.resolve(user, "firstName", context);
+    }
+
+    @Benchmark
+    public Object reflectionResolverField() {
+        return reflectionResolver.resolve(user, "age", context);
+    }
+
+    @Benchmark
+    public Object reflectionResolverMiss() {
+        return reflectionResolver.resolve(user, "missing", context);
+    }
+
+    @Benchmark
+    public Object mapResolver() {
+        return mapResolver.resolve(map, "title", context);
+    }
+
+    @Benchmark
+    public Object listIndexResolver() {
+        return listIndexResolver.resolve(list, "5", context);
+    }
+
+    @Benchmark
+    public Object jsonElementResolver() {
+        return jsonElementResolver.resolve(json, "firstName", context);
+    }
+
+}
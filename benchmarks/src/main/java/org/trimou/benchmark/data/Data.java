@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.benchmark.data;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * Test data shared by all benchmarks.
+ *
+ * @author Martin Kouba
+ */
+public final class Data {
+
+    private Data() {
+    }
+
+    /**
+     *
+     * @param itemsCount
+     * @return the data for the page templates
+     */
+    public static Map<String, Object> newPageData(int itemsCount) {
+        Map<String, Object> data = new HashMap<String, Object>();
+        data.put("title", "Trimou <benchmark> & friends");
+        data.put("year", 2015);
+        data.put("user", newUser());
+        data.put("items", newItems(itemsCount));
+        return data;
+    }
+
+    /**
+     *
+     * @return a new user with nested address
+     */
+    public static User newUser() {
+        return new User("Martin", "Kouba", new Address("Lidicka 1", "Brno",
+                new Country("Czech Republic", "CZ")), 33);
+    }
+
+    /**
+     *
+     * @param count
+     * @return a list of items
+     */
+    public static List<Item> newItems(int count) {
+        List<Item> items = new ArrayList<Item>(count);
+        for (int i = 0; i < count; i++) {
+            items.add(new Item("Item \"" + i + "\"", new BigDecimal(i * 10
+                    + ".5"), Arrays.asList("foo", "bar<" + i + ">")));
+        }
+        return items;
+    }
+
+    /**
+     *
+     * @return a JSON representation of {@link #newUser()}
+     */
+    public static JsonObject newJsonUser() {
+        JsonObject country = new JsonObject();
+        country.addProperty("name", "Czech Republic");
+        country.addProperty("code", "CZ");
+        JsonObject address = new JsonObject();
+        address.addProperty("street", "Lidicka 1");
+        address.addProperty("city", "Brno");
+        address.add("country", country);
+        JsonArray tags = new JsonArray();
+        tags.add(new JsonPrimitive("foo"));
+        tags.add(new JsonPrimitive("bar"));
+        JsonObject user = new JsonObject();
+        user.addProperty("firstName", "Martin");
+        user.addProperty("lastName", "Kouba");
+        user.addProperty("age", 33);
+        user.add("address", address);
+        user.add("tags", tags);
+        return user;
+    }
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.benchmark.data;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ *
+ * @author Martin Kouba
+ */
+public class Item {
+
+    private final String name;
+
+    private final BigDecimal price;
+
+    private final List<String> tags;
+
+    public Item(String name, BigDecimal price, List<String> tags) {
+        this.name = name;
+        this.price = price;
+        this.tags = tags;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public List<String> getTags() {
+        return tags;
+    }
+
+    public boolean isActive() {
+        return price.signum() > 0;
+    }
+
+}
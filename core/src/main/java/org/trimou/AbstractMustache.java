@@ -0,0 +1,76 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+
+import org.trimou.exception.MustacheException;
+import org.trimou.exception.MustacheProblem;
+
+/**
+ * An adapter for custom {@link Mustache} implementations (e.g. decorators).
+ * The methods added in 1.9 are implemented on top of
+ * {@link #render(Appendable, Object)}, so that a subclass only has to
+ * implement the original methods. Note that the static parts of the template
+ * are not pre-encoded, the output stream is flushed once the template is
+ * rendered and the asynchronous rendering blocks the current thread.
+ *
+ * @author Martin Kouba
+ * @since 1.9
+ */
+public abstract class AbstractMustache implements Mustache {
+
+    @Override
+    public void render(OutputStream outputStream, Object data,
+            Charset charset) {
+        render(new OutputStreamWriter(outputStream, charset), data);
+    }
+
+    @Override
+    public void render(WritableByteChannel channel, Object data,
+            Charset charset) {
+        render(Channels.newWriter(channel, charset.newEncoder(), -1), data);
+    }
+
+    @Override
+    public void renderAsync(Appendable appendable, Object data,
+            RenderingCallback callback) {
+        try {
+            render(appendable, data);
+        } catch (RuntimeException e) {
+            callback.failed(e);
+            return;
+        }
+        callback.completed();
+    }
+
+    private void render(Writer writer, Object data) {
+        render((Appendable) writer, data);
+        try {
+            // Write the buffered output
+            writer.flush();
+        } catch (IOException e) {
+            throw new MustacheException(MustacheProblem.RENDER_IO_ERROR, e);
+        }
+    }
+
+}
@@ -15,11 +15,19 @@
  */
 package org.trimou;
 
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+
 import org.trimou.engine.id.Identified;
 
 /**
  * A compiled mustache template. Implementation must be thread-safe.
  *
+ * Note that the byte-oriented and asynchronous rendering methods were added in
+ * 1.9. Custom implementations should extend {@link AbstractMustache} to remain
+ * source compatible.
+ *
  * @author Martin Kouba
  */
 public interface Mustache extends Identified {
@@ -66,4 +74,86 @@ public interface Mustache extends Identified {
      */
     public void render(Appendable appendable, Object data);
 
+    /**
+     * Render the template and write the encoded output to the given output
+     * stream. The static parts of the template (e.g. text and line separators)
+     * are only encoded once per charset and the bytes are reused for
+     * subsequent renderings.
+     *
+     * Watch out! The output stream is neither flushed nor closed automatically.
+     *
+     * @param outputStream
+     *            The output stream to write the rendered template to
+     * @param data
+     *            Optional context object (ideally immutable), may be
+     *            <code>null</code>
+     * @param charset
+     *            The charset used to encode the rendered template
+     */
+    public void render(OutputStream outputStream, Object data, Charset charset);
+
+    /**
+     * Render the template and write the encoded output to the given channel.
+     * The static parts of the template (e.g. text and line separators) are only
+     * encoded once per charset and the bytes are reused for subsequent
+     * renderings.
+     *
+     * Watch out! The channel is not closed automatically.
+     *
+     * @param channel
+     *            The channel to write the rendered template to
+     * @param data
+     *            Optional context object (ideally immutable), may be
+     *            <code>null</code>
+     * @param charset
+     *            The charset used to encode the rendered template
+     * @see #render(OutputStream, Object, Charset)
+     */
+    public void render(WritableByteChannel channel, Object data,
+            Charset charset);
+
+    /**
+     * Render the template without blocking the current thread on
+     * asynchronous helpers (see
+     * {@link org.trimou.handlebars.Options#executeAsync(org.trimou.handlebars.Options.HelperExecutable)}
+     * ). The output of asynchronous helpers is appended in order once all the
+     * tasks are finished. The callback is notified either in the current
+     * thread (e.g. if no asynchronous helper is used) or in the thread which
+     * finished the last pending task.
+     *
+     * Watch out! Any appendable-specific operations (e.g. stream flushing and
+     * closing) are not performed automatically.
+     *
+     * @param appendable
+     *            The appendable to append the rendered template to
+     * @param data
+     *            Optional context object (ideally immutable), may be
+     *            <code>null</code>
+     * @param callback
+     *            The callback notified when the rendering is finished
+     */
+    public void renderAsync(Appendable appendable, Object data,
+            RenderingCallback callback);
+
+    /**
+     * A callback for {@link Mustache#renderAsync(Appendable, Object, RenderingCallback)}.
+     *
+     * @author Martin Kouba
+     */
+    public interface RenderingCallback {
+
+        /**
+         * The rendered template was appended to the appendable.
+         */
+        void completed();
+
+        /**
+         *
+         * @param cause
+         *            The cause of the failure
+         */
+        void failed(Throwable cause);
+
+    }
+
 }
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.engine;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Set;
+
+import org.trimou.Mustache;
+import org.trimou.engine.cache.CacheStats;
+import org.trimou.engine.cache.ComputingCache;
+
+/**
+ * An adapter for custom {@link MustacheEngine} implementations (e.g.
+ * decorators). The methods added in 1.9 are implemented on top of the original
+ * methods:
+ *
+ * <ul>
+ * <li>{@link #getMustache(String, Locale)} tries the candidate ids one by one
+ * and nothing is cached,</li>
+ * <li>the invalidation methods invalidate the whole template cache,</li>
+ * <li>no dependencies and cache statistics are available and no template
+ * snapshot is written,</li>
+ * <li>{@link #shutdown()} does nothing.</li>
+ * </ul>
+ *
+ * @author Martin Kouba
+ * @since 1.9
+ */
+public abstract class AbstractMustacheEngine implements MustacheEngine {
+
+    @Override
+    public Mustache getMustache(String templateId, Locale locale) {
+        if (locale == null) {
+            return getMustache(templateId);
+        }
+        for (String id : DefaultMustacheEngine.getLocalizedTemplateIds(
+                templateId, locale)) {
+            Mustache mustache = getMustache(id);
+            if (mustache != null) {
+                return mustache;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void invalidateTemplateCache(
+            ComputingCache.KeyPredicate<String> templateIdPredicate) {
+        invalidateTemplateCache();
+    }
+
+    /**
+     * The whole template cache is invalidated.
+     *
+     * @return an empty set - the ids of the invalidated templates are not
+     *         known
+     */
+    @Override
+    public Set<String> invalidateTemplate(String templateId) {
+        invalidateTemplateCache();
+        return Collections.emptySet();
+    }
+
+    @Override
+    public Set<String> getTemplateDependents(String templateId) {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public CacheStats getTemplateCacheStats() {
+        return null;
+    }
+
+    @Override
+    public CacheStats getSourceCacheStats() {
+        return null;
+    }
+
+    @Override
+    public boolean writeTemplateSnapshot() {
+        return false;
+    }
+
+    @Override
+    public void shutdown() {
+        // No-op
+    }
+
+}
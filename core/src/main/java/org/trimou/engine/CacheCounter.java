@@ -0,0 +1,71 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.engine;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.trimou.engine.cache.CacheStats;
+import org.trimou.engine.cache.ComputingCache;
+
+/**
+ * Counts the cache lookups and misses. The lookups are counted in several
+ * stripes (selected by the current thread id) in order to reduce contention,
+ * misses are expected to be rare.
+ *
+ * @author Martin Kouba
+ */
+final class CacheCounter {
+
+    private static final int STRIPES = 8;
+
+    /**
+     * Avoid false sharing - each stripe has its own cache line
+     */
+    private static final int PADDING = 8;
+
+    private final AtomicLongArray requests;
+
+    private final AtomicLong misses;
+
+    CacheCounter() {
+        this.requests = new AtomicLongArray(STRIPES * PADDING);
+        this.misses = new AtomicLong();
+    }
+
+    void request() {
+        requests.incrementAndGet((int) (Thread.currentThread().getId() & (STRIPES - 1))
+                * PADDING);
+    }
+
+    void miss() {
+        misses.incrementAndGet();
+    }
+
+    /**
+     *
+     * @param cache
+     * @return the statistics for the given cache
+     */
+    CacheStats getStats(ComputingCache<?, ?> cache) {
+        long total = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            total += requests.get(i * PADDING);
+        }
+        return new CacheStats(cache.size(), total, misses.get());
+    }
+
+}
@@ -16,30 +16,51 @@
 package org.trimou.engine;
 
 import static org.trimou.util.Checker.checkArgumentNotEmpty;
+import static org.trimou.util.Checker.checkArgumentNotNull;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.trimou.Mustache;
+import org.trimou.engine.cache.CacheStats;
 import org.trimou.engine.cache.ComputingCache;
 import org.trimou.engine.config.Configuration;
 import org.trimou.engine.config.ConfigurationFactory;
 import org.trimou.engine.config.EngineConfigurationKey;
+import org.trimou.engine.context.ExecutionContexts;
 import org.trimou.engine.listener.MustacheCompilationEvent;
 import org.trimou.engine.listener.MustacheListener;
 import org.trimou.engine.listener.MustacheParsingEvent;
+import org.trimou.engine.locator.TemplateFingerprintProvider;
 import org.trimou.engine.locator.TemplateLocator;
 import org.trimou.engine.parser.ParserFactory;
 import org.trimou.engine.parser.ParsingHandler;
 import org.trimou.engine.parser.ParsingHandlerFactory;
+import org.trimou.engine.parser.Template;
+import org.trimou.engine.parser.TemplateSnapshot;
 import org.trimou.exception.MustacheException;
 import org.trimou.exception.MustacheProblem;
+import org.trimou.lambda.Lambda;
+import org.trimou.util.Strings;
 
+import com.google.common.base.Objects;
 import com.google.common.base.Optional;
 import com.google.common.io.CharStreams;
 
@@ -57,12 +78,43 @@ class DefaultMustacheEngine implements MustacheEngine {
 
     private final ComputingCache<String, Optional<String>> sourceCache;
 
+    private final CacheCounter templateCacheCounter;
+
+    private final CacheCounter sourceCacheCounter;
+
     private final Configuration configuration;
 
     private final ParserFactory parserFactory;
 
     private final ParsingHandlerFactory parsingHandlerFactory;
 
+    /**
+     * Template id -> ids of the cached templates which reference the template,
+     * guarded by itself
+     */
+    private final Map<String, Set<String>> dependents;
+
+    /**
+     * Template id -> ids of the templates referenced by the cached template,
+     * guarded by {@link #dependents}
+     */
+    private final Map<String, Set<String>> dependencies;
+
+    private final TemplateSnapshot snapshot;
+
+    private final ComputingCache<CompiledContentKey, Mustache> compiledContentCache;
+
+    private final boolean compileMustacheCacheEnabled;
+
+    private final List<MustacheEngineBuilder.EngineShutdownCallback> shutdownCallbacks;
+
+    private final AtomicBoolean isShutdown;
+
+    /**
+     * Created lazily, only used if the template cache is enabled
+     */
+    private volatile ComputingCache<LocalizedTemplateKey, Optional<Mustache>> localizedTemplateCache;
+
     /**
      * Workaround for CDI (JSR 299, JSR 346) - make this type proxyable so that
      * it's possible to produce an application-scoped CDI bean.
@@ -73,6 +125,15 @@ class DefaultMustacheEngine implements MustacheEngine {
         parsingHandlerFactory = null;
         templateCache = null;
         sourceCache = null;
+        templateCacheCounter = null;
+        sourceCacheCounter = null;
+        dependents = null;
+        dependencies = null;
+        snapshot = null;
+        compiledContentCache = null;
+        compileMustacheCacheEnabled = false;
+        shutdownCallbacks = null;
+        isShutdown = null;
     }
 
     /**
@@ -83,7 +144,20 @@ class DefaultMustacheEngine implements MustacheEngine {
         // First create the engine configuration
         configuration = new ConfigurationFactory().createConfiguration(builder);
         parserFactory = new ParserFactory();
-        parsingHandlerFactory = new ParsingHandlerFactory();
+        // The cache of split keys is shared by all the compiled templates
+        parsingHandlerFactory = new ParsingHandlerFactory(
+                ExecutionContexts.newKeyPartsCache(configuration));
+        templateCacheCounter = new CacheCounter();
+        sourceCacheCounter = new CacheCounter();
+        dependents = new HashMap<String, Set<String>>();
+        dependencies = new HashMap<String, Set<String>>();
+        snapshot = initSnapshot();
+        compiledContentCache = buildCompiledContentCache();
+        compileMustacheCacheEnabled = compiledContentCache != null
+                && configuration
+                        .getBooleanPropertyValue(EngineConfigurationKey.COMPILE_MUSTACHE_CACHE_ENABLED);
+        shutdownCallbacks = initShutdownCallbacks(builder);
+        isShutdown = new AtomicBoolean(false);
 
         if (configuration
                 .getBooleanPropertyValue(EngineConfigurationKey.DEBUG_MODE)) {
@@ -97,7 +171,10 @@ class DefaultMustacheEngine implements MustacheEngine {
                 sourceCache = buildSourceCache();
                 if (configuration
                         .getBooleanPropertyValue(EngineConfigurationKey.PRECOMPILE_ALL_TEMPLATES)) {
-                    precompileTemplates();
+                    precompileTemplates(builder.getPrecompilationCallback());
+                    if (snapshot != null) {
+                        snapshot.writeIfModified();
+                    }
                 }
             } else {
                 templateCache = null;
@@ -113,6 +190,22 @@ class DefaultMustacheEngine implements MustacheEngine {
                 : locateAndParse(templateId);
     }
 
+    public Mustache getMustache(String templateId, Locale locale) {
+        checkArgumentNotEmpty(templateId);
+        if (locale == null) {
+            return getMustache(templateId);
+        }
+        if (templateCache == null) {
+            return locateLocalized(templateId, locale);
+        }
+        try {
+            return getLocalizedTemplateCache()
+                    .get(new LocalizedTemplateKey(templateId, locale)).orNull();
+        } catch (Exception e) {
+            throw unwrapUncheckedExecutionException(e);
+        }
+    }
+
     public String getMustacheSource(String templateId) {
         checkArgumentNotEmpty(templateId);
         return sourceCache != null ? getSourceFromCache(templateId)
@@ -122,7 +215,19 @@ class DefaultMustacheEngine implements MustacheEngine {
     public Mustache compileMustache(String templateId, String templateContent) {
         checkArgumentNotEmpty(templateId);
         checkArgumentNotEmpty(templateContent);
-        return parse(templateId, new StringReader(templateContent));
+        if (compiledContentCache != null) {
+            if (templateId.startsWith(Lambda.ONEOFF_LAMBDA_TEMPLATE_PREFIX)) {
+                // One-off lambda templates are generated unique names - the
+                // name is not significant
+                return compiledContentCache.get(new CompiledContentKey(null,
+                        templateId, templateContent));
+            } else if (compileMustacheCacheEnabled) {
+                return compiledContentCache.get(new CompiledContentKey(
+                        templateId, templateId, templateContent));
+            }
+        }
+        return parse(templateId, new StringReader(templateContent), false,
+                null);
     }
 
     public Configuration getConfiguration() {
@@ -136,6 +241,218 @@ class DefaultMustacheEngine implements MustacheEngine {
         }
         templateCache.clear();
         sourceCache.clear();
+        clearLocalizedTemplateCache();
+        synchronized (dependents) {
+            dependents.clear();
+            dependencies.clear();
+        }
+        if (compiledContentCache != null) {
+            compiledContentCache.clear();
+        }
+    }
+
+    public Set<String> invalidateTemplate(String templateId) {
+        checkArgumentNotEmpty(templateId);
+        if (templateCache == null) {
+            logger.warn("Unable to invalidate the template - the template cache is disabled!");
+            return Collections.emptySet();
+        }
+        final Set<String> ids = new HashSet<String>();
+        ids.add(templateId);
+        ids.addAll(getTemplateDependents(templateId));
+        invalidateTemplateCache(new ComputingCache.KeyPredicate<String>() {
+            @Override
+            public boolean apply(String key) {
+                return ids.contains(key);
+            }
+        });
+        return ids;
+    }
+
+    public CacheStats getTemplateCacheStats() {
+        return templateCache != null ? templateCacheCounter
+                .getStats(templateCache) : null;
+    }
+
+    public CacheStats getSourceCacheStats() {
+        return sourceCache != null ? sourceCacheCounter.getStats(sourceCache)
+                : null;
+    }
+
+    public boolean writeTemplateSnapshot() {
+        return snapshot != null && snapshot.writeIfModified();
+    }
+
+    public void shutdown() {
+        if (!isShutdown.compareAndSet(false, true)) {
+            return;
+        }
+        for (MustacheEngineBuilder.EngineShutdownCallback callback : shutdownCallbacks) {
+            try {
+                callback.engineShutdown(this);
+            } catch (RuntimeException e) {
+                logger.warn("Unable to notify the shutdown callback: "
+                        + callback, e);
+            }
+        }
+    }
+
+    public Set<String> getTemplateDependents(String templateId) {
+        checkArgumentNotEmpty(templateId);
+        Set<String> result = new HashSet<String>();
+        Deque<String> queue = new ArrayDeque<String>();
+        queue.add(templateId);
+        synchronized (dependents) {
+            while (!queue.isEmpty()) {
+                Set<String> direct = dependents.get(queue.poll());
+                if (direct == null) {
+                    continue;
+                }
+                for (String dependent : direct) {
+                    // Cycles are allowed, e.g. recursive partials
+                    if (!dependent.equals(templateId)
+                            && result.add(dependent)) {
+                        queue.add(dependent);
+                    }
+                }
+            }
+        }
+        if (templateCache != null) {
+            // The removal notification for an evicted template might not be
+            // processed yet
+            for (Iterator<String> iterator = result.iterator(); iterator
+                    .hasNext();) {
+                if (templateCache.getIfPresent(iterator.next()) == null) {
+                    iterator.remove();
+                }
+            }
+        }
+        return result;
+    }
+
+    public void invalidateTemplateCache(
+            ComputingCache.KeyPredicate<String> templateIdPredicate) {
+        checkArgumentNotNull(templateIdPredicate);
+        if (templateCache == null) {
+            logger.warn("Unable to invalidate the template cache - it's disabled!");
+            return;
+        }
+        List<Optional<Mustache>> invalidated = new ArrayList<Optional<Mustache>>();
+        for (Entry<String, Optional<Mustache>> entry : templateCache
+                .getAllPresent().entrySet()) {
+            if (templateIdPredicate.apply(entry.getKey())) {
+                invalidated.add(entry.getValue());
+                unregisterDependencies(entry.getKey());
+            }
+        }
+        templateCache.invalidate(templateIdPredicate);
+        sourceCache.invalidate(templateIdPredicate);
+        // A localized variant might have been added or removed
+        clearLocalizedTemplateCache();
+        markInvalidated(invalidated);
+    }
+
+    private ComputingCache<LocalizedTemplateKey, Optional<Mustache>> getLocalizedTemplateCache() {
+        ComputingCache<LocalizedTemplateKey, Optional<Mustache>> cache = localizedTemplateCache;
+        if (cache == null) {
+            synchronized (this) {
+                cache = localizedTemplateCache;
+                if (cache == null) {
+                    cache = buildLocalizedTemplateCache();
+                    localizedTemplateCache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    private void clearLocalizedTemplateCache() {
+        ComputingCache<LocalizedTemplateKey, Optional<Mustache>> cache = localizedTemplateCache;
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    private Mustache locateLocalized(String templateId, Locale locale) {
+        for (String id : getLocalizedTemplateIds(templateId, locale)) {
+            Mustache mustache = getMustache(id);
+            if (mustache != null) {
+                return mustache;
+            }
+        }
+        return null;
+    }
+
+    private void markInvalidated(List<Optional<Mustache>> templates) {
+        // Segments holding a reference to an invalidated template must not
+        // use it anymore
+        for (Optional<Mustache> template : templates) {
+            if (template.isPresent() && template.get() instanceof Template) {
+                ((Template) template.get()).invalidate();
+            }
+        }
+    }
+
+    private void registerDependencies(String templateId,
+            Optional<Mustache> template) {
+        Set<String> ids = template.isPresent()
+                && template.get() instanceof Template ? ((Template) template
+                .get()).getDependencies() : Collections.<String> emptySet();
+        synchronized (dependents) {
+            // The template might have been recompiled - remove the stale edges
+            unregisterDependencies(templateId);
+            if (ids.isEmpty()) {
+                return;
+            }
+            dependencies.put(templateId, ids);
+            for (String dependency : ids) {
+                Set<String> dependentIds = dependents.get(dependency);
+                if (dependentIds == null) {
+                    dependentIds = new HashSet<String>();
+                    dependents.put(dependency, dependentIds);
+                }
+                dependentIds.add(templateId);
+            }
+        }
+    }
+
+    private void unregisterDependencies(String templateId) {
+        synchronized (dependents) {
+            Set<String> ids = dependencies.remove(templateId);
+            if (ids == null) {
+                return;
+            }
+            for (String dependency : ids) {
+                Set<String> dependentIds = dependents.get(dependency);
+                if (dependentIds != null) {
+                    dependentIds.remove(templateId);
+                    if (dependentIds.isEmpty()) {
+                        dependents.remove(dependency);
+                    }
+                }
+            }
+        }
+    }
+
+    private List<MustacheEngineBuilder.EngineShutdownCallback> initShutdownCallbacks(
+            MustacheEngineBuilder builder) {
+        List<MustacheEngineBuilder.EngineShutdownCallback> callbacks = new ArrayList<MustacheEngineBuilder.EngineShutdownCallback>(
+                builder.getEngineShutdownCallbacks());
+        // Template locators may also need to be notified
+        List<TemplateLocator> locators = configuration.getTemplateLocators();
+        if (locators != null) {
+            for (TemplateLocator locator : locators) {
+                if (locator instanceof MustacheEngineBuilder.EngineShutdownCallback
+                        && !callbacks.contains(locator)) {
+                    callbacks.add((MustacheEngineBuilder.EngineShutdownCallback) locator);
+                }
+            }
+        }
+        // The configuration may own an executor service
+        if (configuration instanceof MustacheEngineBuilder.EngineShutdownCallback) {
+            callbacks.add((MustacheEngineBuilder.EngineShutdownCallback) configuration);
+        }
+        return callbacks;
     }
 
     private ComputingCache<String, Optional<Mustache>> buildTemplateCache() {
@@ -143,7 +460,11 @@ class DefaultMustacheEngine implements MustacheEngine {
                 new ComputingCache.Function<String, Optional<Mustache>>() {
                     @Override
                     public Optional<Mustache> compute(String key) {
-                        return Optional.fromNullable(locateAndParse(key));
+                        templateCacheCounter.miss();
+                        Optional<Mustache> template = Optional
+                                .fromNullable(locateAndParse(key));
+                        registerDependencies(key, template);
+                        return template;
                     }
                 }, new ComputingCache.Listener<String>() {
                     @Override
@@ -151,6 +472,10 @@ class DefaultMustacheEngine implements MustacheEngine {
                         logger.debug(
                                 "Removed template from cache [templateId: {}, cause: {}]",
                                 key, cause);
+                        // Expired or evicted - unless already recompiled
+                        if (templateCache.getIfPresent(key) == null) {
+                            unregisterDependencies(key);
+                        }
                     }
                 });
     }
@@ -164,6 +489,7 @@ class DefaultMustacheEngine implements MustacheEngine {
                 new ComputingCache.Function<String, Optional<String>>() {
                     @Override
                     public Optional<String> compute(String key) {
+                        sourceCacheCounter.miss();
                         return Optional.fromNullable(locateAndRead(key));
                     }
                 }, new ComputingCache.Listener<String>() {
@@ -176,6 +502,22 @@ class DefaultMustacheEngine implements MustacheEngine {
                 });
     }
 
+    /**
+     * Properties of the localized template cache are dependent on that of the
+     * template cache.
+     */
+    private ComputingCache<LocalizedTemplateKey, Optional<Mustache>> buildLocalizedTemplateCache() {
+        return buildCache(
+                "Localized template",
+                new ComputingCache.Function<LocalizedTemplateKey, Optional<Mustache>>() {
+                    @Override
+                    public Optional<Mustache> compute(LocalizedTemplateKey key) {
+                        return Optional.fromNullable(locateLocalized(
+                                key.templateId, key.locale));
+                    }
+                }, null);
+    }
+
     private <K, V> ComputingCache<K, V> buildCache(String name,
             ComputingCache.Function<K, V> loader,
             ComputingCache.Listener<K> listener) {
@@ -195,7 +537,8 @@ class DefaultMustacheEngine implements MustacheEngine {
                 expirationTimeout, null, listener);
     }
 
-    private void precompileTemplates() {
+    private void precompileTemplates(
+            MustacheEngineBuilder.PrecompilationCallback callback) {
 
         Set<String> templateNames = new HashSet<String>();
 
@@ -203,20 +546,93 @@ class DefaultMustacheEngine implements MustacheEngine {
             templateNames.addAll(locator.getAllIdentifiers());
         }
 
-        for (String templateName : templateNames) {
-            getTemplateFromCache(templateName);
+        new TemplatePrecompiler(
+                this,
+                configuration
+                        .getIntegerPropertyValue(EngineConfigurationKey.PRECOMPILE_ALL_TEMPLATES_PARALLELISM),
+                configuration.geExecutorService(), callback)
+                .precompile(templateNames);
+    }
+
+    private ComputingCache<CompiledContentKey, Mustache> buildCompiledContentCache() {
+        Long maxSize = configuration
+                .getLongPropertyValue(EngineConfigurationKey.COMPILED_CONTENT_CACHE_MAX_SIZE);
+        if (maxSize <= 0
+                || configuration
+                        .getBooleanPropertyValue(EngineConfigurationKey.DEBUG_MODE)) {
+            return null;
+        }
+        return configuration.getComputingCacheFactory().create(
+                COMPUTING_CACHE_CONSUMER_ID,
+                new ComputingCache.Function<CompiledContentKey, Mustache>() {
+                    @Override
+                    public Mustache compute(CompiledContentKey key) {
+                        return parse(key.name,
+                                new StringReader(key.content), false, null);
+                    }
+                }, null, maxSize, null);
+    }
+
+    private TemplateSnapshot initSnapshot() {
+        String snapshotFile = configuration
+                .getStringPropertyValue(EngineConfigurationKey.TEMPLATE_SNAPSHOT_FILE);
+        if (snapshotFile.isEmpty()
+                || configuration
+                        .getBooleanPropertyValue(EngineConfigurationKey.DEBUG_MODE)) {
+            return null;
         }
+        return TemplateSnapshot.load(new File(snapshotFile), this);
     }
 
-    private Mustache parse(String templateId, Reader reader) {
+    /**
+     *
+     * @param templateId
+     * @param reader
+     * @param useSnapshot
+     * @param fingerprint
+     *            The template fingerprint, may be <code>null</code>
+     * @return the compiled template
+     */
+    private Mustache parse(String templateId, Reader reader,
+            boolean useSnapshot, String fingerprint) {
         ParsingHandler handler = parsingHandlerFactory.createParsingHandler();
+        Reader original = reader;
         reader = notifyListenersBeforeParsing(templateId, reader);
-        parserFactory.createParser(this).parse(templateId, reader, handler);
+        if (useSnapshot && snapshot != null) {
+            // The fingerprint is not relevant if a listener modified the
+            // contents
+            parseWithSnapshot(templateId, reader,
+                    reader == original ? fingerprint : null, handler);
+        } else {
+            parserFactory.createParser(this).parse(templateId, reader, handler);
+        }
         Mustache mustache = handler.getCompiledTemplate();
         notifyListenersAfterCompilation(mustache);
         return mustache;
     }
 
+    private void parseWithSnapshot(String templateId, Reader reader,
+            String fingerprint, ParsingHandler handler) {
+        if (fingerprint != null
+                && snapshot.replayIfUnmodified(templateId, fingerprint,
+                        handler, this)) {
+            // The contents are not read at all
+            return;
+        }
+        String contents;
+        try {
+            contents = CharStreams.toString(reader);
+        } catch (IOException e) {
+            throw new MustacheException(MustacheProblem.COMPILE_IO_ERROR, e);
+        }
+        String hash = TemplateSnapshot.hash(contents);
+        if (!snapshot.replay(templateId, hash, fingerprint, handler, this)) {
+            parserFactory.createParser(this).parse(templateId,
+                    new StringReader(contents),
+                    snapshot.record(templateId, hash, fingerprint, handler));
+        }
+    }
+
     private Reader locate(String templateId) {
 
         if (configuration.getTemplateLocators() == null
@@ -236,13 +652,28 @@ class DefaultMustacheEngine implements MustacheEngine {
     }
 
     private Mustache locateAndParse(String templateId) {
+        if (configuration.getTemplateLocators() == null) {
+            return null;
+        }
         Reader reader = null;
         try {
-            reader = locate(templateId);
+            String fingerprint = null;
+            for (TemplateLocator locator : configuration
+                    .getTemplateLocators()) {
+                reader = locator.locate(templateId);
+                if (reader != null) {
+                    if (snapshot != null
+                            && locator instanceof TemplateFingerprintProvider) {
+                        fingerprint = ((TemplateFingerprintProvider) locator)
+                                .getFingerprint(templateId);
+                    }
+                    break;
+                }
+            }
             if (reader == null) {
                 return null;
             }
-            return parse(templateId, reader);
+            return parse(templateId, reader, true, fingerprint);
         } finally {
             closeReader(reader, templateId);
         }
@@ -300,6 +731,7 @@ class DefaultMustacheEngine implements MustacheEngine {
     }
 
     private Mustache getTemplateFromCache(String templateName) {
+        templateCacheCounter.request();
         try {
             return templateCache.get(templateName).orNull();
         } catch (Exception e) {
@@ -308,6 +740,7 @@ class DefaultMustacheEngine implements MustacheEngine {
     }
 
     private String getSourceFromCache(String templateName) {
+        sourceCacheCounter.request();
         try {
             return sourceCache.get(templateName).orNull();
         } catch (Exception e) {
@@ -315,6 +748,45 @@ class DefaultMustacheEngine implements MustacheEngine {
         }
     }
 
+    /**
+     *
+     * @param templateId
+     * @param locale
+     * @return the list of candidate ids, the most specific first
+     */
+    static List<String> getLocalizedTemplateIds(String templateId,
+            Locale locale) {
+        int dotIdx = templateId.lastIndexOf('.');
+        if (dotIdx < templateId.lastIndexOf('/')) {
+            dotIdx = -1;
+        }
+        String name = dotIdx != -1 ? templateId.substring(0, dotIdx)
+                : templateId;
+        String extension = dotIdx != -1 ? templateId.substring(dotIdx)
+                : Strings.EMPTY;
+
+        List<String> parts = new ArrayList<String>(3);
+        if (!locale.getLanguage().isEmpty()) {
+            parts.add(locale.getLanguage());
+            if (!locale.getCountry().isEmpty()) {
+                parts.add(locale.getCountry());
+                if (!locale.getVariant().isEmpty()) {
+                    parts.add(locale.getVariant());
+                }
+            }
+        }
+        List<String> ids = new ArrayList<String>(parts.size() + 1);
+        for (int i = parts.size(); i > 0; i--) {
+            StringBuilder id = new StringBuilder(name);
+            for (int j = 0; j < i; j++) {
+                id.append(Strings.UNDERSCORE).append(parts.get(j));
+            }
+            ids.add(id.append(extension).toString());
+        }
+        ids.add(templateId);
+        return ids;
+    }
+
     private RuntimeException unwrapUncheckedExecutionException(Exception e) {
         if (e.getCause() instanceof RuntimeException) {
             return (RuntimeException) e.getCause();
@@ -377,4 +849,72 @@ class DefaultMustacheEngine implements MustacheEngine {
 
     }
 
+    private static final class LocalizedTemplateKey {
+
+        private final String templateId;
+
+        private final Locale locale;
+
+        LocalizedTemplateKey(String templateId, Locale locale) {
+            this.templateId = templateId;
+            this.locale = locale;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(templateId, locale);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof LocalizedTemplateKey)) {
+                return false;
+            }
+            LocalizedTemplateKey other = (LocalizedTemplateKey) obj;
+            return templateId.equals(other.templateId)
+                    && locale.equals(other.locale);
+        }
+
+    }
+
+    /**
+     * The template id is not part of the key for one-off lambda templates.
+     */
+    private static final class CompiledContentKey {
+
+        private final String templateId;
+
+        private final String name;
+
+        private final String content;
+
+        CompiledContentKey(String templateId, String name, String content) {
+            this.templateId = templateId;
+            this.name = name;
+            this.content = content;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(templateId, content);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof CompiledContentKey)) {
+                return false;
+            }
+            CompiledContentKey other = (CompiledContentKey) obj;
+            return Objects.equal(templateId, other.templateId)
+                    && content.equals(other.content);
+        }
+
+    }
+
 }
@@ -15,7 +15,11 @@
  */
 package org.trimou.engine;
 
+import java.util.Locale;
+import java.util.Set;
+
 import org.trimou.Mustache;
+import org.trimou.engine.cache.CacheStats;
 import org.trimou.engine.cache.ComputingCache;
 import org.trimou.engine.config.Configuration;
 import org.trimou.engine.config.EngineConfigurationKey;
@@ -26,6 +30,9 @@ import org.trimou.engine.locator.TemplateLocator;
  * own {@link Configuration} and template cache. Implementation must be
  * thread-safe.
  *
+ * Note that several methods were added in 1.9. Custom implementations should
+ * extend {@link AbstractMustacheEngine} to remain source compatible.
+ *
  * @author Martin Kouba
  */
 public interface MustacheEngine {
@@ -56,6 +63,31 @@ public interface MustacheEngine {
      */
     public Mustache getMustache(String templateId);
 
+    /**
+     * Get the compiled template variant for the given locale. The candidate
+     * ids are derived from the template id and the locale in the same way as
+     * for {@link java.util.ResourceBundle}. The locale part is inserted before
+     * the file extension, e.g. for <code>foo.html</code> and
+     * <code>de_DE</code> locale the following ids are tried:
+     * <code>foo_de_DE.html</code>, <code>foo_de.html</code> and
+     * <code>foo.html</code>.
+     *
+     * If the template cache is enabled the result (including no template
+     * found) is cached for the given template id and locale, i.e. the
+     * subsequent invocations do not involve any template locator.
+     *
+     * @param templateId
+     *            The template identifier
+     * @param locale
+     *            If <code>null</code> the result is the same as for
+     *            {@link #getMustache(String)}
+     * @return the compiled template variant or <code>null</code> if no such
+     *         template exists
+     * @see #getMustache(String)
+     * @since 1.9
+     */
+    public Mustache getMustache(String templateId, Locale locale);
+
     /**
      * @param templateId
      * @return uncompiled mustache template source.
@@ -65,6 +97,8 @@ public interface MustacheEngine {
     /**
      * Compile the given template. The compiled template is not cached and so
      * it's not available for partials and template inheritance.
+     * {@link EngineConfigurationKey#COMPILE_MUSTACHE_CACHE_ENABLED} may be
+     * used to avoid parsing the same contents repeatedly.
      *
      * @param templateId
      *            The template identifier
@@ -83,4 +117,89 @@ public interface MustacheEngine {
      */
     public void invalidateTemplateCache();
 
+    /**
+     * Invalidate the cache entries for both compiled and uncompiled templates
+     * whose template ids satisfy the given predicate. The other entries are not
+     * affected. Unlike {@link #invalidateTemplateCache()} the removed templates
+     * are also marked as invalidated so that the cached references (e.g.
+     * partials in other templates) are refreshed during the next rendering.
+     *
+     * @param templateIdPredicate
+     * @see ComputingCache#invalidate(org.trimou.engine.cache.ComputingCache.KeyPredicate)
+     */
+    public void invalidateTemplateCache(
+            ComputingCache.KeyPredicate<String> templateIdPredicate);
+
+    /**
+     * Invalidate the cache entries for the given template and all the cached
+     * templates which reference it, either directly or transitively (via
+     * partials, template inheritance,
+     * {@link org.trimou.handlebars.IncludeHelper} or
+     * {@link org.trimou.handlebars.EmbedHelper}). The removed templates are
+     * marked as invalidated - see
+     * {@link #invalidateTemplateCache(org.trimou.engine.cache.ComputingCache.KeyPredicate)}
+     * .
+     *
+     * @param templateId
+     * @return the ids of the invalidated templates
+     * @see #getTemplateDependents(String)
+     */
+    public Set<String> invalidateTemplate(String templateId);
+
+    /**
+     * Only the templates present in the template cache are taken into account.
+     *
+     * @param templateId
+     * @return the ids of the cached templates which reference the given
+     *         template, either directly or transitively
+     */
+    public Set<String> getTemplateDependents(String templateId);
+
+    /**
+     * Note that the templates compiled via
+     * {@link #compileMustache(String, String)} are not taken into account.
+     *
+     * @return the statistics of the template cache, or <code>null</code> if
+     *         the template cache is disabled
+     * @see EngineConfigurationKey#TEMPLATE_CACHE_ENABLED
+     */
+    public CacheStats getTemplateCacheStats();
+
+    /**
+     *
+     * @return the statistics of the template source cache, or
+     *         <code>null</code> if the template cache is disabled
+     * @see #getMustacheSource(String)
+     */
+    public CacheStats getSourceCacheStats();
+
+    /**
+     * Write the template snapshot file if any template was parsed since the
+     * snapshot was loaded or last written. The snapshot is written
+     * automatically once all the templates are precompiled. If the templates
+     * are compiled lazily this method should be called explicitly, e.g. after
+     * the application warm-up.
+     *
+     * @return <code>true</code> if the snapshot file was written,
+     *         <code>false</code> otherwise (no snapshot is used or nothing
+     *         changed)
+     * @see EngineConfigurationKey#TEMPLATE_SNAPSHOT_FILE
+     */
+    public boolean writeTemplateSnapshot();
+
+    /**
+     * Release the resources held by the engine, e.g. shut down the executor
+     * service created by the engine and notify all the registered
+     * {@link MustacheEngineBuilder.EngineShutdownCallback}s. The executor
+     * service set via
+     * {@link MustacheEngineBuilder#setExecutorService(java.util.concurrent.ExecutorService)}
+     * is not shut down. Subsequent invocations have no effect.
+     *
+     * The engine should not be used after it's shut down.
+     *
+     * @see MustacheEngineBuilder#registerShutdownCallback(MustacheEngineBuilder.EngineShutdownCallback)
+     * @since 1.9
+     */
+    public void shutdown();
+
 }
@@ -92,6 +92,8 @@ public final class MustacheEngineBuilder implements
 
     private final List<EngineBuiltCallback> engineReadyCallbacks;
 
+    private final List<EngineShutdownCallback> engineShutdownCallbacks;
+
     private final List<MustacheListener> mustacheListeners;
 
     private KeySplitter keySplitter;
@@ -108,6 +110,8 @@ public final class MustacheEngineBuilder implements
 
     private LiteralSupport literalSupport;
 
+    private PrecompilationCallback precompilationCallback;
+
     /**
      * Don't create a new instance.
      *
@@ -122,6 +126,7 @@ public final class MustacheEngineBuilder implements
         this.mustacheListeners = new ArrayList<MustacheListener>();
         this.helpers = new HashMap<String, Helper>();
         this.engineReadyCallbacks = new ArrayList<MustacheEngineBuilder.EngineBuiltCallback>();
+        this.engineShutdownCallbacks = new ArrayList<MustacheEngineBuilder.EngineShutdownCallback>();
     }
 
     /**
@@ -137,6 +142,17 @@ public final class MustacheEngineBuilder implements
         for (EngineBuiltCallback callback : engineReadyCallbacks) {
             callback.engineBuilt(engine);
         }
+        // Template locators may also need to be notified
+        List<TemplateLocator> locators = engine.getConfiguration()
+                .getTemplateLocators();
+        if (locators != null) {
+            for (TemplateLocator locator : locators) {
+                if (locator instanceof EngineBuiltCallback
+                        && !engineReadyCallbacks.contains(locator)) {
+                    ((EngineBuiltCallback) locator).engineBuilt(engine);
+                }
+            }
+        }
 
         String version = null;
         String timestamp = null;
@@ -296,6 +312,24 @@ public final class MustacheEngineBuilder implements
         return this;
     }
 
+    /**
+     * Callback is useful to release the resources of a component once the
+     * engine is shut down. Template locators implementing
+     * {@link EngineShutdownCallback} are notified automatically.
+     *
+     * @param callback
+     * @return self
+     * @see MustacheEngine#shutdown()
+     * @since 1.9
+     */
+    public MustacheEngineBuilder registerShutdownCallback(
+            EngineShutdownCallback callback) {
+        Checker.checkArgumentNotNull(callback);
+        checkNotBuilt();
+        this.engineShutdownCallbacks.add(callback);
+        return this;
+    }
+
     /**
      * Adds a {@link Mustache} listener. Manually added listeners are always
      * registered before listeners added via configuration extensions.
@@ -453,6 +487,7 @@ public final class MustacheEngineBuilder implements
      *
      * @param executorService
      * @return self
+     * @see org.trimou.engine.config.EngineConfigurationKey#ASYNC_VIRTUAL_THREADS_ENABLED
      */
     public MustacheEngineBuilder setExecutorService(
             ExecutorService executorService) {
@@ -475,6 +510,22 @@ public final class MustacheEngineBuilder implements
         return this;
     }
 
+    /**
+     * Set the callback notified during precompilation of all available
+     * templates.
+     *
+     * @param precompilationCallback
+     * @return self
+     * @see org.trimou.engine.config.EngineConfigurationKey#PRECOMPILE_ALL_TEMPLATES
+     */
+    public MustacheEngineBuilder setPrecompilationCallback(
+            PrecompilationCallback precompilationCallback) {
+        Checker.checkArgumentNotNull(precompilationCallback);
+        checkNotBuilt();
+        this.precompilationCallback = precompilationCallback;
+        return this;
+    }
+
     /**
      *
      * @return new instance of builder
@@ -494,6 +545,52 @@ public final class MustacheEngineBuilder implements
 
     }
 
+    /**
+     *
+     * @author Martin Kouba
+     * @see MustacheEngineBuilder#registerShutdownCallback(EngineShutdownCallback)
+     * @see MustacheEngine#shutdown()
+     * @since 1.9
+     */
+    public interface EngineShutdownCallback {
+
+        public void engineShutdown(MustacheEngine engine);
+
+    }
+
+    /**
+     * If templates are precompiled in parallel the callback methods may be
+     * invoked concurrently.
+     *
+     * @author Martin Kouba
+     * @see MustacheEngineBuilder#setPrecompilationCallback(PrecompilationCallback)
+     * @see org.trimou.engine.config.EngineConfigurationKey#PRECOMPILE_ALL_TEMPLATES_PARALLELISM
+     */
+    public interface PrecompilationCallback {
+
+        /**
+         * A template was compiled.
+         *
+         * @param templateId
+         * @param time
+         *            The compilation time in milliseconds
+         * @param processed
+         *            The number of processed templates so far
+         * @param total
+         *            The total number of templates
+         */
+        public void templateCompiled(String templateId, long time,
+                int processed, int total);
+
+        /**
+         * The precompilation is finished.
+         *
+         * @param summary
+         */
+        public void finished(PrecompilationSummary summary);
+
+    }
+
     public Set<TemplateLocator> buildTemplateLocators() {
         return ImmutableSet.copyOf(templateLocators);
     }
@@ -550,10 +647,18 @@ public final class MustacheEngineBuilder implements
         return executorService;
     }
 
+    public List<EngineShutdownCallback> getEngineShutdownCallbacks() {
+        return ImmutableList.copyOf(engineShutdownCallbacks);
+    }
+
     public LiteralSupport getLiteralSupport() {
         return literalSupport;
     }
 
+    public PrecompilationCallback getPrecompilationCallback() {
+        return precompilationCallback;
+    }
+
     private void checkNotBuilt() {
         if (isBuilt) {
             throw new IllegalStateException(
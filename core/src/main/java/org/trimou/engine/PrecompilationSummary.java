@@ -0,0 +1,97 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.engine;
+
+import java.util.Map;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * The summary of precompilation of all available templates.
+ *
+ * @author Martin Kouba
+ * @see MustacheEngineBuilder.PrecompilationCallback
+ */
+public final class PrecompilationSummary {
+
+    private final int total;
+
+    private final int compiled;
+
+    private final long time;
+
+    private final int parallelism;
+
+    private final Map<String, Long> slowestTemplates;
+
+    PrecompilationSummary(int total, int compiled, long time, int parallelism,
+            Map<String, Long> slowestTemplates) {
+        this.total = total;
+        this.compiled = compiled;
+        this.time = time;
+        this.parallelism = parallelism;
+        this.slowestTemplates = ImmutableMap.copyOf(slowestTemplates);
+    }
+
+    /**
+     *
+     * @return the total number of template identifiers
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     *
+     * @return the number of compiled templates
+     */
+    public int getCompiled() {
+        return compiled;
+    }
+
+    /**
+     *
+     * @return the total precompilation time in milliseconds
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     *
+     * @return the max number of templates compiled concurrently
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     *
+     * @return the slowest templates mapped to the compilation time in
+     *         milliseconds, ordered from the slowest
+     */
+    public Map<String, Long> getSlowestTemplates() {
+        return slowestTemplates;
+    }
+
+    @Override
+    public String toString() {
+        return String
+                .format("PrecompilationSummary [total: %s, compiled: %s, time: %s ms, parallelism: %s, slowest: %s]",
+                        total, compiled, time, parallelism, slowestTemplates);
+    }
+
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.trimou.engine.MustacheEngineBuilder.PrecompilationCallback;
+import org.trimou.exception.MustacheException;
+import org.trimou.exception.MustacheProblem;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Compiles the given templates, either sequentially or in parallel.
+ *
+ * @author Martin Kouba
+ * @see org.trimou.engine.config.EngineConfigurationKey#PRECOMPILE_ALL_TEMPLATES_PARALLELISM
+ */
+class TemplatePrecompiler {
+
+    private static final Logger logger = LoggerFactory
+            .getLogger(TemplatePrecompiler.class);
+
+    static final int SLOWEST_TEMPLATES_LIMIT = 10;
+
+    private final MustacheEngine engine;
+
+    private final int parallelism;
+
+    private final ExecutorService executorService;
+
+    private final PrecompilationCallback callback;
+
+    /**
+     *
+     * @param engine
+     * @param parallelism
+     * @param executorService
+     *            May be <code>null</code>
+     * @param callback
+     *            May be <code>null</code>
+     */
+    TemplatePrecompiler(MustacheEngine engine, int parallelism,
+            ExecutorService executorService, PrecompilationCallback callback) {
+        this.engine = engine;
+        this.parallelism = parallelism < 0 ? Runtime.getRuntime()
+                .availableProcessors() : Math.max(parallelism, 1);
+        this.executorService = executorService;
+        this.callback = callback;
+    }
+
+    PrecompilationSummary precompile(Set<String> templateIds) {
+
+        long start = System.nanoTime();
+        Progress progress = new Progress(templateIds.size());
+        int workers = Math.min(parallelism, templateIds.size());
+
+        if (workers > 1) {
+            precompileParallel(templateIds, workers, progress);
+        } else {
+            for (String templateId : templateIds) {
+                progress.compile(templateId);
+            }
+        }
+
+        PrecompilationSummary summary = new PrecompilationSummary(
+                templateIds.size(), progress.compiled.get(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                Math.max(workers, 1), progress.getSlowestTemplates());
+        logger.info("Templates precompiled: {}", summary);
+        if (callback != null) {
+            callback.finished(summary);
+        }
+        return summary;
+    }
+
+    private void precompileParallel(Set<String> templateIds, int workers,
+            final Progress progress) {
+
+        final Queue<String> queue = new ConcurrentLinkedQueue<String>(
+                templateIds);
+        ExecutorService executor = executorService;
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(workers,
+                    new ThreadFactoryBuilder().setDaemon(true)
+                            .setNameFormat("trimou-precompilation-%d")
+                            .build());
+        }
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>(workers);
+            for (int i = 0; i < workers; i++) {
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        String templateId;
+                        while ((templateId = queue.poll()) != null) {
+                            try {
+                                progress.compile(templateId);
+                            } catch (RuntimeException e) {
+                                // Stop all the workers
+                                queue.clear();
+                                throw e;
+                            }
+                        }
+                    }
+                }));
+            }
+            Throwable failure = null;
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new MustacheException(
+                            MustacheProblem.TEMPLATE_LOADING_ERROR, e);
+                }
+            }
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            } else if (failure != null) {
+                throw new MustacheException(
+                        MustacheProblem.TEMPLATE_LOADING_ERROR, failure);
+            }
+        } finally {
+            if (executor != executorService) {
+                executor.shutdown();
+            }
+        }
+    }
+
+    private class Progress {
+
+        private final int total;
+
+        private final AtomicInteger processed;
+
+        private final AtomicInteger compiled;
+
+        private final Map<String, Long> times;
+
+        Progress(int total) {
+            this.total = total;
+            this.processed = new AtomicInteger();
+            this.compiled = new AtomicInteger();
+            this.times = new ConcurrentHashMap<String, Long>();
+        }
+
+        void compile(String templateId) {
+            long start = System.nanoTime();
+            boolean found = engine.getMustache(templateId) != null;
+            long time = TimeUnit.NANOSECONDS.toMillis(System.nanoTime()
+                    - start);
+            int processedCount = processed.incrementAndGet();
+            if (found) {
+                compiled.incrementAndGet();
+                times.put(templateId, time);
+            }
+            if (callback != null) {
+                callback.templateCompiled(templateId, time, processedCount,
+                        total);
+            }
+        }
+
+        Map<String, Long> getSlowestTemplates() {
+            List<Entry<String, Long>> entries = new ArrayList<Entry<String, Long>>(
+                    times.entrySet());
+            Collections.sort(entries, new Comparator<Entry<String, Long>>() {
+                @Override
+                public int compare(Entry<String, Long> o1,
+                        Entry<String, Long> o2) {
+                    return o2.getValue().compareTo(o1.getValue());
+                }
+            });
+            Map<String, Long> slowest = new LinkedHashMap<String, Long>();
+            for (Entry<String, Long> entry : entries) {
+                if (slowest.size() == SLOWEST_TEMPLATES_LIMIT) {
+                    break;
+                }
+                slowest.put(entry.getKey(), entry.getValue());
+            }
+            return slowest;
+        }
+
+    }
+
+}
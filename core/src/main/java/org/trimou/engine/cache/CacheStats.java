@@ -0,0 +1,90 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.engine.cache;
+
+/**
+ * An immutable snapshot of the cache statistics.
+ *
+ * @author Martin Kouba
+ * @see org.trimou.engine.MustacheEngine#getTemplateCacheStats()
+ * @see org.trimou.engine.MustacheEngine#getSourceCacheStats()
+ */
+public final class CacheStats {
+
+    private final long size;
+
+    private final long requests;
+
+    private final long misses;
+
+    /**
+     *
+     * @param size
+     * @param requests
+     * @param misses
+     */
+    public CacheStats(long size, long requests, long misses) {
+        this.size = size;
+        this.requests = requests;
+        this.misses = misses;
+    }
+
+    /**
+     *
+     * @return the current number of entries
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     *
+     * @return the number of lookups
+     */
+    public long getRequests() {
+        return requests;
+    }
+
+    /**
+     *
+     * @return the number of lookups which resulted in the computation of the
+     *         value
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getHits() {
+        return Math.max(0, requests - misses);
+    }
+
+    /**
+     *
+     * @return the ratio of lookups which did not result in the computation of
+     *         the value, or <code>1.0</code> if there was no lookup
+     */
+    public double getHitRatio() {
+        return requests == 0 ? 1.0 : (double) getHits() / requests;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "CacheStats [size: %s, requests: %s, misses: %s, hitRatio: %s]",
+                size, requests, misses, getHitRatio());
+    }
+
+}
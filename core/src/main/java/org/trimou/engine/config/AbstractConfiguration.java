@@ -0,0 +1,42 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.engine.config;
+
+import java.util.List;
+
+import org.trimou.annotations.Internal;
+import org.trimou.engine.listener.MustacheListener;
+
+/**
+ * An adapter for custom {@link Configuration} implementations. The methods
+ * added in 1.9 are implemented on top of the original methods.
+ *
+ * @author Martin Kouba
+ * @since 1.9
+ */
+@Internal
+public abstract class AbstractConfiguration implements Configuration {
+
+    /**
+     * All the listeners are considered to consume rendering events.
+     */
+    @Override
+    public List<MustacheListener> getRenderingListeners() {
+        List<MustacheListener> listeners = getMustacheListeners();
+        return listeners == null || listeners.isEmpty() ? null : listeners;
+    }
+
+}
@@ -37,6 +37,9 @@ import org.trimou.handlebars.Options;
 /**
  * Mustache engine configuration.
  *
+ * Note that {@link #getRenderingListeners()} was added in 1.9. Custom
+ * implementations should extend {@link AbstractConfiguration}.
+ *
  * @author Martin Kouba
  */
 @Internal
@@ -75,6 +78,22 @@ public interface Configuration {
      */
     public List<MustacheListener> getMustacheListeners();
 
+    /**
+     * A listener which extends
+     * {@link org.trimou.engine.listener.AbstractMustacheListener} and overrides
+     * neither
+     * {@link MustacheListener#renderingStarted(org.trimou.engine.listener.MustacheRenderingEvent)}
+     * nor
+     * {@link MustacheListener#renderingFinished(org.trimou.engine.listener.MustacheRenderingEvent)}
+     * does not consume rendering events. If there is no such listener, no
+     * rendering event is created and no identifier is generated at all.
+     *
+     * @return the immutable list of listeners consuming rendering events or
+     *         <code>null</code> if there are no such listeners
+     * @since 1.9
+     */
+    public List<MustacheListener> getRenderingListeners();
+
     /**
      * @return the key splitter implementation
      * @since 1.5
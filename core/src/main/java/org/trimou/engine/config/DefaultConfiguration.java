@@ -17,6 +17,7 @@ package org.trimou.engine.config;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
@@ -29,9 +30,11 @@ import java.util.Properties;
 import java.util.ServiceLoader;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.trimou.engine.MustacheEngine;
 import org.trimou.engine.MustacheEngineBuilder;
 import org.trimou.engine.cache.ComputingCacheFactory;
 import org.trimou.engine.cache.DefaultComputingCacheFactory;
@@ -44,7 +47,9 @@ import org.trimou.engine.interpolation.LiteralSupport;
 import org.trimou.engine.interpolation.MissingValueHandler;
 import org.trimou.engine.interpolation.NoOpMissingValueHandler;
 import org.trimou.engine.interpolation.ThrowingExceptionMissingValueHandler;
+import org.trimou.engine.listener.AbstractMustacheListener;
 import org.trimou.engine.listener.MustacheListener;
+import org.trimou.engine.listener.MustacheRenderingEvent;
 import org.trimou.engine.locale.LocaleSupport;
 import org.trimou.engine.locale.LocaleSupportFactory;
 import org.trimou.engine.locator.TemplateLocator;
@@ -65,13 +70,16 @@ import com.google.common.collect.ImmutableMap;
  *
  * @author Martin Kouba
  */
-class DefaultConfiguration implements Configuration {
+class DefaultConfiguration implements Configuration,
+        MustacheEngineBuilder.EngineShutdownCallback {
 
     private static final Logger logger = LoggerFactory
             .getLogger(DefaultConfiguration.class);
 
     private static final String RESOURCE_FILE = "/trimou.properties";
 
+    private static final String VIRTUAL_THREAD_EXECUTOR_FACTORY_METHOD = "newVirtualThreadPerTaskExecutor";
+
     private final List<TemplateLocator> templateLocators;
 
     private final List<Resolver> resolvers;
@@ -86,6 +94,8 @@ class DefaultConfiguration implements Configuration {
 
     private final List<MustacheListener> mustacheListeners;
 
+    private final List<MustacheListener> renderingListeners;
+
     private final KeySplitter keySplitter;
 
     private final MissingValueHandler missingValueHandler;
@@ -98,6 +108,12 @@ class DefaultConfiguration implements Configuration {
 
     private final ExecutorService executorService;
 
+    /**
+     * <code>true</code> if the executor service was created by the
+     * configuration and should be shut down together with the engine
+     */
+    private final boolean isExecutorServiceOwned;
+
     private final LiteralSupport literalSupport;
 
     /**
@@ -199,7 +215,87 @@ class DefaultConfiguration implements Configuration {
         this.resolvers = ImmutableList.copyOf(resolvers);
         this.mustacheListeners = mustacheListeners.isEmpty() ? null
                 : mustacheListeners;
-        this.executorService = builder.getExecutorService();
+        this.renderingListeners = initRenderingListeners(mustacheListeners);
+        ExecutorService virtualThreadsExecutor = initVirtualThreadsExecutor(builder);
+        this.isExecutorServiceOwned = virtualThreadsExecutor != null;
+        this.executorService = isExecutorServiceOwned ? virtualThreadsExecutor
+                : builder.getExecutorService();
+    }
+
+    private List<MustacheListener> initRenderingListeners(
+            List<MustacheListener> mustacheListeners) {
+        List<MustacheListener> renderingListeners = new ArrayList<MustacheListener>();
+        for (MustacheListener listener : mustacheListeners) {
+            if (isRenderingListener(listener)) {
+                renderingListeners.add(listener);
+            }
+        }
+        return renderingListeners.isEmpty() ? null : ImmutableList
+                .copyOf(renderingListeners);
+    }
+
+    private boolean isRenderingListener(MustacheListener listener) {
+        if (!(listener instanceof AbstractMustacheListener)) {
+            // We can't tell
+            return true;
+        }
+        return isOverriden(listener, "renderingStarted")
+                || isOverriden(listener, "renderingFinished");
+    }
+
+    private boolean isOverriden(MustacheListener listener, String methodName) {
+        try {
+            return !AbstractMustacheListener.class.equals(listener.getClass()
+                    .getMethod(methodName, MustacheRenderingEvent.class)
+                    .getDeclaringClass());
+        } catch (NoSuchMethodException e) {
+            return true;
+        }
+    }
+
+    private ExecutorService initVirtualThreadsExecutor(
+            MustacheEngineBuilder builder) {
+        if (!getBooleanPropertyValue(EngineConfigurationKey.ASYNC_VIRTUAL_THREADS_ENABLED)) {
+            return null;
+        }
+        if (builder.getExecutorService() != null) {
+            logger.info(
+                    "Virtual threads not used - the configured executor service is used for asynchronous tasks: {}",
+                    builder.getExecutorService());
+            return null;
+        }
+        ExecutorService virtualThreadsExecutor = newVirtualThreadPerTaskExecutor();
+        if (virtualThreadsExecutor != null) {
+            logger.info("Virtual threads used for asynchronous tasks");
+        } else {
+            logger.warn("Virtual threads not supported and no executor service configured - asynchronous tasks are not supported");
+        }
+        return virtualThreadsExecutor;
+    }
+
+    /**
+     *
+     * @return a new virtual-thread-per-task executor or <code>null</code> if
+     *         virtual threads are not supported
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method factoryMethod = Executors.class
+                    .getMethod(VIRTUAL_THREAD_EXECUTOR_FACTORY_METHOD);
+            return (ExecutorService) factoryMethod.invoke(null);
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (Exception e) {
+            logger.warn("Unable to create virtual thread executor", e);
+            return null;
+        }
+    }
+
+    @Override
+    public void engineShutdown(MustacheEngine engine) {
+        if (isExecutorServiceOwned) {
+            executorService.shutdown();
+        }
     }
 
     @Override
@@ -232,6 +328,11 @@ class DefaultConfiguration implements Configuration {
         return mustacheListeners;
     }
 
+    @Override
+    public List<MustacheListener> getRenderingListeners() {
+        return renderingListeners;
+    }
+
     @Override
     public KeySplitter getKeySplitter() {
         return keySplitter;
@@ -17,6 +17,7 @@ package org.trimou.engine.config;
 
 import org.trimou.engine.interpolation.MissingValueHandler;
 import org.trimou.engine.segment.LineSeparatorSegment;
+import org.trimou.engine.segment.Segment;
 import org.trimou.handlebars.Helper;
 
 /**
@@ -39,6 +40,18 @@ public enum EngineConfigurationKey implements ConfigurationKey {
      * required, <code>false</code> otherwise.
      */
     PRECOMPILE_ALL_TEMPLATES(false),
+    /**
+     * The max number of templates compiled concurrently during precompilation
+     * (see {@link #PRECOMPILE_ALL_TEMPLATES}). The executor service set via
+     * {@link org.trimou.engine.MustacheEngineBuilder#setExecutorService(java.util.concurrent.ExecutorService)}
+     * is used if available, otherwise a temporary thread pool is created. Zero
+     * and one mean the templates are compiled sequentially on the thread
+     * building the engine, a negative value means the number of available
+     * processors.
+     *
+     * @see org.trimou.engine.MustacheEngineBuilder.PrecompilationCallback
+     */
+    PRECOMPILE_ALL_TEMPLATES_PARALLELISM(0),
     /**
      * <code>true</code> if standalone lines should be removed (see also
      * Mustache spec), <code>false</code> otherwise.
@@ -122,9 +135,125 @@ public enum EngineConfigurationKey implements ConfigurationKey {
     ITERATION_METADATA_ALIAS("iter"),
     /**
      * If set to <code>true</code> the evaluation of simple variables, e.g.
-     * <code>{{.}}</code> or <code>{{foo}}</code>, is optimized.
+     * <code>{{.}}</code> or <code>{{foo}}</code>, is optimized. The hints are
+     * used for variable tags, section tags, inverted section tags and helper
+     * parameters.
+     */
+    RESOLVER_HINTS_ENABLED(true),
+    /**
+     * The max number of runtime classes of the context object remembered for
+     * each subsequent part of a key of a variable tag, a section tag or a
+     * helper parameter, e.g. <code>bar</code> in <code>{{foo.bar}}</code>. If exceeded, the resolver
+     * chain is always used for the given part. Zero and negative values
+     * disable the inline caches. Only taken into account if
+     * {@link #RESOLVER_HINTS_ENABLED} is set to <code>true</code>.
+     *
+     * @see org.trimou.engine.context.InlineCache
+     */
+    RESOLVER_HINTS_POLYMORPHIC_LIMIT(4),
+    /**
+     * If set to <code>true</code> adjacent static segments (text and line
+     * separators) are merged into a single segment during compilation, i.e.
+     * a static block of a template is written with a single append. Comments
+     * and set delimiters tags are only merged if removed before, see
+     * {@link #REMOVE_UNNECESSARY_SEGMENTS}. The merged segments keep the
+     * original line separators, i.e. these are also reused if
+     * {@link #REUSE_LINE_SEPARATOR_SEGMENTS} is set to <code>true</code>. Note
+     * that {@link Segment#getOrigin()} of a merged segment only reflects the
+     * first original segment.
+     */
+    STATIC_SEGMENTS_MERGING_ENABLED(false),
+    /**
+     * If set to <code>true</code> the value wrappers are reused during a single
+     * template rendering, i.e. a steady-state interpolation of a variable does
+     * not allocate a new {@link org.trimou.engine.context.ValueWrapper}. Note
+     * that a helper must only make use of other threads via
+     * {@link org.trimou.handlebars.Options#executeAsync(org.trimou.handlebars.Options.HelperExecutable)}
+     * if enabled.
+     */
+    VALUE_WRAPPER_POOLING_ENABLED(false),
+    /**
+     * If set to a positive value the rendered output is flushed as soon as at
+     * least the given number of characters (bytes if rendering to an
+     * {@link java.io.OutputStream}) is written since the last flush. The output
+     * is also flushed before an asynchronous helper execution starts, i.e. when
+     * the preceding output is final. Only applies to {@link java.io.Flushable}
+     * appendables (e.g. {@link java.io.Writer}) and byte-oriented rendering.
+     * Zero and negative values mean no automatic flushing.
+     */
+    OUTPUT_FLUSH_THRESHOLD(0),
+    /**
+     * The timeout in seconds the rendering thread waits for all the
+     * asynchronous tasks to finish. Zero and negative values mean no timeout.
+     * This timeout does not apply to non-blocking rendering.
+     *
+     * @see org.trimou.Mustache#renderAsync(Appendable, Object,
+     *      org.trimou.Mustache.RenderingCallback)
+     */
+    ASYNC_PROCESSING_TIMEOUT(60l),
+    /**
+     * If set to <code>true</code>, no executor service is set via
+     * {@link org.trimou.engine.MustacheEngineBuilder#setExecutorService(java.util.concurrent.ExecutorService)}
+     * and the JDK supports virtual threads, each asynchronous task is executed
+     * on a new virtual thread. The configured executor service always takes
+     * precedence. The virtual thread executor is shut down when the engine is
+     * shut down.
+     *
+     * @see org.trimou.engine.MustacheEngine#shutdown()
+     */
+    ASYNC_VIRTUAL_THREADS_ENABLED(false),
+    /**
+     * The max number of asynchronous tasks executed concurrently within a
+     * single rendering. The tasks over the limit are queued and submitted once
+     * a running task is finished. Zero and negative values mean no limit.
+     */
+    ASYNC_MAX_CONCURRENT_TASKS(0),
+    /**
+     * The path of the template snapshot file. If set, the parsing results of
+     * all the templates obtained via
+     * {@link org.trimou.engine.MustacheEngine#getMustache(String)} are
+     * replayed from the snapshot if the template contents did not change. The
+     * snapshot file is written once the precompilation of all templates is
+     * finished (see {@link #PRECOMPILE_ALL_TEMPLATES}) or if
+     * {@link org.trimou.engine.MustacheEngine#writeTemplateSnapshot()} is
+     * called explicitly, e.g. if the templates are compiled lazily. An empty
+     * value means no snapshot is used.
+     *
+     * @see org.trimou.engine.parser.TemplateSnapshot
+     * @see org.trimou.engine.locator.TemplateFingerprintProvider
+     */
+    TEMPLATE_SNAPSHOT_FILE(""),
+    /**
+     * If set to <code>true</code> the template contents are read at once and
+     * scanned for delimiters and line separators in bulk, instead of being
+     * processed character by character. This is usually faster, especially
+     * for large templates with long text runs.
+     */
+    SCANNING_PARSER_ENABLED(false),
+    /**
+     * The max size of the cache of templates compiled from the return values
+     * of lambdas (see
+     * {@link org.trimou.lambda.Lambda#isReturnValueInterpolated()}). The
+     * cache is keyed by the template contents, so that the same return value
+     * is not parsed again. Zero and negative values disable the cache.
+     */
+    COMPILED_CONTENT_CACHE_MAX_SIZE(0l),
+    /**
+     * If set to <code>true</code> and the compiled content cache is enabled
+     * (see {@link #COMPILED_CONTENT_CACHE_MAX_SIZE}), the templates compiled
+     * via
+     * {@link org.trimou.engine.MustacheEngine#compileMustache(String, String)}
+     * are cached as well, keyed by the template id and contents.
+     */
+    COMPILE_MUSTACHE_CACHE_ENABLED(false),
+    /**
+     * The max size of the cache of split keys, used for keys which are not
+     * known at compile time, e.g. a key passed to
+     * {@link org.trimou.handlebars.Options#getValue(String)}. The cache is
+     * shared by all the templates of an engine. Zero and negative values
+     * disable the cache.
      */
-    RESOLVER_HINTS_ENABLED(true), ;
+    KEY_PARTS_CACHE_MAX_SIZE(100l), ;
 
     private Object defaultValue;
 
@@ -20,11 +20,13 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicReference;
 
+import org.trimou.engine.cache.ComputingCache;
 import org.trimou.engine.config.Configuration;
 import org.trimou.engine.config.EngineConfigurationKey;
 import org.trimou.engine.parser.Template;
 import org.trimou.engine.resolver.EnhancedResolver;
 import org.trimou.engine.resolver.EnhancedResolver.Hint;
+import org.trimou.engine.resolver.Hints;
 import org.trimou.engine.resolver.Placeholder;
 import org.trimou.engine.resolver.Resolver;
 import org.trimou.engine.segment.Segment;
@@ -52,6 +54,10 @@ final class DefaultExecutionContext implements ExecutionContext {
 
     protected final Resolver[] resolvers;
 
+    private final ComputingCache<String, String[]> keyPartsCache;
+
+    private final ValueWrapperPool valueWrapperPool;
+
     /**
      *
      * @param parent
@@ -62,11 +68,15 @@ final class DefaultExecutionContext implements ExecutionContext {
      * @param invocationLimitCounter
      * @param definingSections
      * @param resolvers
+     * @param keyPartsCache
+     * @param valueWrapperPool
      */
     DefaultExecutionContext(DefaultExecutionContext parent,
             Configuration configuration, Object contextObject,
             Template templateInvocation, int invocationLimitCounter,
-            Map<String, Segment> definingSections, Resolver[] resolvers) {
+            Map<String, Segment> definingSections, Resolver[] resolvers,
+            ComputingCache<String, String[]> keyPartsCache,
+            ValueWrapperPool valueWrapperPool) {
         this.parent = parent;
         this.configuration = configuration;
         this.contextObject = contextObject;
@@ -74,13 +84,22 @@ final class DefaultExecutionContext implements ExecutionContext {
         this.invocationLimitCounter = invocationLimitCounter;
         this.definingSections = definingSections;
         this.resolvers = resolvers;
+        this.keyPartsCache = keyPartsCache;
+        this.valueWrapperPool = valueWrapperPool;
     }
 
     @Override
     public ValueWrapper getValue(String key, String[] keyParts,
             AtomicReference<Hint> hintRef) {
+        return getValue(key, keyParts, hintRef, null);
+    }
+
+    @Override
+    public ValueWrapper getValue(String key, String[] keyParts,
+            AtomicReference<Hint> hintRef, InlineCache[] partCaches) {
 
-        ValueWrapper value = new ValueWrapper(key);
+        ValueWrapper value = valueWrapperPool != null ? valueWrapperPool
+                .acquire(key) : new ValueWrapper(key);
         Object lastValue = null;
 
         if (keyParts == null || keyParts.length == 0) {
@@ -108,7 +127,9 @@ final class DefaultExecutionContext implements ExecutionContext {
             if (keyParts.length > 1) {
                 for (int i = 1; i < keyParts.length; i++) {
                     value.processNextPart();
-                    lastValue = resolve(lastValue, keyParts[i], value, false);
+                    lastValue = partCaches != null ? resolve(lastValue,
+                            keyParts[i], value, partCaches[i]) : resolve(
+                            lastValue, keyParts[i], value, false);
                     if (lastValue == null) {
                         // Not found - miss
                         return value;
@@ -125,13 +146,31 @@ final class DefaultExecutionContext implements ExecutionContext {
 
     @Override
     public ValueWrapper getValue(String key) {
-        return getValue(key, null, null);
+        return getValue(key,
+                keyPartsCache != null ? keyPartsCache.get(key) : null, null,
+                null);
     }
 
     @Override
     public ExecutionContext setContextObject(Object object) {
         return new DefaultExecutionContext(this, configuration, object, null,
-                invocationLimitCounter, null, resolvers);
+                invocationLimitCounter, null, resolvers,
+                keyPartsCache, valueWrapperPool);
+    }
+
+    /**
+     *
+     * @param contextObject
+     * @return a new context with a separate value wrapper pool
+     */
+    DefaultExecutionContext newPooledContext(Object contextObject) {
+        return new DefaultExecutionContext(this, configuration, contextObject,
+                null, invocationLimitCounter, null, resolvers,
+                keyPartsCache, new ValueWrapperPool());
+    }
+
+    boolean isValueWrapperPoolUsed() {
+        return valueWrapperPool != null;
     }
 
     @Override
@@ -158,7 +197,8 @@ final class DefaultExecutionContext implements ExecutionContext {
                     invocationLimitCounter, templateInvocation);
         }
         return new DefaultExecutionContext(this, configuration, null, template,
-                invocationLimitCounter - 1, null, resolvers);
+                invocationLimitCounter - 1, null, resolvers,
+                keyPartsCache, valueWrapperPool);
     }
 
     @Override
@@ -173,7 +213,8 @@ final class DefaultExecutionContext implements ExecutionContext {
             }
         }
         return new DefaultExecutionContext(this, configuration, null, null,
-                invocationLimitCounter, definingSections, resolvers);
+                invocationLimitCounter, definingSections, resolvers,
+                keyPartsCache, valueWrapperPool);
     }
 
     @Override
@@ -259,6 +300,42 @@ final class DefaultExecutionContext implements ExecutionContext {
         return leading;
     }
 
+    /**
+     * Try the hint for the runtime class of the context object first, then the
+     * resolver chain.
+     *
+     * @param contextObject
+     *            Must not be <code>null</code>
+     * @param name
+     * @param value
+     * @param cache
+     * @return the resolved object
+     * @see InlineCache
+     */
+    private Object resolve(Object contextObject, String name,
+            ValueWrapper value, InlineCache cache) {
+        Class<?> receiverClass = contextObject.getClass();
+        Hint hint = cache.get(receiverClass);
+        if (hint != null && hint != Hints.INAPPLICABLE_HINT) {
+            Object resolved = hint.resolve(contextObject, name, value);
+            if (resolved != null) {
+                return resolved;
+            }
+        }
+        for (int i = 0; i < resolvers.length; i++) {
+            Object resolved = resolvers[i].resolve(contextObject, name, value);
+            if (resolved != null) {
+                if (hint == null && !cache.isMegamorphic()
+                        && resolvers[i] instanceof EnhancedResolver) {
+                    cache.put(receiverClass, ((EnhancedResolver) resolvers[i])
+                            .createHint(contextObject, name, value));
+                }
+                return resolved;
+            }
+        }
+        return null;
+    }
+
     private Object resolve(Object contextObject, String name,
             ValueWrapper value, boolean createHint) {
         Object resolved = null;
@@ -43,6 +43,20 @@ public interface ExecutionContext {
     ValueWrapper getValue(String key, String[] keyParts,
             AtomicReference<Hint> hintRef);
 
+    /**
+     * @param key
+     * @param keyParts
+     * @param hintRef
+     *            The hint for the first part of the key, may be
+     *            <code>null</code>
+     * @param partCaches
+     *            The inline caches for the subsequent parts of the key (the
+     *            first element is ignored), may be <code>null</code>
+     * @return the wrapper for the given key
+     */
+    ValueWrapper getValue(String key, String[] keyParts,
+            AtomicReference<Hint> hintRef, InlineCache[] partCaches);
+
     /**
      * @param key
      * @return the wrapper for the given key
@@ -15,32 +15,114 @@
  */
 package org.trimou.engine.context;
 
+import org.trimou.engine.cache.ComputingCache;
 import org.trimou.engine.config.Configuration;
 import org.trimou.engine.config.EngineConfigurationKey;
 import org.trimou.engine.resolver.Resolver;
 
+import com.google.common.collect.Iterators;
+
 /**
  *
  * @author Martin Kouba
  */
 public final class ExecutionContexts {
 
+    public static final String COMPUTING_CACHE_CONSUMER_ID = ExecutionContexts.class
+            .getName();
+
+    /**
+     * No cache of split keys is used.
+     *
+     * @param configuration
+     * @return a new global execution context for the given configuration
+     * @see #newGlobalExecutionContext(Configuration, ComputingCache)
+     */
+    public static ExecutionContext newGlobalExecutionContext(
+            Configuration configuration) {
+        return newGlobalExecutionContext(configuration, null);
+    }
+
+    /**
+     *
+     * @param configuration
+     * @param keyPartsCache
+     *            The cache of split keys, may be <code>null</code>
+     * @return a new global execution context for the given configuration
+     * @see #newKeyPartsCache(Configuration)
+     */
+    public static ExecutionContext newGlobalExecutionContext(
+            Configuration configuration,
+            ComputingCache<String, String[]> keyPartsCache) {
+        return new DefaultExecutionContext(
+                null,
+                configuration,
+                configuration.getGlobalData(),
+                null,
+                configuration
+                        .getIntegerPropertyValue(EngineConfigurationKey.TEMPLATE_RECURSIVE_INVOCATION_LIMIT),
+                null, configuration.getResolvers().toArray(
+                        new Resolver[configuration.getResolvers().size()]),
+                keyPartsCache, null);
+    }
+
+    /**
+     *
+     * @param globalContext
+     * @param contextObject
+     * @return a new execution context with a separate value wrapper pool, the
+     *         pool must not be shared across threads
+     * @see EngineConfigurationKey#VALUE_WRAPPER_POOLING_ENABLED
+     */
+    public static ExecutionContext newPooledExecutionContext(
+            ExecutionContext globalContext, Object contextObject) {
+        if (globalContext instanceof DefaultExecutionContext) {
+            return ((DefaultExecutionContext) globalContext)
+                    .newPooledContext(contextObject);
+        }
+        return contextObject != null ? globalContext
+                .setContextObject(contextObject) : globalContext;
+    }
+
+    /**
+     *
+     * @param context
+     * @return the execution context which may be safely used by another thread
+     */
+    public static ExecutionContext newAsyncExecutionContext(
+            ExecutionContext context) {
+        if (context instanceof DefaultExecutionContext
+                && ((DefaultExecutionContext) context).isValueWrapperPoolUsed()) {
+            return ((DefaultExecutionContext) context).newPooledContext(null);
+        }
+        return context;
+    }
+
     /**
-    *
-    * @param configuration
-    * @return a new global execution context for the given configuration
-    */
-   public static ExecutionContext newGlobalExecutionContext(
-           Configuration configuration) {
-       return new DefaultExecutionContext(
-               null,
-               configuration,
-               configuration.getGlobalData(),
-               null,
-               configuration
-                       .getIntegerPropertyValue(EngineConfigurationKey.TEMPLATE_RECURSIVE_INVOCATION_LIMIT),
-               null, configuration.getResolvers().toArray(
-                       new Resolver[configuration.getResolvers().size()]));
-   }
+     * The cache is used for keys which are not known at compile time, e.g.
+     * {@link org.trimou.handlebars.Options#getValue(String)}. It's supposed to
+     * be shared by all the global execution contexts of an engine.
+     *
+     * @param configuration
+     * @return a new cache of split keys or <code>null</code> if disabled
+     * @see EngineConfigurationKey#KEY_PARTS_CACHE_MAX_SIZE
+     */
+    public static ComputingCache<String, String[]> newKeyPartsCache(
+            final Configuration configuration) {
+        Long maxSize = configuration
+                .getLongPropertyValue(EngineConfigurationKey.KEY_PARTS_CACHE_MAX_SIZE);
+        if (maxSize <= 0) {
+            return null;
+        }
+        return configuration.getComputingCacheFactory().create(
+                COMPUTING_CACHE_CONSUMER_ID,
+                new ComputingCache.Function<String, String[]>() {
+                    @Override
+                    public String[] compute(String key) {
+                        return Iterators.toArray(configuration
+                                .getKeySplitter().split(key), String.class);
+                    }
+                }, null, maxSize, null);
+    }
 
 }
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.engine.context;
+
+import org.trimou.annotations.Internal;
+import org.trimou.engine.resolver.EnhancedResolver.Hint;
+
+/**
+ * A polymorphic inline cache for a single part of a key, e.g.
+ * <code>address</code> in <code>{{customer.address.city}}</code>. The cache
+ * remembers the hint created for each runtime class of the context object
+ * (receiver). Once the number of receiver classes exceeds the limit, the cache
+ * is considered megamorphic, all the entries are discarded and the resolver
+ * chain is always used.
+ *
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ *
+ * @author Martin Kouba
+ * @see org.trimou.engine.config.EngineConfigurationKey#RESOLVER_HINTS_POLYMORPHIC_LIMIT
+ */
+@Internal
+public final class InlineCache {
+
+    private static final Entry[] EMPTY = new Entry[0];
+
+    private final int limit;
+
+    private volatile Entry[] entries;
+
+    private volatile boolean megamorphic;
+
+    /**
+     *
+     * @param limit
+     *            The max number of receiver classes
+     */
+    public InlineCache(int limit) {
+        this.limit = limit;
+        this.entries = EMPTY;
+        this.megamorphic = false;
+    }
+
+    /**
+     *
+     * @param receiverClass
+     * @return the hint for the given receiver class or <code>null</code>
+     */
+    Hint get(Class<?> receiverClass) {
+        Entry[] current = entries;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i].receiverClass == receiverClass) {
+                return current[i].hint;
+            }
+        }
+        return null;
+    }
+
+    /**
+     *
+     * @param receiverClass
+     * @param hint
+     */
+    synchronized void put(Class<?> receiverClass, Hint hint) {
+        if (megamorphic || get(receiverClass) != null) {
+            return;
+        }
+        Entry[] current = entries;
+        if (current.length >= limit) {
+            megamorphic = true;
+            entries = EMPTY;
+            return;
+        }
+        Entry[] updated = new Entry[current.length + 1];
+        System.arraycopy(current, 0, updated, 0, current.length);
+        updated[current.length] = new Entry(receiverClass, hint);
+        entries = updated;
+    }
+
+    /**
+     *
+     * @return <code>true</code> if the number of receiver classes exceeded the
+     *         limit, <code>false</code> otherwise
+     */
+    public boolean isMegamorphic() {
+        return megamorphic;
+    }
+
+    /**
+     *
+     * @return the current number of receiver classes
+     */
+    public int size() {
+        return entries.length;
+    }
+
+    private static final class Entry {
+
+        private final Class<?> receiverClass;
+
+        private final Hint hint;
+
+        Entry(Class<?> receiverClass, Hint hint) {
+            this.receiverClass = receiverClass;
+            this.hint = hint;
+        }
+
+    }
+
+}
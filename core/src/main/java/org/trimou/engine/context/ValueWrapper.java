@@ -33,7 +33,9 @@ import org.trimou.engine.resource.AbstractReleaseCallbackContainer;
 public final class ValueWrapper extends AbstractReleaseCallbackContainer
         implements ResolutionContext {
 
-    private final String key;
+    private final ValueWrapperPool pool;
+
+    private String key;
 
     private Object value = null;
 
@@ -41,12 +43,45 @@ public final class ValueWrapper extends AbstractReleaseCallbackContainer
 
     private Hint hint;
 
+    private boolean inUse;
+
     /**
      *
      * @param key
      */
     public ValueWrapper(String key) {
         this.key = key;
+        this.pool = null;
+    }
+
+    /**
+     *
+     * @param pool
+     */
+    ValueWrapper(ValueWrapperPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Release all the resources. A pooled wrapper is returned to the pool and
+     * must not be used afterwards.
+     */
+    @Override
+    public void release() {
+        if (pool == null) {
+            super.release();
+        } else if (inUse) {
+            try {
+                super.release();
+            } finally {
+                key = null;
+                value = null;
+                keyPartIndex = 0;
+                hint = null;
+                inUse = false;
+                pool.release();
+            }
+        }
     }
 
     /**
@@ -86,6 +121,15 @@ public final class ValueWrapper extends AbstractReleaseCallbackContainer
         keyPartIndex++;
     }
 
+    void init(String key) {
+        this.key = key;
+        this.inUse = true;
+    }
+
+    boolean isInUse() {
+        return inUse;
+    }
+
     public Hint getHint() {
         return hint;
     }
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.engine.context;
+
+/**
+ * A stack of reusable value wrappers. The pool belongs to a single template
+ * rendering and it's not thread-safe.
+ *
+ * Wrappers are released in reverse order in most cases. If not, the released
+ * wrapper is only reused once all the wrappers acquired after it are released
+ * as well.
+ *
+ * @author Martin Kouba
+ * @see org.trimou.engine.config.EngineConfigurationKey#VALUE_WRAPPER_POOLING_ENABLED
+ */
+final class ValueWrapperPool {
+
+    private static final int DEFAULT_INITIAL_CAPACITY = 8;
+
+    private ValueWrapper[] wrappers;
+
+    private int size;
+
+    ValueWrapperPool() {
+        this.wrappers = new ValueWrapper[DEFAULT_INITIAL_CAPACITY];
+        this.size = 0;
+    }
+
+    /**
+     *
+     * @param key
+     * @return the wrapper for the given key
+     */
+    ValueWrapper acquire(String key) {
+        if (size == wrappers.length) {
+            ValueWrapper[] newWrappers = new ValueWrapper[wrappers.length * 2];
+            System.arraycopy(wrappers, 0, newWrappers, 0, wrappers.length);
+            wrappers = newWrappers;
+        }
+        ValueWrapper wrapper = wrappers[size];
+        if (wrapper == null) {
+            wrapper = new ValueWrapper(this);
+            wrappers[size] = wrapper;
+        }
+        size++;
+        wrapper.init(key);
+        return wrapper;
+    }
+
+    /**
+     * Make the released wrappers on the top of the stack available again.
+     */
+    void release() {
+        while (size > 0 && !wrappers[size - 1].isInUse()) {
+            size--;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+}
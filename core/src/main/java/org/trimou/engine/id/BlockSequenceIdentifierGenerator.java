@@ -0,0 +1,93 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.engine.id;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.trimou.engine.config.AbstractConfigurationAware;
+
+/**
+ * An {@link IdentifierGenerator} suitable for highly concurrent environments.
+ * Each thread reserves a block of identifiers from the global sequence and
+ * then generates the identifiers from its own block, i.e. the global sequence
+ * is only touched once per block.
+ *
+ * <p>
+ * The generated identifiers are unique per engine, but unlike
+ * {@link SequenceIdentifierGenerator} they're not monotonic across threads and
+ * the sequence may contain gaps.
+ * </p>
+ *
+ * @author Martin Kouba
+ * @see org.trimou.engine.MustacheEngineBuilder#setIdentifierGenerator(IdentifierGenerator)
+ */
+public class BlockSequenceIdentifierGenerator extends
+        AbstractConfigurationAware implements IdentifierGenerator {
+
+    public static final int DEFAULT_BLOCK_SIZE = 1024;
+
+    private final AtomicLong sequence = new AtomicLong(0);
+
+    private final int blockSize;
+
+    private final ThreadLocal<Block> blocks = new ThreadLocal<Block>() {
+        @Override
+        protected Block initialValue() {
+            return new Block();
+        }
+    };
+
+    public BlockSequenceIdentifierGenerator() {
+        this(DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     *
+     * @param blockSize
+     *            The number of identifiers reserved at once
+     */
+    public BlockSequenceIdentifierGenerator(int blockSize) {
+        checkArgument(blockSize > 0, "Block size must be greater than zero");
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    public long generate(Class<? extends Identified> componentType) {
+        Block block = blocks.get();
+        if (block.next == block.limit) {
+            block.limit = sequence.addAndGet(blockSize);
+            block.next = block.limit - blockSize;
+        }
+        return ++block.next;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    private static final class Block {
+
+        // The last generated value
+        private long next;
+
+        // The last value of the reserved block
+        private long limit;
+
+    }
+
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.engine.listener;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+import org.trimou.engine.MustacheEngine;
+import org.trimou.engine.cache.ComputingCache;
+import org.trimou.engine.cache.ComputingCache.Function;
+import org.trimou.engine.resource.ReleaseCallback;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * A {@link MustacheListener} collecting template rendering statistics into a
+ * {@link LogLinearHistogram} per template. Unlike {@link SimpleStatsCollector}
+ * and {@link EnhancedStatsCollector} the memory footprint per template is
+ * constant regardless of the number of renderings. Percentiles are also
+ * supported.
+ *
+ * It's possible to obtain the statistics for the current interval and reset
+ * the data at once, e.g. for periodic reporting - see
+ * {@link #getIntervalStats()}.
+ *
+ * The number of histograms is limited, see
+ * {@link #HistogramStatsCollector(Predicate, TimeUnit, int, long)}. This is
+ * important if templates with dynamic names are compiled, e.g. via
+ * {@link MustacheEngine#compileMustache(String, String)}.
+ *
+ * Note that the template is identified with the name/id - so data will not be
+ * correct if there's more than one templates with the same name (which is
+ * possible if using {@link MustacheEngine#compileMustache(String, String)}).
+ *
+ * This listener is not able to detect rendering errors.
+ *
+ * @author Martin Kouba
+ */
+public class HistogramStatsCollector extends AbstractStatsCollector {
+
+    public static final String COMPUTING_CACHE_CONSUMER_ID = HistogramStatsCollector.class
+            .getName();
+
+    /**
+     * The default maximum number of histograms
+     */
+    public static final long DEFAULT_MAX_SIZE = 1000l;
+
+    /**
+     * The default number of stripes of each histogram
+     */
+    public static final int DEFAULT_STRIPES = 4;
+
+    private final int stripes;
+
+    private final long maxSize;
+
+    /**
+     * Map of name to histogram of rendering times in nanoseconds
+     */
+    protected ComputingCache<String, LogLinearHistogram> data;
+
+    /**
+     *
+     */
+    public HistogramStatsCollector() {
+        this(null, null);
+    }
+
+    /**
+     *
+     * @param templatePredicate
+     * @param timeUnit
+     */
+    public HistogramStatsCollector(Predicate<String> templatePredicate,
+            TimeUnit timeUnit) {
+        this(templatePredicate, timeUnit, Math.min(Runtime.getRuntime()
+                .availableProcessors(), DEFAULT_STRIPES));
+    }
+
+    /**
+     *
+     * @param templatePredicate
+     * @param timeUnit
+     * @param stripes
+     *            The number of stripes of each histogram
+     * @see LogLinearHistogram#LogLinearHistogram(int)
+     */
+    public HistogramStatsCollector(Predicate<String> templatePredicate,
+            TimeUnit timeUnit, int stripes) {
+        this(templatePredicate, timeUnit, stripes, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     *
+     * @param templatePredicate
+     * @param timeUnit
+     * @param stripes
+     *            The number of stripes of each histogram
+     * @param maxSize
+     *            The maximum number of histograms, i.e. templates; the
+     *            eviction is implementation-specific
+     * @see LogLinearHistogram#LogLinearHistogram(int)
+     */
+    public HistogramStatsCollector(Predicate<String> templatePredicate,
+            TimeUnit timeUnit, int stripes, long maxSize) {
+        super(templatePredicate, timeUnit);
+        this.stripes = stripes;
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public void init() {
+        this.data = configuration.getComputingCacheFactory().create(
+                COMPUTING_CACHE_CONSUMER_ID,
+                new Function<String, LogLinearHistogram>() {
+                    @Override
+                    public LogLinearHistogram compute(String key) {
+                        return new LogLinearHistogram(stripes);
+                    }
+                }, null, maxSize, null);
+    }
+
+    @Override
+    public void renderingStarted(final MustacheRenderingEvent event) {
+        if (isApplied(event.getMustacheName())) {
+            final long start = System.nanoTime();
+            event.registerReleaseCallback(new ReleaseCallback() {
+                @Override
+                public void release() {
+                    data.get(event.getMustacheName()).record(
+                            System.nanoTime() - start);
+                }
+            });
+        }
+    }
+
+    /**
+     * Drop all the collected data.
+     */
+    public void clearData() {
+        data.clear();
+    }
+
+    /**
+     *
+     * @param templateId
+     * @return the statistics for the given template
+     */
+    public HistogramStats getStats(String templateId) {
+        LogLinearHistogram histogram = data.getIfPresent(templateId);
+        if (histogram != null) {
+            return new HistogramStats(templateId, histogram.getSnapshot());
+        }
+        return null;
+    }
+
+    /**
+     *
+     * @return all available statistics
+     */
+    public Map<String, HistogramStats> getStats() {
+        return getStats(false);
+    }
+
+    /**
+     * The data of all histograms is reset, i.e. the next invocation of this
+     * method only returns the data collected since this invocation.
+     *
+     * @return all available statistics for the current interval
+     */
+    public Map<String, HistogramStats> getIntervalStats() {
+        return getStats(true);
+    }
+
+    private Map<String, HistogramStats> getStats(boolean reset) {
+        if (data.size() == 0) {
+            return Collections.emptyMap();
+        }
+        ImmutableMap.Builder<String, HistogramStats> builder = ImmutableMap
+                .builder();
+        for (Entry<String, LogLinearHistogram> entry : data.getAllPresent()
+                .entrySet()) {
+            builder.put(
+                    entry.getKey(),
+                    new HistogramStats(entry.getKey(), reset ? entry
+                            .getValue().getSnapshotAndReset() : entry
+                            .getValue().getSnapshot()));
+        }
+        return builder.build();
+    }
+
+    /**
+     * All the times are converted to the time unit of the collector.
+     */
+    public class HistogramStats {
+
+        private final String name;
+
+        private final LogLinearHistogram.Snapshot snapshot;
+
+        HistogramStats(String name, LogLinearHistogram.Snapshot snapshot) {
+            this.name = name;
+            this.snapshot = snapshot;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getExecutions() {
+            return snapshot.getCount();
+        }
+
+        public long getTotalTime() {
+            return convert(snapshot.getTotal());
+        }
+
+        public long getMeanTime() {
+            return convert(snapshot.getMean());
+        }
+
+        public long getMinTime() {
+            return convert(snapshot.getMin());
+        }
+
+        public long getMaxTime() {
+            return convert(snapshot.getMax());
+        }
+
+        /**
+         *
+         * @param percentile
+         *            The percentile, e.g. <code>99.9</code>
+         * @return the time at the given percentile
+         */
+        public long getTimeAtPercentile(double percentile) {
+            return convert(snapshot.getValueAtPercentile(percentile));
+        }
+
+        public long getP50() {
+            return getTimeAtPercentile(50.0);
+        }
+
+        public long getP95() {
+            return getTimeAtPercentile(95.0);
+        }
+
+        public long getP99() {
+            return getTimeAtPercentile(99.0);
+        }
+
+        /**
+         *
+         * @return the snapshot of the raw data, the values are in nanoseconds
+         */
+        public LogLinearHistogram.Snapshot getSnapshot() {
+            return snapshot;
+        }
+
+        @Override
+        public String toString() {
+            return String
+                    .format("HistogramStats [name: %s, executions: %s, totalTime: %s, meanTime: %s, minTime: %s, maxTime: %s, p50: %s, p95: %s, p99: %s]",
+                            name, getExecutions(), getTotalTime(),
+                            getMeanTime(), getMinTime(), getMaxTime(),
+                            getP50(), getP95(), getP99());
+        }
+
+    }
+
+}
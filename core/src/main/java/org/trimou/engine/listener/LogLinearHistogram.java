@@ -0,0 +1,305 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.engine.listener;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A lock-free fixed-size histogram of non-negative long values, e.g. rendering
+ * times in nanoseconds.
+ *
+ * <p>
+ * The values are counted in log-linear buckets - each power of two range is
+ * divided into 32 linear sub-buckets, i.e. the relative error of a percentile
+ * is at most 1/32 (approximately 3.1%). Values greater than
+ * {@link #MAX_TRACKABLE_VALUE} are counted in the last bucket (the max value is
+ * still exact). The memory footprint is constant regardless of the number of
+ * recorded values - 1024 buckets, i.e. 8 KB per stripe.
+ * </p>
+ *
+ * <p>
+ * The counters are striped in order to reduce contention, the stripe is
+ * selected by the current thread id. A stripe is only allocated when first
+ * used.
+ * </p>
+ *
+ * @author Martin Kouba
+ */
+public final class LogLinearHistogram {
+
+    /**
+     * Approximately 68 seconds if the values are nanoseconds
+     */
+    public static final long MAX_TRACKABLE_VALUE = (1l << 36) - 1;
+
+    private static final int SUB_BUCKET_BITS = 6;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final int SUB_BUCKETS_HALF = SUB_BUCKETS >> 1;
+
+    static final int BUCKETS = indexOf(MAX_TRACKABLE_VALUE) + 1;
+
+    private final AtomicReferenceArray<Stripe> stripes;
+
+    private final int stripeMask;
+
+    /**
+     *
+     * @param stripes
+     *            The number of stripes, rounded up to the nearest power of
+     *            two
+     */
+    public LogLinearHistogram(int stripes) {
+        checkArgument(stripes > 0,
+                "The number of stripes must be positive");
+        int size = Integer.highestOneBit(stripes);
+        if (size < stripes) {
+            size <<= 1;
+        }
+        this.stripes = new AtomicReferenceArray<Stripe>(size);
+        this.stripeMask = size - 1;
+    }
+
+    /**
+     *
+     * @param value
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        Stripe stripe = getStripe((int) Thread.currentThread().getId()
+                & stripeMask);
+        stripe.counts.incrementAndGet(indexOf(Math.min(value,
+                MAX_TRACKABLE_VALUE)));
+        stripe.total.addAndGet(value);
+        long max;
+        while (value > (max = stripe.max.get())) {
+            if (stripe.max.compareAndSet(max, value)) {
+                break;
+            }
+        }
+        long min;
+        while (value < (min = stripe.min.get())) {
+            if (stripe.min.compareAndSet(min, value)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     *
+     * @return the snapshot of the current data
+     */
+    public Snapshot getSnapshot() {
+        return snapshot(false);
+    }
+
+    /**
+     * The data recorded concurrently with this method is either part of the
+     * returned snapshot or of the next one, i.e. no value is lost. However,
+     * the min, max and total values of concurrently recorded values may not be
+     * consistent with the counts.
+     *
+     * @return the snapshot of the data recorded since the last reset
+     */
+    public Snapshot getSnapshotAndReset() {
+        return snapshot(true);
+    }
+
+    /**
+     * Drop all the recorded data.
+     */
+    public void reset() {
+        snapshot(true);
+    }
+
+    /**
+     *
+     * @return the number of stripes
+     */
+    public int getStripes() {
+        return stripes.length();
+    }
+
+    private Stripe getStripe(int index) {
+        Stripe stripe = stripes.get(index);
+        if (stripe == null) {
+            stripe = new Stripe();
+            if (!stripes.compareAndSet(index, null, stripe)) {
+                stripe = stripes.get(index);
+            }
+        }
+        return stripe;
+    }
+
+    private Snapshot snapshot(boolean reset) {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        long total = 0;
+        long max = 0;
+        long min = Long.MAX_VALUE;
+        for (int j = 0; j < stripes.length(); j++) {
+            Stripe stripe = stripes.get(j);
+            if (stripe == null) {
+                continue;
+            }
+            for (int i = 0; i < BUCKETS; i++) {
+                long value = reset ? stripe.counts.getAndSet(i, 0)
+                        : stripe.counts.get(i);
+                counts[i] += value;
+                count += value;
+            }
+            total += reset ? stripe.total.getAndSet(0) : stripe.total.get();
+            max = Math.max(max,
+                    reset ? stripe.max.getAndSet(0) : stripe.max.get());
+            min = Math.min(min, reset ? stripe.min.getAndSet(Long.MAX_VALUE)
+                    : stripe.min.get());
+        }
+        return new Snapshot(counts, count, total, count > 0 ? min : 0, max);
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value)
+                - (SUB_BUCKET_BITS - 1);
+        return SUB_BUCKETS + (shift - 1) * SUB_BUCKETS_HALF
+                + (int) (value >>> shift) - SUB_BUCKETS_HALF;
+    }
+
+    /**
+     *
+     * @param index
+     * @return the highest value counted in the bucket with the given index
+     */
+    static long highestValueOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKETS) / SUB_BUCKETS_HALF + 1;
+        long subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS_HALF
+                + SUB_BUCKETS_HALF;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    private static class Stripe {
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+        private final AtomicLong total = new AtomicLong();
+
+        private final AtomicLong max = new AtomicLong();
+
+        private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+
+    }
+
+    /**
+     * An immutable snapshot of the histogram data.
+     */
+    public static final class Snapshot {
+
+        private final long[] counts;
+
+        private final long count;
+
+        private final long total;
+
+        private final long min;
+
+        private final long max;
+
+        Snapshot(long[] counts, long count, long total, long min, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.total = total;
+            this.min = min;
+            this.max = max;
+        }
+
+        /**
+         *
+         * @return the number of recorded values
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         *
+         * @return the sum of all recorded values
+         */
+        public long getTotal() {
+            return total;
+        }
+
+        public long getMean() {
+            return count > 0 ? total / count : 0;
+        }
+
+        public long getMin() {
+            return min;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         *
+         * @param percentile
+         *            The percentile, e.g. <code>99.9</code>
+         * @return the value at the given percentile, or <code>0</code> if no
+         *         value was recorded
+         */
+        public long getValueAtPercentile(double percentile) {
+            checkArgument(percentile >= 0.0 && percentile <= 100.0,
+                    "The percentile must be in the range [0, 100]");
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1,
+                    (long) Math.ceil((percentile / 100.0) * count));
+            long sum = 0;
+            for (int i = 0; i < counts.length; i++) {
+                sum += counts[i];
+                if (sum >= rank) {
+                    return Math.max(min, Math.min(max, highestValueOf(i)));
+                }
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return String
+                    .format("Snapshot [count: %s, mean: %s, min: %s, max: %s, p50: %s, p95: %s, p99: %s]",
+                            count, getMean(), min, max,
+                            getValueAtPercentile(50),
+                            getValueAtPercentile(95),
+                            getValueAtPercentile(99));
+        }
+
+    }
+
+}
@@ -0,0 +1,425 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.engine.listener;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.trimou.annotations.Internal;
+import org.trimou.engine.config.Configuration;
+import org.trimou.engine.resource.ReleaseCallback;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A {@link MustacheListener} which attributes the rendering time to individual
+ * tags - variables, sections, inverted sections, partials, extend tags and
+ * helpers. For each tag the number of invocations, cumulative time, self time
+ * (i.e. the time not spent in nested tags) and the length of the output is
+ * collected. Tags are identified by the template name, line and tag literal.
+ *
+ * <p>
+ * The profiler only has effect if registered before the templates are
+ * compiled. Only every n-th rendering is profiled in order to keep the
+ * overhead low (see {@link #RenderProfiler(int)}). The content rendered by
+ * asynchronous helpers on other threads is not profiled. The length of the
+ * output is only tracked if rendering to a {@link CharSequence} (e.g.
+ * {@link org.trimou.Mustache#render(Object)}) or to an
+ * {@link java.io.OutputStream}/{@link java.nio.channels.WritableByteChannel}
+ * (in bytes).
+ * </p>
+ *
+ * <p>
+ * The data may be exported in the collapsed stack format used by the flame
+ * graph tools, see {@link #getCollapsedStacks(TimeUnit)}.
+ * </p>
+ *
+ * @author Martin Kouba
+ */
+public class RenderProfiler extends AbstractMustacheListener {
+
+    private final int samplingInterval;
+
+    private final AtomicLong renderings;
+
+    private final ThreadLocal<Recorder> recorder;
+
+    private final ConcurrentMap<String, TagData> tags;
+
+    private final ConcurrentMap<String, AtomicLong> stacks;
+
+    /**
+     * Profile all renderings.
+     */
+    public RenderProfiler() {
+        this(1);
+    }
+
+    /**
+     *
+     * @param samplingInterval
+     *            Only every n-th rendering is profiled, e.g. <code>100</code>
+     *            means that 1% of renderings is profiled
+     */
+    public RenderProfiler(int samplingInterval) {
+        checkArgument(samplingInterval > 0,
+                "The sampling interval must be positive");
+        this.samplingInterval = samplingInterval;
+        this.renderings = new AtomicLong();
+        this.recorder = new ThreadLocal<Recorder>();
+        this.tags = new ConcurrentHashMap<String, TagData>();
+        this.stacks = new ConcurrentHashMap<String, AtomicLong>();
+    }
+
+    @Override
+    public void renderingStarted(MustacheRenderingEvent event) {
+        final Recorder current = recorder.get();
+        if (current != null) {
+            // Nested rendering, e.g. a template rendered by a lambda
+            current.enter(sanitizeFrame(event.getMustacheName()), -1);
+            event.registerReleaseCallback(new ReleaseCallback() {
+                @Override
+                public void release() {
+                    current.exit(-1);
+                }
+            });
+        } else if (renderings.getAndIncrement() % samplingInterval == 0) {
+            final Recorder sampled = new Recorder();
+            sampled.enter(sanitizeFrame(event.getMustacheName()), -1);
+            recorder.set(sampled);
+            event.registerReleaseCallback(new ReleaseCallback() {
+                @Override
+                public void release() {
+                    // The callback may be invoked on a different thread if
+                    // rendered asynchronously, see also renderingExecuted()
+                    sampled.exit(-1);
+                    if (recorder.get() == sampled) {
+                        recorder.remove();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     *
+     * @return the recorder if the current rendering is profiled,
+     *         <code>null</code> otherwise
+     */
+    @Internal
+    public Recorder getRecorder() {
+        return recorder.get();
+    }
+
+    /**
+     * Detaches the recorder from the current thread once the synchronous part
+     * of the outermost profiled rendering is finished. Otherwise a rendering
+     * thread would keep the recorder of an asynchronous rendering (whose
+     * resources are released on a different thread) and all the subsequent
+     * renderings would be considered nested.
+     */
+    @Internal
+    public void renderingExecuted() {
+        Recorder current = recorder.get();
+        if (current != null && current.depth == 1) {
+            recorder.remove();
+        }
+    }
+
+    /**
+     *
+     * @return the immutable list of statistics for all profiled tags, sorted by
+     *         self time in descending order
+     */
+    public List<TagStats> getTagStats() {
+        List<TagStats> stats = new ArrayList<TagStats>(tags.size());
+        for (Entry<String, TagData> entry : tags.entrySet()) {
+            stats.add(new TagStats(entry.getKey(), entry.getValue()));
+        }
+        Collections.sort(stats, new Comparator<TagStats>() {
+            @Override
+            public int compare(TagStats o1, TagStats o2) {
+                return Long.compare(o2.selfTime, o1.selfTime);
+            }
+        });
+        return ImmutableList.copyOf(stats);
+    }
+
+    /**
+     * Each line consists of the frames separated by a semicolon followed by a
+     * space and the self time of the last frame, e.g.
+     * <code>foo.html;foo.html:3 {{#each items}};foo.html:4 {{name}} 120</code>.
+     * The output can be processed by the flame graph tools directly.
+     *
+     * @param timeUnit
+     * @return the collapsed stacks
+     */
+    public String getCollapsedStacks(TimeUnit timeUnit) {
+        String[] lines = new String[stacks.size()];
+        int idx = 0;
+        for (Entry<String, AtomicLong> entry : stacks.entrySet()) {
+            if (idx == lines.length) {
+                break;
+            }
+            lines[idx++] = entry.getKey()
+                    + " "
+                    + timeUnit.convert(entry.getValue().get(),
+                            TimeUnit.NANOSECONDS);
+        }
+        Arrays.sort(lines, 0, idx);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < idx; i++) {
+            builder.append(lines[i]).append('\n');
+        }
+        return builder.toString();
+    }
+
+    /**
+     *
+     * @return the sampling interval
+     */
+    public int getSamplingInterval() {
+        return samplingInterval;
+    }
+
+    /**
+     * Drop all the collected data.
+     */
+    public void clearData() {
+        tags.clear();
+        stacks.clear();
+    }
+
+    /**
+     *
+     * @param configuration
+     * @return the first registered profiler or <code>null</code>
+     */
+    @Internal
+    public static RenderProfiler find(Configuration configuration) {
+        List<MustacheListener> listeners = configuration
+                .getMustacheListeners();
+        if (listeners != null) {
+            for (MustacheListener listener : listeners) {
+                if (listener instanceof RenderProfiler) {
+                    return (RenderProfiler) listener;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     *
+     * @param frame
+     * @return the frame name which may be safely used in a collapsed stack
+     */
+    @Internal
+    public static String sanitizeFrame(String frame) {
+        return frame.replace(';', ',').replace('\n', ' ').replace('\r', ' ');
+    }
+
+    private void record(String frame, String stack, long time, long selfTime,
+            long output) {
+        TagData data = tags.get(frame);
+        if (data == null) {
+            data = new TagData();
+            TagData existing = tags.putIfAbsent(frame, data);
+            if (existing != null) {
+                data = existing;
+            }
+        }
+        data.invocations.incrementAndGet();
+        data.time.addAndGet(time);
+        data.selfTime.addAndGet(selfTime);
+        if (output > 0) {
+            data.output.addAndGet(output);
+        }
+        AtomicLong stackTime = stacks.get(stack);
+        if (stackTime == null) {
+            stackTime = new AtomicLong();
+            AtomicLong existing = stacks.putIfAbsent(stack, stackTime);
+            if (existing != null) {
+                stackTime = existing;
+            }
+        }
+        stackTime.addAndGet(selfTime);
+    }
+
+    /**
+     * Records the frames of a single profiled rendering. Not thread-safe.
+     */
+    @Internal
+    public final class Recorder {
+
+        private static final int INITIAL_DEPTH = 16;
+
+        private String[] frames = new String[INITIAL_DEPTH];
+
+        private String[] paths = new String[INITIAL_DEPTH];
+
+        private long[] starts = new long[INITIAL_DEPTH];
+
+        private long[] childTimes = new long[INITIAL_DEPTH];
+
+        private long[] outputs = new long[INITIAL_DEPTH];
+
+        private int depth = 0;
+
+        /**
+         *
+         * @param frame
+         *            The sanitized frame name
+         * @param outputLength
+         *            The current length of the output or <code>-1</code> if
+         *            not known
+         * @see RenderProfiler#sanitizeFrame(String)
+         */
+        public void enter(String frame, long outputLength) {
+            if (depth == frames.length) {
+                int length = depth * 2;
+                frames = Arrays.copyOf(frames, length);
+                paths = Arrays.copyOf(paths, length);
+                starts = Arrays.copyOf(starts, length);
+                childTimes = Arrays.copyOf(childTimes, length);
+                outputs = Arrays.copyOf(outputs, length);
+            }
+            frames[depth] = frame;
+            paths[depth] = depth > 0 ? paths[depth - 1] + ";" + frame
+                    : frame;
+            childTimes[depth] = 0;
+            outputs[depth] = outputLength;
+            starts[depth] = System.nanoTime();
+            depth++;
+        }
+
+        /**
+         *
+         * @param outputLength
+         *            The current length of the output or <code>-1</code> if
+         *            not known
+         */
+        public void exit(long outputLength) {
+            long time = System.nanoTime() - starts[--depth];
+            if (depth > 0) {
+                childTimes[depth - 1] += time;
+            }
+            record(frames[depth],
+                    paths[depth],
+                    time,
+                    time - childTimes[depth],
+                    outputLength >= 0 && outputs[depth] >= 0 ? outputLength
+                            - outputs[depth] : -1);
+            frames[depth] = null;
+            paths[depth] = null;
+        }
+
+    }
+
+    private static class TagData {
+
+        private final AtomicLong invocations = new AtomicLong();
+
+        private final AtomicLong time = new AtomicLong();
+
+        private final AtomicLong selfTime = new AtomicLong();
+
+        private final AtomicLong output = new AtomicLong();
+
+    }
+
+    /**
+     * All the times are in nanoseconds.
+     */
+    public static final class TagStats {
+
+        private final String name;
+
+        private final long invocations;
+
+        private final long time;
+
+        private final long selfTime;
+
+        private final long output;
+
+        TagStats(String name, TagData data) {
+            this.name = name;
+            this.invocations = data.invocations.get();
+            this.time = data.time.get();
+            this.selfTime = data.selfTime.get();
+            this.output = data.output.get();
+        }
+
+        /**
+         *
+         * @return the name of the frame, i.e. the template name, line and tag
+         *         literal, or the template name for the template rendering
+         *         itself
+         */
+        public String getName() {
+            return name;
+        }
+
+        public long getInvocations() {
+            return invocations;
+        }
+
+        /**
+         *
+         * @return the cumulative time
+         */
+        public long getTime() {
+            return time;
+        }
+
+        /**
+         *
+         * @return the time not spent in nested tags
+         */
+        public long getSelfTime() {
+            return selfTime;
+        }
+
+        /**
+         *
+         * @return the length of the output, i.e. the number of characters or
+         *         bytes
+         */
+        public long getOutput() {
+            return output;
+        }
+
+        @Override
+        public String toString() {
+            return String
+                    .format("TagStats [name: %s, invocations: %s, time: %s, selfTime: %s, output: %s]",
+                            name, invocations, time, selfTime, output);
+        }
+
+    }
+
+}
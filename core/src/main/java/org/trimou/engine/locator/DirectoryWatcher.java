@@ -0,0 +1,183 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.engine.locator;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches a directory and all its subdirectories for changes. The listener is
+ * notified from a separate daemon thread.
+ *
+ * @author Martin Kouba
+ */
+final class DirectoryWatcher implements Runnable {
+
+    private static final Logger logger = LoggerFactory
+            .getLogger(DirectoryWatcher.class);
+
+    private static final long STOP_TIMEOUT = 5000;
+
+    private final WatchService watchService;
+
+    private final Map<WatchKey, Path> directories;
+
+    private final Listener listener;
+
+    private volatile Thread thread;
+
+    /**
+     *
+     * @param rootDir
+     * @param listener
+     * @throws IOException
+     */
+    DirectoryWatcher(File rootDir, Listener listener) throws IOException {
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.directories = new ConcurrentHashMap<WatchKey, Path>();
+        this.listener = listener;
+        registerAll(rootDir.toPath());
+    }
+
+    /**
+     * Start watching in a new daemon thread.
+     */
+    void start() {
+        Thread thread = new Thread(this, "trimou-directory-watcher");
+        thread.setDaemon(true);
+        this.thread = thread;
+        thread.start();
+    }
+
+    /**
+     * Stop watching and wait for the watcher thread to terminate.
+     */
+    void stop() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            logger.warn("Unable to close the watch service", e);
+        }
+        Thread thread = this.thread;
+        if (thread != null && thread != Thread.currentThread()) {
+            try {
+                thread.join(STOP_TIMEOUT);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (thread.isAlive()) {
+                logger.warn("The watcher thread did not terminate in {} ms",
+                        STOP_TIMEOUT);
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ClosedWatchServiceException e) {
+                return;
+            }
+            Path dir = directories.get(key);
+            if (dir != null) {
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    processEvent(dir, event);
+                }
+            }
+            if (!key.reset()) {
+                directories.remove(key);
+            }
+        }
+    }
+
+    private void processEvent(Path dir, WatchEvent<?> event) {
+        try {
+            if (OVERFLOW.equals(event.kind())) {
+                listener.overflow();
+                return;
+            }
+            Path path = dir.resolve((Path) event.context());
+            if (ENTRY_CREATE.equals(event.kind())
+                    && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                registerAll(path);
+            }
+            logger.debug("{}: {}", event.kind(), path);
+            listener.changed(path.toFile());
+        } catch (Exception e) {
+            logger.warn("Unable to process the watch event", e);
+        }
+    }
+
+    private void registerAll(Path start) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir,
+                    BasicFileAttributes attrs) throws IOException {
+                directories.put(dir.register(watchService, ENTRY_CREATE,
+                        ENTRY_MODIFY, ENTRY_DELETE), dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     *
+     * @author Martin Kouba
+     */
+    interface Listener {
+
+        /**
+         * A file or directory was created, modified or deleted.
+         *
+         * @param file
+         */
+        void changed(File file);
+
+        /**
+         * Some events might have been lost.
+         */
+        void overflow();
+
+    }
+
+}
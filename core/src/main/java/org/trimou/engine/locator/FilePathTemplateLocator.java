@@ -16,6 +16,7 @@
 package org.trimou.engine.locator;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -26,20 +27,54 @@ import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.trimou.engine.MustacheEngine;
+import org.trimou.engine.MustacheEngineBuilder.EngineBuiltCallback;
+import org.trimou.engine.MustacheEngineBuilder.EngineShutdownCallback;
+import org.trimou.engine.cache.ComputingCache.KeyPredicate;
+import org.trimou.engine.config.ConfigurationKey;
+import org.trimou.engine.config.EngineConfigurationKey;
+import org.trimou.engine.config.SimpleConfigurationKey;
 import org.trimou.exception.MustacheException;
 import org.trimou.exception.MustacheProblem;
 import org.trimou.util.Files;
 
+import com.google.common.collect.ImmutableSet;
+
 /**
  * Abstract file-based template locator.
  *
+ * <p>
+ * If {@link #WATCH_ENABLED_KEY} is set to <code>true</code> the root directory
+ * is watched for changes and only the changed templates are removed from the
+ * template cache. The template cache may be enabled without the expiration
+ * timeout and the changes are visible immediately. The watching is done in a
+ * separate daemon thread which is stopped when the engine is shut down, i.e.
+ * {@link org.trimou.engine.MustacheEngine#shutdown()} should be called once
+ * the engine is no longer used. Otherwise the thread and the underlying
+ * {@link java.nio.file.WatchService} are not released.
+ * </p>
+ *
  * @author Martin Kouba
  */
-public abstract class FilePathTemplateLocator extends PathTemplateLocator<File> {
+public abstract class FilePathTemplateLocator extends PathTemplateLocator<File>
+        implements EngineBuiltCallback, EngineShutdownCallback {
 
     private static final Logger logger = LoggerFactory
             .getLogger(FilePathTemplateLocator.class);
 
+    /**
+     * If set to <code>true</code> the root directory is watched for changes
+     * and the changed templates are removed from the template cache.
+     *
+     * @see org.trimou.engine.MustacheEngine#shutdown()
+     */
+    public static final ConfigurationKey WATCH_ENABLED_KEY = new SimpleConfigurationKey(
+            FilePathTemplateLocator.class.getName() + ".watchEnabled", false);
+
+    private boolean watchEnabled;
+
+    private volatile DirectoryWatcher watcher;
+
     /**
      *
      * @param priority
@@ -59,6 +94,82 @@ public abstract class FilePathTemplateLocator extends PathTemplateLocator<File>
         super(priority, rootPath, suffix);
     }
 
+    @Override
+    public void init() {
+        super.init();
+        this.watchEnabled = configuration
+                .getBooleanPropertyValue(WATCH_ENABLED_KEY);
+    }
+
+    @Override
+    public Set<ConfigurationKey> getConfigurationKeys() {
+        return ImmutableSet.<ConfigurationKey> builder()
+                .addAll(super.getConfigurationKeys()).add(WATCH_ENABLED_KEY)
+                .build();
+    }
+
+    @Override
+    public void engineBuilt(final MustacheEngine engine) {
+        if (!watchEnabled) {
+            return;
+        }
+        File rootDir = getRootDir();
+        if (rootDir == null) {
+            logger.warn("Unable to watch the root dir - not available for {}",
+                    this);
+            return;
+        }
+        if (!engine.getConfiguration().getBooleanPropertyValue(
+                EngineConfigurationKey.TEMPLATE_CACHE_ENABLED)) {
+            logger.info("Template cache disabled - no need to watch {}",
+                    rootDir);
+            return;
+        }
+        try {
+            watcher = new DirectoryWatcher(rootDir,
+                    new DirectoryWatcher.Listener() {
+
+                        @Override
+                        public void changed(File file) {
+                            invalidate(engine, file);
+                        }
+
+                        @Override
+                        public void overflow() {
+                            engine.invalidateTemplateCache();
+                        }
+                    });
+            watcher.start();
+            logger.info("Watching {} for changes", rootDir);
+        } catch (IOException e) {
+            throw new MustacheException(
+                    MustacheProblem.TEMPLATE_LOCATOR_INVALID_CONFIGURATION,
+                    e);
+        }
+    }
+
+    @Override
+    public void engineShutdown(MustacheEngine engine) {
+        stopWatching();
+    }
+
+    /**
+     * Stop watching the root directory for changes, if watching at all. The
+     * watcher thread and the underlying {@link java.nio.file.WatchService} are
+     * released. This method is called automatically when the engine is shut
+     * down.
+     *
+     * @see #WATCH_ENABLED_KEY
+     * @see org.trimou.engine.MustacheEngine#shutdown()
+     */
+    public void stopWatching() {
+        DirectoryWatcher watcher = this.watcher;
+        if (watcher != null) {
+            watcher.stop();
+            this.watcher = null;
+        }
+    }
+
     @Override
     public Reader locate(String filePath) {
         return locateRealPath(toRealPath(filePath));
@@ -113,6 +224,21 @@ public abstract class FilePathTemplateLocator extends PathTemplateLocator<File>
         return name.toString();
     }
 
+    private void invalidate(MustacheEngine engine, File file) {
+        final String virtualPath = constructVirtualPath(file);
+        final String id = stripSuffix(virtualPath);
+        final String dirPrefix = virtualPath + getVirtualPathSeparator();
+        logger.debug("Template source changed: {}", id);
+        // The file might be also a directory
+        engine.invalidateTemplateCache(new KeyPredicate<String>() {
+            @Override
+            public boolean apply(String templateId) {
+                return templateId.equals(id)
+                        || templateId.startsWith(dirPrefix);
+            }
+        });
+    }
+
     /**
      *
      * @return the root directory
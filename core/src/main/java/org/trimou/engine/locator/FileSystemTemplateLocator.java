@@ -31,11 +31,13 @@ import org.trimou.util.Files;
 import org.trimou.util.Strings;
 
 /**
- * Filesystem template locator.
+ * Filesystem template locator. The template fingerprint is derived from the
+ * file size, the last modification time and the file encoding.
  *
  * @author Martin Kouba
  */
-public class FileSystemTemplateLocator extends FilePathTemplateLocator {
+public class FileSystemTemplateLocator extends FilePathTemplateLocator
+        implements TemplateFingerprintProvider {
 
     private static final Logger logger = LoggerFactory
             .getLogger(FileSystemTemplateLocator.class);
@@ -62,12 +64,21 @@ public class FileSystemTemplateLocator extends FilePathTemplateLocator {
         checkRootDir();
     }
 
+    @Override
+    public String getFingerprint(String templateId) {
+        File template = getTemplateFile(toRealPath(templateId));
+        if (!Files.isFileUsable(template)) {
+            return null;
+        }
+        return template.length() + ":" + template.lastModified() + ":"
+                + getDefaultFileEncoding();
+    }
+
     @Override
     public Reader locateRealPath(String realPath) {
         try {
 
-            File template = new File(new File(getRootPath()),
-                    addSuffix(realPath));
+            File template = getTemplateFile(realPath);
 
             if (!Files.isFileUsable(template)) {
                 return null;
@@ -92,4 +103,8 @@ public class FileSystemTemplateLocator extends FilePathTemplateLocator {
         return new File(getRootPath());
     }
 
+    private File getTemplateFile(String realPath) {
+        return new File(new File(getRootPath()), addSuffix(realPath));
+    }
+
 }
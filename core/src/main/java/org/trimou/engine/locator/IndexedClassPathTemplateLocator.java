@@ -0,0 +1,264 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.engine.locator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.net.JarURLConnection;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Paths;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.trimou.exception.MustacheException;
+import org.trimou.exception.MustacheProblem;
+import org.trimou.util.Checker;
+import org.trimou.util.Files;
+import org.trimou.util.Strings;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.ByteStreams;
+
+/**
+ * Classpath template locator which scans all the roots of the given root path
+ * only once and builds an in-memory index of all the templates. Unlike
+ * {@link ClassPathTemplateLocator} both directories and JAR archives (including
+ * nested archives if the class loader supports such URLs, e.g. Spring Boot
+ * executable archives) are scanned. Subsequent {@link #locate(String)}
+ * invocations are answered from the index and the template contents is read at
+ * once.
+ *
+ * <p>
+ * Note that templates added to the classpath after the index is built are not
+ * found. Also a JAR archive is only scanned if it contains the directory entry
+ * for the root path (which is usually the case).
+ * </p>
+ *
+ * @author Martin Kouba
+ * @see ClassPathTemplateLocator
+ */
+public class IndexedClassPathTemplateLocator extends
+        PathTemplateLocator<String> {
+
+    private static final Logger logger = LoggerFactory
+            .getLogger(IndexedClassPathTemplateLocator.class);
+
+    private final ClassLoader classLoader;
+
+    // Real path relative to the root path -> template URL
+    private volatile Map<String, URL> index;
+
+    /**
+     *
+     * @param priority
+     * @param rootPath
+     */
+    public IndexedClassPathTemplateLocator(int priority, String rootPath) {
+        this(priority, rootPath, null, null);
+    }
+
+    /**
+     *
+     * @param priority
+     * @param rootPath
+     * @param suffix
+     *            If null, a full template name must be used
+     */
+    public IndexedClassPathTemplateLocator(int priority, String rootPath,
+            String suffix) {
+        this(priority, rootPath, suffix, null);
+    }
+
+    /**
+     *
+     * @param priority
+     * @param rootPath
+     * @param suffix
+     *            If null, a full template name must be used
+     * @param classLoader
+     *            If null, use the TCCL or the CL of this class
+     */
+    public IndexedClassPathTemplateLocator(int priority, String rootPath,
+            String suffix, ClassLoader classLoader) {
+        super(priority, rootPath, suffix);
+        Checker.checkArgumentNotEmpty(rootPath);
+        if (classLoader == null) {
+            classLoader = SecurityActions.getContextClassLoader();
+            if (classLoader == null) {
+                classLoader = SecurityActions
+                        .getClassLoader(IndexedClassPathTemplateLocator.class);
+            }
+        }
+        this.classLoader = classLoader;
+    }
+
+    @Override
+    public Reader locate(String templateId) {
+        URL template = getIndex().get(addSuffix(toRealPath(templateId)));
+        if (template == null) {
+            return null;
+        }
+        try {
+            InputStream in = template.openStream();
+            try {
+                return new StringReader(new String(ByteStreams.toByteArray(in),
+                        getDefaultFileEncoding()));
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            throw new MustacheException(MustacheProblem.TEMPLATE_LOADING_ERROR,
+                    e);
+        }
+    }
+
+    @Override
+    public Set<String> getAllIdentifiers() {
+        ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+        for (String realPath : getIndex().keySet()) {
+            builder.add(constructVirtualPath(realPath));
+        }
+        return builder.build();
+    }
+
+    @Override
+    protected String constructVirtualPath(String source) {
+        return stripSuffix(StringUtils.replace(source, getRealPathSeparator(),
+                getVirtualPathSeparator()));
+    }
+
+    private Map<String, URL> getIndex() {
+        Map<String, URL> value = index;
+        if (value == null) {
+            synchronized (this) {
+                value = index;
+                if (value == null) {
+                    value = buildIndex();
+                    index = value;
+                }
+            }
+        }
+        return value;
+    }
+
+    private Map<String, URL> buildIndex() {
+        Map<String, URL> templates = new LinkedHashMap<String, URL>();
+        try {
+            Enumeration<URL> roots = classLoader.getResources(getRootPath());
+            while (roots.hasMoreElements()) {
+                URL root = roots.nextElement();
+                if (Strings.URL_PROCOTOL_FILE.equals(root.getProtocol())) {
+                    indexDirectory(root, templates);
+                } else {
+                    URLConnection connection = root.openConnection();
+                    if (connection instanceof JarURLConnection) {
+                        indexJar(root, (JarURLConnection) connection,
+                                templates);
+                    } else {
+                        logger.debug(
+                                "Protocol not supported - root resource is ignored: {}",
+                                root);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new MustacheException(MustacheProblem.TEMPLATE_LOADING_ERROR,
+                    e);
+        }
+        logger.info("{} templates indexed [rootPath: {}]", templates.size(),
+                getRootPath());
+        return ImmutableMap.copyOf(templates);
+    }
+
+    private void indexDirectory(URL root, Map<String, URL> templates)
+            throws IOException {
+        File dir;
+        try {
+            dir = Paths.get(root.toURI()).toFile();
+        } catch (URISyntaxException e) {
+            logger.warn("Unable to process root path: {}", root, e);
+            return;
+        }
+        if (!Files.isDirectoryUsable(dir)) {
+            return;
+        }
+        for (File file : Files.listFiles(dir, getSuffix())) {
+            if (Files.isFileUsable(file)) {
+                add(dir.toURI().relativize(file.toURI()).getPath(), file
+                        .toURI().toURL(), templates);
+            }
+        }
+    }
+
+    private void indexJar(URL root, JarURLConnection connection,
+            Map<String, URL> templates) throws IOException {
+        // The jar file is cached and shared - must not be closed
+        JarFile jarFile = connection.getJarFile();
+        String prefix = connection.getEntryName();
+        if (prefix == null) {
+            prefix = Strings.EMPTY;
+        } else if (!prefix.endsWith(getRealPathSeparator())) {
+            prefix += getRealPathSeparator();
+        }
+        String rootUrl = root.toExternalForm();
+        if (!rootUrl.endsWith(getRealPathSeparator())) {
+            rootUrl += getRealPathSeparator();
+        }
+        for (Enumeration<JarEntry> entries = jarFile.entries(); entries
+                .hasMoreElements();) {
+            JarEntry entry = entries.nextElement();
+            if (entry.isDirectory() || !entry.getName().startsWith(prefix)) {
+                continue;
+            }
+            String realPath = entry.getName().substring(prefix.length());
+            if (getSuffix() != null && !realPath.endsWith(getSuffix())) {
+                continue;
+            }
+            try {
+                // Use the handler of the root URL, e.g. for nested archives
+                add(realPath, new URL(root, rootUrl + realPath), templates);
+            } catch (MalformedURLException e) {
+                logger.warn("Unable to process jar entry: {}", entry, e);
+            }
+        }
+    }
+
+    private void add(String realPath, URL template, Map<String, URL> templates) {
+        URL existing = templates.get(realPath);
+        if (existing != null) {
+            logger.warn("Another/duplicit template for {} ignored: {}",
+                    realPath, template);
+        } else {
+            templates.put(realPath, template);
+            logger.debug("Template indexed: {}", template);
+        }
+    }
+
+}
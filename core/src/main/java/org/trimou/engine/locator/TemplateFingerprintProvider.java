@@ -0,0 +1,44 @@
+/*
+ * Copyright 2013 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.engine.locator;
+
+import org.trimou.engine.config.EngineConfigurationKey;
+
+/**
+ * A {@link TemplateLocator} may also implement this interface in order to
+ * provide a cheap fingerprint of a template, e.g. derived from the file size
+ * and the last modification time. If the fingerprint of a template matches
+ * the one stored in the template snapshot, the template contents are not read
+ * at all.
+ *
+ * @author Martin Kouba
+ * @since 1.9
+ * @see EngineConfigurationKey#TEMPLATE_SNAPSHOT_FILE
+ */
+public interface TemplateFingerprintProvider {
+
+    /**
+     * The fingerprint must change whenever the template contents change.
+     *
+     * @param templateId
+     *            The template identifier
+     * @return the fingerprint or <code>null</code> if not available, must be
+     *         <code>null</code> if {@link TemplateLocator#locate(String)}
+     *         returns <code>null</code> for the same template identifier
+     */
+    public String getFingerprint(String templateId);
+
+}
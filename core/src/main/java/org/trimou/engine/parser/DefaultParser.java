@@ -298,7 +298,7 @@ class DefaultParser implements Parser {
      */
     private void flushTag() {
         state = State.TEXT;
-        handler.tag(deriveTag(buffer.toString()));
+        handler.tag(deriveTag(buffer.toString(), delimiters));
         delimiterIdx = 0;
         clearBuffer();
     }
@@ -312,8 +312,14 @@ class DefaultParser implements Parser {
                 reader);
     }
 
-    private ParsedTag deriveTag(String buffer) {
-        MustacheTagType type = identifyTagType(buffer);
+    /**
+     *
+     * @param buffer
+     * @param delimiters
+     * @return the parsed tag
+     */
+    static ParsedTag deriveTag(String buffer, Delimiters delimiters) {
+        MustacheTagType type = identifyTagType(buffer, delimiters);
         String key = extractContent(type, buffer);
         return new ParsedTag(key, type);
     }
@@ -325,7 +331,8 @@ class DefaultParser implements Parser {
      * @param delimiters
      * @return the tag type
      */
-    private MustacheTagType identifyTagType(String buffer) {
+    private static MustacheTagType identifyTagType(String buffer,
+            Delimiters delimiters) {
 
         if (buffer.length() == 0) {
             return MustacheTagType.VARIABLE;
@@ -356,7 +363,8 @@ class DefaultParser implements Parser {
      * @param buffer
      * @return
      */
-    private String extractContent(MustacheTagType tagType, String buffer) {
+    private static String extractContent(MustacheTagType tagType,
+            String buffer) {
 
         switch (tagType) {
         case VARIABLE:
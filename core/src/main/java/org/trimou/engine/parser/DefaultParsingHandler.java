@@ -18,6 +18,7 @@ package org.trimou.engine.parser;
 import static org.trimou.engine.config.EngineConfigurationKey.REMOVE_STANDALONE_LINES;
 import static org.trimou.engine.config.EngineConfigurationKey.REMOVE_UNNECESSARY_SEGMENTS;
 import static org.trimou.engine.config.EngineConfigurationKey.REUSE_LINE_SEPARATOR_SEGMENTS;
+import static org.trimou.engine.config.EngineConfigurationKey.STATIC_SEGMENTS_MERGING_ENABLED;
 import static org.trimou.exception.MustacheProblem.COMPILE_INVALID_TAG;
 
 import java.util.ArrayDeque;
@@ -34,6 +35,7 @@ import org.slf4j.LoggerFactory;
 import org.trimou.Mustache;
 import org.trimou.engine.MustacheEngine;
 import org.trimou.engine.MustacheTagType;
+import org.trimou.engine.cache.ComputingCache;
 import org.trimou.engine.config.EngineConfigurationKey;
 import org.trimou.engine.segment.CommentSegment;
 import org.trimou.engine.segment.ContainerSegment;
@@ -48,6 +50,7 @@ import org.trimou.engine.segment.SectionSegment;
 import org.trimou.engine.segment.Segment;
 import org.trimou.engine.segment.SegmentType;
 import org.trimou.engine.segment.SetDelimitersSegment;
+import org.trimou.engine.segment.StaticTextSegment;
 import org.trimou.engine.segment.TextSegment;
 import org.trimou.engine.segment.ValueSegment;
 import org.trimou.exception.MustacheException;
@@ -69,6 +72,8 @@ class DefaultParsingHandler implements ParsingHandler {
 
     private final Deque<ContainerSegmentBase> containerStack = new ArrayDeque<ContainerSegmentBase>();
 
+    private final ComputingCache<String, String[]> keyPartsCache;
+
     private MustacheEngine engine;
 
     private String templateName;
@@ -87,6 +92,19 @@ class DefaultParsingHandler implements ParsingHandler {
 
     private boolean handlebarsSupportEnabled;
 
+    DefaultParsingHandler() {
+        this(null);
+    }
+
+    /**
+     *
+     * @param keyPartsCache
+     *            May be <code>null</code>
+     */
+    DefaultParsingHandler(ComputingCache<String, String[]> keyPartsCache) {
+        this.keyPartsCache = keyPartsCache;
+    }
+
     @Override
     public void startTemplate(String name, Delimiters delimiters,
             MustacheEngine engine) {
@@ -125,10 +143,16 @@ class DefaultParsingHandler implements ParsingHandler {
                 REUSE_LINE_SEPARATOR_SEGMENTS)) {
             SegmentBases.reuseLineSeparatorSegments(rootSegmentBase);
         }
+        // Must be the last step - the merged segments are not processed by
+        // the previous steps
+        if (engine.getConfiguration().getBooleanPropertyValue(
+                STATIC_SEGMENTS_MERGING_ENABLED)) {
+            SegmentBases.mergeStaticSegments(rootSegmentBase);
+        }
 
         template = new Template(engine.getConfiguration()
                 .getIdentifierGenerator().generate(Mustache.class),
-                templateName, engine);
+                templateName, engine, keyPartsCache);
         template.setRootSegment(rootSegmentBase.asSegment(template));
 
         logger.debug("Compilation of {} finished [time: {} ms, segments: {}]",
@@ -427,6 +451,11 @@ class DefaultParsingHandler implements ParsingHandler {
             return segments.listIterator();
         }
 
+        void setSegments(List<SegmentBase> segments) {
+            this.segments.clear();
+            this.segments.addAll(segments);
+        }
+
     }
 
     static class LineSeparatorBase extends SegmentBase {
@@ -449,6 +478,36 @@ class DefaultParsingHandler implements ParsingHandler {
 
     }
 
+    static class StaticTextSegmentBase extends SegmentBase {
+
+        private final List<SegmentBase> segments;
+
+        StaticTextSegmentBase(List<SegmentBase> segments) {
+            super(SegmentType.TEXT, null, segments.get(0).line, segments
+                    .get(0).index);
+            this.segments = segments;
+        }
+
+        @Override
+        String getContent() {
+            StringBuilder content = new StringBuilder();
+            for (SegmentBase segment : segments) {
+                content.append(segment.getContent());
+            }
+            return content.toString();
+        }
+
+        @Override
+        StaticTextSegment asSegment(Template template) {
+            ImmutableList.Builder<Segment> builder = ImmutableList.builder();
+            for (SegmentBase segment : segments) {
+                builder.add(segment.asSegment(template));
+            }
+            return new StaticTextSegment(getOrigin(template), builder.build());
+        }
+
+    }
+
     static class ValueSegmentBase extends SegmentBase {
 
         private boolean unescape;
@@ -2,6 +2,7 @@ package org.trimou.engine.parser;
 
 import org.trimou.annotations.Internal;
 import org.trimou.engine.MustacheEngine;
+import org.trimou.engine.config.EngineConfigurationKey;
 
 /**
  *
@@ -14,9 +15,12 @@ public class ParserFactory {
      *
      * @param engine
      * @return the parser
+     * @see EngineConfigurationKey#SCANNING_PARSER_ENABLED
      */
     public Parser createParser(MustacheEngine engine) {
-        return new DefaultParser(engine);
+        return engine.getConfiguration().getBooleanPropertyValue(
+                EngineConfigurationKey.SCANNING_PARSER_ENABLED) ? new ScanningParser(
+                engine) : new DefaultParser(engine);
     }
 
 }
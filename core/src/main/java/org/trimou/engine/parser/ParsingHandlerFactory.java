@@ -1,6 +1,7 @@
 package org.trimou.engine.parser;
 
 import org.trimou.annotations.Internal;
+import org.trimou.engine.cache.ComputingCache;
 
 /**
  *
@@ -9,12 +10,29 @@ import org.trimou.annotations.Internal;
 @Internal
 public class ParsingHandlerFactory {
 
+    private final ComputingCache<String, String[]> keyPartsCache;
+
+    public ParsingHandlerFactory() {
+        this(null);
+    }
+
+    /**
+     *
+     * @param keyPartsCache
+     *            The cache of split keys shared by all the compiled
+     *            templates, may be <code>null</code>
+     * @see org.trimou.engine.context.ExecutionContexts#newKeyPartsCache(org.trimou.engine.config.Configuration)
+     */
+    public ParsingHandlerFactory(ComputingCache<String, String[]> keyPartsCache) {
+        this.keyPartsCache = keyPartsCache;
+    }
+
     /**
      *
      * @return the parsing handler
      */
     public ParsingHandler createParsingHandler() {
-        return new DefaultParsingHandler();
+        return new DefaultParsingHandler(keyPartsCache);
     }
 
 }
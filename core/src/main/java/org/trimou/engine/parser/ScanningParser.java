@@ -0,0 +1,183 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.engine.parser;
+
+import static org.trimou.engine.config.EngineConfigurationKey.END_DELIMITER;
+import static org.trimou.engine.config.EngineConfigurationKey.START_DELIMITER;
+import static org.trimou.util.Checker.checkArgumentNotEmpty;
+import static org.trimou.util.Checker.checkArgumentsNotNull;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import org.trimou.engine.MustacheEngine;
+import org.trimou.exception.MustacheException;
+import org.trimou.exception.MustacheProblem;
+import org.trimou.util.Strings;
+
+import com.google.common.io.CharStreams;
+
+/**
+ * The parser which reads the whole template first and then scans the contents
+ * for delimiters and line separators in bulk. Text runs are emitted as slices
+ * of the template contents. It's not thread-safe and may not be reused.
+ *
+ * @author Martin Kouba
+ * @see org.trimou.engine.config.EngineConfigurationKey#SCANNING_PARSER_ENABLED
+ */
+class ScanningParser implements Parser {
+
+    private static final int UNKNOWN = -2;
+
+    private final MustacheEngine engine;
+
+    private final Delimiters delimiters;
+
+    /**
+     *
+     * @param engine
+     */
+    public ScanningParser(MustacheEngine engine) {
+        this.engine = engine;
+        this.delimiters = new Delimiters(engine.getConfiguration()
+                .getStringPropertyValue(START_DELIMITER), engine
+                .getConfiguration().getStringPropertyValue(END_DELIMITER));
+    }
+
+    public void parse(String name, Reader reader, ParsingHandler handler) {
+        checkArgumentNotEmpty(name);
+        checkArgumentsNotNull(reader, handler);
+
+        String template;
+        try {
+            template = CharStreams.toString(reader);
+        } catch (IOException e) {
+            throw new MustacheException(MustacheProblem.COMPILE_IO_ERROR, e);
+        }
+
+        // Start of document
+        handler.startTemplate(name, delimiters, engine);
+
+        int length = template.length();
+        int position = 0;
+        int nextLf = UNKNOWN;
+        int nextCr = UNKNOWN;
+        int nextStart = UNKNOWN;
+
+        while (position < length) {
+
+            // Only rescan if the last match was already consumed
+            if (nextLf != -1 && nextLf < position) {
+                nextLf = template.indexOf('\n', position);
+            }
+            if (nextCr != -1 && nextCr < position) {
+                nextCr = template.indexOf('\r', position);
+            }
+            if (nextStart != -1 && nextStart < position) {
+                nextStart = template.indexOf(delimiters.getStart(), position);
+            }
+
+            int next = min(min(nextLf, nextCr), nextStart);
+            if (next == -1) {
+                // Flush the last text segment
+                handler.text(template.substring(position));
+                break;
+            }
+            if (next > position) {
+                handler.text(template.substring(position, next));
+            }
+
+            if (next == nextStart) {
+                position = tag(template, next + delimiters.getStart().length(),
+                        handler);
+                // Delimiters might have changed
+                nextStart = UNKNOWN;
+            } else if (next == nextCr) {
+                if (next + 1 < length && template.charAt(next + 1) == '\n') {
+                    handler.lineSeparator(Strings.LINE_SEPARATOR_CRLF);
+                    position = next + 2;
+                } else {
+                    handler.lineSeparator(Strings.LINE_SEPARATOR_CR);
+                    position = next + 1;
+                }
+            } else {
+                handler.lineSeparator(Strings.LINE_SEPARATOR_LF);
+                position = next + 1;
+            }
+        }
+
+        // End of document
+        handler.endTemplate();
+    }
+
+    /**
+     *
+     * @param template
+     * @param from
+     *            The index of the first character after the start delimiter
+     * @param handler
+     * @return the index of the first character after the end delimiter
+     */
+    private int tag(String template, int from, ParsingHandler handler) {
+
+        String end = delimiters.getEnd();
+        int length = template.length();
+        int searchFrom = from;
+
+        if (from < length) {
+            char first = template.charAt(from);
+            if (first != end.charAt(0) && first == delimiters.getStart(0)) {
+                // Most likely a triple mustache - skip the first ending
+                // mustache
+                int tripleEnd = template.indexOf(end.charAt(0), from + 1);
+                searchFrom = tripleEnd == -1 ? length : tripleEnd + 1;
+            }
+        }
+
+        int endIdx = searchFrom < length ? template.indexOf(end, searchFrom)
+                : -1;
+        if (endIdx == -1) {
+            String buffer = template.substring(from);
+            if (buffer.length() > 0) {
+                throw new MustacheException(
+                        MustacheProblem.COMPILE_INVALID_TEMPLATE,
+                        "Unexpected non-text buffer at the end of the document (probably unterminated tag): %s",
+                        buffer);
+            }
+            return length;
+        }
+        handler.tag(DefaultParser.deriveTag(template.substring(from, endIdx),
+                delimiters));
+        return endIdx + end.length();
+    }
+
+    /**
+     *
+     * @param index1
+     * @param index2
+     * @return the lower index, -1 if none found
+     */
+    private static int min(int index1, int index2) {
+        if (index1 == -1) {
+            return index2;
+        }
+        if (index2 == -1) {
+            return index1;
+        }
+        return Math.min(index1, index2);
+    }
+
+}
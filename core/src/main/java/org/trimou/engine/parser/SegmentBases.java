@@ -31,6 +31,7 @@ import org.trimou.engine.parser.DefaultParsingHandler.ContainerSegmentBase;
 import org.trimou.engine.parser.DefaultParsingHandler.PartialSegmentBase;
 import org.trimou.engine.parser.DefaultParsingHandler.RootSegmentBase;
 import org.trimou.engine.parser.DefaultParsingHandler.SegmentBase;
+import org.trimou.engine.parser.DefaultParsingHandler.StaticTextSegmentBase;
 import org.trimou.engine.segment.SegmentType;
 
 /**
@@ -116,6 +117,26 @@ final class SegmentBases {
         }
     }
 
+    static void mergeStaticSegments(ContainerSegmentBase container) {
+
+        List<SegmentBase> segments = new ArrayList<SegmentBase>();
+        List<SegmentBase> staticSegments = new ArrayList<SegmentBase>();
+
+        for (SegmentBase segment : container) {
+            if (isStatic(segment)) {
+                staticSegments.add(segment);
+                continue;
+            }
+            flushStaticSegments(staticSegments, segments);
+            if (segment instanceof ContainerSegmentBase) {
+                mergeStaticSegments((ContainerSegmentBase) segment);
+            }
+            segments.add(segment);
+        }
+        flushStaticSegments(staticSegments, segments);
+        container.setSegments(segments);
+    }
+
     static int getNumberOfSegments(ContainerSegmentBase container) {
         int count = 0;
         for (SegmentBase segmentBase : container) {
@@ -128,6 +149,32 @@ final class SegmentBases {
         return count;
     }
 
+    /**
+     * Add the static segments to the list, merge the segments if needed.
+     *
+     * @param staticSegments
+     * @param segments
+     */
+    private static void flushStaticSegments(List<SegmentBase> staticSegments,
+            List<SegmentBase> segments) {
+        if (staticSegments.isEmpty()) {
+            return;
+        }
+        if (staticSegments.size() == 1) {
+            segments.add(staticSegments.get(0));
+        } else {
+            segments.add(new StaticTextSegmentBase(new ArrayList<SegmentBase>(
+                    staticSegments)));
+            logger.trace("{} static segments merged", staticSegments.size());
+        }
+        staticSegments.clear();
+    }
+
+    private static boolean isStatic(SegmentBase segment) {
+        return SegmentType.TEXT.equals(segment.getType())
+                || SegmentType.LINE_SEPARATOR.equals(segment.getType());
+    }
+
     /**
      *
      * @param standaloneLine
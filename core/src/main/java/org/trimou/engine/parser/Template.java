@@ -15,20 +15,32 @@
  */
 package org.trimou.engine.parser;
 
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
 import java.util.List;
+import java.util.Set;
 
 import org.trimou.Mustache;
 import org.trimou.annotations.Internal;
 import org.trimou.engine.MustacheEngine;
+import org.trimou.engine.cache.ComputingCache;
+import org.trimou.engine.config.EngineConfigurationKey;
 import org.trimou.engine.context.ExecutionContext;
 import org.trimou.engine.context.ExecutionContexts;
 import org.trimou.engine.listener.MustacheListener;
 import org.trimou.engine.listener.MustacheRenderingEvent;
 import org.trimou.engine.resource.AbstractReleaseCallbackContainer;
+import org.trimou.engine.segment.EncodingAppendable;
+import org.trimou.engine.segment.FlushingAppendable;
 import org.trimou.engine.segment.RootSegment;
 import org.trimou.exception.MustacheException;
 import org.trimou.exception.MustacheProblem;
+import org.trimou.util.Checker;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 
 /**
@@ -47,8 +59,20 @@ public class Template implements Mustache {
 
     private final ExecutionContext globalExecutionContext;
 
+    private final boolean valueWrapperPoolingEnabled;
+
+    private final int outputFlushThreshold;
+
+    private final long asyncProcessingTimeout;
+
+    private final List<MustacheListener> renderingListeners;
+
     private volatile RootSegment rootSegment;
 
+    private volatile boolean invalidated;
+
+    private volatile Set<String> dependencies;
+
     /**
      *
      * @param generatedId
@@ -56,11 +80,37 @@ public class Template implements Mustache {
      * @param engine
      */
     public Template(Long generatedId, String name, MustacheEngine engine) {
+        this(generatedId, name, engine, null);
+    }
+
+    /**
+     *
+     * @param generatedId
+     * @param name
+     * @param engine
+     * @param keyPartsCache
+     *            The cache of split keys shared by all the templates of the
+     *            engine, may be <code>null</code>
+     */
+    public Template(Long generatedId, String name, MustacheEngine engine,
+            ComputingCache<String, String[]> keyPartsCache) {
         this.generatedId = generatedId;
         this.name = name;
         this.engine = engine;
         this.globalExecutionContext = ExecutionContexts
-                .newGlobalExecutionContext(engine.getConfiguration());
+                .newGlobalExecutionContext(engine.getConfiguration(),
+                        keyPartsCache);
+        this.valueWrapperPoolingEnabled = engine.getConfiguration()
+                .getBooleanPropertyValue(
+                        EngineConfigurationKey.VALUE_WRAPPER_POOLING_ENABLED);
+        this.outputFlushThreshold = engine.getConfiguration()
+                .getIntegerPropertyValue(
+                        EngineConfigurationKey.OUTPUT_FLUSH_THRESHOLD);
+        this.asyncProcessingTimeout = engine.getConfiguration()
+                .getLongPropertyValue(
+                        EngineConfigurationKey.ASYNC_PROCESSING_TIMEOUT);
+        this.renderingListeners = engine.getConfiguration()
+                .getRenderingListeners();
     }
 
     @Override
@@ -82,24 +132,72 @@ public class Template implements Mustache {
 
     @Override
     public void render(Appendable appendable, Object data) {
-        final DefaultMustacheRenderingEvent event = new DefaultMustacheRenderingEvent(
-                name, generatedId, engine.getConfiguration()
-                        .getIdentifierGenerator()
-                        .generate(MustacheRenderingEvent.class));
+        if (renderingListeners == null) {
+            // No listener consumes rendering events
+            execute(appendable, data);
+            return;
+        }
+        final DefaultMustacheRenderingEvent event = newRenderingEvent();
         try {
             renderingStarted(event);
-            appendable = rootSegment.execute(
-                    appendable,
-                    data != null ? globalExecutionContext
-                            .setContextObject(data) : globalExecutionContext);
-            // We need for flush the async appendable if needed
-            RootSegment.flushAsyncAppendable(appendable);
+            execute(appendable, data);
             renderingFinished(event);
         } finally {
             event.release();
         }
     }
 
+    @Override
+    public void renderAsync(Appendable appendable, Object data,
+            final RenderingCallback callback) {
+        Checker.checkArgumentsNotNull(appendable, callback);
+        final DefaultMustacheRenderingEvent event = renderingListeners != null ? newRenderingEvent()
+                : null;
+        try {
+            renderingStarted(event);
+            appendable = rootSegment.execute(wrapIfNeeded(appendable),
+                    newExecutionContext(data));
+        } catch (RuntimeException e) {
+            release(event);
+            callback.failed(e);
+            return;
+        }
+        RootSegment.flushAsyncAppendable(appendable, new RenderingCallback() {
+
+            @Override
+            public void completed() {
+                try {
+                    renderingFinished(event);
+                } catch (RuntimeException e) {
+                    failed(e);
+                    return;
+                }
+                release(event);
+                callback.completed();
+            }
+
+            @Override
+            public void failed(Throwable cause) {
+                release(event);
+                callback.failed(cause);
+            }
+        });
+    }
+
+    @Override
+    public void render(OutputStream outputStream, Object data,
+            Charset charset) {
+        render(new EncodingAppendable(outputStream, charset,
+                outputFlushThreshold), data);
+    }
+
+    @Override
+    public void render(WritableByteChannel channel, Object data,
+            Charset charset) {
+        render(new EncodingAppendable(channel, charset,
+                outputFlushThreshold), data);
+    }
+
     public RootSegment getRootSegment() {
         return rootSegment;
     }
@@ -116,26 +214,101 @@ public class Template implements Mustache {
         return engine;
     }
 
+    /**
+     * The dependencies are read lazily from the compiled template.
+     *
+     * @return the immutable set of ids of the templates this template
+     *         references (partials, extended templates, etc.)
+     */
+    public Set<String> getDependencies() {
+        Set<String> value = dependencies;
+        if (value == null) {
+            value = ImmutableSet.copyOf(getRootSegment()
+                    .getTemplateDependencies());
+            dependencies = value;
+        }
+        return value;
+    }
+
+    /**
+     * Mark the template as invalidated, i.e. removed from the template cache.
+     * Segments which hold a reference to this template (e.g. partials) should
+     * obtain a new instance from the engine.
+     */
+    public void invalidate() {
+        this.invalidated = true;
+    }
+
+    /**
+     *
+     * @return <code>true</code> if the template was removed from the template
+     *         cache, <code>false</code> otherwise
+     */
+    public boolean isInvalidated() {
+        return invalidated;
+    }
+
+    private void render(EncodingAppendable appendable, Object data) {
+        render((Appendable) appendable, data);
+        try {
+            appendable.flush();
+        } catch (IOException e) {
+            throw new MustacheException(MustacheProblem.RENDER_IO_ERROR, e);
+        }
+    }
+
+    private void execute(Appendable appendable, Object data) {
+        appendable = rootSegment.execute(wrapIfNeeded(appendable),
+                newExecutionContext(data));
+        // We need for flush the async appendable if needed
+        RootSegment.flushAsyncAppendable(appendable, asyncProcessingTimeout);
+    }
+
+    private DefaultMustacheRenderingEvent newRenderingEvent() {
+        return new DefaultMustacheRenderingEvent(name, generatedId,
+                engine.getConfiguration().getIdentifierGenerator()
+                        .generate(MustacheRenderingEvent.class));
+    }
+
+    private Appendable wrapIfNeeded(Appendable appendable) {
+        if (outputFlushThreshold > 0 && appendable instanceof Flushable) {
+            return new FlushingAppendable(appendable, outputFlushThreshold);
+        }
+        return appendable;
+    }
+
+    private ExecutionContext newExecutionContext(Object data) {
+        if (valueWrapperPoolingEnabled) {
+            return ExecutionContexts.newPooledExecutionContext(
+                    globalExecutionContext, data);
+        }
+        return data != null ? globalExecutionContext.setContextObject(data)
+                : globalExecutionContext;
+    }
+
     private void renderingStarted(MustacheRenderingEvent event) {
-        List<MustacheListener> listeners = engine.getConfiguration()
-                .getMustacheListeners();
-        if (listeners != null) {
-            for (MustacheListener listener : listeners) {
+        if (renderingListeners != null) {
+            for (MustacheListener listener : renderingListeners) {
                 listener.renderingStarted(event);
             }
         }
     }
 
     private void renderingFinished(MustacheRenderingEvent event) {
-        List<MustacheListener> listeners = engine.getConfiguration()
-                .getMustacheListeners();
-        if (listeners != null) {
-            for (MustacheListener listener : Lists.reverse(listeners)) {
+        if (renderingListeners != null) {
+            for (MustacheListener listener : Lists
+                    .reverse(renderingListeners)) {
                 listener.renderingFinished(event);
             }
         }
     }
 
+    private static void release(DefaultMustacheRenderingEvent event) {
+        if (event != null) {
+            event.release();
+        }
+    }
+
     /**
      *
      * @author Martin Kouba
@@ -0,0 +1,556 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.engine.parser;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.trimou.Mustache;
+import org.trimou.annotations.Internal;
+import org.trimou.engine.MustacheEngine;
+import org.trimou.engine.MustacheTagType;
+import org.trimou.engine.config.EngineConfigurationKey;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * A persistent snapshot of parsing results. For each template the snapshot
+ * contains the hash of the template contents, the optional fingerprint
+ * provided by the template locator and the recorded sequence of parsing
+ * events. If the fingerprint or the hash matches, the events are replayed to
+ * the parsing handler and the parser is not used at all. If the fingerprint
+ * matches the template contents are not even read.
+ *
+ * <p>
+ * The snapshot file is read at once during startup and the events of a
+ * particular template are decoded lazily. The file is neither kept open nor
+ * memory-mapped so that it can be replaced atomically. Note that the compiled
+ * segment tree itself cannot be stored - segments are bound to the engine
+ * (helpers, resolvers, configuration, etc.).
+ * </p>
+ *
+ * <p>
+ * The header contains the names of the {@link MustacheTagType} constants so
+ * that the tag types do not depend on the ordinal values of the current
+ * version.
+ * </p>
+ *
+ * @author Martin Kouba
+ * @see EngineConfigurationKey#TEMPLATE_SNAPSHOT_FILE
+ */
+@Internal
+public final class TemplateSnapshot {
+
+    private static final Logger logger = LoggerFactory
+            .getLogger(TemplateSnapshot.class);
+
+    private static final int MAGIC = 0x54524D53;
+
+    private static final int VERSION = 2;
+
+    private static final byte EVENT_TEXT = 0;
+
+    private static final byte EVENT_TAG = 1;
+
+    private static final byte EVENT_LINE_SEPARATOR = 2;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final MustacheTagType[] TAG_TYPES = MustacheTagType
+            .values();
+
+    private final File file;
+
+    private final String startDelimiter;
+
+    private final String endDelimiter;
+
+    private final Map<String, SnapshotEntry> entries;
+
+    private final Map<String, SnapshotEntry> usedEntries;
+
+    private final AtomicBoolean modified;
+
+    private TemplateSnapshot(File file, String startDelimiter,
+            String endDelimiter) {
+        this.file = file;
+        this.startDelimiter = startDelimiter;
+        this.endDelimiter = endDelimiter;
+        this.entries = new ConcurrentHashMap<String, SnapshotEntry>();
+        this.usedEntries = new ConcurrentHashMap<String, SnapshotEntry>();
+        this.modified = new AtomicBoolean(false);
+    }
+
+    /**
+     * Load the snapshot from the given file. If the file does not exist or is
+     * not valid an empty snapshot is returned.
+     *
+     * @param file
+     * @param engine
+     * @return the snapshot
+     */
+    public static TemplateSnapshot load(File file, MustacheEngine engine) {
+        TemplateSnapshot snapshot = new TemplateSnapshot(file, engine
+                .getConfiguration().getStringPropertyValue(
+                        EngineConfigurationKey.START_DELIMITER), engine
+                .getConfiguration().getStringPropertyValue(
+                        EngineConfigurationKey.END_DELIMITER));
+        if (file.isFile()) {
+            try {
+                snapshot.read();
+            } catch (Exception e) {
+                snapshot.entries.clear();
+                logger.warn("Unable to read the template snapshot: " + file,
+                        e);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     *
+     * @param contents
+     * @return the hash of the template contents
+     */
+    public static String hash(String contents) {
+        return Hashing.murmur3_128().hashString(contents, UTF_8).toString();
+    }
+
+    /**
+     * Replay the recorded parsing events if the snapshot contains the template
+     * with the same fingerprint.
+     *
+     * @param templateId
+     * @param fingerprint
+     * @param handler
+     * @param engine
+     * @return <code>true</code> if the events were replayed,
+     *         <code>false</code> otherwise
+     * @see org.trimou.engine.locator.TemplateFingerprintProvider
+     */
+    public boolean replayIfUnmodified(String templateId, String fingerprint,
+            ParsingHandler handler, MustacheEngine engine) {
+        SnapshotEntry entry = entries.get(templateId);
+        if (entry == null || entry.fingerprint.isEmpty()
+                || !entry.fingerprint.equals(fingerprint)) {
+            return false;
+        }
+        replay(templateId, entry, handler, engine);
+        return true;
+    }
+
+    /**
+     * Replay the recorded parsing events if the snapshot contains the template
+     * with the same contents hash.
+     *
+     * @param templateId
+     * @param hash
+     * @param handler
+     * @param engine
+     * @return <code>true</code> if the events were replayed,
+     *         <code>false</code> otherwise
+     */
+    public boolean replay(String templateId, String hash,
+            ParsingHandler handler, MustacheEngine engine) {
+        return replay(templateId, hash, null, handler, engine);
+    }
+
+    /**
+     * Replay the recorded parsing events if the snapshot contains the template
+     * with the same contents hash. The stored fingerprint is updated if needed,
+     * e.g. if the file was only touched.
+     *
+     * @param templateId
+     * @param hash
+     * @param fingerprint
+     *            May be <code>null</code>
+     * @param handler
+     * @param engine
+     * @return <code>true</code> if the events were replayed,
+     *         <code>false</code> otherwise
+     */
+    public boolean replay(String templateId, String hash, String fingerprint,
+            ParsingHandler handler, MustacheEngine engine) {
+        SnapshotEntry entry = entries.get(templateId);
+        if (entry == null || !entry.hash.equals(hash)) {
+            return false;
+        }
+        fingerprint = fingerprint != null ? fingerprint : "";
+        if (!entry.fingerprint.equals(fingerprint)) {
+            entry = new SnapshotEntry(hash, fingerprint, entry.getEvents());
+            entries.put(templateId, entry);
+            modified.set(true);
+        }
+        replay(templateId, entry, handler, engine);
+        return true;
+    }
+
+    private void replay(String templateId, SnapshotEntry entry,
+            ParsingHandler handler, MustacheEngine engine) {
+        handler.startTemplate(templateId, new Delimiters(startDelimiter,
+                endDelimiter), engine);
+        for (ParsingEvent event : entry.getEvents()) {
+            if (event.type == EVENT_TEXT) {
+                handler.text(event.value);
+            } else if (event.type == EVENT_TAG) {
+                handler.tag(new ParsedTag(event.value, event.tagType));
+            } else {
+                handler.lineSeparator(event.value);
+            }
+        }
+        handler.endTemplate();
+        usedEntries.put(templateId, entry);
+    }
+
+    /**
+     * The parsing events are recorded and stored in the snapshot once the
+     * template is parsed successfully.
+     *
+     * @param templateId
+     * @param hash
+     * @param handler
+     * @return a handler which records parsing events and delegates to the
+     *         given handler
+     */
+    public ParsingHandler record(String templateId, String hash,
+            ParsingHandler handler) {
+        return record(templateId, hash, null, handler);
+    }
+
+    /**
+     * The parsing events are recorded and stored in the snapshot once the
+     * template is parsed successfully.
+     *
+     * @param templateId
+     * @param hash
+     * @param fingerprint
+     *            May be <code>null</code>
+     * @param handler
+     * @return a handler which records parsing events and delegates to the
+     *         given handler
+     */
+    public ParsingHandler record(String templateId, String hash,
+            String fingerprint, ParsingHandler handler) {
+        return new RecordingParsingHandler(templateId, hash,
+                fingerprint != null ? fingerprint : "", handler);
+    }
+
+    /**
+     * Write the snapshot to the file if modified. Only the templates used
+     * since the snapshot was loaded are written, i.e. the entries of templates
+     * which no longer exist are removed.
+     *
+     * @return <code>true</code> if written, <code>false</code> otherwise
+     */
+    public boolean writeIfModified() {
+        if (!modified.compareAndSet(true, false)) {
+            return false;
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.exists()) {
+                parent.mkdirs();
+            }
+            out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(tmp)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(TAG_TYPES.length);
+            for (MustacheTagType tagType : TAG_TYPES) {
+                writeString(out, tagType.name());
+            }
+            writeString(out, startDelimiter);
+            writeString(out, endDelimiter);
+            List<Entry<String, SnapshotEntry>> toWrite = new ArrayList<Entry<String, SnapshotEntry>>(
+                    usedEntries.entrySet());
+            out.writeInt(toWrite.size());
+            for (Entry<String, SnapshotEntry> entry : toWrite) {
+                writeString(out, entry.getKey());
+                writeString(out, entry.getValue().hash);
+                writeString(out, entry.getValue().fingerprint);
+                List<ParsingEvent> events = entry.getValue().getEvents();
+                out.writeInt(events.size());
+                for (ParsingEvent event : events) {
+                    out.writeByte(event.type);
+                    if (event.type == EVENT_TAG) {
+                        out.writeByte(event.tagType.ordinal());
+                    }
+                    writeString(out, event.value);
+                }
+            }
+            out.close();
+            out = null;
+            try {
+                Files.move(tmp.toPath(), file.toPath(),
+                        StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), file.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+            logger.info("Template snapshot written [file: {}, templates: {}]",
+                    file, toWrite.size());
+            return true;
+        } catch (IOException e) {
+            logger.warn("Unable to write the template snapshot: " + file, e);
+            return false;
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     *
+     * @return the number of templates in the snapshot
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    private void read() throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            logger.info("Ignoring incompatible template snapshot: {}", file);
+            return;
+        }
+        MustacheTagType[] tagTypes = new MustacheTagType[buffer.getInt()];
+        for (int i = 0; i < tagTypes.length; i++) {
+            String name = readString(buffer);
+            try {
+                tagTypes[i] = MustacheTagType.valueOf(name);
+            } catch (IllegalArgumentException e) {
+                logger.info(
+                        "Ignoring template snapshot - unsupported tag type {}: {}",
+                        name, file);
+                return;
+            }
+        }
+        if (!startDelimiter.equals(readString(buffer))
+                || !endDelimiter.equals(readString(buffer))) {
+            logger.info(
+                    "Ignoring template snapshot - different delimiters: {}",
+                    file);
+            return;
+        }
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            String templateId = readString(buffer);
+            String hash = readString(buffer);
+            String fingerprint = readString(buffer);
+            int eventCount = buffer.getInt();
+            int offset = buffer.position();
+            // Skip the events - they're decoded lazily
+            // Validate the events so that the lazy decoding cannot fail
+            for (int j = 0; j < eventCount; j++) {
+                byte type = buffer.get();
+                if (type == EVENT_TAG) {
+                    byte tagType = buffer.get();
+                    if (tagType < 0 || tagType >= tagTypes.length) {
+                        throw new IOException("Invalid tag type: " + tagType);
+                    }
+                } else if (type != EVENT_TEXT && type != EVENT_LINE_SEPARATOR) {
+                    throw new IOException("Invalid event type: " + type);
+                }
+                int length = buffer.getInt();
+                if (length < 0 || length > buffer.remaining()) {
+                    throw new IOException("Invalid event length: " + length);
+                }
+                buffer.position(buffer.position() + length);
+            }
+            entries.put(templateId, new SnapshotEntry(hash, fingerprint,
+                    buffer, offset, eventCount, tagTypes));
+        }
+        logger.info("Template snapshot loaded [file: {}, templates: {}]",
+                file, count);
+    }
+
+    private static void writeString(DataOutputStream out, String value)
+            throws IOException {
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static class SnapshotEntry {
+
+        private final String hash;
+
+        private final String fingerprint;
+
+        private final ByteBuffer buffer;
+
+        private final int offset;
+
+        private final int eventCount;
+
+        /**
+         * Stored ordinal -> tag type
+         */
+        private final MustacheTagType[] tagTypes;
+
+        private final List<ParsingEvent> events;
+
+        SnapshotEntry(String hash, String fingerprint, ByteBuffer buffer,
+                int offset, int eventCount, MustacheTagType[] tagTypes) {
+            this.hash = hash;
+            this.fingerprint = fingerprint;
+            this.buffer = buffer;
+            this.offset = offset;
+            this.eventCount = eventCount;
+            this.tagTypes = tagTypes;
+            this.events = null;
+        }
+
+        SnapshotEntry(String hash, String fingerprint,
+                List<ParsingEvent> events) {
+            this.hash = hash;
+            this.fingerprint = fingerprint;
+            this.buffer = null;
+            this.offset = 0;
+            this.eventCount = events.size();
+            this.tagTypes = null;
+            this.events = events;
+        }
+
+        List<ParsingEvent> getEvents() {
+            if (events != null) {
+                return events;
+            }
+            // Each decoding needs its own position
+            ByteBuffer view = buffer.duplicate();
+            view.position(offset);
+            List<ParsingEvent> decoded = new ArrayList<ParsingEvent>(
+                    eventCount);
+            for (int i = 0; i < eventCount; i++) {
+                byte type = view.get();
+                MustacheTagType tagType = type == EVENT_TAG ? tagTypes[view
+                        .get()] : null;
+                decoded.add(new ParsingEvent(type, readString(view), tagType));
+            }
+            return decoded;
+        }
+
+    }
+
+    private static class ParsingEvent {
+
+        private final byte type;
+
+        private final String value;
+
+        private final MustacheTagType tagType;
+
+        ParsingEvent(byte type, String value, MustacheTagType tagType) {
+            this.type = type;
+            this.value = value;
+            this.tagType = tagType;
+        }
+
+    }
+
+    private class RecordingParsingHandler implements ParsingHandler {
+
+        private final String templateId;
+
+        private final String hash;
+
+        private final String fingerprint;
+
+        private final ParsingHandler delegate;
+
+        private final List<ParsingEvent> events;
+
+        RecordingParsingHandler(String templateId, String hash,
+                String fingerprint, ParsingHandler delegate) {
+            this.templateId = templateId;
+            this.hash = hash;
+            this.fingerprint = fingerprint;
+            this.delegate = delegate;
+            this.events = new ArrayList<ParsingEvent>();
+        }
+
+        @Override
+        public void startTemplate(String name, Delimiters delimiters,
+                MustacheEngine engine) {
+            delegate.startTemplate(name, delimiters, engine);
+        }
+
+        @Override
+        public void text(String text) {
+            events.add(new ParsingEvent(EVENT_TEXT, text, null));
+            delegate.text(text);
+        }
+
+        @Override
+        public void tag(ParsedTag tag) {
+            events.add(new ParsingEvent(EVENT_TAG, tag.getContent(), tag
+                    .getType()));
+            delegate.tag(tag);
+        }
+
+        @Override
+        public void lineSeparator(String separator) {
+            events.add(new ParsingEvent(EVENT_LINE_SEPARATOR, separator,
+                    null));
+            delegate.lineSeparator(separator);
+        }
+
+        @Override
+        public void endTemplate() {
+            delegate.endTemplate();
+            SnapshotEntry entry = new SnapshotEntry(hash, fingerprint, events);
+            entries.put(templateId, entry);
+            usedEntries.put(templateId, entry);
+            modified.set(true);
+        }
+
+        @Override
+        public Mustache getCompiledTemplate() {
+            return delegate.getCompiledTemplate();
+        }
+
+    }
+
+}
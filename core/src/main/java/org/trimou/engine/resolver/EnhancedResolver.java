@@ -47,8 +47,11 @@ public interface EnhancedResolver extends Resolver {
      *
      * <p>
      * The created hint is currently only used to skip the resolver chain for
-     * the first part of a key of a variable tag, i.e. <code>foo</code> for
-     * <code>{{foo}}</code> or <code>{{foo.bar}}</code>.
+     * the parts of a key of a variable tag. For the first part, i.e.
+     * <code>foo</code> for <code>{{foo}}</code> or <code>{{foo.bar}}</code>,
+     * a single hint is used. For the subsequent parts a hint is created for
+     * each runtime class of the context object - see
+     * {@link EngineConfigurationKey#RESOLVER_HINTS_POLYMORPHIC_LIMIT}.
      * </p>
      *
      * <p>
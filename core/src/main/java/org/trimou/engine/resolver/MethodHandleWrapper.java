@@ -0,0 +1,108 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.engine.resolver;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Member wrapper backed by a {@link MethodHandle}. The handle is adapted to
+ * the <code>(Object)Object</code> type so that {@link MethodHandle#invokeExact}
+ * can be used and no argument array is allocated for each invocation.
+ *
+ * @author Martin Kouba
+ * @see ReflectionResolver#METHOD_HANDLES_ENABLED_KEY
+ */
+class MethodHandleWrapper implements MemberWrapper {
+
+    private static final Logger logger = LoggerFactory
+            .getLogger(MethodHandleWrapper.class);
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(
+            Object.class, Object.class);
+
+    private final MethodHandle handle;
+
+    private MethodHandleWrapper(MethodHandle handle) {
+        this.handle = handle;
+    }
+
+    @Override
+    public Object getValue(Object instance) throws IllegalAccessException,
+            IllegalArgumentException, InvocationTargetException {
+        try {
+            return handle.invokeExact(instance);
+        } catch (Error e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Throwable e) {
+            // Checked exception - preserve the semantics of Method.invoke()
+            throw new InvocationTargetException(e);
+        }
+    }
+
+    /**
+     *
+     * @param method
+     * @return the wrapper or <code>null</code> if it's not possible to obtain
+     *         the method handle
+     */
+    static MemberWrapper from(Method method) {
+        try {
+            return new MethodHandleWrapper(adapt(MethodHandles.lookup()
+                    .unreflect(method), Modifier.isStatic(method
+                    .getModifiers())));
+        } catch (IllegalAccessException e) {
+            logger.debug("Unable to obtain the method handle for {}", method);
+            return null;
+        }
+    }
+
+    /**
+     *
+     * @param field
+     * @return the wrapper or <code>null</code> if it's not possible to obtain
+     *         the method handle
+     */
+    static MemberWrapper from(Field field) {
+        try {
+            return new MethodHandleWrapper(adapt(MethodHandles.lookup()
+                    .unreflectGetter(field), Modifier.isStatic(field
+                    .getModifiers())));
+        } catch (IllegalAccessException e) {
+            logger.debug("Unable to obtain the method handle for {}", field);
+            return null;
+        }
+    }
+
+    private static MethodHandle adapt(MethodHandle handle, boolean isStatic) {
+        if (isStatic) {
+            // The context object is ignored
+            handle = MethodHandles.dropArguments(handle, 0, Object.class);
+        }
+        return handle.asType(GETTER_TYPE);
+    }
+
+}
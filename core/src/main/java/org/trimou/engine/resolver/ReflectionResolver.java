@@ -20,7 +20,6 @@ import static org.trimou.engine.priority.Priorities.rightBefore;
 import java.lang.reflect.Field;
 import java.lang.reflect.Member;
 import java.lang.reflect.Method;
-import java.util.Collections;
 import java.util.Set;
 
 import org.slf4j.Logger;
@@ -37,6 +36,7 @@ import com.google.common.base.Optional;
 import com.google.common.base.Predicate;
 import com.google.common.cache.RemovalListener;
 import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.ImmutableSet;
 
 /**
  * Reflection-based resolver attempts to find a matching member on the context
@@ -68,6 +68,18 @@ public class ReflectionResolver extends AbstractResolver implements
     public static final ConfigurationKey HINT_FALLBACK_ENABLED_KEY = new SimpleConfigurationKey(
             ReflectionResolver.class.getName() + ".hintFallbackEnabled", true);
 
+    /**
+     * If set to <code>true</code> the members are accessed through
+     * {@link java.lang.invoke.MethodHandle} instances instead of
+     * {@link Method#invoke(Object, Object...)} and {@link Field#get(Object)}.
+     * The reflection is used as a fallback if it's not possible to obtain the
+     * method handle. Errors and runtime exceptions thrown by a member accessed
+     * through a method handle are rethrown unchanged.
+     */
+    public static final ConfigurationKey METHOD_HANDLES_ENABLED_KEY = new SimpleConfigurationKey(
+            ReflectionResolver.class.getName() + ".methodHandlesEnabled",
+            false);
+
     private static final Logger logger = LoggerFactory
             .getLogger(ReflectionResolver.class);
 
@@ -78,6 +90,8 @@ public class ReflectionResolver extends AbstractResolver implements
 
     private boolean hintFallbackEnabled;
 
+    private boolean methodHandlesEnabled;
+
     public ReflectionResolver() {
         this(REFLECTION_RESOLVER_PRIORITY);
     }
@@ -99,7 +113,7 @@ public class ReflectionResolver extends AbstractResolver implements
         if (memberCache != null) {
             wrapper = memberCache.get(key).orNull();
         } else {
-            wrapper = findWrapper(key).orNull();
+            wrapper = findWrapper(key, methodHandlesEnabled).orNull();
         }
 
         if (wrapper == null) {
@@ -108,6 +122,9 @@ public class ReflectionResolver extends AbstractResolver implements
 
         try {
             return wrapper.getValue(contextObject);
+        } catch (RuntimeException e) {
+            // Method handles rethrow unchecked exceptions unchanged
+            throw e;
         } catch (Exception e) {
             throw new MustacheException(
                     MustacheProblem.RENDER_REFLECT_INVOCATION_ERROR, e);
@@ -123,7 +140,7 @@ public class ReflectionResolver extends AbstractResolver implements
             Optional<MemberWrapper> found = memberCache.getIfPresent(key);
             wrapper = found != null ? found.get() : null;
         } else {
-            wrapper = findWrapper(key).orNull();
+            wrapper = findWrapper(key, methodHandlesEnabled).orNull();
         }
         if (wrapper != null) {
             return new ReflectionHint(key, wrapper);
@@ -136,11 +153,16 @@ public class ReflectionResolver extends AbstractResolver implements
     public void init() {
         long memberCacheMaxSize = configuration
                 .getLongPropertyValue(MEMBER_CACHE_MAX_SIZE_KEY);
-        logger.debug("Initialized [memberCacheMaxSize: {}]", memberCacheMaxSize);
+        methodHandlesEnabled = configuration
+                .getBooleanPropertyValue(METHOD_HANDLES_ENABLED_KEY);
+        logger.debug(
+                "Initialized [memberCacheMaxSize: {}, methodHandlesEnabled: {}]",
+                memberCacheMaxSize, methodHandlesEnabled);
         if (memberCacheMaxSize > 0) {
             memberCache = configuration.getComputingCacheFactory().create(
-                    COMPUTING_CACHE_CONSUMER_ID, new MemberComputingFunction(),
-                    null, memberCacheMaxSize, null);
+                    COMPUTING_CACHE_CONSUMER_ID,
+                    new MemberComputingFunction(methodHandlesEnabled), null,
+                    memberCacheMaxSize, null);
         }
         hintFallbackEnabled = configuration
                 .getBooleanPropertyValue(HINT_FALLBACK_ENABLED_KEY);
@@ -148,8 +170,8 @@ public class ReflectionResolver extends AbstractResolver implements
 
     @Override
     public Set<ConfigurationKey> getConfigurationKeys() {
-        return Collections
-                .<ConfigurationKey> singleton(MEMBER_CACHE_MAX_SIZE_KEY);
+        return ImmutableSet.of(MEMBER_CACHE_MAX_SIZE_KEY,
+                HINT_FALLBACK_ENABLED_KEY, METHOD_HANDLES_ENABLED_KEY);
     }
 
     @Override
@@ -187,11 +209,16 @@ public class ReflectionResolver extends AbstractResolver implements
         }
     }
 
-    long getMemberCacheSize() {
+    /**
+     *
+     * @return the current number of entries in the member cache
+     */
+    public long getMemberCacheSize() {
         return memberCache != null ? memberCache.size() : 0l;
     }
 
-    private static Optional<MemberWrapper> findWrapper(MemberKey key) {
+    private static Optional<MemberWrapper> findWrapper(MemberKey key,
+            boolean methodHandlesEnabled) {
         // Find accesible method with the given name, no
         // parameters and non-void return type
         Method foundMethod = Reflections.findMethod(key.getClazz(),
@@ -201,7 +228,10 @@ public class ReflectionResolver extends AbstractResolver implements
             if (!foundMethod.isAccessible()) {
                 SecurityActions.setAccessible(foundMethod);
             }
-            return Optional.<MemberWrapper> of(new MethodWrapper(foundMethod));
+            MemberWrapper wrapper = methodHandlesEnabled ? MethodHandleWrapper
+                    .from(foundMethod) : null;
+            return Optional.<MemberWrapper> of(wrapper != null ? wrapper
+                    : new MethodWrapper(foundMethod));
         }
 
         // Find public field
@@ -211,7 +241,10 @@ public class ReflectionResolver extends AbstractResolver implements
             if (!foundField.isAccessible()) {
                 SecurityActions.setAccessible(foundField);
             }
-            return Optional.<MemberWrapper> of(new FieldWrapper(foundField));
+            MemberWrapper wrapper = methodHandlesEnabled ? MethodHandleWrapper
+                    .from(foundField) : null;
+            return Optional.<MemberWrapper> of(wrapper != null ? wrapper
+                    : new FieldWrapper(foundField));
         }
         // Member not found
         return Optional.absent();
@@ -220,9 +253,15 @@ public class ReflectionResolver extends AbstractResolver implements
     private static class MemberComputingFunction implements
             ComputingCache.Function<MemberKey, Optional<MemberWrapper>> {
 
+        private final boolean methodHandlesEnabled;
+
+        MemberComputingFunction(boolean methodHandlesEnabled) {
+            this.methodHandlesEnabled = methodHandlesEnabled;
+        }
+
         @Override
         public Optional<MemberWrapper> compute(MemberKey key) {
-            return findWrapper(key);
+            return findWrapper(key, methodHandlesEnabled);
         }
 
     }
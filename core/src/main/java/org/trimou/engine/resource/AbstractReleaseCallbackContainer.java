@@ -40,11 +40,14 @@ public abstract class AbstractReleaseCallbackContainer implements
      * Release all the resources, i.e. invoke {@link ReleaseCallback#release()}
      * on each callback. All the callbacks are always invoked, even if one of
      * the invocation fails (throws unchecked exception). Callbacks are invoked
-     * in the order in which they were registered.
+     * in the order in which they were registered. Each callback is invoked at
+     * most once.
      */
     public void release() {
         if (releaseCallbacks != null) {
-            for (ReleaseCallback callback : releaseCallbacks) {
+            List<ReleaseCallback> callbacks = releaseCallbacks;
+            releaseCallbacks = null;
+            for (ReleaseCallback callback : callbacks) {
                 try {
                     callback.release();
                 } catch (Exception e) {
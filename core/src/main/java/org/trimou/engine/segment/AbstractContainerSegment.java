@@ -20,6 +20,7 @@ import java.util.List;
 
 import org.trimou.engine.MustacheTagInfo;
 import org.trimou.engine.context.ExecutionContext;
+import org.trimou.engine.listener.RenderProfiler;
 
 import com.google.common.collect.ImmutableList;
 
@@ -33,6 +34,21 @@ abstract class AbstractContainerSegment extends AbstractSegment implements
 
     private final List<Segment> segments;
 
+    /**
+     * The array is used during execution so that no iterator is allocated
+     */
+    private final Segment[] segmentsArray;
+
+    private final RenderProfiler profiler;
+
+    /**
+     * The frame names of the profiled segments, <code>null</code> elements
+     * represent segments which are not profiled (text, comments, etc.)
+     *
+     * @see RenderProfiler
+     */
+    private final String[] profilerFrames;
+
     /**
      *
      * @param name
@@ -42,11 +58,20 @@ abstract class AbstractContainerSegment extends AbstractSegment implements
     public AbstractContainerSegment(String name, Origin origin, List<Segment> segments) {
         super(name, origin);
         this.segments = segments;
+        this.segmentsArray = segments.toArray(new Segment[segments.size()]);
+        this.profiler = RenderProfiler.find(getEngineConfiguration());
+        this.profilerFrames = profiler != null ? initProfilerFrames() : null;
     }
 
     public Appendable execute(Appendable appendable, ExecutionContext context) {
-        for (Segment segment : segments) {
-            appendable = segment.execute(appendable, context);
+        if (profiler != null) {
+            RenderProfiler.Recorder recorder = profiler.getRecorder();
+            if (recorder != null) {
+                return executeProfiled(appendable, context, recorder);
+            }
+        }
+        for (int i = 0; i < segmentsArray.length; i++) {
+            appendable = segmentsArray[i].execute(appendable, context);
         }
         return appendable;
     }
@@ -56,6 +81,14 @@ abstract class AbstractContainerSegment extends AbstractSegment implements
         return getSegments().iterator();
     }
 
+    /**
+     *
+     * @return the profiler or <code>null</code> if no profiler is registered
+     */
+    protected RenderProfiler getProfiler() {
+        return profiler;
+    }
+
     public List<Segment> getSegments() {
         return segments;
     }
@@ -82,6 +115,63 @@ abstract class AbstractContainerSegment extends AbstractSegment implements
         return literal.toString();
     }
 
+    private Appendable executeProfiled(Appendable appendable,
+            ExecutionContext context, RenderProfiler.Recorder recorder) {
+        for (int i = 0; i < segmentsArray.length; i++) {
+            if (profilerFrames[i] == null) {
+                appendable = segmentsArray[i].execute(appendable, context);
+                continue;
+            }
+            recorder.enter(profilerFrames[i], getOutputLength(appendable));
+            try {
+                appendable = segmentsArray[i].execute(appendable, context);
+            } finally {
+                recorder.exit(getOutputLength(appendable));
+            }
+        }
+        return appendable;
+    }
+
+    private String[] initProfilerFrames() {
+        String[] frames = new String[segmentsArray.length];
+        for (int i = 0; i < segmentsArray.length; i++) {
+            if (isProfiled(segmentsArray[i].getType())) {
+                MustacheTagInfo info = segmentsArray[i].getTagInfo();
+                Character command = info.getType().getCommand();
+                frames[i] = RenderProfiler.sanitizeFrame(info.getTemplateName()
+                        + ":"
+                        + info.getLine()
+                        + " "
+                        + getTagLiteral(command != null ? command
+                                + info.getText() : info.getText()));
+            }
+        }
+        return frames;
+    }
+
+    private static boolean isProfiled(SegmentType type) {
+        switch (type) {
+        case VALUE:
+        case SECTION:
+        case INVERTED_SECTION:
+        case PARTIAL:
+        case EXTEND:
+        case EXTEND_SECTION:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    private static long getOutputLength(Appendable appendable) {
+        if (appendable instanceof CharSequence) {
+            return ((CharSequence) appendable).length();
+        } else if (appendable instanceof EncodingAppendable) {
+            return ((EncodingAppendable) appendable).getEncodedLength();
+        }
+        return -1;
+    }
+
     @Override
     protected String getSegmentName() {
         return getText();
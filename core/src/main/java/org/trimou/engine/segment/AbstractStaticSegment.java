@@ -0,0 +1,81 @@
+/*
+ * Copyright 2013 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.engine.segment;
+
+import java.io.IOException;
+
+import org.trimou.engine.context.ExecutionContext;
+import org.trimou.exception.MustacheException;
+import org.trimou.exception.MustacheProblem;
+
+/**
+ * Abstract static segment, i.e. a segment whose output does not depend on the
+ * context and so the encoded text may be reused.
+ *
+ * @author Martin Kouba
+ */
+abstract class AbstractStaticSegment extends AbstractSegment {
+
+    /**
+     * The text encoded with the charset used for the last byte-oriented
+     * rendering
+     */
+    private volatile EncodedText encodedText;
+
+    /**
+     *
+     * @param text
+     * @param origin
+     */
+    public AbstractStaticSegment(String text, Origin origin) {
+        super(text, origin);
+    }
+
+    /**
+     * If rendering directly to an {@link EncodingAppendable} the encoded bytes
+     * are cached and reused for the subsequent renderings with the same
+     * charset. Note that the text is appended as usual if the appendable is
+     * wrapped, e.g. in the output of an asynchronous helper. The wrapper may
+     * buffer the characters or track the appended length and so it's not
+     * possible to bypass it.
+     */
+    @Override
+    public Appendable execute(Appendable appendable, ExecutionContext context) {
+        if (appendable instanceof EncodingAppendable
+                && ((EncodingAppendable) appendable).isPreEncodingSupported()) {
+            EncodingAppendable encodingAppendable = (EncodingAppendable) appendable;
+            EncodedText encoded = EncodedText.encodeIfNeeded(encodedText,
+                    getText(), encodingAppendable.getCharset());
+            if (encoded != encodedText) {
+                encodedText = encoded;
+            }
+            try {
+                encodingAppendable.write(encoded.getBytes());
+            } catch (IOException e) {
+                throw new MustacheException(MustacheProblem.RENDER_IO_ERROR, e);
+            }
+        } else {
+            append(appendable, getText());
+        }
+        return appendable;
+    }
+
+    @Override
+    public String getLiteralBlock() {
+        return getText();
+    }
+
+}
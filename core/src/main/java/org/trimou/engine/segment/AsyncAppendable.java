@@ -16,9 +16,18 @@
 package org.trimou.engine.segment;
 
 import java.io.IOException;
-import java.util.concurrent.Future;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.trimou.Mustache.RenderingCallback;
 import org.trimou.exception.MustacheException;
 import org.trimou.exception.MustacheProblem;
 import org.trimou.handlebars.Options;
@@ -26,6 +35,14 @@ import org.trimou.handlebars.Options;
 /**
  * A wrapper for an asynchronous appendable. This construct is not thread-safe.
  *
+ * <p>
+ * All the async appendables created during a single rendering share the same
+ * {@link AsyncProcessing} instance, which tracks the number of pending tasks.
+ * The final output is stitched together in order once all the tasks are
+ * finished - the buffers are appended directly to the original appendable, no
+ * intermediate copies are created.
+ * </p>
+ *
  * @author Martin Kouba
  * @see Options#executeAsync(org.trimou.handlebars.Options.HelperExecutable)
  */
@@ -35,7 +52,13 @@ class AsyncAppendable implements Appendable {
 
     protected final StringBuilder buffer;
 
-    protected volatile Future<AsyncAppendable> future;
+    private final AsyncProcessing processing;
+
+    private boolean started;
+
+    private volatile AsyncAppendable result;
+
+    private volatile Throwable failure;
 
     /**
      *
@@ -44,6 +67,8 @@ class AsyncAppendable implements Appendable {
     AsyncAppendable(Appendable parent) {
         this.parent = parent;
         this.buffer = new StringBuilder();
+        this.processing = parent instanceof AsyncAppendable
+                ? ((AsyncAppendable) parent).processing : new AsyncProcessing();
     }
 
     @Override
@@ -66,70 +91,273 @@ class AsyncAppendable implements Appendable {
     }
 
     /**
-     * Append the result to the parent.
+     * Submit the task whose result precedes the contents of this appendable.
+     * The task must return the last appendable used during its execution.
+     *
+     * @param executor
+     * @param task
+     * @param maxConcurrentTasks
+     *            The max number of tasks executed concurrently within a single
+     *            rendering, zero and negative values mean no limit
+     */
+    void start(ExecutorService executor, Callable<AsyncAppendable> task,
+            int maxConcurrentTasks) {
+        started = true;
+        processing.execute(executor, new Task(task), maxConcurrentTasks);
+    }
+
+    /**
+     * Append the result to the original appendable.
      */
     private void flush() {
+        Appendable root = parent;
+        while (root instanceof AsyncAppendable) {
+            root = ((AsyncAppendable) root).parent;
+        }
         try {
-            parent.append(future.get(60, TimeUnit.SECONDS).collect(this));
-            parent.append(buffer);
-            if (parent instanceof AsyncAppendable) {
-                ((AsyncAppendable) parent).flush();
+            write(this, root, root);
+        } catch (IOException e) {
+            throw new MustacheException(MustacheProblem.RENDER_IO_ERROR, e);
+        }
+    }
+
+    /**
+     *
+     * @param tail
+     *            The last appendable of the chain
+     * @param head
+     *            The appendable preceding the first appendable of the chain
+     * @param out
+     *            The original appendable
+     * @throws IOException
+     */
+    private static void write(AsyncAppendable tail, Appendable head,
+            Appendable out) throws IOException {
+        // Note that the chain is linked backwards
+        List<AsyncAppendable> chain = new ArrayList<AsyncAppendable>();
+        Appendable current = tail;
+        while (current != head) {
+            AsyncAppendable async = (AsyncAppendable) current;
+            chain.add(async);
+            current = async.parent;
+        }
+        for (int i = chain.size() - 1; i >= 0; i--) {
+            AsyncAppendable async = chain.get(i);
+            if (async.started) {
+                if (async.failure != null) {
+                    throw new MustacheException(
+                            MustacheProblem.RENDER_ASYNC_PROCESSING_ERROR,
+                            async.failure);
+                }
+                write(async.result, async, out);
             }
-        } catch (Exception e) {
-            throw new MustacheException(
-                    MustacheProblem.RENDER_ASYNC_PROCESSING_ERROR, e);
+            out.append(async.buffer);
         }
     }
 
     /**
+     * Wait for all the tasks to finish and append the result to the original
+     * appendable.
      *
-     * @param latch
-     *            The top-level async appendable
-     * @return the collected output
+     * @param appendable
+     * @param timeout
+     *            The timeout in seconds, zero and negative values mean no
+     *            timeout
      */
-    private CharSequence collect(AsyncAppendable latch) {
+    static void flushIfNeeded(Appendable appendable, long timeout) {
+        if (appendable instanceof AsyncAppendable) {
+            AsyncAppendable async = (AsyncAppendable) appendable;
+            async.processing.await(timeout);
+            async.flush();
+        }
+    }
 
-        if (parent.equals(latch) && future == null) {
-            return buffer;
+    /**
+     * Append the result to the original appendable once all the tasks are
+     * finished. The current thread is not blocked. The callback is notified
+     * either in the current thread or in the thread which finished the last
+     * pending task.
+     *
+     * @param appendable
+     * @param callback
+     */
+    static void flushIfNeeded(Appendable appendable,
+            final RenderingCallback callback) {
+        if (appendable instanceof AsyncAppendable) {
+            final AsyncAppendable async = (AsyncAppendable) appendable;
+            async.processing.mainFinished(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        async.flush();
+                    } catch (Throwable e) {
+                        callback.failed(e);
+                        return;
+                    }
+                    callback.completed();
+                }
+            });
+        } else {
+            callback.completed();
         }
+    }
+
+    /**
+     *
+     * @author Martin Kouba
+     */
+    private final class Task implements Runnable {
 
-        StringBuilder ret = null;
+        private final Callable<AsyncAppendable> callable;
 
-        if (parent instanceof AsyncAppendable && !parent.equals(latch)) {
-            ret = new StringBuilder();
-            ret.append(((AsyncAppendable) parent).collect(latch));
+        Task(Callable<AsyncAppendable> callable) {
+            this.callable = callable;
         }
 
-        if (future != null) {
+        @Override
+        public void run() {
             try {
-                if (ret == null) {
-                    ret = new StringBuilder();
+                result = callable.call();
+            } catch (Throwable e) {
+                failure = e;
+            }
+        }
+
+        void rejected(RejectedExecutionException e) {
+            failure = e;
+        }
+
+    }
+
+    /**
+     * Tracks the pending tasks of a single rendering. The main rendering
+     * thread is also considered a pending task until
+     * {@link #mainFinished(Runnable)} or {@link #await(long)} is called.
+     *
+     * If the number of concurrently executed tasks is limited the tasks over
+     * the limit are queued and submitted once a running task is finished. The
+     * rendering thread is never blocked.
+     *
+     * @author Martin Kouba
+     */
+    static final class AsyncProcessing {
+
+        private final AtomicInteger pending;
+
+        private final CountDownLatch latch;
+
+        private volatile Runnable callback;
+
+        // Guarded by this
+        private int running;
+
+        // Guarded by this, lazily initialized
+        private Queue<Task> queue;
+
+        AsyncProcessing() {
+            this.pending = new AtomicInteger(1);
+            this.latch = new CountDownLatch(1);
+        }
+
+        void execute(final ExecutorService executor, Task task,
+                final int maxConcurrentTasks) {
+            pending.incrementAndGet();
+            if (maxConcurrentTasks > 0) {
+                synchronized (this) {
+                    if (running >= maxConcurrentTasks) {
+                        if (queue == null) {
+                            queue = new ArrayDeque<Task>();
+                        }
+                        queue.add(task);
+                        return;
+                    }
+                    running++;
+                }
+            }
+            try {
+                submit(executor, task, maxConcurrentTasks);
+            } catch (RejectedExecutionException e) {
+                taskFinished(executor, maxConcurrentTasks);
+                throw new MustacheException(
+                        MustacheProblem.RENDER_ASYNC_PROCESSING_ERROR, e);
+            }
+        }
+
+        private void submit(final ExecutorService executor, final Task task,
+                final int maxConcurrentTasks) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        task.run();
+                    } finally {
+                        taskFinished(executor, maxConcurrentTasks);
+                    }
                 }
-                AsyncAppendable result = future.get(60, TimeUnit.SECONDS);
-                if (result.future != null) {
-                    ret.append(result.collect(this));
+            });
+        }
+
+        private void taskFinished(ExecutorService executor,
+                int maxConcurrentTasks) {
+            if (maxConcurrentTasks > 0) {
+                Task next;
+                synchronized (this) {
+                    next = queue != null ? queue.poll() : null;
+                    if (next == null) {
+                        running--;
+                    }
+                }
+                if (next != null) {
+                    try {
+                        submit(executor, next, maxConcurrentTasks);
+                    } catch (RejectedExecutionException e) {
+                        next.rejected(e);
+                        taskFinished(executor, maxConcurrentTasks);
+                    }
+                }
+            }
+            taskFinished();
+        }
+
+        private void taskFinished() {
+            if (pending.decrementAndGet() == 0) {
+                finished();
+            }
+        }
+
+        void mainFinished(Runnable callback) {
+            this.callback = callback;
+            taskFinished();
+        }
+
+        void await(long timeout) {
+            mainFinished(null);
+            try {
+                if (timeout > 0) {
+                    if (!latch.await(timeout, TimeUnit.SECONDS)) {
+                        throw new MustacheException(
+                                MustacheProblem.RENDER_ASYNC_PROCESSING_ERROR,
+                                "Asynchronous processing not finished within %s seconds",
+                                timeout);
+                    }
                 } else {
-                    ret.append(result.buffer);
-                    ret.append(buffer);
+                    latch.await();
                 }
-                return ret;
-            } catch (Exception e) {
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
                 throw new MustacheException(
                         MustacheProblem.RENDER_ASYNC_PROCESSING_ERROR, e);
             }
-        } else {
-            return ret != null ? ret.append(buffer) : buffer;
         }
-    }
 
-    void setFuture(Future<AsyncAppendable> future) {
-        this.future = future;
-    }
-
-    static void flushIfNeeded(Appendable appendable) {
-        if (appendable instanceof AsyncAppendable) {
-            ((AsyncAppendable) appendable).flush();
+        private void finished() {
+            latch.countDown();
+            Runnable callback = this.callback;
+            if (callback != null) {
+                callback.run();
+            }
         }
+
     }
 
 }
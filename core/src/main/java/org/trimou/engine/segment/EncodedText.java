@@ -0,0 +1,67 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.engine.segment;
+
+import java.nio.charset.Charset;
+
+/**
+ * Static text encoded with a specific charset. Immutable.
+ *
+ * @author Martin Kouba
+ * @see EncodingAppendable
+ */
+final class EncodedText {
+
+    private final Charset charset;
+
+    private final byte[] bytes;
+
+    /**
+     *
+     * @param text
+     * @param charset
+     */
+    EncodedText(String text, Charset charset) {
+        this.charset = charset;
+        this.bytes = text.getBytes(charset);
+    }
+
+    boolean isEncodedWith(Charset charset) {
+        return this.charset.equals(charset);
+    }
+
+    byte[] getBytes() {
+        return bytes;
+    }
+
+    /**
+     *
+     * @param cached
+     *            The cached encoded text, may be <code>null</code>
+     * @param text
+     * @param charset
+     * @return the cached encoded text if encoded with the given charset, a new
+     *         encoded text otherwise
+     */
+    static EncodedText encodeIfNeeded(EncodedText cached, String text,
+            Charset charset) {
+        if (cached != null && cached.isEncodedWith(charset)) {
+            return cached;
+        }
+        return new EncodedText(text, charset);
+    }
+
+}
@@ -0,0 +1,339 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.engine.segment;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Set;
+
+import org.trimou.annotations.Internal;
+import org.trimou.util.Checker;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * An appendable which encodes the appended characters with the given charset
+ * and writes the bytes to an {@link OutputStream} or a
+ * {@link WritableByteChannel}. Static segments may write their pre-encoded
+ * bytes directly, see also {@link #write(byte[])}. This construct is not
+ * thread-safe.
+ *
+ * Malformed input and unmappable characters are replaced - the behavior is
+ * consistent with {@link java.io.OutputStreamWriter} and
+ * {@link String#getBytes(Charset)}.
+ *
+ * @author Martin Kouba
+ * @see org.trimou.Mustache#render(OutputStream, Object, Charset)
+ */
+@Internal
+public final class EncodingAppendable implements Appendable {
+
+    static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    /**
+     * Multi-byte charsets whose encoded sequences may be safely concatenated,
+     * i.e. no byte order mark and no shift states
+     */
+    private static final Set<Charset> STATELESS_CHARSETS = ImmutableSet.of(
+            Charsets.UTF_8, Charsets.UTF_16BE, Charsets.UTF_16LE);
+
+    private final OutputStream outputStream;
+
+    private final WritableByteChannel channel;
+
+    private final Charset charset;
+
+    private final CharsetEncoder encoder;
+
+    private final ByteBuffer buffer;
+
+    private final CharBuffer chars;
+
+    private final boolean preEncodingSupported;
+
+    private final int flushThreshold;
+
+    private int writtenSinceFlush;
+
+    private long written;
+
+    private char highSurrogate;
+
+    private boolean hasHighSurrogate;
+
+    /**
+     *
+     * @param outputStream
+     * @param charset
+     */
+    public EncodingAppendable(OutputStream outputStream, Charset charset) {
+        this(outputStream, charset, 0);
+    }
+
+    /**
+     *
+     * @param outputStream
+     * @param charset
+     * @param flushThreshold
+     *            The number of bytes after which the output stream is flushed
+     *            automatically, zero and negative values mean no automatic
+     *            flushing
+     */
+    public EncodingAppendable(OutputStream outputStream, Charset charset,
+            int flushThreshold) {
+        this(outputStream, null, charset, flushThreshold);
+        Checker.checkArgumentNotNull(outputStream);
+    }
+
+    /**
+     *
+     * @param channel
+     * @param charset
+     */
+    public EncodingAppendable(WritableByteChannel channel, Charset charset) {
+        this(channel, charset, 0);
+    }
+
+    /**
+     *
+     * @param channel
+     * @param charset
+     * @param flushThreshold
+     *            The number of bytes after which the buffered bytes are written
+     *            to the channel, zero and negative values mean no automatic
+     *            flushing
+     */
+    public EncodingAppendable(WritableByteChannel channel, Charset charset,
+            int flushThreshold) {
+        this(null, channel, charset, flushThreshold);
+        Checker.checkArgumentNotNull(channel);
+    }
+
+    private EncodingAppendable(OutputStream outputStream,
+            WritableByteChannel channel, Charset charset, int flushThreshold) {
+        Checker.checkArgumentNotNull(charset);
+        this.outputStream = outputStream;
+        this.channel = channel;
+        this.charset = charset;
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.buffer = ByteBuffer.allocate(DEFAULT_BUFFER_SIZE);
+        this.chars = CharBuffer.allocate(2);
+        this.preEncodingSupported = STATELESS_CHARSETS.contains(charset)
+                || encoder.maxBytesPerChar() == 1.0f;
+        this.flushThreshold = flushThreshold;
+        this.writtenSinceFlush = 0;
+    }
+
+    /**
+     *
+     * @return the charset used to encode the characters
+     */
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * Pre-encoded bytes may only be written if the charset is stateless, e.g.
+     * <code>UTF-16</code> writes a byte order mark at the beginning of each
+     * encoded sequence.
+     *
+     * @return <code>true</code> if pre-encoded bytes may be written,
+     *         <code>false</code> otherwise
+     * @see #write(byte[])
+     */
+    public boolean isPreEncodingSupported() {
+        return preEncodingSupported;
+    }
+
+    @Override
+    public Appendable append(CharSequence csq) throws IOException {
+        if (csq == null) {
+            csq = "null";
+        }
+        return append(csq, 0, csq.length());
+    }
+
+    @Override
+    public Appendable append(CharSequence csq, int start, int end)
+            throws IOException {
+        if (csq == null) {
+            csq = "null";
+        }
+        if (start == end) {
+            return this;
+        }
+        CharBuffer input = CharBuffer.wrap(csq, start, end);
+        if (hasHighSurrogate) {
+            // Complete the surrogate pair split between two append operations
+            hasHighSurrogate = false;
+            chars.clear();
+            chars.put(highSurrogate).put(input.get());
+            chars.flip();
+            encode(chars);
+        }
+        encode(input);
+        flushIfNeeded();
+        return this;
+    }
+
+    @Override
+    public Appendable append(char c) throws IOException {
+        chars.clear();
+        if (hasHighSurrogate) {
+            hasHighSurrogate = false;
+            chars.put(highSurrogate);
+        }
+        chars.put(c);
+        chars.flip();
+        encode(chars);
+        flushIfNeeded();
+        return this;
+    }
+
+    /**
+     * Write the bytes which were already encoded with the charset of this
+     * appendable.
+     *
+     * @param bytes
+     * @throws IOException
+     * @see #getCharset()
+     * @see #isPreEncodingSupported()
+     */
+    public void write(byte[] bytes) throws IOException {
+        if (hasHighSurrogate) {
+            finishEncoding();
+        }
+        if (bytes.length > buffer.remaining()) {
+            writeBuffer();
+            if (bytes.length > buffer.capacity()) {
+                writeBytes(ByteBuffer.wrap(bytes));
+                flushIfNeeded();
+                return;
+            }
+        }
+        buffer.put(bytes);
+        flushIfNeeded();
+    }
+
+    /**
+     * Encode all the remaining characters and write all the buffered bytes.
+     * Note that the underlying output stream/channel is neither flushed nor
+     * closed.
+     *
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        finishEncoding();
+        writeBuffer();
+    }
+
+    /**
+     * Write all the buffered bytes and flush the underlying output stream.
+     * Unlike {@link #flush()} the rendering may continue afterwards -
+     * characters which cannot be encoded yet (e.g. a high surrogate) remain
+     * buffered.
+     *
+     * @throws IOException
+     */
+    public void flushOutput() throws IOException {
+        writeBuffer();
+        if (outputStream != null) {
+            outputStream.flush();
+        }
+        writtenSinceFlush = 0;
+    }
+
+    private void encode(CharBuffer input) throws IOException {
+        while (true) {
+            CoderResult result = encoder.encode(input, buffer, false);
+            if (result.isOverflow()) {
+                writeBuffer();
+            } else if (result.isUnderflow()) {
+                break;
+            } else {
+                result.throwException();
+            }
+        }
+        if (input.hasRemaining()) {
+            // Only a trailing high surrogate may remain
+            highSurrogate = input.get();
+            hasHighSurrogate = true;
+        }
+    }
+
+    private void finishEncoding() throws IOException {
+        chars.clear();
+        if (hasHighSurrogate) {
+            hasHighSurrogate = false;
+            chars.put(highSurrogate);
+        }
+        chars.flip();
+        while (encoder.encode(chars, buffer, true).isOverflow()) {
+            writeBuffer();
+        }
+        while (encoder.flush(buffer).isOverflow()) {
+            writeBuffer();
+        }
+        encoder.reset();
+    }
+
+    private void flushIfNeeded() throws IOException {
+        if (flushThreshold > 0
+                && (writtenSinceFlush + buffer.position()) >= flushThreshold) {
+            flushOutput();
+        }
+    }
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        writeBytes(buffer);
+        buffer.clear();
+    }
+
+    /**
+     *
+     * @return the number of bytes encoded so far, including the buffered
+     *         bytes
+     */
+    long getEncodedLength() {
+        return written + buffer.position();
+    }
+
+    private void writeBytes(ByteBuffer bytes) throws IOException {
+        writtenSinceFlush += bytes.remaining();
+        written += bytes.remaining();
+        if (outputStream != null) {
+            outputStream.write(bytes.array(),
+                    bytes.arrayOffset() + bytes.position(), bytes.remaining());
+            bytes.position(bytes.limit());
+        } else {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.engine.segment;
+
+import java.io.Flushable;
+import java.io.IOException;
+
+import org.trimou.annotations.Internal;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Flushes the delegate as soon as at least the given number of characters is
+ * appended since the last flush. This construct is not thread-safe.
+ *
+ * @author Martin Kouba
+ * @see org.trimou.engine.config.EngineConfigurationKey#OUTPUT_FLUSH_THRESHOLD
+ */
+@Internal
+public final class FlushingAppendable implements Appendable, Flushable {
+
+    private final Appendable delegate;
+
+    private final Flushable flushable;
+
+    private final int flushThreshold;
+
+    private int appendedSinceFlush;
+
+    /**
+     *
+     * @param delegate
+     *            Must also implement {@link Flushable}
+     * @param flushThreshold
+     */
+    public FlushingAppendable(Appendable delegate, int flushThreshold) {
+        Preconditions.checkArgument(delegate instanceof Flushable,
+                "The delegate must implement java.io.Flushable");
+        Preconditions.checkArgument(flushThreshold > 0,
+                "The flush threshold must be a positive value");
+        this.delegate = delegate;
+        this.flushable = (Flushable) delegate;
+        this.flushThreshold = flushThreshold;
+        this.appendedSinceFlush = 0;
+    }
+
+    @Override
+    public Appendable append(CharSequence csq) throws IOException {
+        delegate.append(csq);
+        appended(csq != null ? csq.length() : 4);
+        return this;
+    }
+
+    @Override
+    public Appendable append(CharSequence csq, int start, int end)
+            throws IOException {
+        delegate.append(csq, start, end);
+        appended(end - start);
+        return this;
+    }
+
+    @Override
+    public Appendable append(char c) throws IOException {
+        delegate.append(c);
+        appended(1);
+        return this;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushable.flush();
+        appendedSinceFlush = 0;
+    }
+
+    private void appended(int length) throws IOException {
+        appendedSinceFlush += length;
+        if (appendedSinceFlush >= flushThreshold) {
+            flush();
+        }
+    }
+
+}
@@ -36,4 +36,11 @@ interface HelperAwareSegment extends Segment {
      */
     Appendable fn(Appendable appendable, ExecutionContext context);
 
+    /**
+     *
+     * @return the helper handler or <code>null</code> if no helper is
+     *         associated
+     */
+    HelperExecutionHandler getHelperHandler();
+
 }
@@ -15,6 +15,7 @@
  */
 package org.trimou.engine.segment;
 
+import java.io.Flushable;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -25,21 +26,24 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.trimou.engine.MustacheEngine;
 import org.trimou.engine.MustacheTagInfo;
+import org.trimou.engine.config.EngineConfigurationKey;
 import org.trimou.engine.context.ExecutionContext;
+import org.trimou.engine.context.ExecutionContexts;
 import org.trimou.engine.context.ValueWrapper;
 import org.trimou.engine.parser.Template;
 import org.trimou.exception.MustacheException;
 import org.trimou.exception.MustacheProblem;
+import org.trimou.handlebars.EmbedHelper;
 import org.trimou.handlebars.Helper;
 import org.trimou.handlebars.HelperDefinition;
 import org.trimou.handlebars.HelperDefinition.ValuePlaceholder;
 import org.trimou.handlebars.HelperValidator;
+import org.trimou.handlebars.IncludeHelper;
 import org.trimou.handlebars.Options;
 import org.trimou.util.Checker;
 import org.trimou.util.Strings;
@@ -138,11 +142,30 @@ class HelperExecutionHandler {
         }
     }
 
+    /**
+     * The template id is only known at compile time if specified as a string
+     * literal, e.g. <code>{{include 'foo'}}</code>.
+     *
+     * @return the id of the template referenced by the helper or
+     *         <code>null</code>
+     * @see IncludeHelper
+     * @see EmbedHelper
+     */
+    String getReferencedTemplateId() {
+        if ((helper instanceof IncludeHelper || helper instanceof EmbedHelper)
+                && !optionsBuilder.parameters.isEmpty()
+                && optionsBuilder.parameters.get(0) instanceof String) {
+            return (String) optionsBuilder.parameters.get(0);
+        }
+        return null;
+    }
+
     private static Object getLiteralOrPlaceholder(String value,
             MustacheEngine engine, HelperAwareSegment segment) {
         Object literal = engine.getConfiguration().getLiteralSupport()
                 .getLiteral(value, segment.getTagInfo());
-        return literal != null ? literal : new DefaultValuePlaceholder(value);
+        return literal != null ? literal : new DefaultValuePlaceholder(
+                new ValueProvider(value, engine.getConfiguration()));
     }
 
     private static class OptionsBuilder implements HelperDefinition {
@@ -161,6 +184,8 @@ class HelperExecutionHandler {
         // true if not placeholder found, also if hash map is empty
         private final boolean isHashValuePlaceholderFound;
 
+        private final boolean outputFlushEnabled;
+
         private OptionsBuilder(List<Object> parameters,
                 Map<String, Object> hash, HelperAwareSegment segment,
                 MustacheEngine engine) {
@@ -170,6 +195,9 @@ class HelperExecutionHandler {
             this.engine = engine;
             this.isParamValuePlaceholderFound = initParamValuePlaceholderFound(parameters);
             this.isHashValuePlaceholderFound = initHashValuePlaceholderFound(hash);
+            this.outputFlushEnabled = engine.getConfiguration()
+                    .getIntegerPropertyValue(
+                            EngineConfigurationKey.OUTPUT_FLUSH_THRESHOLD) > 0;
         }
 
         @Override
@@ -199,7 +227,10 @@ class HelperExecutionHandler {
         public DefaultOptions build(Appendable appendable,
                 ExecutionContext executionContext) {
 
-            List<ValueWrapper> valueWrappers = new ArrayList<ValueWrapper>();
+            // No need to allocate the list if there are no placeholders
+            List<ValueWrapper> valueWrappers = isParamValuePlaceholderFound
+                    || isHashValuePlaceholderFound ? new ArrayList<ValueWrapper>()
+                    : null;
             List<Object> finalParams;
             Map<String, Object> finalHash;
 
@@ -254,14 +285,20 @@ class HelperExecutionHandler {
             }
 
             return new DefaultOptions(appendable, executionContext, segment,
-                    finalParams, finalHash, valueWrappers, engine);
+                    finalParams, finalHash, valueWrappers, engine,
+                    outputFlushEnabled);
         }
 
         private Object resolveValue(Object value,
                 List<ValueWrapper> valueWrappers,
                 ExecutionContext executionContext) {
 
-            if (value instanceof ValuePlaceholder) {
+            if (value instanceof DefaultValuePlaceholder) {
+                ValueWrapper wrapper = ((DefaultValuePlaceholder) value).provider
+                        .get(executionContext);
+                valueWrappers.add(wrapper);
+                return wrapper.get();
+            } else if (value instanceof ValuePlaceholder) {
                 ValueWrapper wrapper = executionContext
                         .getValue(((ValuePlaceholder) value).getName());
                 valueWrappers.add(wrapper);
@@ -302,7 +339,7 @@ class HelperExecutionHandler {
         private static final Logger logger = LoggerFactory
                 .getLogger(DefaultOptions.class);
 
-        protected final List<ValueWrapper> valueWrappers;
+        protected List<ValueWrapper> valueWrappers;
 
         protected Appendable appendable;
 
@@ -318,6 +355,8 @@ class HelperExecutionHandler {
 
         private final Map<String, Object> hash;
 
+        private final boolean outputFlushEnabled;
+
         /**
          *
          * @param appendable
@@ -326,12 +365,15 @@ class HelperExecutionHandler {
          * @param parameters
          * @param hash
          * @param valueWrappers
+         *            May be <code>null</code>
          * @param engine
+         * @param outputFlushEnabled
          */
         DefaultOptions(Appendable appendable,
                 ExecutionContext executionContext, HelperAwareSegment segment,
                 List<Object> parameters, Map<String, Object> hash,
-                List<ValueWrapper> valueWrappers, MustacheEngine engine) {
+                List<ValueWrapper> valueWrappers, MustacheEngine engine,
+                boolean outputFlushEnabled) {
             this.appendable = appendable;
             this.valueWrappers = valueWrappers;
             this.executionContext = executionContext;
@@ -341,6 +383,7 @@ class HelperExecutionHandler {
             this.parameters = parameters;
             this.hash = hash;
             this.engine = engine;
+            this.outputFlushEnabled = outputFlushEnabled;
         }
 
         @Override
@@ -367,6 +410,26 @@ class HelperExecutionHandler {
             appendable = segment.fn(appendable, executionContext);
         }
 
+        @Override
+        public void fnAsync() {
+            if (!(segment instanceof ContainerSegment)) {
+                return;
+            }
+            for (final Segment child : (ContainerSegment) segment) {
+                if (child.getType().getTagType() == null) {
+                    // Static text is not worth the async execution
+                    appendable = child.execute(appendable, executionContext);
+                } else {
+                    executeAsync(new HelperExecutable() {
+                        @Override
+                        public void execute(Options asyncOptions) {
+                            ((DefaultOptions) asyncOptions).execute(child);
+                        }
+                    });
+                }
+            }
+        }
+
         @Override
         public void partial(String templateId) {
             partial(templateId, appendable);
@@ -398,6 +461,9 @@ class HelperExecutionHandler {
         @Override
         public Object getValue(String key) {
             ValueWrapper wrapper = executionContext.getValue(key);
+            if (valueWrappers == null) {
+                valueWrappers = new ArrayList<ValueWrapper>();
+            }
             valueWrappers.add(wrapper);
             return wrapper.get();
         }
@@ -409,34 +475,43 @@ class HelperExecutionHandler {
 
         @Override
         public void executeAsync(final HelperExecutable executable) {
+            // The output written so far is final - flush it if needed
+            flushIfNeeded();
             // For async execution we need to wrap the original appendable
             final AsyncAppendable asyncAppendable = new AsyncAppendable(
                     appendable);
 
-            // Now submit the executable and get the future
+            // Now submit the executable
             ExecutorService executor = engine.getConfiguration()
                     .geExecutorService();
             if (executor == null) {
                 throw new MustacheException(
                         MustacheProblem.RENDER_ASYNC_PROCESSING_ERROR,
-                        "ExecutorService must be set in order to submit an asynchronous task");
+                        "ExecutorService must be set (or virtual threads enabled and supported) in order to submit an asynchronous task");
             }
-            Future<AsyncAppendable> future = executor
-                    .submit(new Callable<AsyncAppendable>() {
-                        @Override
-                        public AsyncAppendable call() throws Exception {
-                            // We need a separate appendable for the async
-                            // execution
-                            DefaultOptions asyncOptions = new DefaultOptions(
-                                    new AsyncAppendable(asyncAppendable),
-                                    executionContext, segment, parameters,
-                                    hash, new ArrayList<ValueWrapper>(), engine);
-                            executable.execute(asyncOptions);
-                            return (AsyncAppendable) asyncOptions
-                                    .getAppendable();
-                        }
-                    });
-            asyncAppendable.setFuture(future);
+            // The async task must not share the value wrapper pool
+            final ExecutionContext asyncExecutionContext = ExecutionContexts
+                    .newAsyncExecutionContext(executionContext);
+            asyncAppendable.start(executor, new Callable<AsyncAppendable>() {
+                @Override
+                public AsyncAppendable call() throws Exception {
+                    // We need a separate appendable for the async
+                    // execution
+                    DefaultOptions asyncOptions = new DefaultOptions(
+                            new AsyncAppendable(asyncAppendable),
+                            asyncExecutionContext, segment,
+                            parameters, hash, null, engine,
+                            outputFlushEnabled);
+                    try {
+                        executable.execute(asyncOptions);
+                        return (AsyncAppendable) asyncOptions
+                                .getAppendable();
+                    } finally {
+                        asyncOptions.releaseValueWrappers();
+                    }
+                }
+            }, engine.getConfiguration().getIntegerPropertyValue(
+                    EngineConfigurationKey.ASYNC_MAX_CONCURRENT_TASKS));
             this.appendable = asyncAppendable;
         }
 
@@ -498,14 +573,7 @@ class HelperExecutionHandler {
         }
 
         void release() {
-            int wrappersSize = valueWrappers.size();
-            if (wrappersSize == 1) {
-                valueWrappers.get(0).release();
-            } else if (wrappersSize > 1) {
-                for (ValueWrapper wrapper : valueWrappers) {
-                    wrapper.release();
-                }
-            }
+            releaseValueWrappers();
             if (pushed > 0) {
                 logger.info(
                         "{} remaining objects pushed on the context stack will be automatically garbage collected [helperName: {}, template: {}]",
@@ -519,18 +587,52 @@ class HelperExecutionHandler {
             }
         }
 
+        private void flushIfNeeded() {
+            if (!outputFlushEnabled) {
+                return;
+            }
+            try {
+                if (appendable instanceof EncodingAppendable) {
+                    ((EncodingAppendable) appendable).flushOutput();
+                } else if (appendable instanceof Flushable) {
+                    ((Flushable) appendable).flush();
+                }
+            } catch (IOException e) {
+                throw new MustacheException(MustacheProblem.RENDER_IO_ERROR,
+                        e);
+            }
+        }
+
+        private void execute(Segment segment) {
+            appendable = segment.execute(appendable, executionContext);
+        }
+
+        void releaseValueWrappers() {
+            if (valueWrappers == null) {
+                return;
+            }
+            int wrappersSize = valueWrappers.size();
+            if (wrappersSize == 1) {
+                valueWrappers.get(0).release();
+            } else if (wrappersSize > 1) {
+                for (ValueWrapper wrapper : valueWrappers) {
+                    wrapper.release();
+                }
+            }
+        }
+
     }
 
     private static class DefaultValuePlaceholder implements ValuePlaceholder {
 
-        private final String name;
+        private final ValueProvider provider;
 
-        public DefaultValuePlaceholder(String name) {
-            this.name = name;
+        public DefaultValuePlaceholder(ValueProvider provider) {
+            this.provider = provider;
         }
 
         public String getName() {
-            return name;
+            return provider.getKey();
         }
 
     }
@@ -27,10 +27,10 @@ public final class ImmutableIterationMeta implements Mapper {
 
     private final String alias;
 
-    private final int size;
-
     private final int index;
 
+    private final boolean hasNext;
+
     private final String valueAlias;
 
     private final Object value;
@@ -55,10 +55,36 @@ public final class ImmutableIterationMeta implements Mapper {
      */
     public ImmutableIterationMeta(String alias, int size, int index,
             String valueAlias, Object value) {
-        super();
+        this(alias, index, index < size, valueAlias, value);
+    }
+
+    /**
+     * This constructor does not require the size of the iteration to be known
+     * in advance, i.e. it's sufficient to look ahead one element.
+     *
+     * @param alias
+     * @param index
+     * @param hasNext
+     */
+    public ImmutableIterationMeta(String alias, int index, boolean hasNext) {
+        this(alias, index, hasNext, null, null);
+    }
+
+    /**
+     * This constructor does not require the size of the iteration to be known
+     * in advance, i.e. it's sufficient to look ahead one element.
+     *
+     * @param alias
+     * @param index
+     * @param hasNext
+     * @param valueAlias
+     * @param value
+     */
+    public ImmutableIterationMeta(String alias, int index, boolean hasNext,
+            String valueAlias, Object value) {
         this.alias = alias;
-        this.size = size;
         this.index = index;
+        this.hasNext = hasNext;
         this.valueAlias = valueAlias;
         this.value = value;
     }
@@ -90,7 +116,7 @@ public final class ImmutableIterationMeta implements Mapper {
      *         <code>false</code> otherwise
      */
     public boolean hasNext() {
-        return index < size;
+        return hasNext;
     }
 
     /**
@@ -108,7 +134,7 @@ public final class ImmutableIterationMeta implements Mapper {
      *         otherwise
      */
     public boolean isLast() {
-        return index == size;
+        return !hasNext;
     }
 
     /**
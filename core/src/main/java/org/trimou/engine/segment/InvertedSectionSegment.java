@@ -18,6 +18,7 @@ package org.trimou.engine.segment;
 import java.lang.reflect.Array;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 
 import org.trimou.annotations.Internal;
@@ -30,8 +31,8 @@ import org.trimou.engine.context.ValueWrapper;
  * <p>
  * The content is rendered if there is no object found in the context, or is a
  * {@link Boolean} of value <code>false</code>, or is an empty
- * {@link Collections}, or is an {@link Iterable} with no elements, or is an
- * empty array.
+ * {@link Collections}, or is an {@link Iterable} or {@link Iterator} with no
+ * elements, or is an empty array.
  * </p>
  *
  * @author Martin Kouba
@@ -39,9 +40,12 @@ import org.trimou.engine.context.ValueWrapper;
 @Internal
 public class InvertedSectionSegment extends AbstractSectionSegment {
 
+    private final ValueProvider provider;
+
     public InvertedSectionSegment(String text, Origin origin,
             List<Segment> segments) {
         super(text, origin, segments);
+        this.provider = new ValueProvider(text, getEngineConfiguration());
     }
 
     public SegmentType getType() {
@@ -49,7 +53,7 @@ public class InvertedSectionSegment extends AbstractSectionSegment {
     }
 
     public Appendable execute(Appendable appendable, ExecutionContext context) {
-        ValueWrapper value = context.getValue(getText());
+        ValueWrapper value = provider.get(context);
         try {
             if (value.isNull() || process(value.get())) {
                 return super.execute(appendable, context);
@@ -69,6 +73,8 @@ public class InvertedSectionSegment extends AbstractSectionSegment {
             return ((Collection) value).isEmpty();
         } else if (value instanceof Iterable) {
             return !((Iterable) value).iterator().hasNext();
+        } else if (value instanceof Iterator) {
+            return !((Iterator) value).hasNext();
         } else if (value.getClass().isArray()) {
             return Array.getLength(value) == 0;
         }
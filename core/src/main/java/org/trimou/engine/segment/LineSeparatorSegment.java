@@ -16,7 +16,6 @@
 package org.trimou.engine.segment;
 
 import org.trimou.annotations.Internal;
-import org.trimou.engine.context.ExecutionContext;
 
 /**
  * Segment representing a line separator.
@@ -24,7 +23,7 @@ import org.trimou.engine.context.ExecutionContext;
  * @author Martin Kouba
  */
 @Internal
-public class LineSeparatorSegment extends AbstractSegment {
+public class LineSeparatorSegment extends AbstractStaticSegment {
 
     public LineSeparatorSegment(String text, Origin origin) {
         super(text, origin);
@@ -35,15 +34,4 @@ public class LineSeparatorSegment extends AbstractSegment {
         return SegmentType.LINE_SEPARATOR;
     }
 
-    @Override
-    public Appendable execute(Appendable appendable, ExecutionContext context) {
-        append(appendable, getText());
-        return appendable;
-    }
-
-    @Override
-    public String getLiteralBlock() {
-        return getText();
-    }
-
 }
@@ -41,7 +41,7 @@ public class PartialSegment extends AbstractSegment {
      */
     private final AtomicReference<Template> cachedPartialTemplate;
 
-    private volatile List<List<Segment>> cachedPartialLines;
+    private volatile PartialLines cachedPartialLines;
 
     /**
      *
@@ -100,14 +100,19 @@ public class PartialSegment extends AbstractSegment {
         List<List<Segment>> partialLines;
 
         if (cachedPartialTemplate != null) {
-            if (cachedPartialLines == null) {
+            // The partial template may be replaced if invalidated
+            PartialLines cached = cachedPartialLines;
+            if (cached == null || cached.template != partialTemplate) {
                 synchronized (this) {
-                    if (cachedPartialLines == null) {
-                        cachedPartialLines = getPartialLines(partialTemplate);
+                    cached = cachedPartialLines;
+                    if (cached == null || cached.template != partialTemplate) {
+                        cached = new PartialLines(partialTemplate,
+                                getPartialLines(partialTemplate));
+                        cachedPartialLines = cached;
                     }
                 }
             }
-            partialLines = cachedPartialLines;
+            partialLines = cached.lines;
         } else {
             partialLines = getPartialLines(partialTemplate);
         }
@@ -129,4 +134,17 @@ public class PartialSegment extends AbstractSegment {
         return partialLines;
     }
 
+    private static final class PartialLines {
+
+        private final Template template;
+
+        private final List<List<Segment>> lines;
+
+        PartialLines(Template template, List<List<Segment>> lines) {
+            this.template = template;
+            this.lines = lines;
+        }
+
+    }
+
 }
@@ -16,8 +16,11 @@
 package org.trimou.engine.segment;
 
 import java.util.List;
+import java.util.Set;
 
+import org.trimou.Mustache.RenderingCallback;
 import org.trimou.annotations.Internal;
+import org.trimou.engine.config.EngineConfigurationKey;
 import org.trimou.engine.context.ExecutionContext;
 
 /**
@@ -42,14 +45,51 @@ public class RootSegment extends AbstractContainerSegment {
         return getContentLiteralBlock();
     }
 
+    /**
+     *
+     * @return the ids of all the templates referenced by this template
+     * @see Segments#readTemplateDependencies(ContainerSegment)
+     */
+    public Set<String> getTemplateDependencies() {
+        return Segments.readTemplateDependencies(this);
+    }
+
     @Override
     public Appendable execute(Appendable appendable, ExecutionContext context) {
-        return super.execute(appendable,
+        appendable = super.execute(appendable,
                 context.setTemplateInvocation(getTemplate()));
+        if (getProfiler() != null) {
+            getProfiler().renderingExecuted();
+        }
+        return appendable;
     }
 
     public static void flushAsyncAppendable(Appendable appendable) {
-        AsyncAppendable.flushIfNeeded(appendable);
+        flushAsyncAppendable(appendable,
+                (Long) EngineConfigurationKey.ASYNC_PROCESSING_TIMEOUT
+                        .getDefaultValue());
+    }
+
+    /**
+     *
+     * @param appendable
+     * @param timeout
+     *            The timeout in seconds
+     * @see EngineConfigurationKey#ASYNC_PROCESSING_TIMEOUT
+     */
+    public static void flushAsyncAppendable(Appendable appendable,
+            long timeout) {
+        AsyncAppendable.flushIfNeeded(appendable, timeout);
+    }
+
+    /**
+     *
+     * @param appendable
+     * @param callback
+     */
+    public static void flushAsyncAppendable(Appendable appendable,
+            RenderingCallback callback) {
+        AsyncAppendable.flushIfNeeded(appendable, callback);
     }
 
 }
@@ -28,8 +28,6 @@ import org.trimou.engine.parser.Template;
 import org.trimou.handlebars.HelperValidator;
 import org.trimou.lambda.Lambda;
 
-import com.google.common.collect.Iterables;
-
 /**
  * Section segment.
  *
@@ -39,7 +37,7 @@ import com.google.common.collect.Iterables;
  * </p>
  * <ul>
  * <li>a {@link Boolean} of value <code>false</code>,</li>
- * <li>an {@link Iterable} with no elements,</li>
+ * <li>an {@link Iterable} or {@link Iterator} with no elements,</li>
  * <li>an empty array.</li>
  * </ul>
  *
@@ -48,8 +46,8 @@ import com.google.common.collect.Iterables;
  * context. If the found object is:
  * </p>
  * <ul>
- * <li>non-empty {@link Iterable} or array, the content is rendered for each
- * element,</li>
+ * <li>non-empty {@link Iterable}, {@link Iterator} or array, the content is
+ * rendered for each element,</li>
  * <li>a {@link Boolean} of value <code>true</code>, the content is rendered
  * once,</li>
  * <li>an instance of {@link Lambda}, the content is processed according to the
@@ -57,6 +55,12 @@ import com.google.common.collect.Iterables;
  * <li>any other kind of object represents a nested context.</li>
  * </ul>
  *
+ * <p>
+ * Iterables and iterators are traversed only once, i.e. the size of the
+ * iteration is not computed in advance. An {@link Iterator} is consumed during
+ * rendering.
+ * </p>
+ *
  * @author Martin Kouba
  * @see Lambda
  * @see InvertedSectionSegment
@@ -69,10 +73,14 @@ public class SectionSegment extends AbstractSectionSegment implements
 
     private final HelperExecutionHandler helperHandler;
 
+    private final ValueProvider provider;
+
     public SectionSegment(String text, Origin origin, List<Segment> segments) {
         super(text, origin, segments);
         this.helperHandler = isHandlebarsSupportEnabled() ? HelperExecutionHandler
                 .from(text, getEngine(), this) : null;
+        this.provider = helperHandler == null ? new ValueProvider(text,
+                getEngineConfiguration()) : null;
         this.iterationMetaAlias = getEngineConfiguration()
                 .getStringPropertyValue(
                         EngineConfigurationKey.ITERATION_METADATA_ALIAS);
@@ -86,7 +94,7 @@ public class SectionSegment extends AbstractSectionSegment implements
         if (helperHandler != null) {
             return helperHandler.execute(appendable, context);
         } else {
-            ValueWrapper value = context.getValue(getText());
+            ValueWrapper value = provider.get(context);
             try {
                 if (value.isNull()) {
                     return appendable;
@@ -129,7 +137,11 @@ public class SectionSegment extends AbstractSectionSegment implements
             }
         } else if (value instanceof Iterable) {
             // Iterable
-            processIterable(appendable, context, value);
+            processIterator(appendable, context,
+                    ((Iterable<?>) value).iterator());
+        } else if (value instanceof Iterator) {
+            // Iterator
+            processIterator(appendable, context, (Iterator<?>) value);
         } else if (value.getClass().isArray()) {
             // Array
             processArray(appendable, context, value);
@@ -142,20 +154,16 @@ public class SectionSegment extends AbstractSectionSegment implements
         }
     }
 
-    @SuppressWarnings("rawtypes")
-    private void processIterable(Appendable appendable,
-            ExecutionContext context, Object value) {
-        Iterable<?> iterable = (Iterable<?>) value;
-        int size = Iterables.size(iterable);
-        if (size < 1) {
-            return;
-        }
-        Iterator iterator = iterable.iterator();
+    private void processIterator(Appendable appendable,
+            ExecutionContext context, Iterator<?> iterator) {
+        // Look ahead one element so that the iterator is only traversed once
         int i = 1;
         while (iterator.hasNext()) {
+            Object next = iterator.next();
             processIteration(appendable,
                     context.setContextObject(new ImmutableIterationMeta(
-                            iterationMetaAlias, size, i++)), iterator.next());
+                            iterationMetaAlias, i++, iterator.hasNext())),
+                    next);
         }
     }
 
@@ -211,4 +219,9 @@ public class SectionSegment extends AbstractSectionSegment implements
         }
     }
 
+    @Override
+    public HelperExecutionHandler getHelperHandler() {
+        return helperHandler;
+    }
+
 }
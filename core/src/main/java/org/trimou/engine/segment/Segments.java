@@ -20,7 +20,9 @@ import static org.trimou.engine.config.EngineConfigurationKey.TEMPLATE_CACHE_ENA
 import static org.trimou.engine.config.EngineConfigurationKey.TEMPLATE_CACHE_EXPIRATION_TIMEOUT;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.trimou.engine.MustacheEngine;
@@ -57,15 +59,17 @@ final class Segments {
      * @param cachedReference
      * @param templateId
      * @param engine
-     * @return the template, use the cache if possible
+     * @return the template, use the cache if possible (invalidated templates
+     *         are replaced)
      */
     static Template getTemplate(AtomicReference<Template> cachedReference,
             String templateId, MustacheEngine engine) {
         if (cachedReference != null) {
             Template template = cachedReference.get();
-            if (template == null) {
+            if (template == null || template.isInvalidated()) {
                 synchronized (cachedReference) {
-                    if (template == null) {
+                    template = cachedReference.get();
+                    if (template == null || template.isInvalidated()) {
                         template = (Template) engine.getMustache(templateId);
                         cachedReference.set(template);
                     }
@@ -76,6 +80,44 @@ final class Segments {
         return (Template) engine.getMustache(templateId);
     }
 
+    /**
+     * The dependencies are: partials, extended templates and templates
+     * referenced by {@link org.trimou.handlebars.IncludeHelper} and
+     * {@link org.trimou.handlebars.EmbedHelper} (only if the template id is a
+     * string literal).
+     *
+     * @param container
+     * @return the ids of the templates the given container references
+     */
+    static Set<String> readTemplateDependencies(ContainerSegment container) {
+        Set<String> dependencies = new HashSet<String>();
+        readTemplateDependencies(container, dependencies);
+        return dependencies;
+    }
+
+    private static void readTemplateDependencies(ContainerSegment container,
+            Set<String> dependencies) {
+        for (Segment segment : container) {
+            if (segment instanceof PartialSegment
+                    || segment instanceof ExtendSegment) {
+                dependencies.add(segment.getText());
+            } else if (segment instanceof HelperAwareSegment) {
+                HelperExecutionHandler handler = ((HelperAwareSegment) segment)
+                        .getHelperHandler();
+                if (handler != null) {
+                    String templateId = handler.getReferencedTemplateId();
+                    if (templateId != null) {
+                        dependencies.add(templateId);
+                    }
+                }
+            }
+            if (segment instanceof ContainerSegment) {
+                readTemplateDependencies((ContainerSegment) segment,
+                        dependencies);
+            }
+        }
+    }
+
     /**
      * Read segment lines before rendering.
      *
@@ -88,13 +130,14 @@ final class Segments {
         List<Segment> currentLine = new ArrayList<Segment>();
 
         for (Segment segment : container) {
-            if (!SegmentType.LINE_SEPARATOR.equals(segment.getType())) {
-                currentLine.add(segment);
+            if (segment instanceof StaticTextSegment) {
+                // Merged static segments - process the original segments
+                for (Segment merged : ((StaticTextSegment) segment)
+                        .getSegments()) {
+                    currentLine = readSegmentLine(lines, currentLine, merged);
+                }
             } else {
-                // New line separator - flush the line
-                currentLine.add(segment);
-                lines.add(currentLine);
-                currentLine = new ArrayList<Segment>();
+                currentLine = readSegmentLine(lines, currentLine, segment);
             }
         }
         // Add the last line manually - there is no line separator to trigger
@@ -105,4 +148,15 @@ final class Segments {
         return lines;
     }
 
+    private static List<Segment> readSegmentLine(List<List<Segment>> lines,
+            List<Segment> currentLine, Segment segment) {
+        currentLine.add(segment);
+        if (SegmentType.LINE_SEPARATOR.equals(segment.getType())) {
+            // New line separator - flush the line
+            lines.add(currentLine);
+            return new ArrayList<Segment>();
+        }
+        return currentLine;
+    }
+
 }
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.engine.segment;
+
+import java.util.List;
+
+import org.trimou.annotations.Internal;
+import org.trimou.engine.config.EngineConfigurationKey;
+
+/**
+ * Static text segment represents a sequence of adjacent text and line separator
+ * segments. The whole sequence is written with a single append. The original
+ * segments are kept so that the lines can be reconstructed, e.g. when a
+ * template is used as a standalone partial with indentation.
+ *
+ * @author Martin Kouba
+ * @see EngineConfigurationKey#STATIC_SEGMENTS_MERGING_ENABLED
+ */
+@Internal
+public class StaticTextSegment extends TextSegment {
+
+    private final List<Segment> segments;
+
+    /**
+     *
+     * @param origin
+     * @param segments
+     *            The merged text and line separator segments
+     */
+    public StaticTextSegment(Origin origin, List<Segment> segments) {
+        super(concat(segments), origin);
+        this.segments = segments;
+    }
+
+    /**
+     *
+     * @return the immutable list of merged segments
+     */
+    public List<Segment> getSegments() {
+        return segments;
+    }
+
+    private static String concat(List<Segment> segments) {
+        StringBuilder text = new StringBuilder();
+        for (Segment segment : segments) {
+            text.append(segment.getText());
+        }
+        return text.toString();
+    }
+
+}
@@ -16,7 +16,6 @@
 package org.trimou.engine.segment;
 
 import org.trimou.annotations.Internal;
-import org.trimou.engine.context.ExecutionContext;
 
 /**
  * Text segment.
@@ -24,7 +23,7 @@ import org.trimou.engine.context.ExecutionContext;
  * @author Martin Kouba
  */
 @Internal
-public class TextSegment extends AbstractSegment {
+public class TextSegment extends AbstractStaticSegment {
 
     public TextSegment(String text, Origin origin) {
         super(text, origin);
@@ -34,14 +33,4 @@ public class TextSegment extends AbstractSegment {
         return SegmentType.TEXT;
     }
 
-    public Appendable execute(Appendable appendable, ExecutionContext context) {
-        append(appendable, getText());
-        return appendable;
-    }
-
-    @Override
-    public String getLiteralBlock() {
-        return getText();
-    }
-
 }
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.engine.segment;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.trimou.engine.config.Configuration;
+import org.trimou.engine.config.EngineConfigurationKey;
+import org.trimou.engine.context.ExecutionContext;
+import org.trimou.engine.context.InlineCache;
+import org.trimou.engine.context.ValueWrapper;
+import org.trimou.engine.resolver.EnhancedResolver.Hint;
+
+/**
+ * Provides the value for a key known at compile time, e.g. the key of a
+ * variable tag, a section tag or a helper parameter. The key is split in
+ * advance and the resolver hints are used if enabled.
+ *
+ * @author Martin Kouba
+ */
+final class ValueProvider {
+
+    private final String key;
+
+    private final String[] keyParts;
+
+    /**
+     * The hint for the first part of the key, i.e. <code>foo</code> in
+     * <code>{{foo.bar}}</code>
+     *
+     * @see EngineConfigurationKey#RESOLVER_HINTS_ENABLED
+     */
+    private final AtomicReference<Hint> hint;
+
+    /**
+     * The inline caches for the subsequent parts of the key, i.e.
+     * <code>bar</code> and <code>baz</code> in <code>{{foo.bar.baz}}</code>
+     *
+     * @see EngineConfigurationKey#RESOLVER_HINTS_POLYMORPHIC_LIMIT
+     */
+    private final InlineCache[] partCaches;
+
+    /**
+     *
+     * @param key
+     * @param configuration
+     */
+    ValueProvider(String key, Configuration configuration) {
+        this.key = key;
+        ArrayList<String> parts = new ArrayList<String>();
+        for (Iterator<String> iterator = configuration.getKeySplitter().split(
+                key); iterator.hasNext();) {
+            parts.add(iterator.next());
+        }
+        this.keyParts = parts.toArray(new String[parts.size()]);
+        if (configuration
+                .getBooleanPropertyValue(EngineConfigurationKey.RESOLVER_HINTS_ENABLED)) {
+            this.hint = new AtomicReference<Hint>();
+            this.partCaches = initPartCaches(keyParts,
+                    configuration
+                            .getIntegerPropertyValue(EngineConfigurationKey.RESOLVER_HINTS_POLYMORPHIC_LIMIT));
+        } else {
+            this.hint = null;
+            this.partCaches = null;
+        }
+    }
+
+    /**
+     *
+     * @param context
+     * @return the value wrapper, the client is responsible for releasing the
+     *         wrapper
+     */
+    ValueWrapper get(ExecutionContext context) {
+        ValueWrapper value = context.getValue(key, keyParts, hint, partCaches);
+        if (hint != null && value.getHint() != null) {
+            hint.compareAndSet(null, value.getHint());
+        }
+        return value;
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    private static InlineCache[] initPartCaches(String[] keyParts, int limit) {
+        if (keyParts.length < 2 || limit <= 0) {
+            return null;
+        }
+        InlineCache[] caches = new InlineCache[keyParts.length];
+        for (int i = 1; i < caches.length; i++) {
+            caches[i] = new InlineCache(limit);
+        }
+        return caches;
+    }
+
+}
@@ -15,18 +15,17 @@
  */
 package org.trimou.engine.segment;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.concurrent.atomic.AtomicReference;
+import java.io.IOException;
 
 import org.trimou.annotations.Internal;
 import org.trimou.engine.MustacheTagType;
-import org.trimou.engine.config.EngineConfigurationKey;
 import org.trimou.engine.context.ExecutionContext;
 import org.trimou.engine.context.ValueWrapper;
 import org.trimou.engine.parser.Template;
-import org.trimou.engine.resolver.EnhancedResolver.Hint;
+import org.trimou.engine.text.StreamingTextSupport;
 import org.trimou.engine.text.TextSupport;
+import org.trimou.exception.MustacheException;
+import org.trimou.exception.MustacheProblem;
 import org.trimou.lambda.Lambda;
 import org.trimou.util.Strings;
 
@@ -44,15 +43,9 @@ public class ValueSegment extends AbstractSegment implements HelperAwareSegment
 
     private final TextSupport textSupport;
 
-    private final String[] keyParts;
+    private final StreamingTextSupport streamingTextSupport;
 
-    /**
-     * The hint is currently only used to skip the resolver chain for a simple
-     * value reference - a key with single part, i.e. {{this}}
-     *
-     * @see EngineConfigurationKey#RESOLVER_HINTS_ENABLED
-     */
-    private final AtomicReference<Hint> hint;
+    private final ValueProvider provider;
 
     /**
      *
@@ -67,22 +60,13 @@ public class ValueSegment extends AbstractSegment implements HelperAwareSegment
                 .from(text, getEngine(), this) : null;
         if (helperHandler == null) {
             this.textSupport = getEngineConfiguration().getTextSupport();
-            ArrayList<String> parts = new ArrayList<String>();
-            for (Iterator<String> iterator = getEngineConfiguration()
-                    .getKeySplitter().split(text); iterator.hasNext();) {
-                parts.add(iterator.next());
-            }
-            this.keyParts = parts.toArray(new String[parts.size()]);
-            if (getEngineConfiguration().getBooleanPropertyValue(
-                    EngineConfigurationKey.RESOLVER_HINTS_ENABLED)) {
-                this.hint = new AtomicReference<Hint>();
-            } else {
-                this.hint = null;
-            }
+            this.streamingTextSupport = textSupport instanceof StreamingTextSupport ? (StreamingTextSupport) textSupport
+                    : null;
+            this.provider = new ValueProvider(text, getEngineConfiguration());
         } else {
             this.textSupport = null;
-            this.keyParts = null;
-            this.hint = null;
+            this.streamingTextSupport = null;
+            this.provider = null;
         }
     }
 
@@ -98,7 +82,7 @@ public class ValueSegment extends AbstractSegment implements HelperAwareSegment
         if (helperHandler != null) {
             return helperHandler.execute(appendable, context);
         } else {
-            ValueWrapper value = context.getValue(getText(), keyParts, hint);
+            ValueWrapper value = provider.get(context);
             try {
                 if (value.isNull()) {
                     Object replacement = getEngineConfiguration()
@@ -107,9 +91,6 @@ public class ValueSegment extends AbstractSegment implements HelperAwareSegment
                         processValue(appendable, context, replacement);
                     }
                 } else {
-                    if (hint != null && value.getHint() != null) {
-                        hint.compareAndSet(null, value.getHint());
-                    }
                     processValue(appendable, context, value.get());
                 }
             } finally {
@@ -148,7 +129,17 @@ public class ValueSegment extends AbstractSegment implements HelperAwareSegment
     }
 
     private void writeValue(Appendable appendable, String text) {
-        append(appendable, unescape ? text : textSupport.escapeHtml(text));
+        if (unescape) {
+            append(appendable, text);
+        } else if (streamingTextSupport != null) {
+            try {
+                streamingTextSupport.appendEscapedHtml(text, appendable);
+            } catch (IOException e) {
+                throw new MustacheException(MustacheProblem.RENDER_IO_ERROR, e);
+            }
+        } else {
+            append(appendable, textSupport.escapeHtml(text));
+        }
     }
 
     private void processLambda(Appendable appendable, ExecutionContext context,
@@ -179,4 +170,9 @@ public class ValueSegment extends AbstractSegment implements HelperAwareSegment
         }
     }
 
+    @Override
+    public HelperExecutionHandler getHelperHandler() {
+        return helperHandler;
+    }
+
 }
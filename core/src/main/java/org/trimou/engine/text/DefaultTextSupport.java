@@ -17,28 +17,79 @@ package org.trimou.engine.text;
 
 import java.io.IOException;
 
-import org.apache.commons.lang3.StringEscapeUtils;
+import org.apache.commons.lang3.text.translate.EntityArrays;
 import org.trimou.engine.config.AbstractConfigurationAware;
-import org.trimou.exception.MustacheException;
-import org.trimou.exception.MustacheProblem;
-import org.trimou.util.StringBuilderWriter;
 
 /**
+ * The escaping is equivalent to
+ * {@link org.apache.commons.lang3.StringEscapeUtils#ESCAPE_HTML3}, i.e. the
+ * basic XML entities and ISO-8859-1 entities are escaped. However, a simple
+ * lookup table is used and unchanged runs of characters are appended in bulk.
  *
  * @author Martin Kouba
  */
 class DefaultTextSupport extends AbstractConfigurationAware implements
-        TextSupport {
+        StreamingTextSupport {
+
+    private static final String[] ESCAPES = initEscapes();
 
     @Override
     public String escapeHtml(String input) {
-        final StringBuilderWriter writer = new StringBuilderWriter(input.length());
-        try {
-            StringEscapeUtils.ESCAPE_HTML3.translate(input, writer);
-        } catch (IOException e) {
-            throw new MustacheException(MustacheProblem.RENDER_IO_ERROR, e);
+        int length = input.length();
+        int idx = nextEscapeIndex(input, 0, length);
+        if (idx == length) {
+            // Nothing to escape
+            return input;
+        }
+        StringBuilder builder = new StringBuilder(length + 16);
+        int start = 0;
+        do {
+            builder.append(input, start, idx).append(ESCAPES[input.charAt(idx)]);
+            start = idx + 1;
+            idx = nextEscapeIndex(input, start, length);
+        } while (idx < length);
+        return builder.append(input, start, length).toString();
+    }
+
+    @Override
+    public void appendEscapedHtml(String input, Appendable appendable)
+            throws IOException {
+        int length = input.length();
+        int start = 0;
+        int idx;
+        while ((idx = nextEscapeIndex(input, start, length)) < length) {
+            if (idx > start) {
+                appendable.append(input, start, idx);
+            }
+            appendable.append(ESCAPES[input.charAt(idx)]);
+            start = idx + 1;
+        }
+        if (start == 0) {
+            appendable.append(input);
+        } else if (start < length) {
+            appendable.append(input, start, length);
+        }
+    }
+
+    private static int nextEscapeIndex(String input, int start, int length) {
+        for (int i = start; i < length; i++) {
+            char c = input.charAt(i);
+            if (c < ESCAPES.length && ESCAPES[c] != null) {
+                return i;
+            }
+        }
+        return length;
+    }
+
+    private static String[] initEscapes() {
+        String[] escapes = new String[256];
+        for (String[][] entities : new String[][][] {
+                EntityArrays.BASIC_ESCAPE(), EntityArrays.ISO8859_1_ESCAPE() }) {
+            for (String[] entity : entities) {
+                escapes[entity[0].charAt(0)] = entity[1];
+            }
         }
-        return writer.toString();
+        return escapes;
     }
 
 }
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.engine.text;
+
+import java.io.IOException;
+
+/**
+ * Text support which is able to write the escaped text directly to an
+ * {@link Appendable}, i.e. no intermediate {@link String} is created.
+ * Implementation must be thread-safe.
+ *
+ * @author Martin Kouba
+ */
+public interface StreamingTextSupport extends TextSupport {
+
+    /**
+     * Append the HTML-escaped input to the given appendable.
+     *
+     * @param input
+     * @param appendable
+     * @throws IOException
+     * @see TextSupport#escapeHtml(String)
+     */
+    public void appendEscapedHtml(String input, Appendable appendable)
+            throws IOException;
+
+}
@@ -17,6 +17,7 @@ package org.trimou.handlebars;
 
 import static org.trimou.handlebars.OptionsHashKeys.APPLY;
 import static org.trimou.handlebars.OptionsHashKeys.AS;
+import static org.trimou.handlebars.OptionsHashKeys.PARALLEL;
 
 import java.lang.reflect.Array;
 import java.util.Iterator;
@@ -26,10 +27,10 @@ import org.trimou.engine.config.EngineConfigurationKey;
 import org.trimou.engine.segment.ImmutableIterationMeta;
 import org.trimou.exception.MustacheException;
 import org.trimou.exception.MustacheProblem;
+import org.trimou.handlebars.Options.HelperExecutable;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Iterables;
 
 /**
  * <code>
@@ -39,6 +40,14 @@ import com.google.common.collect.Iterables;
  * </code>
  *
  * <p>
+ * The first parameter may be an {@link Iterable}, an {@link Iterator} or an
+ * array. The elements are traversed only once, i.e. the size of the iteration
+ * is not computed in advance. Therefore it's possible to render lazily
+ * produced elements (e.g. database cursors) without loading all of them
+ * first.
+ * </p>
+ *
+ * <p>
  * It's possible to apply a function to each element. The function must be an
  * instance of {@link Function}. Note that the function cannot be type-safe. If
  * the result does not equal to {@link EachHelper#SKIP_RESULT} it's used instead
@@ -64,6 +73,19 @@ import com.google.common.collect.Iterables;
  * {{/each}}
  * </code>
  *
+ * <p>
+ * The elements may be also rendered asynchronously, i.e. in parallel. The
+ * output order is preserved. Note that the
+ * {@link java.util.concurrent.ExecutorService} must be set or virtual threads
+ * must be enabled.
+ * </p>
+ *
+ * <code>
+ * {{#each items parallel=true}}
+ *  {{name}}
+ * {{/each}}
+ * </code>
+ *
  * @see Function
  * @author Martin Kouba
  */
@@ -71,6 +93,13 @@ public class EachHelper extends BasicSectionHelper {
 
     public static final String SKIP_RESULT = "org.trimou.handlebars.skipResult";
 
+    private static final HelperExecutable FN_EXECUTABLE = new HelperExecutable() {
+        @Override
+        public void execute(Options asyncOptions) {
+            asyncOptions.fn();
+        }
+    };
+
     private String iterationMetadataAlias;
 
     @Override
@@ -80,7 +109,6 @@ public class EachHelper extends BasicSectionHelper {
                 .getStringPropertyValue(EngineConfigurationKey.ITERATION_METADATA_ALIAS);
     }
 
-    @SuppressWarnings("rawtypes")
     @Override
     public void execute(Options options) {
 
@@ -89,34 +117,55 @@ public class EachHelper extends BasicSectionHelper {
         if (value == null) {
             // Treat null values as empty objects
             return;
-        } else if (value instanceof Iterable) {
-            processIterable((Iterable) value, options);
         } else if (value.getClass().isArray()) {
             processArray(value, options);
         } else {
-            throw new MustacheException(
-                    MustacheProblem.RENDER_HELPER_INVALID_OPTIONS,
-                    "%s is nor an Iterable nor an array [%s]", value,
-                    options.getTagInfo());
+            Iterator<?> iterator = getIterator(value);
+            if (iterator == null) {
+                throw new MustacheException(
+                        MustacheProblem.RENDER_HELPER_INVALID_OPTIONS,
+                        "%s is nor an Iterable nor an Iterator nor an array [%s]",
+                        value, options.getTagInfo());
+            }
+            processIterator(iterator, options);
         }
     }
 
     @Override
     protected Optional<Set<String>> getSupportedHashKeys() {
-        return Optional.<Set<String>> of(ImmutableSet.of(APPLY, AS));
+        return Optional.<Set<String>> of(ImmutableSet.of(APPLY, AS, PARALLEL));
+    }
+
+    /**
+     * Subclasses may support additional types of objects.
+     *
+     * @param value
+     *            The non-null value of the first parameter
+     * @return the iterator or <code>null</code> if the value cannot be iterated
+     *         over
+     */
+    protected Iterator<?> getIterator(Object value) {
+        if (value instanceof Iterable) {
+            return ((Iterable<?>) value).iterator();
+        } else if (value instanceof Iterator) {
+            return (Iterator<?>) value;
+        }
+        return null;
     }
 
-    @SuppressWarnings("rawtypes")
-    private void processIterable(Iterable iterable, Options options) {
-        int size = Iterables.size(iterable);
-        if (size < 1) {
+    private void processIterator(Iterator<?> iterator, Options options) {
+        if (!iterator.hasNext()) {
             return;
         }
-        final Iterator iterator = iterable.iterator();
+        Function function = initFunction(options);
+        String valueAlias = initValueAlias(options);
+        boolean parallel = isParallel(options);
+        // Look ahead one element so that the iterator is only traversed once
         int i = 1;
         while (iterator.hasNext()) {
-            nextElement(options, iterator.next(), size, i++,
-                    initFunction(options), initValueAlias(options));
+            Object next = iterator.next();
+            nextElement(options, next, i++, iterator.hasNext(), function,
+                    valueAlias, parallel);
         }
     }
 
@@ -125,14 +174,18 @@ public class EachHelper extends BasicSectionHelper {
         if (length < 1) {
             return;
         }
+        Function function = initFunction(options);
+        String valueAlias = initValueAlias(options);
+        boolean parallel = isParallel(options);
         for (int i = 0; i < length; i++) {
-            nextElement(options, Array.get(array, i), length, i + 1,
-                    initFunction(options), initValueAlias(options));
+            nextElement(options, Array.get(array, i), i + 1, i + 1 < length,
+                    function, valueAlias, parallel);
         }
     }
 
-    private void nextElement(Options options, Object value, int size,
-            int index, Function function, String valueAlias) {
+    private void nextElement(Options options, Object value, int index,
+            boolean hasNext, Function function, String valueAlias,
+            boolean parallel) {
         if (function != null) {
             value = function.apply(value);
             if (SKIP_RESULT.equals(value)) {
@@ -141,19 +194,33 @@ public class EachHelper extends BasicSectionHelper {
         }
         if (valueAlias != null) {
             options.push(new ImmutableIterationMeta(iterationMetadataAlias,
-                    size, index, valueAlias, value));
-            options.fn();
+                    index, hasNext, valueAlias, value));
+            fn(options, parallel);
             options.pop();
         } else {
             options.push(new ImmutableIterationMeta(iterationMetadataAlias,
-                    size, index));
+                    index, hasNext));
             options.push(value);
-            options.fn();
+            fn(options, parallel);
             options.pop();
             options.pop();
         }
     }
 
+    private void fn(Options options, boolean parallel) {
+        if (parallel) {
+            // The async execution context includes the pushed objects
+            options.executeAsync(FN_EXECUTABLE);
+        } else {
+            options.fn();
+        }
+    }
+
+    private boolean isParallel(Options options) {
+        Object parallel = getHashValue(options, PARALLEL);
+        return parallel != null && Boolean.valueOf(parallel.toString());
+    }
+
     private Function initFunction(Options options) {
         Object function = getHashValue(options, APPLY);
         if (function == null) {
@@ -88,6 +88,8 @@ public final class HelpersBuilder {
 
     public static final String ASYNC = "async";
 
+    public static final String PARALLEL = "parallel";
+
     private final ImmutableMap.Builder<String, Helper> builder;
 
     private HelpersBuilder() {
@@ -350,6 +352,16 @@ public final class HelpersBuilder {
         return this;
     }
 
+    /**
+     * Add an instance of {@link ParallelHelper}.
+     *
+     * @return self
+     */
+    public HelpersBuilder addParallel() {
+        builder.put(PARALLEL, new ParallelHelper());
+        return this;
+    }
+
 
     /**
      *
@@ -384,6 +396,7 @@ public final class HelpersBuilder {
         addEval();
         addNumExpr();
         addAsync();
+        addParallel();
         return this;
     }
 
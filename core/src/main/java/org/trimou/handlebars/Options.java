@@ -22,6 +22,9 @@ import org.trimou.exception.MustacheException;
  * This objects represents a helper execution context. A new instance is created
  * for every execution. It is not thread-safe.
  *
+ * Note that {@link #fnAsync()} was added in 1.9. Custom implementations should
+ * extend {@link AbstractOptions}.
+ *
  * @author Martin Kouba
  * @since 1.5
  */
@@ -140,6 +143,17 @@ public interface Options extends HelperDefinition {
      */
     void executeAsync(HelperExecutable executable);
 
+    /**
+     * Proceed with execution, i.e. execute the block, but each direct child
+     * tag (e.g. a partial or a section) is executed asynchronously. The static
+     * text is appended directly. The output order is preserved. This is no-op
+     * for variable tag helpers.
+     *
+     * @see #executeAsync(HelperExecutable)
+     * @since 1.9
+     */
+    void fnAsync();
+
     /**
      * A helper task to be executed asynchronously.
      *
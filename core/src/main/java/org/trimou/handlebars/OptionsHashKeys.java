@@ -58,4 +58,6 @@ public final class OptionsHashKeys {
 
     public static final String BREAK = "break";
 
+    public static final String PARALLEL = "parallel";
+
 }
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2014 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.handlebars;
+
+import java.util.Set;
+
+import com.google.common.base.Optional;
+
+/**
+ * Each direct child tag of the section is rendered asynchronously, i.e.
+ * independent partials and sections may be rendered in parallel. The output
+ * order is preserved.
+ *
+ * <code>
+ * {{#parallel}}
+ *  {{> widget1}}
+ *  {{> widget2}}
+ *  {{#each items}}{{name}}{{/each}}
+ * {{/parallel}}
+ * </code>
+ *
+ * <p>
+ * Note that the {@link java.util.concurrent.ExecutorService} must be set or
+ * virtual threads must be enabled.
+ * </p>
+ *
+ * @author Martin Kouba
+ * @see Options#fnAsync()
+ */
+public class ParallelHelper extends BasicSectionHelper {
+
+    @Override
+    public void execute(Options options) {
+        options.fnAsync();
+    }
+
+    @Override
+    protected int numberOfRequiredParameters() {
+        return 0;
+    }
+
+    @Override
+    protected Optional<Set<String>> getSupportedHashKeys() {
+        return NO_SUPPORTED_HASH_KEYS;
+    }
+
+}
@@ -0,0 +1,74 @@
+package org.trimou;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.trimou.Mustache.RenderingCallback;
+import org.trimou.engine.MustacheEngineBuilder;
+
+import com.google.common.base.Charsets;
+
+/**
+ *
+ * @author Martin Kouba
+ */
+public class AbstractMustacheTest {
+
+    @Test
+    public void testAdapter() {
+        final Mustache delegate = MustacheEngineBuilder.newBuilder().build()
+                .compileMustache("abstract_mustache", "{{this}}");
+        // Only implements the methods available before 1.8
+        Mustache mustache = new AbstractMustache() {
+
+            @Override
+            public Long getGeneratedId() {
+                return delegate.getGeneratedId();
+            }
+
+            @Override
+            public String getName() {
+                return delegate.getName();
+            }
+
+            @Override
+            public String render(Object data) {
+                return delegate.render(data);
+            }
+
+            @Override
+            public void render(Appendable appendable, Object data) {
+                delegate.render(appendable, data);
+            }
+        };
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        mustache.render(out, "\u20AC", Charsets.UTF_8);
+        assertEquals("\u20AC", new String(out.toByteArray(), Charsets.UTF_8));
+
+        out = new ByteArrayOutputStream();
+        mustache.render(Channels.newChannel(out), "foo", Charsets.UTF_8);
+        assertEquals("foo", new String(out.toByteArray(), Charsets.UTF_8));
+
+        final StringBuilder builder = new StringBuilder();
+        final AtomicReference<String> result = new AtomicReference<String>();
+        mustache.renderAsync(builder, "bar", new RenderingCallback() {
+
+            @Override
+            public void completed() {
+                result.set(builder.toString());
+            }
+
+            @Override
+            public void failed(Throwable cause) {
+                result.set(null);
+            }
+        });
+        assertEquals("bar", result.get());
+    }
+
+}
@@ -0,0 +1,73 @@
+package org.trimou.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Locale;
+
+import org.junit.Test;
+import org.trimou.Mustache;
+import org.trimou.engine.config.Configuration;
+import org.trimou.engine.locator.MapTemplateLocator;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ *
+ * @author Martin Kouba
+ */
+public class AbstractMustacheEngineTest {
+
+    @Test
+    public void testAdapter() {
+        final MustacheEngine delegate = MustacheEngineBuilder
+                .newBuilder()
+                .addTemplateLocator(
+                        new MapTemplateLocator(ImmutableMap.of("foo.html",
+                                "foo", "foo_de.html", "foo_de"))).build();
+        // Only implements the methods available before 1.8
+        MustacheEngine engine = new AbstractMustacheEngine() {
+
+            @Override
+            public Mustache getMustache(String templateId) {
+                return delegate.getMustache(templateId);
+            }
+
+            @Override
+            public String getMustacheSource(String templateId) {
+                return delegate.getMustacheSource(templateId);
+            }
+
+            @Override
+            public Mustache compileMustache(String templateId,
+                    String templateContent) {
+                return delegate.compileMustache(templateId, templateContent);
+            }
+
+            @Override
+            public Configuration getConfiguration() {
+                return delegate.getConfiguration();
+            }
+
+            @Override
+            public void invalidateTemplateCache() {
+                delegate.invalidateTemplateCache();
+            }
+        };
+
+        assertEquals("foo_de",
+                engine.getMustache("foo.html", Locale.GERMANY).render(null));
+        assertEquals("foo", engine.getMustache("foo.html", Locale.ENGLISH)
+                .render(null));
+        assertEquals("foo", engine.getMustache("foo.html", null).render(null));
+        assertNull(engine.getMustache("bar.html", Locale.GERMANY));
+        assertTrue(engine.invalidateTemplate("foo.html").isEmpty());
+        assertTrue(engine.getTemplateDependents("foo.html").isEmpty());
+        assertNull(engine.getTemplateCacheStats());
+        assertNull(engine.getSourceCacheStats());
+        assertFalse(engine.writeTemplateSnapshot());
+    }
+
+}
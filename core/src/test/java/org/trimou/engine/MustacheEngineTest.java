@@ -3,19 +3,26 @@ package org.trimou.engine;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.Reader;
 import java.io.StringReader;
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -23,11 +30,14 @@ import org.trimou.AbstractEngineTest;
 import org.trimou.ArchiveType;
 import org.trimou.ExceptionAssert;
 import org.trimou.Mustache;
+import org.trimou.engine.cache.CacheStats;
 import org.trimou.engine.config.EngineConfigurationKey;
 import org.trimou.engine.locator.AbstractTemplateLocator;
 import org.trimou.engine.locator.MapTemplateLocator;
 import org.trimou.engine.locator.TemplateLocator;
+import org.trimou.engine.parser.Template;
 import org.trimou.exception.MustacheException;
+import org.trimou.handlebars.HelpersBuilder;
 import org.trimou.lambda.Lambda;
 import org.trimou.lambda.SpecCompliantLambda;
 
@@ -192,6 +202,54 @@ public class MustacheEngineTest extends AbstractEngineTest {
         assertEquals("fooLocate", sequence.get(1));
     }
 
+    @Test
+    public void testParallelPrecompilation() {
+        Map<String, String> templates = new HashMap<String, String>();
+        for (int i = 0; i < 50; i++) {
+            templates.put("template" + i, "{{#each this}}" + i + "{{/each}}");
+        }
+        final Set<String> compiled = Collections
+                .newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        final Set<String> threads = Collections
+                .newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        final List<PrecompilationSummary> summaries = new ArrayList<PrecompilationSummary>();
+        MustacheEngine engine = MustacheEngineBuilder
+                .newBuilder()
+                .addTemplateLocator(new MapTemplateLocator(templates))
+                .setProperty(EngineConfigurationKey.PRECOMPILE_ALL_TEMPLATES,
+                        true)
+                .setProperty(
+                        EngineConfigurationKey.PRECOMPILE_ALL_TEMPLATES_PARALLELISM,
+                        4)
+                .setPrecompilationCallback(
+                        new MustacheEngineBuilder.PrecompilationCallback() {
+                            @Override
+                            public void templateCompiled(String templateId,
+                                    long time, int processed, int total) {
+                                assertEquals(50, total);
+                                compiled.add(templateId);
+                                threads.add(Thread.currentThread().getName());
+                            }
+
+                            @Override
+                            public void finished(
+                                    PrecompilationSummary summary) {
+                                summaries.add(summary);
+                            }
+                        }).build();
+        assertEquals(templates.keySet(), compiled);
+        assertFalse(threads.contains(Thread.currentThread().getName()));
+        assertEquals(1, summaries.size());
+        PrecompilationSummary summary = summaries.get(0);
+        assertEquals(50, summary.getTotal());
+        assertEquals(50, summary.getCompiled());
+        assertEquals(4, summary.getParallelism());
+        assertEquals(TemplatePrecompiler.SLOWEST_TEMPLATES_LIMIT, summary
+                .getSlowestTemplates().size());
+        assertEquals("11", engine.getMustache("template1").render(
+                new int[] { 1, 2 }));
+    }
+
     @Test
     public void testIterationMetadataAlias() {
         assertEquals(
@@ -266,6 +324,194 @@ public class MustacheEngineTest extends AbstractEngineTest {
         assertNotEquals(engine.compileMustache("foo", "{{foo}}").getGeneratedId(), engine.compileMustache("foo", "{{foo}}").getGeneratedId());
     }
 
+    @Test
+    public void testCacheStats() {
+        MustacheEngine engine = MustacheEngineBuilder
+                .newBuilder()
+                .addTemplateLocator(
+                        new MapTemplateLocator(ImmutableMap.of("foo", "{{this}}")))
+                .build();
+        engine.getMustache("foo");
+        engine.getMustache("foo");
+        engine.getMustache("bar");
+        CacheStats stats = engine.getTemplateCacheStats();
+        assertEquals(2, stats.getSize());
+        assertEquals(3, stats.getRequests());
+        assertEquals(2, stats.getMisses());
+        assertEquals(1, stats.getHits());
+        assertEquals(1.0 / 3, stats.getHitRatio(), 0.001);
+        engine.getMustacheSource("foo");
+        assertEquals(1, engine.getSourceCacheStats().getMisses());
+        assertEquals(1.0, MustacheEngineBuilder.newBuilder().build()
+                .getSourceCacheStats().getHitRatio(), 0.001);
+        assertNull(MustacheEngineBuilder.newBuilder()
+                .setProperty(EngineConfigurationKey.TEMPLATE_CACHE_ENABLED,
+                        false).build().getTemplateCacheStats());
+    }
+
+    @Test
+    public void testLocalizedTemplates() {
+        final AtomicInteger locates = new AtomicInteger();
+        final Map<String, String> templates = new HashMap<String, String>();
+        templates.put("foo.html", "foo");
+        templates.put("foo_de.html", "foo_de");
+        templates.put("foo_de_AT.html", "foo_de_AT");
+        templates.put("sub.dir/bar", "bar");
+        templates.put("sub.dir/bar_cs", "bar_cs");
+        MustacheEngine engine = MustacheEngineBuilder.newBuilder()
+                .addTemplateLocator(new MapTemplateLocator(templates) {
+                    @Override
+                    public Reader locate(String templateId) {
+                        locates.incrementAndGet();
+                        return super.locate(templateId);
+                    }
+                }).build();
+
+        assertEquals("foo_de_AT",
+                engine.getMustache("foo.html", new Locale("de", "AT"))
+                        .render(null));
+        assertEquals("foo_de",
+                engine.getMustache("foo.html", Locale.GERMANY).render(null));
+        assertEquals("foo", engine.getMustache("foo.html", Locale.ENGLISH)
+                .render(null));
+        assertEquals("foo", engine.getMustache("foo.html", null).render(null));
+        assertEquals("bar_cs",
+                engine.getMustache("sub.dir/bar", new Locale("cs", "CZ"))
+                        .render(null));
+        assertNull(engine.getMustache("baz", Locale.ENGLISH));
+
+        // Both positive and negative results are cached
+        int count = locates.get();
+        engine.getMustache("foo.html", Locale.GERMANY);
+        engine.getMustache("baz", Locale.ENGLISH);
+        assertEquals(count, locates.get());
+
+        // A new variant is found after invalidation
+        templates.put("foo_en.html", "foo_en");
+        assertEquals("foo", engine.getMustache("foo.html", Locale.ENGLISH)
+                .render(null));
+        engine.invalidateTemplateCache();
+        assertEquals("foo_en", engine.getMustache("foo.html", Locale.ENGLISH)
+                .render(null));
+
+        assertEquals(
+                ImmutableList.of("foo_de_AT_var.html", "foo_de_AT.html",
+                        "foo_de.html", "foo.html"),
+                DefaultMustacheEngine.getLocalizedTemplateIds("foo.html",
+                        new Locale("de", "AT", "var")));
+        assertEquals(ImmutableList.of("foo"),
+                DefaultMustacheEngine.getLocalizedTemplateIds("foo",
+                        Locale.ROOT));
+    }
+
+    @Test
+    public void testInvalidateTemplate() {
+        Map<String, String> templates = new HashMap<String, String>();
+        templates.put("base", "{{$content}}base{{/content}}");
+        templates.put("item", "{{this}}");
+        templates.put("list", "{{#each this}}{{>item}}{{/each}}");
+        templates.put("page", "{{<base}}{{$content}}{{include 'list'}}{{/content}}{{/base}}");
+        templates.put("other", "{{>base}}");
+        templates.put("unrelated", "foo");
+        MustacheEngine engine = MustacheEngineBuilder.newBuilder()
+                .registerHelpers(HelpersBuilder.empty().addInclude().build())
+                .addTemplateLocator(new MapTemplateLocator(templates)).build();
+
+        Mustache page = engine.getMustache("page");
+        Mustache list = engine.getMustache("list");
+        Mustache other = engine.getMustache("other");
+        Mustache unrelated = engine.getMustache("unrelated");
+        assertEquals("ab", page.render(ImmutableList.of("a", "b")));
+        assertEquals("base", other.render(null));
+
+        assertEquals(ImmutableSet.of("item"),
+                ((Template) list).getDependencies());
+        assertEquals(ImmutableSet.of("base", "list"),
+                ((Template) page).getDependencies());
+        assertEquals(ImmutableSet.of("list", "page"),
+                engine.getTemplateDependents("item"));
+        assertEquals(ImmutableSet.of("page", "other"),
+                engine.getTemplateDependents("base"));
+
+        assertEquals(ImmutableSet.of("item", "list", "page"),
+                engine.invalidateTemplate("item"));
+        assertTrue(((Template) page).isInvalidated());
+        assertTrue(((Template) list).isInvalidated());
+        assertFalse(((Template) other).isInvalidated());
+        assertSame(other, engine.getMustache("other"));
+        assertSame(unrelated, engine.getMustache("unrelated"));
+        assertNotSame(page, engine.getMustache("page"));
+        assertEquals(ImmutableSet.of("page", "other"),
+                engine.getTemplateDependents("base"));
+    }
+
+    @Test
+    public void testTemplateDependentsRecompiled() throws InterruptedException {
+        Map<String, String> templates = new HashMap<String, String>();
+        templates.put("item", "{{this}}");
+        templates.put("list", "{{#each this}}{{>item}}{{/each}}");
+        long timeout = 1;
+        MustacheEngine engine = MustacheEngineBuilder
+                .newBuilder()
+                .setProperty(
+                        EngineConfigurationKey.TEMPLATE_CACHE_EXPIRATION_TIMEOUT,
+                        timeout)
+                .addTemplateLocator(new MapTemplateLocator(templates)).build();
+        assertEquals("ab",
+                engine.getMustache("list").render(ImmutableList.of("a", "b")));
+        assertEquals(ImmutableSet.of("list"),
+                engine.getTemplateDependents("item"));
+        // The expired template is not a dependent anymore
+        Thread.sleep((2 * timeout) * 1000);
+        assertEquals(ImmutableSet.of(), engine.getTemplateDependents("item"));
+        // The recompiled template does not reference the partial anymore
+        templates.put("list", "{{#each this}}{{this}}{{/each}}");
+        assertEquals("ab",
+                engine.getMustache("list").render(ImmutableList.of("a", "b")));
+        engine.getMustache("item");
+        assertEquals(ImmutableSet.of(), engine.getTemplateDependents("item"));
+    }
+
+    @Test
+    public void testShutdown() {
+        final AtomicInteger callbackCount = new AtomicInteger();
+        final AtomicInteger locatorCount = new AtomicInteger();
+        MustacheEngine engine = MustacheEngineBuilder.newBuilder()
+                .registerShutdownCallback(
+                        new MustacheEngineBuilder.EngineShutdownCallback() {
+                            @Override
+                            public void engineShutdown(MustacheEngine engine) {
+                                callbackCount.incrementAndGet();
+                            }
+                        })
+                .addTemplateLocator(new ShutdownAwareLocator(locatorCount))
+                .build();
+        engine.shutdown();
+        assertEquals(1, callbackCount.get());
+        assertEquals(1, locatorCount.get());
+        // Subsequent invocations have no effect
+        engine.shutdown();
+        assertEquals(1, callbackCount.get());
+        assertEquals(1, locatorCount.get());
+    }
+
+    private static class ShutdownAwareLocator extends MapTemplateLocator
+            implements MustacheEngineBuilder.EngineShutdownCallback {
+
+        private final AtomicInteger count;
+
+        ShutdownAwareLocator(AtomicInteger count) {
+            super(1, Collections.<String, String> emptyMap());
+            this.count = count;
+        }
+
+        @Override
+        public void engineShutdown(MustacheEngine engine) {
+            count.incrementAndGet();
+        }
+
+    }
+
     private static class MyStringReader extends StringReader {
 
         final AtomicBoolean isCloseInvoked;
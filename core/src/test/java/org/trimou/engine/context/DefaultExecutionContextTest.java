@@ -9,6 +9,10 @@ import java.util.ArrayList;
 import org.junit.Test;
 import org.trimou.AbstractEngineTest;
 import org.trimou.Hammer;
+import org.trimou.engine.MustacheEngineBuilder;
+import org.trimou.engine.cache.ComputingCache;
+import org.trimou.engine.config.Configuration;
+import org.trimou.engine.config.EngineConfigurationKey;
 import org.trimou.engine.segment.Segment;
 
 /**
@@ -39,4 +43,33 @@ public class DefaultExecutionContextTest extends AbstractEngineTest {
         assertNull(ctx03.getDefiningSection("foo"));
     }
 
+    @Test
+    public void testKeyPartsCache() {
+        Hammer hammer = new Hammer(10);
+        ComputingCache<String, String[]> cache = ExecutionContexts
+                .newKeyPartsCache(engine.getConfiguration());
+        ExecutionContext ctx = ExecutionContexts.newGlobalExecutionContext(
+                engine.getConfiguration(), cache).setContextObject(hammer);
+        assertEquals("NAIL", ctx.getValue("this.nail").get());
+        // Cached key parts
+        assertEquals("NAIL", ctx.getValue("this.nail").get());
+        assertEquals(10, ctx.getValue("age").get());
+        assertEquals(2, cache.size());
+        // The cache may be shared by several global contexts
+        ExecutionContexts
+                .newGlobalExecutionContext(engine.getConfiguration(), cache)
+                .setContextObject(hammer).getValue("this.nail");
+        assertEquals(2, cache.size());
+        // Cache disabled
+        Configuration configuration = MustacheEngineBuilder
+                .newBuilder()
+                .setProperty(EngineConfigurationKey.KEY_PARTS_CACHE_MAX_SIZE,
+                        0l).build().getConfiguration();
+        assertNull(ExecutionContexts.newKeyPartsCache(configuration));
+        ctx = ExecutionContexts.newGlobalExecutionContext(configuration)
+                .setContextObject(hammer);
+        assertEquals("NAIL", ctx.getValue("this.nail").get());
+        assertEquals(10, ctx.getValue("age").get());
+    }
+
 }
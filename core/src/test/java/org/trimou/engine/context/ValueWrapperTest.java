@@ -1,18 +1,23 @@
 package org.trimou.engine.context;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.Test;
 import org.trimou.AbstractTest;
 import org.trimou.engine.MustacheEngine;
 import org.trimou.engine.MustacheEngineBuilder;
+import org.trimou.engine.config.EngineConfigurationKey;
 import org.trimou.engine.interpolation.ThrowingExceptionMissingValueHandler;
 import org.trimou.engine.priority.WithPriority;
 import org.trimou.engine.resolver.AbstractResolver;
@@ -21,6 +26,9 @@ import org.trimou.engine.resource.ReleaseCallback;
 import org.trimou.exception.MustacheException;
 import org.trimou.exception.MustacheProblem;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
 /**
  *
  * @author Martin Kouba
@@ -198,4 +206,87 @@ public class ValueWrapperTest extends AbstractTest {
         assertEquals(Integer.valueOf(2), indexes.get(2));
     }
 
+    @Test
+    public void testValueWrapperPool() {
+        final AtomicInteger callbacks = new AtomicInteger();
+        ValueWrapperPool pool = new ValueWrapperPool();
+        ValueWrapper foo = pool.acquire("foo");
+        foo.registerReleaseCallback(new ReleaseCallback() {
+            @Override
+            public void release() {
+                callbacks.incrementAndGet();
+            }
+        });
+        ValueWrapper bar = pool.acquire("bar");
+        assertEquals("bar", bar.getKey());
+        assertEquals(2, pool.size());
+        // Not released in reverse order
+        foo.release();
+        assertEquals(1, callbacks.get());
+        assertFalse(foo.isInUse());
+        assertEquals(2, pool.size());
+        // Released twice
+        foo.release();
+        assertEquals(1, callbacks.get());
+        bar.release();
+        assertEquals(0, pool.size());
+        ValueWrapper baz = pool.acquire("baz");
+        assertSame(foo, baz);
+        assertEquals("baz", baz.getKey());
+        assertNull(baz.get());
+        assertNull(baz.getHint());
+        assertEquals(0, baz.getKeyPartIndex());
+        baz.release();
+        assertEquals(1, callbacks.get());
+        // Grow the pool
+        for (int i = 0; i < 20; i++) {
+            pool.acquire("" + i);
+        }
+        assertEquals(20, pool.size());
+    }
+
+    @Test
+    public void testValueWrapperPoolingEnabled() {
+        String template = "{{#each items}}{{#with this}}{{name}}:{{#if iter.even}}even{{/if}}{{^iter.hasNext}}!{{/iter.hasNext}},{{/with}}{{/each}}{{#items}}{{name}}{{/items}}";
+        ImmutableMap<String, Object> data = ImmutableMap.<String, Object> of(
+                "items", ImmutableList.of(ImmutableMap.of("name", "foo"),
+                        ImmutableMap.of("name", "bar")));
+        AtomicInteger pooledCallbacks = new AtomicInteger();
+        assertEquals("foo:,bar:even!,foobar",
+                buildCallbackCountingEngine(true, pooledCallbacks)
+                        .compileMustache("value_wrapper_pooling", template)
+                        .render(data));
+        // The same callbacks must be invoked if pooling is disabled
+        AtomicInteger callbacks = new AtomicInteger();
+        assertEquals("foo:,bar:even!,foobar",
+                buildCallbackCountingEngine(false, callbacks).compileMustache(
+                        "value_wrapper_pooling", template).render(data));
+        assertTrue(callbacks.get() > 0);
+        assertEquals(callbacks.get(), pooledCallbacks.get());
+    }
+
+    private MustacheEngine buildCallbackCountingEngine(boolean pooling,
+            final AtomicInteger callbacks) {
+        return MustacheEngineBuilder
+                .newBuilder()
+                .setProperty(
+                        EngineConfigurationKey.VALUE_WRAPPER_POOLING_ENABLED,
+                        pooling)
+                .addResolver(
+                        new AbstractResolver(
+                                WithPriority.BUILTIN_RESOLVERS_DEFAULT_PRIORITY + 100) {
+                            @Override
+                            public Object resolve(Object contextObject,
+                                    String name, ResolutionContext context) {
+                                context.registerReleaseCallback(new ReleaseCallback() {
+                                    @Override
+                                    public void release() {
+                                        callbacks.incrementAndGet();
+                                    }
+                                });
+                                return null;
+                            }
+                        }).build();
+    }
+
 }
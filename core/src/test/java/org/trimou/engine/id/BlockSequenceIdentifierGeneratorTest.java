@@ -0,0 +1,79 @@
+package org.trimou.engine.id;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.trimou.engine.MustacheEngineBuilder;
+import org.trimou.engine.listener.MustacheRenderingEvent;
+
+import com.google.common.collect.Sets;
+
+/**
+ *
+ * @author Martin Kouba
+ */
+public class BlockSequenceIdentifierGeneratorTest {
+
+    @Test
+    public void testBlocks() {
+        BlockSequenceIdentifierGenerator generator = new BlockSequenceIdentifierGenerator(
+                2);
+        assertEquals(1, generator.generate(null));
+        assertEquals(2, generator.generate(null));
+        assertEquals(3, generator.generate(MustacheRenderingEvent.class));
+        assertEquals(4, generator.generate(null));
+    }
+
+    @Test
+    public void testUniqueness() throws Exception {
+        final int threads = 4;
+        final int idsPerThread = 1000;
+        final BlockSequenceIdentifierGenerator generator = new BlockSequenceIdentifierGenerator(
+                10);
+        final Set<Long> ids = Sets
+                .newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        for (int j = 0; j < idsPerThread; j++) {
+                            assertTrue(ids.add(generator.generate(null)));
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(threads * idsPerThread, ids.size());
+    }
+
+    @Test
+    public void testEngine() {
+        assertEquals(
+                "foo",
+                MustacheEngineBuilder.newBuilder()
+                        .setIdentifierGenerator(
+                                new BlockSequenceIdentifierGenerator()).build()
+                        .compileMustache("block_ids", "{{this}}")
+                        .render("foo"));
+    }
+
+}
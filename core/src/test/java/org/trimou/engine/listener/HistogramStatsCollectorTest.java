@@ -0,0 +1,88 @@
+package org.trimou.engine.listener;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.trimou.Mustache;
+import org.trimou.engine.MustacheEngine;
+import org.trimou.engine.MustacheEngineBuilder;
+import org.trimou.engine.listener.HistogramStatsCollector.HistogramStats;
+import org.trimou.lambda.InputLiteralLambda;
+import org.trimou.lambda.Lambda;
+
+/**
+ *
+ * @author Martin Kouba
+ */
+public class HistogramStatsCollectorTest {
+
+    @Test
+    public void testDataCollecting() {
+
+        HistogramStatsCollector collector = new HistogramStatsCollector(null,
+                TimeUnit.MILLISECONDS, 2);
+        MustacheEngine engine = MustacheEngineBuilder.newBuilder()
+                .addMustacheListener(collector).build();
+        Lambda sleeper = new InputLiteralLambda() {
+
+            @Override
+            public boolean isReturnValueInterpolated() {
+                return false;
+            }
+
+            @Override
+            public String invoke(String text) {
+                try {
+                    Thread.sleep(5l);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException();
+                }
+                return text;
+            }
+        };
+
+        Mustache mustache = engine.compileMustache("foo", "{{this}}");
+        int loop = 20;
+        for (int i = 0; i < loop; i++) {
+            mustache.render(sleeper);
+        }
+
+        assertNull(collector.getStats("unknown"));
+        HistogramStats stats = collector.getStats("foo");
+        assertNotNull(stats);
+        assertEquals(loop, stats.getExecutions());
+        assertTrue(stats.getMinTime() >= 5);
+        assertTrue(stats.getP50() >= stats.getMinTime());
+        assertTrue(stats.getP99() <= stats.getMaxTime());
+        assertEquals(1, collector.getStats().size());
+
+        // Interval stats reset the data
+        assertEquals(loop, collector.getIntervalStats().get("foo")
+                .getExecutions());
+        assertEquals(0, collector.getStats("foo").getExecutions());
+        mustache.render(sleeper);
+        assertEquals(1, collector.getIntervalStats().get("foo")
+                .getExecutions());
+
+        collector.clearData();
+        assertEquals(0, collector.getStats().size());
+    }
+
+    @Test
+    public void testMaxSize() {
+        HistogramStatsCollector collector = new HistogramStatsCollector(null,
+                TimeUnit.MILLISECONDS, 1, 2);
+        MustacheEngine engine = MustacheEngineBuilder.newBuilder()
+                .addMustacheListener(collector).build();
+        for (int i = 0; i < 10; i++) {
+            engine.compileMustache("dynamic_" + i, "{{this}}").render(i);
+        }
+        assertTrue(collector.getStats().size() <= 2);
+    }
+
+}
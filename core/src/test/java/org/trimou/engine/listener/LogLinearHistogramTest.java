@@ -0,0 +1,73 @@
+package org.trimou.engine.listener;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.trimou.engine.listener.LogLinearHistogram.Snapshot;
+
+/**
+ *
+ * @author Martin Kouba
+ */
+public class LogLinearHistogramTest {
+
+    @Test
+    public void testBuckets() {
+        assertEquals(1024, LogLinearHistogram.BUCKETS);
+        long[] values = new long[] { 0, 1, 63, 64, 65, 127, 128, 1000,
+                123456789, LogLinearHistogram.MAX_TRACKABLE_VALUE };
+        for (long value : values) {
+            int index = LogLinearHistogram.indexOf(value);
+            assertTrue(index < LogLinearHistogram.BUCKETS);
+            long highest = LogLinearHistogram.highestValueOf(index);
+            assertTrue(highest >= value);
+            // Relative error
+            assertTrue((highest - value) <= Math.max(1, value / 32));
+            if (index > 0) {
+                assertTrue(LogLinearHistogram.highestValueOf(index - 1) < value);
+            }
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        LogLinearHistogram histogram = new LogLinearHistogram(3);
+        assertEquals(4, histogram.getStripes());
+        assertEquals(0, histogram.getSnapshot().getValueAtPercentile(99));
+        for (int i = 1; i <= 10000; i++) {
+            histogram.record(i * 1000l);
+        }
+        Snapshot snapshot = histogram.getSnapshot();
+        assertEquals(10000, snapshot.getCount());
+        assertEquals(1000, snapshot.getMin());
+        assertEquals(10000000, snapshot.getMax());
+        assertEquals(5000500, snapshot.getMean());
+        assertWithinError(5000000, snapshot.getValueAtPercentile(50));
+        assertWithinError(9500000, snapshot.getValueAtPercentile(95));
+        assertWithinError(9900000, snapshot.getValueAtPercentile(99));
+        assertEquals(10000000, snapshot.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testSnapshotAndReset() {
+        LogLinearHistogram histogram = new LogLinearHistogram(1);
+        histogram.record(10);
+        histogram.record(20);
+        Snapshot snapshot = histogram.getSnapshotAndReset();
+        assertEquals(2, snapshot.getCount());
+        assertEquals(30, snapshot.getTotal());
+        histogram.record(5);
+        snapshot = histogram.getSnapshotAndReset();
+        assertEquals(1, snapshot.getCount());
+        assertEquals(5, snapshot.getMin());
+        assertEquals(5, snapshot.getMax());
+        assertEquals(0, histogram.getSnapshot().getCount());
+    }
+
+    private void assertWithinError(long expected, long actual) {
+        assertTrue(actual + " not within error of " + expected,
+                Math.abs(actual - expected) <= expected / 32);
+    }
+
+}
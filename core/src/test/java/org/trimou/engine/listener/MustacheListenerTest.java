@@ -1,17 +1,22 @@
 package org.trimou.engine.listener;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.trimou.AbstractEngineTest;
+import org.trimou.engine.MustacheEngine;
 import org.trimou.engine.MustacheEngineBuilder;
+import org.trimou.engine.id.Identified;
+import org.trimou.engine.id.SequenceIdentifierGenerator;
 import org.trimou.engine.resource.ReleaseCallback;
 import org.trimou.lambda.SpecCompliantLambda;
 
@@ -169,4 +174,58 @@ public class MustacheListenerTest extends AbstractEngineTest {
                 renderingEnds.get(0));
         assertTrue(callbackInvoked.get());
     }
+
+    @Test
+    public void testRenderingEventsSkippedIfNotConsumed() {
+
+        final AtomicInteger renderingIds = new AtomicInteger();
+        final List<String> compiled = new ArrayList<String>();
+
+        MustacheEngine engine = MustacheEngineBuilder.newBuilder()
+                .setIdentifierGenerator(new CountingGenerator(renderingIds))
+                .addMustacheListener(new AbstractMustacheListener() {
+                    @Override
+                    public void compilationFinished(
+                            MustacheCompilationEvent event) {
+                        compiled.add(event.getMustache().getName());
+                    }
+                }).build();
+        assertNull(engine.getConfiguration().getRenderingListeners());
+        engine.compileMustache("no_rendering_events", "{{this}}")
+                .render("foo");
+        assertEquals(1, compiled.size());
+        assertEquals(0, renderingIds.get());
+
+        engine = MustacheEngineBuilder.newBuilder()
+                .setIdentifierGenerator(new CountingGenerator(renderingIds))
+                .addMustacheListener(new AbstractMustacheListener() {
+                }).addMustacheListener(new AbstractMustacheListener() {
+                    @Override
+                    public void renderingFinished(MustacheRenderingEvent event) {
+                    }
+                }).build();
+        assertEquals(1, engine.getConfiguration().getRenderingListeners()
+                .size());
+        engine.compileMustache("rendering_events", "{{this}}").render("foo");
+        assertEquals(1, renderingIds.get());
+    }
+
+    private static class CountingGenerator extends SequenceIdentifierGenerator {
+
+        private final AtomicInteger renderingIds;
+
+        CountingGenerator(AtomicInteger renderingIds) {
+            this.renderingIds = renderingIds;
+        }
+
+        @Override
+        public long generate(Class<? extends Identified> componentType) {
+            if (MustacheRenderingEvent.class.equals(componentType)) {
+                renderingIds.incrementAndGet();
+            }
+            return super.generate(componentType);
+        }
+
+    }
+
 }
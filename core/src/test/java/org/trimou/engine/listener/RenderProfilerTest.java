@@ -0,0 +1,159 @@
+package org.trimou.engine.listener;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.trimou.Mustache;
+import org.trimou.Mustache.RenderingCallback;
+import org.trimou.engine.MustacheEngine;
+import org.trimou.engine.MustacheEngineBuilder;
+import org.trimou.engine.listener.RenderProfiler.TagStats;
+import org.trimou.engine.locator.MapTemplateLocator;
+import org.trimou.handlebars.AbstractHelper;
+import org.trimou.handlebars.Options;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ *
+ * @author Martin Kouba
+ */
+public class RenderProfilerTest {
+
+    @Test
+    public void testProfiling() {
+        RenderProfiler profiler = new RenderProfiler();
+        MustacheEngine engine = MustacheEngineBuilder
+                .newBuilder()
+                .addMustacheListener(profiler)
+                .addTemplateLocator(
+                        new MapTemplateLocator(ImmutableMap.of("item",
+                                "<{{this}}>"))).build();
+        Mustache mustache = engine.compileMustache("profiler_1",
+                "{{#each items}}{{>item}}{{/each}}{{^items}}none{{/items}}");
+        assertEquals("<1><2><3>",
+                mustache.render(ImmutableMap.of("items",
+                        ImmutableList.of(1, 2, 3))));
+
+        List<TagStats> stats = profiler.getTagStats();
+        assertEquals(5, stats.size());
+        assertEquals(1, find(stats, "profiler_1").getInvocations());
+        TagStats each = find(stats, "profiler_1:1 {{#each items}}");
+        assertEquals(1, each.getInvocations());
+        assertEquals(9, each.getOutput());
+        assertTrue(each.getTime() >= each.getSelfTime());
+        TagStats partial = find(stats, "profiler_1:1 {{>item}}");
+        assertEquals(3, partial.getInvocations());
+        assertEquals(9, partial.getOutput());
+        TagStats value = find(stats, "item:1 {{this}}");
+        assertEquals(3, value.getInvocations());
+        assertEquals(3, value.getOutput());
+        assertEquals(1, find(stats, "profiler_1:1 {{^items}}")
+                .getInvocations());
+
+        String stacks = profiler.getCollapsedStacks(TimeUnit.NANOSECONDS);
+        assertTrue(stacks.contains("profiler_1;profiler_1:1 {{#each items}};profiler_1:1 {{>item}};item:1 {{this}} "));
+        assertEquals(5, stacks.split("\n").length);
+
+        // Output in bytes
+        profiler.clearData();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        mustache.render(out,
+                ImmutableMap.of("items", ImmutableList.of("\u20AC")),
+                Charsets.UTF_8);
+        assertEquals(3, find(profiler.getTagStats(), "item:1 {{this}}")
+                .getOutput());
+    }
+
+    @Test
+    public void testSampling() {
+        RenderProfiler profiler = new RenderProfiler(3);
+        MustacheEngine engine = MustacheEngineBuilder.newBuilder()
+                .addMustacheListener(profiler).build();
+        Mustache mustache = engine.compileMustache("profiler_2", "{{foo}}");
+        for (int i = 0; i < 6; i++) {
+            mustache.render(ImmutableMap.of("foo", i));
+        }
+        assertEquals(2, find(profiler.getTagStats(), "profiler_2:1 {{foo}}")
+                .getInvocations());
+        assertNull(profiler.getRecorder());
+    }
+
+    @Test
+    public void testAsyncRendering() throws InterruptedException {
+        final CountDownLatch helperLatch = new CountDownLatch(1);
+        final CountDownLatch completedLatch = new CountDownLatch(1);
+        RenderProfiler profiler = new RenderProfiler();
+        MustacheEngine engine = MustacheEngineBuilder.newBuilder()
+                .addMustacheListener(profiler)
+                .setExecutorService(Executors.newSingleThreadExecutor())
+                .registerHelper("async", new AbstractHelper() {
+                    @Override
+                    public void execute(Options options) {
+                        options.executeAsync(new Options.HelperExecutable() {
+                            @Override
+                            public void execute(Options options) {
+                                try {
+                                    helperLatch.await();
+                                } catch (InterruptedException e) {
+                                    throw new RuntimeException(e);
+                                }
+                                options.fn();
+                            }
+                        });
+                    }
+                }).build();
+        Mustache async = engine.compileMustache("profiler_3",
+                "{{#async}}{{this}}{{/async}}");
+        Mustache sync = engine.compileMustache("profiler_4", "{{this}}");
+        final StringBuilder builder = new StringBuilder();
+        async.renderAsync(builder, "foo", new RenderingCallback() {
+            @Override
+            public void completed() {
+                completedLatch.countDown();
+            }
+
+            @Override
+            public void failed(Throwable cause) {
+            }
+        });
+        // The async rendering is not finished yet but the recorder must be
+        // detached from the rendering thread
+        assertNull(profiler.getRecorder());
+        assertEquals("bar", sync.render("bar"));
+        assertNull(profiler.getRecorder());
+        helperLatch.countDown();
+        assertTrue(completedLatch.await(5, TimeUnit.SECONDS));
+        assertEquals("foo", builder.toString());
+
+        List<TagStats> stats = profiler.getTagStats();
+        assertEquals(1, find(stats, "profiler_3").getInvocations());
+        assertEquals(1, find(stats, "profiler_4").getInvocations());
+        assertEquals(1, find(stats, "profiler_4:1 {{this}}").getInvocations());
+        String stacks = profiler.getCollapsedStacks(TimeUnit.NANOSECONDS);
+        assertTrue(stacks.contains("\nprofiler_4;profiler_4:1 {{this}} ")
+                || stacks.startsWith("profiler_4;profiler_4:1 {{this}} "));
+        assertFalse(stacks.contains("profiler_3;profiler_4"));
+    }
+
+    private TagStats find(List<TagStats> stats, String name) {
+        for (TagStats tagStats : stats) {
+            if (tagStats.getName().equals(name)) {
+                return tagStats;
+            }
+        }
+        throw new AssertionError("Not found: " + name + " in " + stats);
+    }
+
+}
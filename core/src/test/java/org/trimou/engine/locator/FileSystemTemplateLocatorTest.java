@@ -1,24 +1,41 @@
 package org.trimou.engine.locator;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.trimou.ExceptionAssert;
+import org.trimou.Mustache;
 import org.trimou.MustacheExceptionAssert;
+import org.trimou.engine.AbstractMustacheEngine;
+import org.trimou.engine.MustacheEngine;
 import org.trimou.engine.MustacheEngineBuilder;
+import org.trimou.engine.cache.ComputingCache.KeyPredicate;
+import org.trimou.engine.config.Configuration;
 import org.trimou.engine.config.EngineConfigurationKey;
 import org.trimou.exception.MustacheProblem;
 
+import com.google.common.base.Charsets;
+
 /**
  *
  * @author Martin Kouba
  */
 public class FileSystemTemplateLocatorTest extends PathTemplateLocatorTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void testLocator() throws IOException {
 
@@ -127,4 +144,120 @@ public class FileSystemTemplateLocatorTest extends PathTemplateLocatorTest {
         assertEquals("Hurá ěščřřžžýá!", read(locator.locate("encoding")));
     }
 
+    @Test
+    public void testWatchChanges() throws Exception {
+        File rootDir = folder.newFolder("watch");
+        File sub = new File(rootDir, "sub");
+        assertTrue(sub.mkdir());
+        write(new File(rootDir, "index.html"), "Hello {{>sub/part}}!");
+        File part = new File(sub, "part.html");
+        write(part, "world");
+        write(new File(rootDir, "other.html"), "other");
+
+        final CountDownLatch invalidated = new CountDownLatch(1);
+        FileSystemTemplateLocator locator = new FileSystemTemplateLocator(1,
+                rootDir.getAbsolutePath(), "html") {
+            @Override
+            public void engineBuilt(MustacheEngine engine) {
+                super.engineBuilt(new InvalidationAwareEngine(engine,
+                        "sub/part", invalidated));
+            }
+        };
+        MustacheEngine engine = MustacheEngineBuilder.newBuilder()
+                .addTemplateLocator(locator)
+                .setProperty(FileSystemTemplateLocator.WATCH_ENABLED_KEY, true)
+                .build();
+        try {
+            Mustache index = engine.getMustache("index");
+            Mustache other = engine.getMustache("other");
+            assertEquals("Hello world!", index.render(null));
+
+            write(part, "universe");
+            assertTrue(invalidated.await(10, TimeUnit.SECONDS));
+            // The cached partial reference is refreshed
+            assertEquals("Hello universe!", index.render(null));
+            // Only the changed template is removed from the cache
+            assertSame(index, engine.getMustache("index"));
+            assertSame(other, engine.getMustache("other"));
+        } finally {
+            engine.shutdown();
+        }
+        // The watcher thread is stopped together with the engine
+        assertFalse(isWatcherThreadAlive());
+    }
+
+    private boolean isWatcherThreadAlive() {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if ("trimou-directory-watcher".equals(thread.getName())
+                    && thread.isAlive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void write(File file, String content) throws IOException {
+        com.google.common.io.Files.write(content, file, Charsets.UTF_8);
+    }
+
+    /**
+     * Notifies the latch once the given template is invalidated.
+     */
+    private static class InvalidationAwareEngine extends AbstractMustacheEngine {
+
+        private final MustacheEngine delegate;
+
+        private final String templateId;
+
+        private final CountDownLatch latch;
+
+        InvalidationAwareEngine(MustacheEngine delegate, String templateId,
+                CountDownLatch latch) {
+            this.delegate = delegate;
+            this.templateId = templateId;
+            this.latch = latch;
+        }
+
+        @Override
+        public Mustache getMustache(String templateId) {
+            return delegate.getMustache(templateId);
+        }
+
+        @Override
+        public String getMustacheSource(String templateId) {
+            return delegate.getMustacheSource(templateId);
+        }
+
+        @Override
+        public Mustache compileMustache(String templateId,
+                String templateContent) {
+            return delegate.compileMustache(templateId, templateContent);
+        }
+
+        @Override
+        public Configuration getConfiguration() {
+            return delegate.getConfiguration();
+        }
+
+        @Override
+        public void invalidateTemplateCache() {
+            delegate.invalidateTemplateCache();
+        }
+
+        @Override
+        public void invalidateTemplateCache(
+                KeyPredicate<String> templateIdPredicate) {
+            delegate.invalidateTemplateCache(templateIdPredicate);
+            if (templateIdPredicate.apply(templateId)) {
+                latch.countDown();
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+    }
+
 }
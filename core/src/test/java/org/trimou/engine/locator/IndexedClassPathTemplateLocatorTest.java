@@ -0,0 +1,122 @@
+package org.trimou.engine.locator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.trimou.engine.MustacheEngine;
+import org.trimou.engine.MustacheEngineBuilder;
+import org.trimou.engine.config.EngineConfigurationKey;
+
+import com.google.common.base.Charsets;
+
+/**
+ *
+ * @author Martin Kouba
+ */
+public class IndexedClassPathTemplateLocatorTest extends
+        PathTemplateLocatorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testDirectory() throws IOException {
+
+        TemplateLocator locator = new IndexedClassPathTemplateLocator(1,
+                "locator/file", "foo");
+
+        // Just to init the locator
+        MustacheEngineBuilder.newBuilder().addTemplateLocator(locator).build();
+
+        Set<String> ids = locator.getAllIdentifiers();
+        assertEquals(5, ids.size());
+        assertTrue(ids.contains("index"));
+        assertTrue(ids.contains("home"));
+        assertTrue(ids.contains("foo"));
+        assertTrue(ids.contains("sub/bar"));
+        assertTrue(ids.contains("sub/subsub/qux"));
+
+        assertEquals("{{foo}}", read(locator.locate("index")));
+        assertEquals("bar", read(locator.locate("home")));
+        assertEquals("{{foo}}", read(locator.locate("sub/bar")));
+        assertEquals("{{bar}}", read(locator.locate("sub/subsub/qux")));
+        assertNull(locator.locate("detail"));
+    }
+
+    @Test
+    public void testEncoding() throws IOException {
+        TemplateLocator locator = new IndexedClassPathTemplateLocator(1,
+                "locator/file", "html");
+        // Just to init the locator
+        MustacheEngineBuilder
+                .newBuilder()
+                .setProperty(EngineConfigurationKey.DEFAULT_FILE_ENCODING,
+                        "windows-1250").addTemplateLocator(locator).build();
+        assertEquals("Hurá ěščřřžžýá!", read(locator.locate("encoding")));
+    }
+
+    @Test
+    public void testJar() throws IOException {
+
+        File jar = folder.newFile("templates.jar");
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+        try {
+            addEntry(out, "templates/", null);
+            addEntry(out, "templates/index.html", "{{foo}}");
+            addEntry(out, "templates/sub/detail.html", "<html/>");
+            addEntry(out, "templates/sub/ignored.txt", "ignored");
+            addEntry(out, "other/other.html", "other");
+        } finally {
+            out.close();
+        }
+
+        URLClassLoader classLoader = new URLClassLoader(
+                new URL[] { jar.toURI().toURL() }, null);
+        try {
+            TemplateLocator locator = new IndexedClassPathTemplateLocator(1,
+                    "templates", "html", classLoader);
+            MustacheEngine engine = MustacheEngineBuilder
+                    .newBuilder()
+                    .setProperty(
+                            EngineConfigurationKey.PRECOMPILE_ALL_TEMPLATES,
+                            true).addTemplateLocator(locator).build();
+
+            Set<String> ids = locator.getAllIdentifiers();
+            assertEquals(2, ids.size());
+            assertTrue(ids.contains("index"));
+            assertTrue(ids.contains("sub/detail"));
+
+            assertEquals("{{foo}}", read(locator.locate("index")));
+            assertEquals("<html/>", read(locator.locate("sub/detail")));
+            assertNull(locator.locate("sub/ignored"));
+            assertNull(locator.locate("other"));
+            assertEquals("<html/>", engine.getMustache("sub/detail")
+                    .render(null));
+        } finally {
+            classLoader.close();
+        }
+    }
+
+    private void addEntry(JarOutputStream out, String name, String content)
+            throws IOException {
+        out.putNextEntry(new JarEntry(name));
+        if (content != null) {
+            out.write(content.getBytes(Charsets.UTF_8));
+        }
+        out.closeEntry();
+    }
+
+}
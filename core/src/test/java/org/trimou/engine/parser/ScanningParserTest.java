@@ -0,0 +1,112 @@
+package org.trimou.engine.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.trimou.AbstractEngineTest;
+import org.trimou.Mustache;
+import org.trimou.engine.MustacheEngine;
+import org.trimou.engine.MustacheEngineBuilder;
+import org.trimou.engine.MustacheTagType;
+import org.trimou.engine.config.EngineConfigurationKey;
+import org.trimou.exception.MustacheException;
+import org.trimou.exception.MustacheProblem;
+
+/**
+ *
+ * @author Martin Kouba
+ */
+public class ScanningParserTest extends AbstractEngineTest {
+
+    @Test
+    public void testSameEventsAsDefaultParser() {
+        String[] templates = new String[] { "", "Hello world!",
+                "Hello {{name}}!", "{{{foo}}} and {{& bar}}",
+                "{{#section}}\n  {{.}}\r\n{{/section}}\r",
+                "\r\r\n\n{{^inverted}}no{{/inverted}}\n",
+                "{a}{{! comment\n with line\n}}{b",
+                "{{=<% %>=}}<%foo%>{{bar}}<%={{ }}=%>{{baz}}",
+                "{{=| |=}}|foo| |#bar||/bar|",
+                "{{>partial}}\n{{<super}}{{$block}}x{{/block}}{{/super}}",
+                "Invalid {{foo}bar}} tag", "{{}}", "}}{{a}}}}" };
+        for (String template : templates) {
+            assertEquals(template, parse(new DefaultParser(engine), template),
+                    parse(new ScanningParser(engine), template));
+        }
+    }
+
+    @Test
+    public void testUnterminatedTag() {
+        try {
+            parse(new ScanningParser(engine), "Hello {{name");
+            fail();
+        } catch (MustacheException e) {
+            assertEquals(MustacheProblem.COMPILE_INVALID_TEMPLATE,
+                    e.getCode());
+        }
+    }
+
+    @Test
+    public void testScanningParserEnabled() {
+        MustacheEngine engine = MustacheEngineBuilder
+                .newBuilder()
+                .setProperty(EngineConfigurationKey.SCANNING_PARSER_ENABLED,
+                        true).build();
+        Mustache mustache = engine.compileMustache("scanning",
+                "{{#this}}\n{{.}}\r\n{{/this}}\n{{=[ ]=}}[#this][.][/this]");
+        assertEquals("a\r\nb\r\nab", mustache.render(new String[] { "a", "b" }));
+    }
+
+    private List<String> parse(Parser parser, String template) {
+        final List<String> events = new ArrayList<String>();
+        parser.parse("test", new StringReader(template), new ParsingHandler() {
+
+            Delimiters delimiters;
+
+            @Override
+            public void startTemplate(String name, Delimiters delimiters,
+                    MustacheEngine engine) {
+                this.delimiters = delimiters;
+                events.add("start");
+            }
+
+            @Override
+            public void text(String text) {
+                events.add("text:" + text);
+            }
+
+            @Override
+            public void tag(ParsedTag tag) {
+                events.add(tag.getType() + ":" + tag.getContent());
+                if (MustacheTagType.DELIMITER.equals(tag.getType())) {
+                    String content = tag.getContent();
+                    String[] parts = content.substring(1,
+                            content.length() - 1).trim().split(" ");
+                    delimiters.setNewValues(parts[0], parts[1]);
+                }
+            }
+
+            @Override
+            public void lineSeparator(String separator) {
+                events.add("separator:" + separator);
+            }
+
+            @Override
+            public void endTemplate() {
+                events.add("end");
+            }
+
+            @Override
+            public Mustache getCompiledTemplate() {
+                return null;
+            }
+        });
+        return events;
+    }
+
+}
@@ -0,0 +1,345 @@
+package org.trimou.engine.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.trimou.Mustache;
+import org.trimou.engine.MustacheEngine;
+import org.trimou.engine.MustacheEngineBuilder;
+import org.trimou.engine.MustacheTagType;
+import org.trimou.engine.config.EngineConfigurationKey;
+import org.trimou.engine.locator.FileSystemTemplateLocator;
+import org.trimou.engine.locator.MapTemplateLocator;
+import org.trimou.handlebars.EachHelper;
+import org.trimou.handlebars.HelperDefinition;
+import org.trimou.handlebars.HelpersBuilder;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+
+/**
+ *
+ * @author Martin Kouba
+ */
+public class TemplateSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReplay() throws IOException {
+        File file = File.createTempFile("trimou_snapshot", ".bin");
+        file.delete();
+        file.deleteOnExit();
+        MustacheEngine engine = MustacheEngineBuilder.newBuilder().build();
+        String contents = "{{=<% %>=}}Hello <%#this%><%.%>\n<%/this%>!";
+        String hash = TemplateSnapshot.hash(contents);
+
+        TemplateSnapshot snapshot = TemplateSnapshot.load(file, engine);
+        assertEquals(0, snapshot.size());
+        assertFalse(snapshot.replay("foo", hash, new DefaultParsingHandler(),
+                engine));
+        assertFalse(snapshot.writeIfModified());
+        ParsingHandler handler = new DefaultParsingHandler();
+        new DefaultParser(engine).parse("foo", new StringReader(contents),
+                snapshot.record("foo", hash, handler));
+        assertEquals("Hello a\nb\n!", handler.getCompiledTemplate().render(
+                new String[] { "a", "b" }));
+        assertTrue(snapshot.writeIfModified());
+        assertTrue(file.isFile());
+
+        snapshot = TemplateSnapshot.load(file, engine);
+        assertEquals(1, snapshot.size());
+        assertFalse(snapshot.replay("foo", TemplateSnapshot.hash("changed"),
+                new DefaultParsingHandler(), engine));
+        handler = new DefaultParsingHandler();
+        assertTrue(snapshot.replay("foo", hash, handler, engine));
+        assertEquals("Hello a\nb\n!", handler.getCompiledTemplate().render(
+                new String[] { "a", "b" }));
+    }
+
+    @Test
+    public void testEngineSnapshot() throws IOException {
+        File file = File.createTempFile("trimou_snapshot", ".bin");
+        file.delete();
+        file.deleteOnExit();
+        Map<String, String> templates = new HashMap<String, String>();
+        templates.put("foo", "{{#each this}}{{>bar}}{{/each}}");
+        templates.put("bar", "{{this}}");
+        AtomicInteger parsed = new AtomicInteger();
+
+        Mustache foo = buildEngine(file, templates, true, parsed)
+                .getMustache("foo");
+        assertEquals("ab", foo.render(new String[] { "a", "b" }));
+        assertEquals(1, parsed.get());
+        assertTrue(file.isFile());
+        assertEquals(2,
+                TemplateSnapshot.load(file,
+                        buildEngine(null, templates, true, null)).size());
+
+        // Replayed from the snapshot - the parser is not used
+        foo = buildEngine(file, templates, true, parsed).getMustache("foo");
+        assertEquals("ab", foo.render(new String[] { "a", "b" }));
+        assertEquals(1, parsed.get());
+
+        // Template changed - the snapshot entry is not used
+        templates.put("bar", "{{this}}-");
+        templates.put("foo", "{{#each this}}{{>bar}}|{{/each}}");
+        foo = buildEngine(file, templates, true, parsed).getMustache("foo");
+        assertEquals("a-|b-|", foo.render(new String[] { "a", "b" }));
+        assertEquals(2, parsed.get());
+    }
+
+    @Test
+    public void testEngineSnapshotLazy() throws IOException {
+        File file = File.createTempFile("trimou_snapshot", ".bin");
+        file.delete();
+        file.deleteOnExit();
+        Map<String, String> templates = new HashMap<String, String>();
+        templates.put("foo", "{{#each this}}{{.}}{{/each}}");
+        AtomicInteger parsed = new AtomicInteger();
+
+        MustacheEngine engine = buildEngine(file, templates, false, parsed);
+        assertFalse(file.exists());
+        assertEquals("ab",
+                engine.getMustache("foo").render(new String[] { "a", "b" }));
+        assertEquals(1, parsed.get());
+        assertTrue(engine.writeTemplateSnapshot());
+        assertTrue(file.isFile());
+        // Nothing changed
+        assertFalse(engine.writeTemplateSnapshot());
+
+        engine = buildEngine(file, templates, false, parsed);
+        assertEquals("ab",
+                engine.getMustache("foo").render(new String[] { "a", "b" }));
+        assertEquals(1, parsed.get());
+        assertFalse(engine.writeTemplateSnapshot());
+        assertFalse(buildEngine(null, templates, false, null)
+                .writeTemplateSnapshot());
+    }
+
+    @Test
+    public void testInvalidTagType() throws IOException {
+        File file = File.createTempFile("trimou_snapshot", ".bin");
+        file.deleteOnExit();
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+        try {
+            out.writeInt(0x54524D53);
+            out.writeInt(2);
+            out.writeInt(1);
+            writeString(out, MustacheTagType.VARIABLE.name());
+            writeString(out, "{{");
+            writeString(out, "}}");
+            // One template with a single tag of unknown type
+            out.writeInt(1);
+            writeString(out, "foo");
+            writeString(out, TemplateSnapshot.hash("{{foo}}"));
+            writeString(out, "");
+            out.writeInt(1);
+            out.writeByte(1);
+            out.writeByte(99);
+            writeString(out, "foo");
+        } finally {
+            out.close();
+        }
+        MustacheEngine engine = MustacheEngineBuilder.newBuilder().build();
+        TemplateSnapshot snapshot = TemplateSnapshot.load(file, engine);
+        assertEquals(0, snapshot.size());
+        assertFalse(snapshot.replay("foo", TemplateSnapshot.hash("{{foo}}"),
+                new DefaultParsingHandler(), engine));
+    }
+
+    @Test
+    public void testTagTypesByName() throws IOException {
+        File file = folder.newFile();
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+        try {
+            out.writeInt(0x54524D53);
+            out.writeInt(2);
+            // The stored ordinal 0 is mapped by name
+            out.writeInt(2);
+            writeString(out, MustacheTagType.VARIABLE.name());
+            writeString(out, MustacheTagType.COMMENT.name());
+            writeString(out, "{{");
+            writeString(out, "}}");
+            out.writeInt(1);
+            writeString(out, "foo");
+            writeString(out, TemplateSnapshot.hash("{{foo}}"));
+            writeString(out, "");
+            out.writeInt(1);
+            out.writeByte(1);
+            out.writeByte(0);
+            writeString(out, "foo");
+        } finally {
+            out.close();
+        }
+        MustacheEngine engine = MustacheEngineBuilder.newBuilder().build();
+        TemplateSnapshot snapshot = TemplateSnapshot.load(file, engine);
+        assertEquals(1, snapshot.size());
+        ParsingHandler handler = new DefaultParsingHandler();
+        assertTrue(snapshot.replay("foo", TemplateSnapshot.hash("{{foo}}"),
+                handler, engine));
+        assertEquals("bar",
+                handler.getCompiledTemplate().render(ImmutableMap.of("foo", "bar")));
+
+        // Unknown tag type name - the snapshot is ignored
+        out = new DataOutputStream(new FileOutputStream(file));
+        try {
+            out.writeInt(0x54524D53);
+            out.writeInt(2);
+            out.writeInt(1);
+            writeString(out, "UNKNOWN");
+        } finally {
+            out.close();
+        }
+        assertEquals(0, TemplateSnapshot.load(file, engine).size());
+    }
+
+    @Test
+    public void testFingerprint() throws IOException {
+        File dir = folder.newFolder();
+        File template = new File(dir, "foo.html");
+        Files.write("{{#each this}}{{.}}{{/each}}", template, Charsets.UTF_8);
+        File file = new File(folder.getRoot(), "snapshot.bin");
+        AtomicInteger parsed = new AtomicInteger();
+        AtomicInteger read = new AtomicInteger();
+
+        MustacheEngine engine = buildEngine(file, dir, parsed, read);
+        assertEquals("ab",
+                engine.getMustache("foo").render(new String[] { "a", "b" }));
+        assertEquals(1, parsed.get());
+        assertEquals(1, read.get());
+
+        // Fingerprint matches - the contents are not read at all
+        engine = buildEngine(file, dir, parsed, read);
+        assertEquals("ab",
+                engine.getMustache("foo").render(new String[] { "a", "b" }));
+        assertEquals(1, parsed.get());
+        assertEquals(1, read.get());
+
+        // Touched only - the contents are read but not parsed
+        assertTrue(template.setLastModified(template.lastModified() + 2000));
+        engine = buildEngine(file, dir, parsed, read);
+        assertEquals("ab",
+                engine.getMustache("foo").render(new String[] { "a", "b" }));
+        assertEquals(1, parsed.get());
+        assertEquals(2, read.get());
+        // The new fingerprint was written
+        buildEngine(file, dir, parsed, read);
+        assertEquals(2, read.get());
+
+        // Modified
+        Files.write("{{#each this}}{{.}}-{{/each}}", template, Charsets.UTF_8);
+        engine = buildEngine(file, dir, parsed, read);
+        assertEquals("a-b-",
+                engine.getMustache("foo").render(new String[] { "a", "b" }));
+        assertEquals(2, parsed.get());
+        assertEquals(3, read.get());
+    }
+
+    private MustacheEngine buildEngine(File snapshotFile, File dir,
+            AtomicInteger parsed, final AtomicInteger read) {
+        return MustacheEngineBuilder
+                .newBuilder()
+                .addTemplateLocator(
+                        new FileSystemTemplateLocator(1, dir.getAbsolutePath(),
+                                "html") {
+                            @Override
+                            public Reader locateRealPath(String realPath) {
+                                Reader reader = super.locateRealPath(realPath);
+                                return reader != null ? new FilterReader(reader) {
+                                    private boolean counted;
+
+                                    @Override
+                                    public int read(char[] cbuf, int off,
+                                            int len) throws IOException {
+                                        if (!counted) {
+                                            counted = true;
+                                            read.incrementAndGet();
+                                        }
+                                        return super.read(cbuf, off, len);
+                                    }
+                                } : null;
+                            }
+                        })
+                .setProperty(EngineConfigurationKey.PRECOMPILE_ALL_TEMPLATES,
+                        true)
+                .setProperty(EngineConfigurationKey.TEMPLATE_SNAPSHOT_FILE,
+                        snapshotFile.getAbsolutePath())
+                .registerHelper(HelpersBuilder.EACH, new ParserSpy(parsed),
+                        true).build();
+    }
+
+    private MustacheEngine buildEngine(File snapshotFile,
+            Map<String, String> templates, boolean precompile, AtomicInteger parsed) {
+        MustacheEngineBuilder builder = MustacheEngineBuilder
+                .newBuilder()
+                .addTemplateLocator(
+                        new MapTemplateLocator(ImmutableMap.copyOf(templates)))
+                .setProperty(EngineConfigurationKey.PRECOMPILE_ALL_TEMPLATES,
+                        precompile)
+                .setProperty(
+                        EngineConfigurationKey.TEMPLATE_SNAPSHOT_FILE,
+                        snapshotFile != null ? snapshotFile.getAbsolutePath()
+                                : "");
+        if (parsed != null) {
+            // A new instance per engine - a helper may not be shared
+            builder.registerHelper(HelpersBuilder.EACH, new ParserSpy(parsed),
+                    true);
+        }
+        return builder.build();
+    }
+
+    private static void writeString(DataOutputStream out, String value)
+            throws IOException {
+        byte[] bytes = value.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Counts the templates with an each helper which are compiled by a parser,
+     * i.e. not replayed from a snapshot.
+     */
+    private static class ParserSpy extends EachHelper {
+
+        private final AtomicInteger parsed;
+
+        ParserSpy(AtomicInteger parsed) {
+            this.parsed = parsed;
+        }
+
+        @Override
+        public void validate(HelperDefinition definition) {
+            super.validate(definition);
+            for (StackTraceElement element : Thread.currentThread()
+                    .getStackTrace()) {
+                if (element.getClassName().equals(
+                        DefaultParser.class.getName())
+                        || element.getClassName().equals(
+                                ScanningParser.class.getName())) {
+                    parsed.incrementAndGet();
+                    return;
+                }
+            }
+        }
+
+    }
+
+}
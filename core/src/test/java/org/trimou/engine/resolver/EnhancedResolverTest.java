@@ -14,9 +14,13 @@ import org.trimou.Hammer;
 import org.trimou.Mustache;
 import org.trimou.engine.MustacheEngine;
 import org.trimou.engine.MustacheEngineBuilder;
+import org.trimou.engine.config.EngineConfigurationKey;
 import org.trimou.handlebars.BasicHelper;
+import org.trimou.handlebars.HelpersBuilder;
 import org.trimou.handlebars.Options;
 
+import com.google.common.collect.ImmutableMap;
+
 /**
  *
  * @author Martin Kouba
@@ -112,9 +116,12 @@ public class EnhancedResolverTest extends AbstractTest {
             }
 
         };
-        MustacheEngine engine = MustacheEngineBuilder.newBuilder()
+        MustacheEngine engine = MustacheEngineBuilder
+                .newBuilder()
                 .omitServiceLoaderConfigurationExtensions()
-                .addResolver(resolver).build();
+                .setProperty(
+                        EngineConfigurationKey.RESOLVER_HINTS_POLYMORPHIC_LIMIT,
+                        0).addResolver(resolver).build();
         Mustache mustache = engine.compileMustache("enhancedresolver_2",
                 "{{foo.bar}}");
         // Hint is not created yet
@@ -128,6 +135,123 @@ public class EnhancedResolverTest extends AbstractTest {
         assertEquals(2, hintNames.size());
     }
 
+    @Test
+    public void testInlineCaches() {
+
+        final List<String> resolvedNames = new ArrayList<String>();
+        final List<String> hintNames = new ArrayList<String>();
+
+        EnhancedResolver resolver = new AbstractResolver(10) {
+
+            @Override
+            public Object resolve(Object contextObject, String name,
+                    ResolutionContext context) {
+                resolvedNames.add(name);
+                if (contextObject instanceof Hammer) {
+                    return ((Hammer) contextObject).getAge();
+                }
+                return null;
+            }
+
+            @Override
+            public Hint createHint(Object contextObject, String name,
+                    ResolutionContext context) {
+                return new Hint() {
+                    @Override
+                    public Object resolve(Object contextObject, String name,
+                            ResolutionContext context) {
+                        hintNames.add(name);
+                        return ((Hammer) contextObject).getAge();
+                    }
+                };
+            }
+
+        };
+        MustacheEngine engine = MustacheEngineBuilder
+                .newBuilder()
+                .omitServiceLoaderConfigurationExtensions()
+                .addResolver(new MapResolver())
+                .addResolver(resolver)
+                .setProperty(
+                        EngineConfigurationKey.RESOLVER_HINTS_POLYMORPHIC_LIMIT,
+                        2).build();
+        Mustache mustache = engine.compileMustache("enhancedresolver_3",
+                "{{foo.age}}");
+        // Inline cache is empty
+        assertEquals("10",
+                mustache.render(ImmutableMap.of("foo", new Hammer(10))));
+        assertEquals(1, resolvedNames.size());
+        assertEquals(0, hintNames.size());
+        // Hint applied
+        assertEquals("20",
+                mustache.render(ImmutableMap.of("foo", new Hammer(20))));
+        assertEquals(1, resolvedNames.size());
+        assertEquals(1, hintNames.size());
+        // Different receiver classes
+        assertEquals("30", mustache.render(ImmutableMap.of("foo",
+                new Hammer(30) {
+                })));
+        assertEquals("40", mustache.render(ImmutableMap.of("foo",
+                new Hammer(40) {
+                })));
+        assertEquals(3, resolvedNames.size());
+        assertEquals(1, hintNames.size());
+        // Megamorphic - the resolver chain is always used
+        assertEquals("50", mustache.render(ImmutableMap.of("foo",
+                new Hammer(50))));
+        assertEquals(4, resolvedNames.size());
+        assertEquals(1, hintNames.size());
+    }
+
+    @Test
+    public void testHintsForSectionsAndHelperParams() {
+
+        final List<String> resolvedNames = new ArrayList<String>();
+        final List<String> hintNames = new ArrayList<String>();
+
+        EnhancedResolver resolver = new AbstractResolver(10) {
+
+            @Override
+            public Object resolve(Object contextObject, String name,
+                    ResolutionContext context) {
+                if (contextObject == null && "foo".equals(name)) {
+                    resolvedNames.add(name);
+                    return true;
+                }
+                return null;
+            }
+
+            @Override
+            public Hint createHint(Object contextObject, String name,
+                    ResolutionContext context) {
+                return new Hint() {
+                    @Override
+                    public Object resolve(Object contextObject, String name,
+                            ResolutionContext context) {
+                        hintNames.add(name);
+                        return true;
+                    }
+                };
+            }
+
+        };
+        MustacheEngine engine = MustacheEngineBuilder.newBuilder()
+                .omitServiceLoaderConfigurationExtensions()
+                .addResolver(resolver)
+                .registerHelpers(HelpersBuilder.empty().addIf().build())
+                .build();
+        Mustache mustache = engine.compileMustache("enhancedresolver_4",
+                "{{#foo}}a{{/foo}}{{^foo}}b{{/foo}}{{#if foo}}c{{/if}}");
+        // Hints are not created yet
+        assertEquals("ac", mustache.render(null));
+        assertEquals(3, resolvedNames.size());
+        assertEquals(0, hintNames.size());
+        // Hints applied
+        assertEquals("ac", mustache.render(null));
+        assertEquals(3, resolvedNames.size());
+        assertEquals(3, hintNames.size());
+    }
+
     @Test
     public void testHintIsNotCreatedForHelper() {
 
@@ -3,6 +3,7 @@ package org.trimou.engine.resolver;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
 
 import java.util.Map;
 
@@ -11,6 +12,7 @@ import org.trimou.AbstractEngineTest;
 import org.trimou.ArchiveType;
 import org.trimou.Hammer;
 import org.trimou.Mustache;
+import org.trimou.engine.MustacheEngine;
 import org.trimou.engine.MustacheEngineBuilder;
 
 import com.google.common.base.Predicate;
@@ -97,6 +99,69 @@ public class ReflectionResolverTest extends AbstractEngineTest {
         assertEquals(1, resolver.getMemberCacheSize());
     }
 
+    @Test
+    public void testMethodHandlesEnabled() {
+
+        ReflectionResolver resolver = new ReflectionResolver();
+        MustacheEngine engine = MustacheEngineBuilder
+                .newBuilder()
+                .omitServiceLoaderConfigurationExtensions()
+                .setProperty(ReflectionResolver.METHOD_HANDLES_ENABLED_KEY,
+                        true).addResolver(new ThisResolver())
+                .addResolver(new MapResolver()).addResolver(resolver)
+                .build();
+
+        Hammer hammer = new Hammer();
+        assertEquals(Integer.valueOf(10), resolver.resolve(hammer, "age", null));
+        assertEquals("NAIL", resolver.resolve(hammer, "nail", null));
+        assertNull(resolver.resolve(hammer, "getAgeForName", null));
+        // Methods, fields and missing members are cached
+        assertEquals(3, resolver.getMemberCacheSize());
+        assertEquals(Integer.valueOf(10), resolver.resolve(hammer, "age", null));
+        assertEquals(3, resolver.getMemberCacheSize());
+
+        Map<String, Object> data = ImmutableMap.<String, Object> of("hammer",
+                hammer, "type", ArchiveType.class);
+        assertEquals(
+                "Hello Edgar of age 10, persistent: false and !",
+                engine.compileMustache(
+                        "reflection_resolver_mh",
+                        "Hello {{hammer.name}} of age {{hammer.age}}, persistent: {{hammer.persistent}} and {{hammer.invalidName}}!")
+                        .render(data));
+        assertEquals(
+                "NAIL|jar",
+                engine.compileMustache("reflection_resolver_mh_fields",
+                        "{{hammer.nail}}|{{type.JAR.suffix}}").render(data));
+        assertEquals(
+                "jar,war,ear,",
+                engine.compileMustache("reflection_resolver_mh_static_method",
+                        "{{#type.values}}{{this.suffix}},{{/type.values}}")
+                        .render(data));
+    }
+
+    @Test
+    public void testMethodHandlesExceptions() {
+
+        ReflectionResolver resolver = new ReflectionResolver();
+        MustacheEngineBuilder.newBuilder()
+                .omitServiceLoaderConfigurationExtensions()
+                .setProperty(ReflectionResolver.METHOD_HANDLES_ENABLED_KEY,
+                        true).addResolver(resolver).build();
+
+        Failing failing = new Failing();
+        // Errors and runtime exceptions are not wrapped
+        try {
+            resolver.resolve(failing, "error", null);
+            fail();
+        } catch (StackOverflowError expected) {
+        }
+        try {
+            resolver.resolve(failing, "runtime", null);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
     @Test(expected = IllegalStateException.class)
     public void testMultipleInit() {
 
@@ -110,4 +175,16 @@ public class ReflectionResolverTest extends AbstractEngineTest {
         resolver.init(null);
     }
 
+    public static class Failing {
+
+        public String getError() {
+            throw new StackOverflowError();
+        }
+
+        public String getRuntime() {
+            throw new IllegalStateException();
+        }
+
+    }
+
 }
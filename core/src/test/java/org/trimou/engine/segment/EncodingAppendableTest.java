@@ -0,0 +1,106 @@
+package org.trimou.engine.segment;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+
+import org.junit.Test;
+import org.trimou.AbstractEngineTest;
+import org.trimou.Mustache;
+import org.trimou.engine.MustacheEngineBuilder;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ *
+ * @author Martin Kouba
+ */
+public class EncodingAppendableTest extends AbstractEngineTest {
+
+    @Override
+    public void buildEngine() {
+        engine = MustacheEngineBuilder.newBuilder().build();
+    }
+
+    @Test
+    public void testRenderToOutputStream() {
+        Mustache mustache = engine.compileMustache("encoding_stream",
+                "Příliš žluťoučký {{animal}}\n{{#items}}{{this}}|{{/items}}");
+        ImmutableMap<String, Object> data = ImmutableMap.<String, Object> of(
+                "animal", "kůň", "items", new String[] { "ú", "€", "😀" });
+        String expected = mustache.render(data);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        mustache.render(out, data, Charsets.UTF_8);
+        assertEquals(expected, new String(out.toByteArray(), Charsets.UTF_8));
+
+        // Different charset - the static text must be encoded again
+        out = new ByteArrayOutputStream();
+        mustache.render(out, data, Charsets.UTF_16);
+        assertEquals(expected, new String(out.toByteArray(), Charsets.UTF_16));
+
+        // Unmappable characters are replaced
+        out = new ByteArrayOutputStream();
+        mustache.render(out, data, Charsets.US_ASCII);
+        assertEquals(new String(expected.getBytes(Charsets.US_ASCII),
+                Charsets.US_ASCII), new String(out.toByteArray(),
+                Charsets.US_ASCII));
+    }
+
+    @Test
+    public void testRenderToChannel() {
+        String longText = Strings.repeat("Hello world! ",
+                EncodingAppendable.DEFAULT_BUFFER_SIZE / 5);
+        Mustache mustache = engine.compileMustache("encoding_channel",
+                longText + "{{#each this}}{{this}}{{/each}}" + longText);
+        String[] data = new String[EncodingAppendable.DEFAULT_BUFFER_SIZE];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = "č";
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        mustache.render(Channels.newChannel(out), data, Charsets.UTF_8);
+        assertEquals(mustache.render(data),
+                new String(out.toByteArray(), Charsets.UTF_8));
+    }
+
+    @Test
+    public void testSplitSurrogatePair() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        EncodingAppendable appendable = new EncodingAppendable(out,
+                Charsets.UTF_8);
+        appendable.append("a\uD83D");
+        appendable.append('\uDE00');
+        appendable.append("\uD83D");
+        appendable.append("\uDE00b");
+        appendable.flush();
+        assertEquals("a😀😀b",
+                new String(out.toByteArray(), Charsets.UTF_8));
+        // Lone high surrogate is replaced
+        out.reset();
+        appendable.append("\uD83D");
+        appendable.write("c".getBytes(Charsets.UTF_8));
+        appendable.flush();
+        assertEquals("?c", new String(out.toByteArray(), Charsets.UTF_8));
+    }
+
+    @Test
+    public void testFlushOutput() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        EncodingAppendable appendable = new EncodingAppendable(out,
+                Charsets.UTF_8);
+        appendable.append("a\uD83D");
+        // The high surrogate remains buffered
+        appendable.flushOutput();
+        assertEquals("a", new String(out.toByteArray(), Charsets.UTF_8));
+        appendable.append("\uDE00");
+        // Encode all the remaining characters
+        appendable.append("\uD83D");
+        appendable.flush();
+        assertEquals("a😀?", new String(out.toByteArray(), Charsets.UTF_8));
+    }
+
+}
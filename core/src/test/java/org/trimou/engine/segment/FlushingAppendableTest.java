@@ -0,0 +1,129 @@
+package org.trimou.engine.segment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+import org.trimou.AbstractTest;
+import org.trimou.Mustache;
+import org.trimou.engine.MustacheEngine;
+import org.trimou.engine.MustacheEngineBuilder;
+import org.trimou.engine.config.EngineConfigurationKey;
+import org.trimou.handlebars.AbstractHelper;
+import org.trimou.handlebars.Options;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+
+/**
+ *
+ * @author Martin Kouba
+ */
+public class FlushingAppendableTest extends AbstractTest {
+
+    @Test
+    public void testFlushThreshold() throws IOException {
+        CountingWriter writer = new CountingWriter();
+        FlushingAppendable appendable = new FlushingAppendable(writer, 5);
+        appendable.append("abc");
+        assertEquals(0, writer.flushes);
+        appendable.append('d');
+        appendable.append("xxefxx", 2, 4);
+        assertEquals(1, writer.flushes);
+        appendable.append("ghijklmno");
+        assertEquals(2, writer.flushes);
+        assertEquals("abcdefghijklmno", writer.toString());
+    }
+
+    @Test
+    public void testRenderToWriter() {
+        MustacheEngine engine = MustacheEngineBuilder.newBuilder()
+                .setProperty(EngineConfigurationKey.OUTPUT_FLUSH_THRESHOLD, 10)
+                .build();
+        Mustache mustache = engine.compileMustache("flushing_writer",
+                "{{#each this}}{{this}}{{/each}}");
+        String[] data = new String[] { Strings.repeat("a", 8), "bb", "cc",
+                Strings.repeat("d", 20) };
+        CountingWriter writer = new CountingWriter();
+        mustache.render(writer, data);
+        assertEquals(2, writer.flushes);
+        assertEquals(mustache.render(data), writer.toString());
+
+        // Flushing disabled by default
+        writer = new CountingWriter();
+        MustacheEngineBuilder.newBuilder().build()
+                .compileMustache("flushing_writer", "{{this}}")
+                .render(writer, Strings.repeat("a", 10000));
+        assertEquals(0, writer.flushes);
+    }
+
+    @Test
+    public void testRenderToOutputStream() {
+        MustacheEngine engine = MustacheEngineBuilder.newBuilder()
+                .setProperty(EngineConfigurationKey.OUTPUT_FLUSH_THRESHOLD, 16)
+                .build();
+        Mustache mustache = engine.compileMustache("flushing_stream",
+                "{{#each this}}{{this}}|{{/each}}");
+        String[] data = new String[] { "á", "bbbbbbbbbbbbbbbbbbbb", "č" };
+        CountingOutputStream out = new CountingOutputStream();
+        mustache.render(out, data, Charsets.UTF_8);
+        assertEquals(1, out.flushes);
+        assertEquals(mustache.render(data),
+                new String(out.toByteArray(), Charsets.UTF_8));
+    }
+
+    @Test
+    public void testFlushBeforeAsyncExecution() {
+        final CountingWriter writer = new CountingWriter();
+        MustacheEngine engine = MustacheEngineBuilder.newBuilder()
+                .setExecutorService(Executors.newSingleThreadExecutor())
+                .setProperty(EngineConfigurationKey.OUTPUT_FLUSH_THRESHOLD,
+                        1000)
+                .registerHelper("async", new AbstractHelper() {
+                    @Override
+                    public void execute(Options options) {
+                        options.executeAsync(new Options.HelperExecutable() {
+                            @Override
+                            public void execute(Options options) {
+                                options.append("async");
+                            }
+                        });
+                    }
+                }).build();
+        Mustache mustache = engine.compileMustache("flushing_async",
+                "Hello {{async}}!");
+        mustache.render(writer, null);
+        assertTrue(writer.flushes > 0);
+        assertEquals("Hello async!", writer.toString());
+    }
+
+    private static class CountingWriter extends StringWriter {
+
+        private int flushes;
+
+        @Override
+        public void flush() {
+            flushes++;
+            super.flush();
+        }
+
+    }
+
+    private static class CountingOutputStream extends ByteArrayOutputStream {
+
+        private int flushes;
+
+        @Override
+        public void flush() throws IOException {
+            flushes++;
+            super.flush();
+        }
+
+    }
+
+}
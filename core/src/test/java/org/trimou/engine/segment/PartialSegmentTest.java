@@ -1,6 +1,7 @@
 package org.trimou.engine.segment;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
 import java.util.HashMap;
@@ -12,6 +13,7 @@ import org.trimou.AbstractEngineTest;
 import org.trimou.Mustache;
 import org.trimou.engine.MustacheEngine;
 import org.trimou.engine.MustacheEngineBuilder;
+import org.trimou.engine.cache.ComputingCache.KeyPredicate;
 import org.trimou.engine.config.EngineConfigurationKey;
 import org.trimou.engine.locator.MapTemplateLocator;
 import org.trimou.exception.MustacheException;
@@ -176,6 +178,27 @@ public class PartialSegmentTest extends AbstractEngineTest {
         assertEquals("foo", mustache.render("foo"));
     }
 
+    @Test
+    public void testCachedPartialSegmentRefreshed() {
+        Map<String, String> map = new HashMap<>();
+        map.put("alpha", "{{>bravo}}");
+        map.put("bravo", "{{this}}");
+        MapTemplateLocator locator = new MapTemplateLocator(map);
+        MustacheEngine engine = MustacheEngineBuilder.newBuilder()
+                .addTemplateLocator(locator).build();
+        Mustache mustache = engine.getMustache("alpha");
+        assertEquals("foo", mustache.render("foo"));
+        map.put("bravo", "NOTHING");
+        engine.invalidateTemplateCache(new KeyPredicate<String>() {
+            @Override
+            public boolean apply(String templateId) {
+                return "bravo".equals(templateId);
+            }
+        });
+        assertEquals("NOTHING", mustache.render("foo"));
+        assertSame(mustache, engine.getMustache("alpha"));
+    }
+
     @Test
     public void testCachedPartialSegmentNotUsed() {
         Map<String, String> map = new HashMap<>();
@@ -3,6 +3,7 @@ package org.trimou.engine.segment;
 import static org.junit.Assert.assertEquals;
 
 import java.util.Collections;
+import java.util.Iterator;
 
 import org.junit.Test;
 import org.trimou.AbstractEngineTest;
@@ -60,6 +61,29 @@ public class SectionSegmentTest extends AbstractEngineTest {
                 "items", ImmutableSet.builder().add(new Hammer()).add(new Hammer()).build())));
     }
 
+    @Test
+    public void testIterator() {
+        Mustache mustache = engine.compileMustache("iterator",
+                "{{#numbers}}la{{iter.index}}{{iter.hasNext}}{{iter.isLast}}|{{/numbers}}{{^numbers}}empty{{/numbers}}");
+        assertEquals("la1truefalse|la2falsetrue|empty", mustache
+                .render(ImmutableMap.<String, Object> of("numbers",
+                        ImmutableList.of(1, 2).iterator())));
+        assertEquals("empty", mustache.render(ImmutableMap
+                .<String, Object> of("numbers",
+                        Collections.emptyIterator())));
+        // Single-pass iterable
+        final Iterator<Integer> iterator = ImmutableList.of(1, 2, 3)
+                .iterator();
+        assertEquals("la1truefalse|la2truefalse|la3falsetrue|empty",
+                mustache.render(ImmutableMap.<String, Object> of("numbers",
+                        new Iterable<Integer>() {
+                            @Override
+                            public Iterator<Integer> iterator() {
+                                return iterator;
+                            }
+                        })));
+    }
+
     @Test
     public void testArray() {
 
@@ -0,0 +1,83 @@
+package org.trimou.engine.segment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.trimou.AbstractEngineTest;
+import org.trimou.engine.MustacheEngine;
+import org.trimou.engine.MustacheEngineBuilder;
+import org.trimou.engine.config.EngineConfigurationKey;
+import org.trimou.engine.locator.MapTemplateLocator;
+import org.trimou.engine.parser.Template;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ *
+ * @author Martin Kouba
+ */
+public class StaticTextSegmentTest extends AbstractEngineTest {
+
+    @Override
+    public void buildEngine() {
+    }
+
+    @Test
+    public void testStaticSegmentsMerged() {
+        MustacheEngine engine = MustacheEngineBuilder
+                .newBuilder()
+                .setProperty(
+                        EngineConfigurationKey.STATIC_SEGMENTS_MERGING_ENABLED,
+                        true).build();
+        Template template = (Template) engine.compileMustache("static_merge",
+                "Hello\n {{! Comment}} world\n{{#this}}\n!\n{{foo}}\n{{/this}}\n");
+        RootSegment root = template.getRootSegment();
+        // Static text, section
+        assertEquals(2, root.getSegmentsSize(false));
+        assertTrue(root.getSegments().get(0) instanceof StaticTextSegment);
+        assertEquals("Hello\n  world\n", root.getSegments().get(0).getText());
+        // Nested static text, value, line separator
+        SectionSegment section = (SectionSegment) root.getSegments().get(1);
+        assertEquals(3, section.getSegmentsSize(false));
+        assertEquals("!\n", section.getSegments().get(0).getText());
+        assertEquals("Hello\n  world\n!\nbar\n",
+                template.render(ImmutableMap.of("foo", "bar")));
+    }
+
+    @Test
+    public void testLineSeparatorsReused() {
+        MustacheEngine engine = MustacheEngineBuilder
+                .newBuilder()
+                .setProperty(
+                        EngineConfigurationKey.STATIC_SEGMENTS_MERGING_ENABLED,
+                        true).build();
+        Template template = (Template) engine.compileMustache(
+                "static_merge_line_separators", "a\nb\n{{foo}}\nc\n");
+        RootSegment root = template.getRootSegment();
+        StaticTextSegment first = (StaticTextSegment) root.getSegments()
+                .get(0);
+        StaticTextSegment last = (StaticTextSegment) root.getSegments().get(2);
+        assertEquals(4, first.getSegments().size());
+        assertSame(first.getSegments().get(1), first.getSegments().get(3));
+        assertSame(first.getSegments().get(1), last.getSegments().get(0));
+    }
+
+    @Test
+    public void testStandalonePartialIndentation() {
+        MustacheEngine engine = MustacheEngineBuilder
+                .newBuilder()
+                .addTemplateLocator(
+                        new MapTemplateLocator(ImmutableMap.of("partial",
+                                "1\n2\n{{foo}}\n3")))
+                .setProperty(
+                        EngineConfigurationKey.STATIC_SEGMENTS_MERGING_ENABLED,
+                        true).build();
+        assertEquals("Foo\n  1\n  2\n  bar\n  3",
+                engine.compileMustache("static_merge_partial",
+                        "Foo\n  {{>partial}}\n").render(
+                        ImmutableMap.of("foo", "bar")));
+    }
+
+}
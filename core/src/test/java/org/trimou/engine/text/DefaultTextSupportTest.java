@@ -0,0 +1,37 @@
+package org.trimou.engine.text;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+import org.junit.Test;
+
+/**
+ *
+ * @author Martin Kouba
+ */
+public class DefaultTextSupportTest {
+
+    @Test
+    public void testEscapeHtml() throws IOException {
+        DefaultTextSupport textSupport = new DefaultTextSupport();
+        String noEscape = "Hello world!";
+        assertSame(noEscape, textSupport.escapeHtml(noEscape));
+        StringBuilder all = new StringBuilder();
+        for (char c = 0; c < 1000; c++) {
+            all.append(c);
+        }
+        for (String input : new String[] { "", noEscape, "<b>&amp;</b>",
+                "\"quoted\" 'single'", " éÿĀ€",
+                "x>", "<", all.toString() }) {
+            String expected = StringEscapeUtils.ESCAPE_HTML3.translate(input);
+            assertEquals(expected, textSupport.escapeHtml(input));
+            StringBuilder builder = new StringBuilder("foo");
+            textSupport.appendEscapedHtml(input, builder);
+            assertEquals("foo" + expected, builder.toString());
+        }
+    }
+
+}
@@ -5,6 +5,8 @@ import static org.trimou.AssertUtil.assertCompilationFails;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 
 import org.junit.Test;
 import org.trimou.AbstractEngineTest;
@@ -15,6 +17,7 @@ import org.trimou.engine.MustacheEngine;
 import org.trimou.engine.MustacheEngineBuilder;
 import org.trimou.exception.MustacheProblem;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 
@@ -109,6 +112,31 @@ public class BuiltInHelpersTest extends AbstractEngineTest {
                 });
     }
 
+    @Test
+    public void testEachHelperIterator() {
+        assertEquals(
+                "foo,bar|",
+                engine.compileMustache("each_helper_iterator1",
+                        "{{#each this}}{{this}}{{#if iter.hasNext}},{{/if}}{{#if iter.isLast}}|{{/if}}{{/each}}")
+                        .render(ImmutableList.of("foo", "bar").iterator()));
+        // The iterable may only be traversed once
+        final Iterator<String> iterator = ImmutableList.of("foo", "bar",
+                "baz").iterator();
+        assertEquals(
+                "1:foo,2:bar,3:baz",
+                engine.compileMustache("each_helper_iterator2",
+                        "{{#each this}}{{iter.index}}:{{this}}{{#if iter.hasNext}},{{/if}}{{/each}}")
+                        .render(new Iterable<String>() {
+                            @Override
+                            public Iterator<String> iterator() {
+                                return iterator;
+                            }
+                        }));
+        assertEquals("", engine.compileMustache("each_helper_iterator3",
+                "{{#each this}}{{this}}{{/each}}").render(
+                Collections.emptyIterator()));
+    }
+
     @Test
     public void testIfHelper() {
         assertEquals(
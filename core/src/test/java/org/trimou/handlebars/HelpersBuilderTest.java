@@ -35,7 +35,7 @@ public class HelpersBuilderTest {
     @Test
     public void testExtra() {
         Map<String, Helper> helpers = HelpersBuilder.extra().build();
-        assertEquals(19, helpers.size());
+        assertEquals(20, helpers.size());
         assertTrue(helpers.containsKey(HelpersBuilder.EMBED));
         assertTrue(helpers.containsKey(HelpersBuilder.INCLUDE));
         assertTrue(helpers.containsKey(HelpersBuilder.IS_EQUAL));
@@ -48,6 +48,7 @@ public class HelpersBuilderTest {
         assertTrue(helpers.containsKey(HelpersBuilder.SWITCH));
         assertTrue(helpers.containsKey(HelpersBuilder.CHOOSE));
         assertTrue(helpers.containsKey(HelpersBuilder.JOIN));
+        assertTrue(helpers.containsKey(HelpersBuilder.PARALLEL));
         assertTrue(helpers.containsKey(HelpersBuilder.EVAL));
         assertTrue(helpers.containsKey(HelpersBuilder.NUMERIC_EXPRESSION));
         assertTrue(helpers.containsKey(HelpersBuilder.ASYNC));
@@ -1,31 +1,40 @@
 package org.trimou.handlebars;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.Test;
 import org.trimou.AbstractTest;
 import org.trimou.ExceptionAssert;
 import org.trimou.Hammer;
+import org.trimou.Mustache;
 import org.trimou.MustacheExceptionAssert;
 import org.trimou.engine.MustacheEngine;
 import org.trimou.engine.MustacheEngineBuilder;
 import org.trimou.engine.MustacheTagInfo;
 import org.trimou.engine.MustacheTagType;
+import org.trimou.engine.config.EngineConfigurationKey;
 import org.trimou.engine.locator.MapTemplateLocator;
 import org.trimou.engine.resolver.AbstractResolver;
 import org.trimou.engine.resolver.ResolutionContext;
 import org.trimou.engine.resource.ReleaseCallback;
 import org.trimou.exception.MustacheProblem;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 
 /**
@@ -293,6 +302,211 @@ public class OptionsTest extends AbstractTest {
                         .render("bar"));
     }
 
+    @Test
+    public void testAsyncExecutionValueWrapperPooling() {
+        MustacheEngine engine = MustacheEngineBuilder
+                .newBuilder()
+                .setExecutorService(
+                        Executors.newFixedThreadPool(Runtime.getRuntime()
+                                .availableProcessors()))
+                .setProperty(
+                        EngineConfigurationKey.VALUE_WRAPPER_POOLING_ENABLED,
+                        true)
+                .registerHelper("async", new AbstractHelper() {
+
+                    @Override
+                    public void execute(Options options) {
+                        options.executeAsync(new Options.HelperExecutable() {
+
+                            @Override
+                            public void execute(Options options) {
+                                try {
+                                    Thread.sleep(20);
+                                } catch (InterruptedException e) {
+                                    throw new RuntimeException(e);
+                                }
+                                options.fn();
+                            }
+                        });
+                    }
+                }).build();
+        Mustache mustache = engine.compileMustache("helper_asynexec_pooling",
+                "{{#async}}{{#this}}{{.}}{{/this}}{{/async}}|{{#this}}{{.}}{{/this}}");
+        for (int i = 0; i < 10; i++) {
+            assertEquals("abc|abc",
+                    mustache.render(ImmutableList.of("a", "b", "c")));
+        }
+    }
+
+    @Test
+    public void testAsyncExecutionNested() {
+        MustacheEngine engine = MustacheEngineBuilder.newBuilder()
+                .setExecutorService(Executors.newFixedThreadPool(4))
+                .registerHelpers(HelpersBuilder.extra().build()).build();
+        Mustache mustache = engine.compileMustache("helper_asynexec_nested",
+                "{{#each this}}{{#async}}{{#async}}<{{this}}>{{/async}}{{#async}}{{this}}{{/async}}{{/async}}|{{/each}}");
+        for (int i = 0; i < 10; i++) {
+            assertEquals("<a>a|<b>b|<c>c|",
+                    mustache.render(ImmutableList.of("a", "b", "c")));
+        }
+    }
+
+    @Test
+    public void testAsyncExecutionTimeout() {
+        final CountDownLatch latch = new CountDownLatch(1);
+        MustacheEngine engine = MustacheEngineBuilder.newBuilder()
+                .setExecutorService(Executors.newSingleThreadExecutor())
+                .setProperty(EngineConfigurationKey.ASYNC_PROCESSING_TIMEOUT,
+                        1l)
+                .registerHelper("wait", new AbstractHelper() {
+                    @Override
+                    public void execute(Options options) {
+                        options.executeAsync(new Options.HelperExecutable() {
+                            @Override
+                            public void execute(Options options) {
+                                try {
+                                    latch.await();
+                                } catch (InterruptedException e) {
+                                    throw new RuntimeException(e);
+                                }
+                            }
+                        });
+                    }
+                }).build();
+        final Mustache mustache = engine.compileMustache(
+                "helper_asynexec_timeout", "{{wait}}");
+        try {
+            MustacheExceptionAssert.expect(
+                    MustacheProblem.RENDER_ASYNC_PROCESSING_ERROR).check(
+                    new Runnable() {
+                        public void run() {
+                            mustache.render(null);
+                        }
+                    });
+        } finally {
+            latch.countDown();
+        }
+    }
+
+    @Test
+    public void testAsyncExecutionConcurrencyLimit() {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        MustacheEngine engine = MustacheEngineBuilder.newBuilder()
+                .setExecutorService(Executors.newFixedThreadPool(4))
+                .setProperty(EngineConfigurationKey.ASYNC_MAX_CONCURRENT_TASKS,
+                        2)
+                .registerHelper("slow", new AbstractHelper() {
+                    @Override
+                    public void execute(Options options) {
+                        options.executeAsync(new Options.HelperExecutable() {
+                            @Override
+                            public void execute(Options options) {
+                                int current = running.incrementAndGet();
+                                if (current > maxRunning.get()) {
+                                    maxRunning.set(current);
+                                }
+                                try {
+                                    Thread.sleep(10);
+                                } catch (InterruptedException e) {
+                                    throw new RuntimeException(e);
+                                } finally {
+                                    running.decrementAndGet();
+                                }
+                                options.fn();
+                            }
+                        });
+                    }
+                }).build();
+        assertEquals("1|2|3|4|5|6|",
+                engine.compileMustache("helper_asynexec_limit",
+                        "{{#each this}}{{#slow}}{{this}}{{/slow}}|{{/each}}")
+                        .render(ImmutableList.of(1, 2, 3, 4, 5, 6)));
+        assertTrue(maxRunning.get() <= 2);
+    }
+
+    @Test
+    public void testAsyncExecutionVirtualThreads() {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // The configured executor always takes precedence
+            MustacheEngine engine = MustacheEngineBuilder.newBuilder()
+                    .setExecutorService(executor)
+                    .setProperty(
+                            EngineConfigurationKey.ASYNC_VIRTUAL_THREADS_ENABLED,
+                            true)
+                    .registerHelpers(
+                            HelpersBuilder.empty().addAsync().build())
+                    .build();
+            assertSame(executor,
+                    engine.getConfiguration().geExecutorService());
+            assertEquals("foo!", engine
+                    .compileMustache("helper_asynexec_virtual",
+                            "{{#async}}{{this}}{{/async}}!")
+                    .render("foo"));
+            // The configured executor is not shut down with the engine
+            engine.shutdown();
+            assertFalse(executor.isShutdown());
+        } finally {
+            executor.shutdown();
+        }
+        MustacheEngine engine = MustacheEngineBuilder.newBuilder()
+                .setProperty(
+                        EngineConfigurationKey.ASYNC_VIRTUAL_THREADS_ENABLED,
+                        true)
+                .build();
+        ExecutorService virtualThreadsExecutor = engine.getConfiguration()
+                .geExecutorService();
+        // Virtual threads may not be supported
+        if (virtualThreadsExecutor != null) {
+            engine.shutdown();
+            assertTrue(virtualThreadsExecutor.isShutdown());
+        }
+    }
+
+    @Test
+    public void testRenderAsync() throws InterruptedException {
+        final CountDownLatch taskLatch = new CountDownLatch(1);
+        final CountDownLatch completedLatch = new CountDownLatch(1);
+        MustacheEngine engine = MustacheEngineBuilder.newBuilder()
+                .setExecutorService(Executors.newSingleThreadExecutor())
+                .registerHelper("wait", new AbstractHelper() {
+                    @Override
+                    public void execute(Options options) {
+                        options.executeAsync(new Options.HelperExecutable() {
+                            @Override
+                            public void execute(Options options) {
+                                try {
+                                    taskLatch.await();
+                                } catch (InterruptedException e) {
+                                    throw new RuntimeException(e);
+                                }
+                                options.fn();
+                            }
+                        });
+                    }
+                }).build();
+        StringBuilder builder = new StringBuilder();
+        engine.compileMustache("helper_renderasync",
+                "{{#wait}}{{this}}{{/wait}} my friend").renderAsync(builder,
+                "hello", new Mustache.RenderingCallback() {
+
+                    @Override
+                    public void completed() {
+                        completedLatch.countDown();
+                    }
+
+                    @Override
+                    public void failed(Throwable cause) {
+                    }
+                });
+        // Nothing is appended until the async task is finished
+        assertEquals(0, builder.length());
+        taskLatch.countDown();
+        assertTrue(completedLatch.await(5, TimeUnit.SECONDS));
+        assertEquals("hello my friend", builder.toString());
+    }
+
     @Test
     public void testSource() {
         final MustacheEngine engine = MustacheEngineBuilder
@@ -0,0 +1,83 @@
+package org.trimou.handlebars;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.trimou.AbstractTest;
+import org.trimou.Mustache;
+import org.trimou.engine.MustacheEngine;
+import org.trimou.engine.MustacheEngineBuilder;
+import org.trimou.engine.locator.MapTemplateLocator;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ *
+ * @author Martin Kouba
+ */
+public class ParallelHelperTest extends AbstractTest {
+
+    private ExecutorService executor;
+
+    @Before
+    public void createExecutor() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void shutdownExecutor() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testParallelHelper() {
+        final Set<String> threads = Collections
+                .newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        MustacheEngine engine = MustacheEngineBuilder
+                .newBuilder()
+                .setExecutorService(executor)
+                .registerHelpers(HelpersBuilder.empty().addParallel().build())
+                .registerHelper("thread", new AbstractHelper() {
+                    @Override
+                    public void execute(Options options) {
+                        threads.add(Thread.currentThread().getName());
+                    }
+                })
+                .addTemplateLocator(
+                        new MapTemplateLocator(ImmutableMap.of("widget1",
+                                "[{{this.0}}{{thread}}]", "widget2",
+                                "[{{this.1}}{{thread}}]"))).build();
+        Mustache mustache = engine.compileMustache("parallel_helper01",
+                "{{#parallel}}\n{{>widget1}}|{{>widget2}}|{{#each this}}{{this}}{{/each}}\n{{/parallel}}!");
+        for (int i = 0; i < 10; i++) {
+            assertEquals("[a]|[b]|abc\n!",
+                    mustache.render(ImmutableList.of("a", "b", "c")));
+        }
+        assertTrue(threads.size() > 0);
+        assertTrue(!threads.contains(Thread.currentThread().getName()));
+    }
+
+    @Test
+    public void testEachHelperParallel() {
+        MustacheEngine engine = MustacheEngineBuilder.newBuilder()
+                .setExecutorService(executor).build();
+        Mustache mustache = engine.compileMustache("parallel_helper02",
+                "{{#each this parallel=true}}{{iter.index}}:{{this}}{{#if iter.hasNext}},{{/if}}{{/each}}");
+        for (int i = 0; i < 10; i++) {
+            assertEquals("1:a,2:b,3:c,4:d",
+                    mustache.render(ImmutableList.of("a", "b", "c", "d")));
+            assertEquals("1:a,2:b", mustache.render(new String[] { "a", "b" }));
+        }
+    }
+
+}
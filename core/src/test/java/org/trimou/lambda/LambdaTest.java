@@ -1,12 +1,25 @@
 package org.trimou.lambda;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.Test;
 import org.trimou.AbstractEngineTest;
+import org.trimou.Mustache;
+import org.trimou.engine.MustacheEngine;
+import org.trimou.engine.MustacheEngineBuilder;
+import org.trimou.engine.config.EngineConfigurationKey;
+import org.trimou.engine.listener.AbstractMustacheListener;
+import org.trimou.engine.listener.MustacheCompilationEvent;
 import org.trimou.engine.segment.SectionSegmentTest;
 import org.trimou.engine.segment.ValueSegmentTest;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 
 /**
@@ -37,4 +50,57 @@ public class LambdaTest extends AbstractEngineTest {
                         ImmutableMap.of("foo", "true", "lambda", lambda)));
     }
 
+    @Test
+    public void testCompiledContentCache() {
+        final List<String> compiled = new ArrayList<String>();
+        MustacheEngine engine = MustacheEngineBuilder
+                .newBuilder()
+                .setProperty(
+                        EngineConfigurationKey.COMPILED_CONTENT_CACHE_MAX_SIZE,
+                        10l)
+                .addMustacheListener(new AbstractMustacheListener() {
+                    @Override
+                    public void compilationFinished(
+                            MustacheCompilationEvent event) {
+                        compiled.add(event.getMustache().getName());
+                    }
+                }).build();
+        Lambda lambda = new InputLiteralLambda() {
+            @Override
+            public String invoke(String text) {
+                return "{{" + text + "}}";
+            }
+
+            @Override
+            public boolean isReturnValueInterpolated() {
+                return true;
+            }
+        };
+        Mustache mustache = engine.compileMustache("lambda_content_cache",
+                "{{#each this}}{{#lambda}}name{{/lambda}}:{{#lambda}}name{{/lambda}},{{/each}}");
+        assertEquals(1, compiled.size());
+        assertEquals("a:a,b:b,", mustache.render(ImmutableList.of(
+                ImmutableMap.of("name", "a", "lambda", lambda),
+                ImmutableMap.of("name", "b", "lambda", lambda))));
+        // The return value is only compiled once
+        assertEquals(2, compiled.size());
+        assertTrue(compiled.get(1).startsWith(
+                Lambda.ONEOFF_LAMBDA_TEMPLATE_PREFIX));
+        // compileMustache() results are not cached by default
+        assertNotSame(engine.compileMustache("foo", "{{foo}}"),
+                engine.compileMustache("foo", "{{foo}}"));
+
+        engine = MustacheEngineBuilder
+                .newBuilder()
+                .setProperty(
+                        EngineConfigurationKey.COMPILED_CONTENT_CACHE_MAX_SIZE,
+                        10l)
+                .setProperty(
+                        EngineConfigurationKey.COMPILE_MUSTACHE_CACHE_ENABLED,
+                        true).build();
+        mustache = engine.compileMustache("foo", "{{foo}}");
+        assertSame(mustache, engine.compileMustache("foo", "{{foo}}"));
+        assertNotSame(mustache, engine.compileMustache("bar", "{{foo}}"));
+    }
+
 }
@@ -1,9 +1,13 @@
 package org.trimou.spec;
 
 import java.io.IOException;
+import java.util.Map;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.trimou.engine.config.EngineConfigurationKey;
+
+import com.google.common.collect.ImmutableMap;
 
 /**
  *
@@ -55,4 +59,40 @@ public class SpecTest {
         SpecUtils.executeTests("~lambdas.json", SPEC_VERSION);
     }
 
+    @Test
+    public void testStaticSegmentsMergingEnabled() throws IOException {
+        Map<String, Object> properties = ImmutableMap.<String, Object> of(
+                EngineConfigurationKey.STATIC_SEGMENTS_MERGING_ENABLED.get(),
+                true);
+        // Lambdas are not tested - some of them are stateful
+        for (String filename : new String[] { "comments.json",
+                "sections.json", "inverted.json", "delimiters.json",
+                "interpolation.json", "partials.json" }) {
+            SpecUtils.executeTests(filename, SPEC_VERSION, null, properties);
+        }
+    }
+
+    @Test
+    public void testValueWrapperPoolingEnabled() throws IOException {
+        Map<String, Object> properties = ImmutableMap.<String, Object> of(
+                EngineConfigurationKey.VALUE_WRAPPER_POOLING_ENABLED.get(),
+                true);
+        for (String filename : new String[] { "comments.json",
+                "sections.json", "inverted.json", "delimiters.json",
+                "interpolation.json", "partials.json" }) {
+            SpecUtils.executeTests(filename, SPEC_VERSION, null, properties);
+        }
+    }
+
+    @Test
+    public void testScanningParserEnabled() throws IOException {
+        Map<String, Object> properties = ImmutableMap.<String, Object> of(
+                EngineConfigurationKey.SCANNING_PARSER_ENABLED.get(), true);
+        for (String filename : new String[] { "comments.json",
+                "sections.json", "inverted.json", "delimiters.json",
+                "interpolation.json", "partials.json" }) {
+            SpecUtils.executeTests(filename, SPEC_VERSION, null, properties);
+        }
+    }
+
 }
@@ -7,6 +7,7 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -44,6 +45,13 @@ public final class SpecUtils {
 
     static void executeTests(String filename, String specVersion,
             String singleTest) throws IOException {
+        executeTests(filename, specVersion, singleTest,
+                Collections.<String, Object> emptyMap());
+    }
+
+    static void executeTests(String filename, String specVersion,
+            String singleTest, Map<String, Object> properties)
+            throws IOException {
 
         List<Definition> definitions = parseDefinitions(getSpecFile(filename,
                 specVersion));
@@ -64,12 +72,16 @@ public final class SpecUtils {
                 MapTemplateLocator mockTemplateLocator = new MapTemplateLocator(
                         definition.getPartials());
 
-                MustacheEngine factory = MustacheEngineBuilder
+                MustacheEngineBuilder builder = MustacheEngineBuilder
                         .newBuilder()
                         .addTemplateLocator(mockTemplateLocator)
                         .setProperty(
                                 EngineConfigurationKey.HANDLEBARS_SUPPORT_ENABLED,
-                                false).build();
+                                false);
+                for (Entry<String, Object> property : properties.entrySet()) {
+                    builder.setProperty(property.getKey(), property.getValue());
+                }
+                MustacheEngine factory = builder.build();
 
                 idx++;
 
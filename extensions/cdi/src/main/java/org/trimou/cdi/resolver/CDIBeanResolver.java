@@ -167,6 +167,14 @@ public class CDIBeanResolver extends AbstractResolver {
                 .<ConfigurationKey> singleton(BEAN_CACHE_MAX_SIZE_KEY);
     }
 
+    /**
+     *
+     * @return the current number of entries in the bean cache
+     */
+    public long getBeanCacheSize() {
+        return beanCache != null ? beanCache.size() : 0l;
+    }
+
     private <T> Object getReference(Bean<T> bean, ResolutionContext context) {
 
         CreationalContext<T> creationalContext = beanManager
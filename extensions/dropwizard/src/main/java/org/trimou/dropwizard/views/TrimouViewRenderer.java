@@ -21,13 +21,11 @@ import io.dropwizard.views.ViewRenderer;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
+import java.nio.charset.Charset;
 import java.util.Locale;
 
 import javax.ws.rs.WebApplicationException;
 
-import org.apache.commons.lang3.StringUtils;
 import org.trimou.Mustache;
 import org.trimou.engine.MustacheEngine;
 import org.trimou.engine.MustacheEngineBuilder;
@@ -73,18 +71,12 @@ public class TrimouViewRenderer implements ViewRenderer {
     @Override
     public void render(View view, Locale locale, OutputStream output) throws IOException, WebApplicationException {
 
-        Mustache template = null;
+        Mustache template;
 
         if (hasLocalizedTemplates && locale != null) {
-            // First try the Locale
-            template = engine.getMustache(getLocalizedTemplateName(view.getTemplateName(), locale.toString()));
-            if (template == null) {
-                // Then only the language
-                template = engine.getMustache(getLocalizedTemplateName(view.getTemplateName(), locale.getLanguage()));
-            }
-        }
-
-        if (template == null) {
+            // E.g. foo_de_DE.trimou, foo_de.trimou and then foo.trimou
+            template = engine.getMustache(view.getTemplateName(), locale);
+        } else {
             template = engine.getMustache(view.getTemplateName());
         }
 
@@ -92,27 +84,25 @@ public class TrimouViewRenderer implements ViewRenderer {
             throw new FileNotFoundException("Template not found: " + view.getTemplateName());
         }
 
-        final Writer writer = new OutputStreamWriter(output, engine.getConfiguration().getStringPropertyValue(EngineConfigurationKey.DEFAULT_FILE_ENCODING));
+        final Charset charset = Charset.forName(engine.getConfiguration().getStringPropertyValue(EngineConfigurationKey.DEFAULT_FILE_ENCODING));
 
         try {
-            template.render(writer, view);
+            template.render(output, view, charset);
         } catch (MustacheException e) {
             throw new IOException(e);
         } finally {
-            writer.flush();
+            output.flush();
         }
     }
 
-    private String getLocalizedTemplateName(String templateName, String localePart) {
-        return StringUtils.removeEnd(templateName, suffix) + "_" + localePart + suffix;
-    }
-
     public static class Builder {
 
         private String suffix = DEFAULT_SUFFIX;
 
         private boolean hasLocalizedTemplates = true;
 
+        private int outputFlushThreshold = 0;
+
         public Builder setSuffix(String suffix) {
             this.suffix = suffix;
             return this;
@@ -123,6 +113,16 @@ public class TrimouViewRenderer implements ViewRenderer {
             return this;
         }
 
+        /**
+         * @param outputFlushThreshold
+         * @return self
+         * @see EngineConfigurationKey#OUTPUT_FLUSH_THRESHOLD
+         */
+        public Builder setOutputFlushThreshold(int outputFlushThreshold) {
+            this.outputFlushThreshold = outputFlushThreshold;
+            return this;
+        }
+
         public TrimouViewRenderer build() {
             return build(MustacheEngineBuilder.newBuilder());
         }
@@ -132,6 +132,9 @@ public class TrimouViewRenderer implements ViewRenderer {
             builder.addTemplateLocator(ClassPathTemplateLocator.builder(10).setClassLoader(this.getClass().getClassLoader()).build());
             // Locator for partials and template inheritance
             builder.addTemplateLocator(ClassPathTemplateLocator.builder(9).setClassLoader(this.getClass().getClassLoader()).setSuffix(suffix).build());
+            if (outputFlushThreshold > 0) {
+                builder.setProperty(EngineConfigurationKey.OUTPUT_FLUSH_THRESHOLD, outputFlushThreshold);
+            }
             return build(builder.build());
         }
 
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.jdk8.handlebars;
+
+import java.util.Iterator;
+import java.util.stream.BaseStream;
+
+import org.trimou.handlebars.EachHelper;
+import org.trimou.handlebars.Options;
+
+/**
+ * An {@link EachHelper} which is also able to iterate over the elements of a
+ * {@link java.util.stream.Stream} (or any other {@link BaseStream}, e.g.
+ * {@link java.util.stream.IntStream}). The stream is traversed lazily, only
+ * once and it's closed after the iteration, i.e. the registered close handlers
+ * are invoked.
+ *
+ * <code>
+ * {{#each rows}}
+ *  {{name}}
+ * {{/each}}
+ * </code>
+ *
+ * <p>
+ * Note that the helper must be registered manually, e.g. to replace the
+ * built-in helper:
+ * </p>
+ *
+ * <code>
+ * MustacheEngineBuilder.newBuilder().registerHelper(HelpersBuilder.EACH, new StreamEachHelper(), true).build();
+ * </code>
+ *
+ * @author Martin Kouba
+ */
+public class StreamEachHelper extends EachHelper {
+
+    @Override
+    public void execute(Options options) {
+        Object value = options.getParameters().get(0);
+        try {
+            super.execute(options);
+        } finally {
+            if (value instanceof BaseStream) {
+                ((BaseStream<?, ?>) value).close();
+            }
+        }
+    }
+
+    @Override
+    protected Iterator<?> getIterator(Object value) {
+        if (value instanceof BaseStream) {
+            return ((BaseStream<?, ?>) value).iterator();
+        }
+        return super.getIterator(value);
+    }
+
+}
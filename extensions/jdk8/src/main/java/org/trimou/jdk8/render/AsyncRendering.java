@@ -0,0 +1,76 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.jdk8.render;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import org.trimou.Mustache;
+import org.trimou.Mustache.RenderingCallback;
+
+/**
+ * Adapts {@link Mustache#renderAsync(Appendable, Object, RenderingCallback)}
+ * to {@link CompletionStage}. The rendering thread is not blocked by
+ * asynchronous helpers and the dependent stages are executed either in the
+ * rendering thread or in the thread which finished the last pending task.
+ *
+ * @author Martin Kouba
+ * @see org.trimou.handlebars.Options#executeAsync(org.trimou.handlebars.Options.HelperExecutable)
+ */
+public final class AsyncRendering {
+
+    private AsyncRendering() {
+    }
+
+    /**
+     *
+     * @param mustache
+     * @param data
+     * @return the completion stage of the rendered template
+     */
+    public static CompletionStage<String> render(Mustache mustache,
+            Object data) {
+        StringBuilder builder = new StringBuilder();
+        return render(mustache, builder, data)
+                .thenApply(Object::toString);
+    }
+
+    /**
+     *
+     * @param mustache
+     * @param appendable
+     * @param data
+     * @return the completion stage of the given appendable
+     */
+    public static <T extends Appendable> CompletionStage<T> render(
+            Mustache mustache, T appendable, Object data) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        mustache.renderAsync(appendable, data, new RenderingCallback() {
+
+            @Override
+            public void completed() {
+                future.complete(appendable);
+            }
+
+            @Override
+            public void failed(Throwable cause) {
+                future.completeExceptionally(cause);
+            }
+        });
+        return future;
+    }
+
+}
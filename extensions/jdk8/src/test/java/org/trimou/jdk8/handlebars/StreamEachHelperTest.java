@@ -0,0 +1,55 @@
+package org.trimou.jdk8.handlebars;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+import org.trimou.engine.MustacheEngine;
+import org.trimou.engine.MustacheEngineBuilder;
+import org.trimou.handlebars.HelpersBuilder;
+
+/**
+ *
+ * @author Martin Kouba
+ */
+public class StreamEachHelperTest {
+
+    @Test
+    public void testStreams() {
+        MustacheEngine engine = MustacheEngineBuilder.newBuilder()
+                .registerHelper(HelpersBuilder.EACH, new StreamEachHelper(),
+                        true).build();
+        AtomicBoolean closed = new AtomicBoolean();
+        AtomicInteger produced = new AtomicInteger();
+        assertEquals(
+                "1:foo,2:bar|",
+                engine.compileMustache("stream_each_helper1",
+                        "{{#each this}}{{iter.index}}:{{this}}{{#if iter.hasNext}},{{/if}}{{#if iter.isLast}}|{{/if}}{{/each}}")
+                        .render(Stream.of("foo", "bar").peek(
+                                (e) -> produced.incrementAndGet()).onClose(
+                                () -> closed.set(true))));
+        assertTrue(closed.get());
+        assertEquals(2, produced.get());
+        assertEquals(
+                "0123",
+                engine.compileMustache("stream_each_helper2",
+                        "{{#each this}}{{this}}{{/each}}").render(
+                        IntStream.range(0, 4)));
+        assertEquals(
+                "ab",
+                engine.compileMustache("stream_each_helper3",
+                        "{{#each this}}{{this}}{{/each}}").render(
+                        new String[] { "a", "b" }));
+        assertEquals(
+                "",
+                engine.compileMustache("stream_each_helper4",
+                        "{{#each this}}{{this}}{{/each}}").render(
+                        Stream.empty()));
+    }
+
+}
@@ -0,0 +1,82 @@
+package org.trimou.jdk8.render;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.trimou.Mustache;
+import org.trimou.engine.MustacheEngine;
+import org.trimou.engine.MustacheEngineBuilder;
+import org.trimou.exception.MustacheException;
+import org.trimou.exception.MustacheProblem;
+import org.trimou.handlebars.HelpersBuilder;
+import org.trimou.jdk8.handlebars.SimpleHelpers;
+
+/**
+ *
+ * @author Martin Kouba
+ */
+public class AsyncRenderingTest {
+
+    @Test
+    public void testRenderAsync() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        MustacheEngine engine = MustacheEngineBuilder.newBuilder()
+                .setExecutorService(Executors.newFixedThreadPool(2))
+                .registerHelpers(HelpersBuilder.empty().addAsync().build())
+                .registerHelper("wait", SimpleHelpers.execute((o, c) -> {
+                    o.executeAsync((ao) -> {
+                        try {
+                            latch.await(5, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            throw new IllegalStateException(e);
+                        }
+                        ao.fn();
+                    });
+                })).build();
+        Mustache mustache = engine.compileMustache("async_rendering",
+                "Hello {{#wait}}{{this}}{{#async}}!{{/async}}{{/wait}} and bye");
+        CompletableFuture<String> future = AsyncRendering
+                .render(mustache, "world").toCompletableFuture();
+        // The rendering thread is not blocked
+        assertFalse(future.isDone());
+        latch.countDown();
+        assertEquals("Hello world! and bye", future.get(5, TimeUnit.SECONDS));
+        // No async helper - completed immediately
+        assertTrue(AsyncRendering
+                .render(engine.compileMustache("async_rendering_sync",
+                        "{{this}}"), "foo")
+                .toCompletableFuture().isDone());
+    }
+
+    @Test
+    public void testRenderAsyncFailure() throws Exception {
+        MustacheEngine engine = MustacheEngineBuilder.newBuilder()
+                .setExecutorService(Executors.newSingleThreadExecutor())
+                .registerHelper("fail", SimpleHelpers.execute((o, c) -> {
+                    o.executeAsync((ao) -> {
+                        throw new IllegalStateException();
+                    });
+                })).build();
+        try {
+            AsyncRendering.render(
+                    engine.compileMustache("async_rendering_failure",
+                            "{{fail}}"), null)
+                    .toCompletableFuture().get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof MustacheException);
+            assertEquals(MustacheProblem.RENDER_ASYNC_PROCESSING_ERROR,
+                    ((MustacheException) e.getCause()).getCode());
+        }
+    }
+
+}
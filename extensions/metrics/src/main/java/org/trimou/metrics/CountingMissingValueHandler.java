@@ -0,0 +1,60 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.metrics;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.trimou.engine.MustacheTagInfo;
+import org.trimou.engine.config.Configuration;
+import org.trimou.engine.config.ConfigurationKey;
+import org.trimou.engine.interpolation.MissingValueHandler;
+
+/**
+ * Counts the missing values and delegates to the original handler.
+ *
+ * @author Martin Kouba
+ * @see TrimouMetrics#countMissingValues(MissingValueHandler)
+ */
+class CountingMissingValueHandler implements MissingValueHandler {
+
+    private final MissingValueHandler delegate;
+
+    private final AtomicLong counter;
+
+    CountingMissingValueHandler(MissingValueHandler delegate,
+            AtomicLong counter) {
+        this.delegate = delegate;
+        this.counter = counter;
+    }
+
+    @Override
+    public Object handle(MustacheTagInfo tagInfo) {
+        counter.incrementAndGet();
+        return delegate.handle(tagInfo);
+    }
+
+    @Override
+    public void init(Configuration configuration) {
+        delegate.init(configuration);
+    }
+
+    @Override
+    public Set<ConfigurationKey> getConfigurationKeys() {
+        return delegate.getConfigurationKeys();
+    }
+
+}
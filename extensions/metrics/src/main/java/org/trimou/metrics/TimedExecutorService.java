@@ -0,0 +1,96 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.metrics;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.trimou.engine.listener.LogLinearHistogram;
+
+import com.google.common.util.concurrent.ForwardingExecutorService;
+
+/**
+ * Measures the time the submitted tasks spend in the queue, i.e. the time
+ * between the submission and the start of the execution.
+ *
+ * @author Martin Kouba
+ * @see TrimouMetrics#timeAsyncTasks(ExecutorService)
+ */
+class TimedExecutorService extends ForwardingExecutorService {
+
+    private final ExecutorService delegate;
+
+    private final LogLinearHistogram queueTimes;
+
+    TimedExecutorService(ExecutorService delegate,
+            LogLinearHistogram queueTimes) {
+        this.delegate = delegate;
+        this.queueTimes = queueTimes;
+    }
+
+    @Override
+    protected ExecutorService delegate() {
+        return delegate;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        super.execute(new TimedRunnable(command));
+    }
+
+    @Override
+    public Future<?> submit(Runnable task) {
+        return super.submit(new TimedRunnable(task));
+    }
+
+    @Override
+    public <T> Future<T> submit(Runnable task, T result) {
+        return super.submit(new TimedRunnable(task), result);
+    }
+
+    @Override
+    public <T> Future<T> submit(final Callable<T> task) {
+        final long submitted = System.nanoTime();
+        return super.submit(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                queueTimes.record(System.nanoTime() - submitted);
+                return task.call();
+            }
+        });
+    }
+
+    private class TimedRunnable implements Runnable {
+
+        private final Runnable task;
+
+        private final long submitted;
+
+        TimedRunnable(Runnable task) {
+            this.task = task;
+            this.submitted = System.nanoTime();
+        }
+
+        @Override
+        public void run() {
+            queueTimes.record(System.nanoTime() - submitted);
+            task.run();
+        }
+
+    }
+
+}
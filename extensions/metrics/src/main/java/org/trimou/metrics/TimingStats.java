@@ -0,0 +1,93 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+import org.trimou.engine.listener.LogLinearHistogram;
+
+/**
+ * Immutable timing statistics, all the times are in milliseconds.
+ *
+ * @author Martin Kouba
+ */
+public final class TimingStats {
+
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS
+            .toNanos(1);
+
+    private final long count;
+
+    private final double mean;
+
+    private final double max;
+
+    private final double p50;
+
+    private final double p95;
+
+    private final double p99;
+
+    /**
+     *
+     * @param snapshot
+     *            The values are in nanoseconds
+     */
+    public TimingStats(LogLinearHistogram.Snapshot snapshot) {
+        this.count = snapshot.getCount();
+        this.mean = toMillis(snapshot.getMean());
+        this.max = toMillis(snapshot.getMax());
+        this.p50 = toMillis(snapshot.getValueAtPercentile(50.0));
+        this.p95 = toMillis(snapshot.getValueAtPercentile(95.0));
+        this.p99 = toMillis(snapshot.getValueAtPercentile(99.0));
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getP50() {
+        return p50;
+    }
+
+    public double getP95() {
+        return p95;
+    }
+
+    public double getP99() {
+        return p99;
+    }
+
+    @Override
+    public String toString() {
+        return String
+                .format("TimingStats [count: %s, mean: %s, max: %s, p50: %s, p95: %s, p99: %s]",
+                        count, mean, max, p50, p95, p99);
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / NANOS_PER_MILLI;
+    }
+
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.trimou.engine.MustacheEngine;
+import org.trimou.engine.cache.CacheStats;
+import org.trimou.engine.listener.LogLinearHistogram;
+import org.trimou.util.Checker;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Registers a {@link TrimouMXBean} for the given engine, i.e. the metrics are
+ * available to any JMX client without additional dependencies.
+ *
+ * <pre>
+ * TrimouMetrics metrics = new TrimouMetrics();
+ * MustacheEngine engine = MustacheEngineBuilder.newBuilder().addMustacheListener(metrics).build();
+ * ObjectName name = TrimouJmx.register(engine, metrics, &quot;myEngine&quot;);
+ * </pre>
+ *
+ * @author Martin Kouba
+ */
+public final class TrimouJmx {
+
+    public static final String DOMAIN = "org.trimou";
+
+    private TrimouJmx() {
+    }
+
+    /**
+     * The MXBean is registered with the platform MBean server.
+     *
+     * @param engine
+     * @param metrics
+     * @param name
+     * @return the object name of the registered MXBean
+     * @throws JMException
+     */
+    public static ObjectName register(MustacheEngine engine,
+            TrimouMetrics metrics, String name) throws JMException {
+        Checker.checkArgumentsNotNull(engine, metrics, name);
+        ObjectName objectName = getObjectName(name);
+        getServer().registerMBean(
+                new StandardMBean(new EngineMXBean(engine, metrics),
+                        TrimouMXBean.class, true), objectName);
+        return objectName;
+    }
+
+    /**
+     *
+     * @param objectName
+     * @throws JMException
+     */
+    public static void unregister(ObjectName objectName) throws JMException {
+        getServer().unregisterMBean(objectName);
+    }
+
+    /**
+     *
+     * @param name
+     * @return the object name for the given engine name
+     * @throws JMException
+     */
+    public static ObjectName getObjectName(String name) throws JMException {
+        return new ObjectName(DOMAIN + ":type=MustacheEngine,name="
+                + ObjectName.quote(name));
+    }
+
+    private static MBeanServer getServer() {
+        return ManagementFactory.getPlatformMBeanServer();
+    }
+
+    private static class EngineMXBean implements TrimouMXBean {
+
+        private final MustacheEngine engine;
+
+        private final TrimouMetrics metrics;
+
+        EngineMXBean(MustacheEngine engine, TrimouMetrics metrics) {
+            this.engine = engine;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public long getTemplateCacheSize() {
+            CacheStats stats = engine.getTemplateCacheStats();
+            return stats != null ? stats.getSize() : -1;
+        }
+
+        @Override
+        public double getTemplateCacheHitRatio() {
+            CacheStats stats = engine.getTemplateCacheStats();
+            return stats != null ? stats.getHitRatio() : -1;
+        }
+
+        @Override
+        public long getSourceCacheSize() {
+            CacheStats stats = engine.getSourceCacheStats();
+            return stats != null ? stats.getSize() : -1;
+        }
+
+        @Override
+        public double getSourceCacheHitRatio() {
+            CacheStats stats = engine.getSourceCacheStats();
+            return stats != null ? stats.getHitRatio() : -1;
+        }
+
+        @Override
+        public long getMemberCacheSize() {
+            return metrics.getMemberCacheSize();
+        }
+
+        @Override
+        public long getBeanCacheSize() {
+            return metrics.getBeanCacheSize();
+        }
+
+        @Override
+        public long getMissingValues() {
+            return metrics.getMissingValues();
+        }
+
+        @Override
+        public TimingStats getAsyncQueueTime() {
+            return new TimingStats(metrics.getAsyncQueueSnapshot());
+        }
+
+        @Override
+        public Map<String, TimingStats> getRenderingTimes() {
+            return toTimingStats(metrics.getRenderingSnapshots());
+        }
+
+        @Override
+        public Map<String, TimingStats> getCompilationTimes() {
+            return toTimingStats(metrics.getCompilationSnapshots());
+        }
+
+        @Override
+        public void clearData() {
+            metrics.clearData();
+        }
+
+        private Map<String, TimingStats> toTimingStats(
+                Map<String, LogLinearHistogram.Snapshot> snapshots) {
+            ImmutableMap.Builder<String, TimingStats> builder = ImmutableMap
+                    .builder();
+            for (Entry<String, LogLinearHistogram.Snapshot> entry : snapshots
+                    .entrySet()) {
+                builder.put(entry.getKey(), new TimingStats(entry.getValue()));
+            }
+            return builder.build();
+        }
+
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.metrics;
+
+import java.util.Map;
+
+/**
+ * The management interface of a {@link org.trimou.engine.MustacheEngine}. All
+ * the times are in milliseconds.
+ *
+ * @author Martin Kouba
+ * @see TrimouJmx
+ */
+public interface TrimouMXBean {
+
+    /**
+     *
+     * @return the number of cached templates or <code>-1</code> if the
+     *         template cache is disabled
+     */
+    long getTemplateCacheSize();
+
+    /**
+     *
+     * @return the hit ratio of the template cache or <code>-1</code> if the
+     *         template cache is disabled
+     */
+    double getTemplateCacheHitRatio();
+
+    /**
+     *
+     * @return the number of cached template sources or <code>-1</code> if the
+     *         template cache is disabled
+     */
+    long getSourceCacheSize();
+
+    /**
+     *
+     * @return the hit ratio of the source cache or <code>-1</code> if the
+     *         template cache is disabled
+     */
+    double getSourceCacheHitRatio();
+
+    /**
+     *
+     * @see TrimouMetrics#getMemberCacheSize()
+     */
+    long getMemberCacheSize();
+
+    /**
+     *
+     * @see TrimouMetrics#getBeanCacheSize()
+     */
+    long getBeanCacheSize();
+
+    /**
+     *
+     * @see TrimouMetrics#getMissingValues()
+     */
+    long getMissingValues();
+
+    /**
+     *
+     * @see TrimouMetrics#getAsyncQueueSnapshot()
+     */
+    TimingStats getAsyncQueueTime();
+
+    /**
+     *
+     * @return the rendering times per template
+     */
+    Map<String, TimingStats> getRenderingTimes();
+
+    /**
+     *
+     * @return the compilation times per template
+     */
+    Map<String, TimingStats> getCompilationTimes();
+
+    /**
+     * Drop all the collected data.
+     *
+     * @see TrimouMetrics#clearData()
+     */
+    void clearData();
+
+}
@@ -0,0 +1,421 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.metrics;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.trimou.engine.cache.ComputingCache;
+import org.trimou.engine.config.Configuration;
+import org.trimou.engine.interpolation.MissingValueHandler;
+import org.trimou.engine.listener.AbstractMustacheListener;
+import org.trimou.engine.listener.AbstractStatsCollector;
+import org.trimou.engine.listener.LogLinearHistogram;
+import org.trimou.engine.listener.MustacheCompilationEvent;
+import org.trimou.engine.listener.MustacheParsingEvent;
+import org.trimou.engine.listener.MustacheRenderingEvent;
+import org.trimou.engine.resolver.ReflectionResolver;
+import org.trimou.engine.resolver.Resolver;
+import org.trimou.engine.resource.ReleaseCallback;
+import org.trimou.util.Checker;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Collects the engine metrics which are not available via the
+ * {@link org.trimou.engine.MustacheEngine} API. The metrics are
+ * registry-agnostic and may be exported e.g. via JMX (see {@link TrimouJmx}).
+ *
+ * <p>
+ * This listener must be registered via
+ * {@link org.trimou.engine.MustacheEngineBuilder#addMustacheListener(org.trimou.engine.listener.MustacheListener)}
+ * in order to collect the rendering and compilation times per template. The
+ * missing values and the time asynchronous tasks spend in the executor queue
+ * are only collected if the decorated components are used - see
+ * {@link #countMissingValues(MissingValueHandler)} and
+ * {@link #timeAsyncTasks(ExecutorService)}.
+ * </p>
+ *
+ * <p>
+ * All the times are in nanoseconds. The memory footprint per template is
+ * constant, see {@link LogLinearHistogram}. The number of measured templates is
+ * limited, see {@link #TrimouMetrics(Predicate, long)}. This is important if
+ * templates with dynamic names are compiled, e.g. via
+ * {@link org.trimou.engine.MustacheEngine#compileMustache(String, String)}.
+ * </p>
+ *
+ * @author Martin Kouba
+ */
+public class TrimouMetrics extends AbstractMustacheListener {
+
+    private static final String CDI_BEAN_RESOLVER_CLASS = "org.trimou.cdi.resolver.CDIBeanResolver";
+
+    private static final boolean CDI_AVAILABLE = isCdiAvailable();
+
+    public static final String COMPUTING_CACHE_CONSUMER_ID = TrimouMetrics.class
+            .getName();
+
+    /**
+     * The default maximum number of measured templates
+     */
+    public static final long DEFAULT_MAX_SIZE = 1000l;
+
+    private static final int DEFAULT_STRIPES = 4;
+
+    private final Predicate<String> templatePredicate;
+
+    private final long maxSize;
+
+    private volatile ComputingCache<String, LogLinearHistogram> renderings;
+
+    private volatile ComputingCache<String, LogLinearHistogram> compilations;
+
+    private final ThreadLocal<ParsingStart> parsingStart;
+
+    private final LogLinearHistogram asyncQueueTimes;
+
+    private final AtomicLong missingValues;
+
+    private final List<TemplateCallback> callbacks;
+
+    /**
+     * Templates used for Lambda return value interpolation are skipped.
+     */
+    public TrimouMetrics() {
+        this(null);
+    }
+
+    /**
+     *
+     * @param templatePredicate
+     *            Only the templates matching the predicate are measured
+     */
+    public TrimouMetrics(Predicate<String> templatePredicate) {
+        this(templatePredicate, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     *
+     * @param templatePredicate
+     *            Only the templates matching the predicate are measured
+     * @param maxSize
+     *            The maximum number of measured templates (applied to
+     *            rendering and compilation times separately); the eviction is
+     *            implementation-specific
+     */
+    public TrimouMetrics(Predicate<String> templatePredicate, long maxSize) {
+        this.templatePredicate = templatePredicate != null ? templatePredicate
+                : AbstractStatsCollector.IS_NOT_ONEOFF_LAMBA_TEMPLATE;
+        this.maxSize = maxSize;
+        this.parsingStart = new ThreadLocal<ParsingStart>();
+        this.asyncQueueTimes = new LogLinearHistogram(DEFAULT_STRIPES);
+        this.missingValues = new AtomicLong();
+        this.callbacks = new CopyOnWriteArrayList<TemplateCallback>();
+    }
+
+    @Override
+    public void renderingStarted(final MustacheRenderingEvent event) {
+        if (templatePredicate.apply(event.getMustacheName())) {
+            final long start = System.nanoTime();
+            event.registerReleaseCallback(new ReleaseCallback() {
+                @Override
+                public void release() {
+                    renderings.get(event.getMustacheName()).record(
+                            System.nanoTime() - start);
+                }
+            });
+        }
+    }
+
+    @Override
+    public void parsingStarted(MustacheParsingEvent event) {
+        if (templatePredicate.apply(event.getMustacheName())) {
+            // Parsing is never nested within the same thread - a pending start
+            // belongs to a failed compilation and is replaced
+            parsingStart.set(new ParsingStart(event.getMustacheName(), System
+                    .nanoTime()));
+        } else {
+            parsingStart.remove();
+        }
+    }
+
+    @Override
+    public void compilationFinished(MustacheCompilationEvent event) {
+        ParsingStart start = parsingStart.get();
+        if (start == null) {
+            return;
+        }
+        parsingStart.remove();
+        String name = event.getMustache().getName();
+        if (start.templateName.equals(name)) {
+            compilations.get(name).record(System.nanoTime() - start.time);
+        }
+    }
+
+    @Override
+    protected void init() {
+        renderings = createHistograms(true);
+        compilations = createHistograms(false);
+    }
+
+    /**
+     *
+     * @param delegate
+     * @return the missing value handler which counts the missing values and
+     *         delegates to the given handler
+     * @see org.trimou.engine.MustacheEngineBuilder#setMissingValueHandler(MissingValueHandler)
+     */
+    public MissingValueHandler countMissingValues(MissingValueHandler delegate) {
+        Checker.checkArgumentNotNull(delegate);
+        return new CountingMissingValueHandler(delegate, missingValues);
+    }
+
+    /**
+     *
+     * @param delegate
+     * @return the executor service which measures the time the submitted tasks
+     *         spend in the queue
+     * @see org.trimou.engine.MustacheEngineBuilder#setExecutorService(ExecutorService)
+     */
+    public ExecutorService timeAsyncTasks(ExecutorService delegate) {
+        Checker.checkArgumentNotNull(delegate);
+        return new TimedExecutorService(delegate, asyncQueueTimes);
+    }
+
+    /**
+     * The callback is notified when a new template is measured for the first
+     * time, e.g. to register new meters. It's notified again if the data of
+     * the template was evicted or cleared in the meantime.
+     *
+     * @param callback
+     */
+    public void addTemplateCallback(TemplateCallback callback) {
+        Checker.checkArgumentNotNull(callback);
+        callbacks.add(callback);
+    }
+
+    /**
+     *
+     * @return the snapshots of the rendering times per template
+     */
+    public Map<String, LogLinearHistogram.Snapshot> getRenderingSnapshots() {
+        return getSnapshots(renderings);
+    }
+
+    /**
+     *
+     * @param templateName
+     * @return the snapshot of the rendering times of the given template or
+     *         <code>null</code> if no such template was rendered
+     */
+    public LogLinearHistogram.Snapshot getRenderingSnapshot(String templateName) {
+        return getSnapshot(renderings, templateName);
+    }
+
+    /**
+     *
+     * @return the snapshots of the compilation times (including parsing) per
+     *         template
+     */
+    public Map<String, LogLinearHistogram.Snapshot> getCompilationSnapshots() {
+        return getSnapshots(compilations);
+    }
+
+    /**
+     *
+     * @param templateName
+     * @return the snapshot of the compilation times of the given template or
+     *         <code>null</code> if no such template was compiled
+     */
+    public LogLinearHistogram.Snapshot getCompilationSnapshot(
+            String templateName) {
+        return getSnapshot(compilations, templateName);
+    }
+
+    /**
+     *
+     * @return the snapshot of the time the asynchronous tasks spend in the
+     *         executor queue
+     * @see #timeAsyncTasks(ExecutorService)
+     */
+    public LogLinearHistogram.Snapshot getAsyncQueueSnapshot() {
+        return asyncQueueTimes.getSnapshot();
+    }
+
+    /**
+     *
+     * @return the number of missing values
+     * @see #countMissingValues(MissingValueHandler)
+     */
+    public long getMissingValues() {
+        return missingValues.get();
+    }
+
+    /**
+     *
+     * @return the total number of entries in the member caches of all
+     *         registered {@link ReflectionResolver}s
+     */
+    public long getMemberCacheSize() {
+        long size = 0;
+        for (Resolver resolver : getResolvers()) {
+            if (resolver instanceof ReflectionResolver) {
+                size += ((ReflectionResolver) resolver).getMemberCacheSize();
+            }
+        }
+        return size;
+    }
+
+    /**
+     *
+     * @return the total number of entries in the bean caches of all registered
+     *         CDI bean resolvers, or <code>-1</code> if the CDI extension is
+     *         not available
+     */
+    public long getBeanCacheSize() {
+        if (!CDI_AVAILABLE) {
+            return -1;
+        }
+        long size = 0;
+        for (Resolver resolver : getResolvers()) {
+            size += CdiSupport.getBeanCacheSize(resolver);
+        }
+        return size;
+    }
+
+    /**
+     * Drop all the collected data.
+     */
+    public void clearData() {
+        if (renderings != null) {
+            renderings.clear();
+            compilations.clear();
+        }
+        asyncQueueTimes.reset();
+        missingValues.set(0);
+    }
+
+    private List<Resolver> getResolvers() {
+        Configuration configuration = this.configuration;
+        if (configuration == null) {
+            return Collections.emptyList();
+        }
+        return configuration.getResolvers();
+    }
+
+    private ComputingCache<String, LogLinearHistogram> createHistograms(
+            final boolean notifyCallbacks) {
+        return configuration.getComputingCacheFactory().create(
+                COMPUTING_CACHE_CONSUMER_ID,
+                new ComputingCache.Function<String, LogLinearHistogram>() {
+                    @Override
+                    public LogLinearHistogram compute(String templateName) {
+                        if (notifyCallbacks) {
+                            for (TemplateCallback callback : callbacks) {
+                                callback.templateAdded(templateName);
+                            }
+                        }
+                        return new LogLinearHistogram(DEFAULT_STRIPES);
+                    }
+                }, null, maxSize, null);
+    }
+
+    private LogLinearHistogram.Snapshot getSnapshot(
+            ComputingCache<String, LogLinearHistogram> histograms,
+            String templateName) {
+        if (histograms == null) {
+            return null;
+        }
+        LogLinearHistogram histogram = histograms.getIfPresent(templateName);
+        return histogram != null ? histogram.getSnapshot() : null;
+    }
+
+    private Map<String, LogLinearHistogram.Snapshot> getSnapshots(
+            ComputingCache<String, LogLinearHistogram> histograms) {
+        if (histograms == null || histograms.size() == 0) {
+            return Collections.emptyMap();
+        }
+        ImmutableMap.Builder<String, LogLinearHistogram.Snapshot> builder = ImmutableMap
+                .builder();
+        for (Entry<String, LogLinearHistogram> entry : histograms
+                .getAllPresent().entrySet()) {
+            builder.put(entry.getKey(), entry.getValue().getSnapshot());
+        }
+        return builder.build();
+    }
+
+    /**
+     *
+     * @author Martin Kouba
+     * @see TrimouMetrics#addTemplateCallback(TemplateCallback)
+     */
+    public interface TemplateCallback {
+
+        /**
+         *
+         * @param templateName
+         */
+        void templateAdded(String templateName);
+
+    }
+
+    private static boolean isCdiAvailable() {
+        try {
+            Class.forName(CDI_BEAN_RESOLVER_CLASS, false,
+                    TrimouMetrics.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+
+    private static final class ParsingStart {
+
+        private final String templateName;
+
+        private final long time;
+
+        ParsingStart(String templateName, long time) {
+            this.templateName = templateName;
+            this.time = time;
+        }
+
+    }
+
+    /**
+     * The class must not be loaded unless the CDI extension is available.
+     */
+    private static class CdiSupport {
+
+        static long getBeanCacheSize(Resolver resolver) {
+            if (resolver instanceof org.trimou.cdi.resolver.CDIBeanResolver) {
+                return ((org.trimou.cdi.resolver.CDIBeanResolver) resolver)
+                        .getBeanCacheSize();
+            }
+            return 0;
+        }
+
+    }
+
+}
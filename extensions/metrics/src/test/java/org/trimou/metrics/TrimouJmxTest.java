@@ -0,0 +1,64 @@
+package org.trimou.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import org.junit.Test;
+import org.trimou.engine.MustacheEngine;
+import org.trimou.engine.MustacheEngineBuilder;
+import org.trimou.engine.locator.MapTemplateLocator;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ *
+ * @author Martin Kouba
+ */
+public class TrimouJmxTest {
+
+    @Test
+    public void testRegister() throws Exception {
+        TrimouMetrics metrics = new TrimouMetrics();
+        MustacheEngine engine = MustacheEngineBuilder
+                .newBuilder()
+                .omitServiceLoaderConfigurationExtensions()
+                .addTemplateLocator(
+                        new MapTemplateLocator(ImmutableMap.of("foo",
+                                "{{this}}")))
+                .addMustacheListener(metrics).build();
+        engine.getMustache("foo").render("bar");
+        engine.getMustache("foo").render("bar");
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = TrimouJmx.register(engine, metrics, "test");
+        try {
+            assertEquals(TrimouJmx.getObjectName("test"), name);
+            assertTrue(server.isRegistered(name));
+            assertEquals(1l, server.getAttribute(name, "TemplateCacheSize"));
+            assertEquals(0.5, server.getAttribute(name, "TemplateCacheHitRatio"));
+            assertEquals(0l, server.getAttribute(name, "BeanCacheSize"));
+            // Maps are mapped to TabularData
+            TabularData renderingTimes = (TabularData) server.getAttribute(
+                    name, "RenderingTimes");
+            assertEquals(1, renderingTimes.size());
+            CompositeData fooTimes = (CompositeData) renderingTimes.get(
+                    new Object[] { "foo" }).get("value");
+            assertEquals(2l, fooTimes.get("count"));
+            server.invoke(name, "clearData", null, null);
+            assertTrue(((TabularData) server.getAttribute(name,
+                    "RenderingTimes")).isEmpty());
+        } finally {
+            TrimouJmx.unregister(name);
+        }
+        assertFalse(server.isRegistered(name));
+    }
+
+}
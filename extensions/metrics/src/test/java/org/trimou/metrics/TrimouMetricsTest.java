@@ -0,0 +1,143 @@
+package org.trimou.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+import org.trimou.engine.MustacheEngine;
+import org.trimou.engine.MustacheEngineBuilder;
+import org.trimou.engine.interpolation.NoOpMissingValueHandler;
+import org.trimou.engine.locator.MapTemplateLocator;
+import org.trimou.engine.resolver.MapResolver;
+import org.trimou.engine.resolver.ReflectionResolver;
+import org.trimou.exception.MustacheException;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ *
+ * @author Martin Kouba
+ */
+public class TrimouMetricsTest {
+
+    @Test
+    public void testRenderingAndCompilation() {
+        final List<String> added = new ArrayList<String>();
+        TrimouMetrics metrics = new TrimouMetrics();
+        metrics.addTemplateCallback(new TrimouMetrics.TemplateCallback() {
+            @Override
+            public void templateAdded(String templateName) {
+                added.add(templateName);
+            }
+        });
+        MustacheEngine engine = MustacheEngineBuilder
+                .newBuilder()
+                .omitServiceLoaderConfigurationExtensions()
+                .addTemplateLocator(
+                        new MapTemplateLocator(ImmutableMap.of("foo",
+                                "{{this}}")))
+                .addMustacheListener(metrics).build();
+        for (int i = 0; i < 5; i++) {
+            engine.getMustache("foo").render("bar");
+        }
+        assertNotNull(metrics.getRenderingSnapshot("foo"));
+        assertEquals(5, metrics.getRenderingSnapshot("foo").getCount());
+        assertEquals(1, metrics.getCompilationSnapshot("foo").getCount());
+        assertEquals(1, metrics.getRenderingSnapshots().size());
+        assertEquals(1, metrics.getCompilationSnapshots().size());
+        assertNull(metrics.getRenderingSnapshot("bar"));
+        assertEquals(1, added.size());
+        assertEquals("foo", added.get(0));
+        metrics.clearData();
+        assertNull(metrics.getRenderingSnapshot("foo"));
+        assertTrue(metrics.getCompilationSnapshots().isEmpty());
+    }
+
+    @Test
+    public void testMissingValues() {
+        TrimouMetrics metrics = new TrimouMetrics();
+        MustacheEngine engine = MustacheEngineBuilder
+                .newBuilder()
+                .omitServiceLoaderConfigurationExtensions()
+                .addResolver(new MapResolver())
+                .setMissingValueHandler(
+                        metrics.countMissingValues(new NoOpMissingValueHandler()))
+                .addMustacheListener(metrics).build();
+        assertEquals("1",
+                engine.compileMustache("missing", "{{foo}}{{bar}}{{baz}}")
+                        .render(ImmutableMap.of("bar", 1)));
+        assertEquals(2, metrics.getMissingValues());
+    }
+
+    @Test
+    public void testAsyncTasks() throws Exception {
+        TrimouMetrics metrics = new TrimouMetrics();
+        ExecutorService executor = metrics.timeAsyncTasks(Executors
+                .newSingleThreadExecutor());
+        try {
+            for (int i = 0; i < 3; i++) {
+                executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                    }
+                }).get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(3, metrics.getAsyncQueueSnapshot().getCount());
+    }
+
+    @Test
+    public void testCacheSizes() {
+        TrimouMetrics metrics = new TrimouMetrics();
+        assertEquals(0, metrics.getMemberCacheSize());
+        MustacheEngine engine = MustacheEngineBuilder.newBuilder()
+                .omitServiceLoaderConfigurationExtensions()
+                .addResolver(new ReflectionResolver())
+                .addMustacheListener(metrics).build();
+        assertEquals("3",
+                engine.compileMustache("members", "{{length}}").render("foo"));
+        assertEquals(1, metrics.getMemberCacheSize());
+        // No CDI bean resolver registered
+        assertEquals(0, metrics.getBeanCacheSize());
+    }
+
+    @Test
+    public void testMaxSize() {
+        TrimouMetrics metrics = new TrimouMetrics(null, 2);
+        MustacheEngine engine = MustacheEngineBuilder.newBuilder()
+                .omitServiceLoaderConfigurationExtensions()
+                .addMustacheListener(metrics).build();
+        for (int i = 0; i < 10; i++) {
+            engine.compileMustache("generated" + i, "{{this}}").render("foo");
+        }
+        assertTrue(metrics.getRenderingSnapshots().size() <= 2);
+        assertTrue(metrics.getCompilationSnapshots().size() <= 2);
+    }
+
+    @Test
+    public void testFailedCompilation() {
+        TrimouMetrics metrics = new TrimouMetrics();
+        MustacheEngine engine = MustacheEngineBuilder.newBuilder()
+                .omitServiceLoaderConfigurationExtensions()
+                .addMustacheListener(metrics).build();
+        try {
+            engine.compileMustache("invalid", "{{#foo}}");
+            fail();
+        } catch (MustacheException expected) {
+        }
+        engine.compileMustache("valid", "{{foo}}");
+        assertNull(metrics.getCompilationSnapshot("invalid"));
+        assertEquals(1, metrics.getCompilationSnapshot("valid").getCount());
+    }
+
+}
@@ -0,0 +1,359 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.micrometer;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.trimou.engine.MustacheEngine;
+import org.trimou.engine.cache.CacheStats;
+import org.trimou.engine.listener.LogLinearHistogram.Snapshot;
+import org.trimou.metrics.TrimouMetrics;
+import org.trimou.util.Checker;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Binds the metrics of a {@link MustacheEngine} to a Micrometer
+ * {@link MeterRegistry}. The rendering meters are registered lazily, i.e. when
+ * a template is rendered for the first time.
+ *
+ * <pre>
+ * TrimouMetrics metrics = new TrimouMetrics();
+ * MustacheEngine engine = MustacheEngineBuilder.newBuilder().addMustacheListener(metrics).build();
+ * new TrimouMeterBinder(engine, metrics).bindTo(registry);
+ * </pre>
+ *
+ * <p>
+ * All the meters of a timer (count, total time and percentiles) read the same
+ * histogram snapshot, a new snapshot is taken at most once per
+ * {@link #DEFAULT_SNAPSHOT_TIMEOUT} milliseconds, i.e. once per scrape. The
+ * counters and timers are monotonic even if
+ * {@link TrimouMetrics#clearData()} is called, e.g. via JMX - the data
+ * collected before the reset is kept by the binder.
+ * </p>
+ *
+ * <p>
+ * The number of templates with per-template meters is limited, see
+ * {@link #TrimouMeterBinder(MustacheEngine, TrimouMetrics, Iterable, Predicate, int)}
+ * . Meters cannot be removed from the registry and so templates with generated
+ * names (e.g. compiled via
+ * {@link MustacheEngine#compileMustache(String, String)}) would grow the meter
+ * cardinality without limit.
+ * </p>
+ *
+ * @author Martin Kouba
+ */
+public class TrimouMeterBinder implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory
+            .getLogger(TrimouMeterBinder.class);
+
+    public static final String PREFIX = "trimou.";
+
+    public static final String TAG_TEMPLATE = "template";
+
+    public static final String TAG_CACHE = "cache";
+
+    /**
+     * The snapshot timeout in milliseconds
+     */
+    public static final long DEFAULT_SNAPSHOT_TIMEOUT = 1000;
+
+    /**
+     * The default maximum number of templates with per-template meters
+     */
+    public static final int DEFAULT_MAX_TEMPLATES = 100;
+
+    private final MustacheEngine engine;
+
+    private final TrimouMetrics metrics;
+
+    private final Iterable<Tag> tags;
+
+    private final Predicate<String> templatePredicate;
+
+    private final int maxTemplates;
+
+    /**
+     * Guarded by itself
+     */
+    private final Set<String> boundTemplates;
+
+    private boolean maxTemplatesReached;
+
+    private final long snapshotTimeout;
+
+    /**
+     *
+     * @param engine
+     * @param metrics
+     */
+    public TrimouMeterBinder(MustacheEngine engine, TrimouMetrics metrics) {
+        this(engine, metrics, Tags.empty());
+    }
+
+    /**
+     *
+     * @param engine
+     * @param metrics
+     * @param tags
+     *            The tags added to all the meters
+     */
+    public TrimouMeterBinder(MustacheEngine engine, TrimouMetrics metrics,
+            Iterable<Tag> tags) {
+        this(engine, metrics, tags, t -> true, DEFAULT_MAX_TEMPLATES);
+    }
+
+    /**
+     *
+     * @param engine
+     * @param metrics
+     * @param tags
+     *            The tags added to all the meters
+     * @param templatePredicate
+     *            Only the templates matching the predicate get per-template
+     *            meters
+     * @param maxTemplates
+     *            The maximum number of templates with per-template meters, the
+     *            subsequent templates are ignored
+     */
+    public TrimouMeterBinder(MustacheEngine engine, TrimouMetrics metrics,
+            Iterable<Tag> tags, Predicate<String> templatePredicate,
+            int maxTemplates) {
+        this(engine, metrics, tags, templatePredicate, maxTemplates,
+                DEFAULT_SNAPSHOT_TIMEOUT);
+    }
+
+    /**
+     *
+     * @param engine
+     * @param metrics
+     * @param tags
+     *            The tags added to all the meters
+     * @param templatePredicate
+     * @param maxTemplates
+     * @param snapshotTimeout
+     *            The snapshot timeout in milliseconds
+     */
+    TrimouMeterBinder(MustacheEngine engine, TrimouMetrics metrics,
+            Iterable<Tag> tags, Predicate<String> templatePredicate,
+            int maxTemplates, long snapshotTimeout) {
+        Checker.checkArgumentsNotNull(engine, metrics, tags,
+                templatePredicate);
+        this.engine = engine;
+        this.metrics = metrics;
+        this.tags = tags;
+        this.templatePredicate = templatePredicate;
+        this.maxTemplates = maxTemplates;
+        this.boundTemplates = new HashSet<>();
+        this.snapshotTimeout = snapshotTimeout;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        bindCache(registry, "template", MustacheEngine::getTemplateCacheStats);
+        bindCache(registry, "source", MustacheEngine::getSourceCacheStats);
+        Gauge.builder(PREFIX + "resolver.member.cache.size", metrics,
+                TrimouMetrics::getMemberCacheSize).tags(tags)
+                .register(registry);
+        Gauge.builder(PREFIX + "resolver.bean.cache.size", metrics,
+                TrimouMetrics::getBeanCacheSize).tags(tags).register(registry);
+        MonotonicValue missingValues = new MonotonicValue();
+        FunctionCounter.builder(PREFIX + "missing.values", metrics,
+                m -> missingValues.update(m.getMissingValues())).tags(tags)
+                .register(registry);
+        bindTimer(registry, PREFIX + "async.queue", Tags.of(tags),
+                () -> metrics.getAsyncQueueSnapshot());
+        for (String templateName : metrics.getRenderingSnapshots().keySet()) {
+            bindRendering(registry, templateName);
+        }
+        metrics.addTemplateCallback(
+                templateName -> bindRendering(registry, templateName));
+    }
+
+    private void bindCache(MeterRegistry registry, String cache,
+            Function<MustacheEngine, CacheStats> stats) {
+        Tags cacheTags = Tags.of(tags).and(TAG_CACHE, cache);
+        Gauge.builder(PREFIX + "cache.size", engine,
+                e -> size(stats.apply(e))).tags(cacheTags).register(registry);
+        FunctionCounter.builder(PREFIX + "cache.requests", engine,
+                e -> requests(stats.apply(e))).tags(cacheTags)
+                .register(registry);
+        FunctionCounter.builder(PREFIX + "cache.misses", engine,
+                e -> misses(stats.apply(e))).tags(cacheTags)
+                .register(registry);
+    }
+
+    private void bindRendering(MeterRegistry registry, String templateName) {
+        if (!templatePredicate.test(templateName)) {
+            return;
+        }
+        synchronized (boundTemplates) {
+            if (boundTemplates.contains(templateName)) {
+                // Data evicted or cleared - the meters are still registered
+                return;
+            }
+            if (boundTemplates.size() >= maxTemplates) {
+                if (!maxTemplatesReached) {
+                    maxTemplatesReached = true;
+                    logger.warn(
+                            "Max number of templates with meters reached [max: {}], {} and subsequent templates are ignored",
+                            maxTemplates, templateName);
+                }
+                return;
+            }
+            boundTemplates.add(templateName);
+        }
+        Tags templateTags = Tags.of(tags).and(TAG_TEMPLATE, templateName);
+        bindTimer(registry, PREFIX + "rendering", templateTags,
+                () -> metrics.getRenderingSnapshot(templateName));
+        bindTimer(registry, PREFIX + "compilation", templateTags,
+                () -> metrics.getCompilationSnapshot(templateName));
+    }
+
+    private void bindTimer(MeterRegistry registry, String name, Tags timerTags,
+            Supplier<Snapshot> snapshot) {
+        // The lambdas hold the timer data strongly, the meters only hold a
+        // weak reference to the state object (metrics)
+        TimerData data = new TimerData(snapshot, snapshotTimeout);
+        FunctionTimer
+                .builder(name, metrics, m -> data.getCount(),
+                        m -> data.getTotal(), TimeUnit.NANOSECONDS)
+                .tags(timerTags).register(registry);
+        bindPercentile(registry, name, timerTags, data, 0.95);
+        bindPercentile(registry, name, timerTags, data, 0.99);
+    }
+
+    private void bindPercentile(MeterRegistry registry, String name,
+            Tags timerTags, TimerData data, double percentile) {
+        TimeGauge
+                .builder(name + ".percentile", metrics, TimeUnit.NANOSECONDS,
+                        m -> data.getValueAtPercentile(percentile * 100))
+                .tags(timerTags.and("phi", String.valueOf(percentile)))
+                .register(registry);
+    }
+
+    private static double size(CacheStats stats) {
+        return stats != null ? stats.getSize() : Double.NaN;
+    }
+
+    private static double requests(CacheStats stats) {
+        return stats != null ? stats.getRequests() : 0;
+    }
+
+    private static double misses(CacheStats stats) {
+        return stats != null ? stats.getMisses() : 0;
+    }
+
+    /**
+     * Turns a value which may be reset into a monotonic one. If the current
+     * value is lower than the previous one, the previous value is added to the
+     * base.
+     */
+    static final class MonotonicValue {
+
+        private long base;
+
+        private long last;
+
+        synchronized long update(long value) {
+            if (value < last) {
+                base += last;
+            }
+            last = value;
+            return base + last;
+        }
+
+    }
+
+    /**
+     * The snapshot shared by all the meters of a timer.
+     */
+    static final class TimerData {
+
+        private final Supplier<Snapshot> supplier;
+
+        private final long timeout;
+
+        private final MonotonicValue count;
+
+        private final MonotonicValue total;
+
+        private Snapshot snapshot;
+
+        private long monotonicCount;
+
+        private long monotonicTotal;
+
+        private long timestamp;
+
+        private boolean initialized;
+
+        TimerData(Supplier<Snapshot> supplier, long timeout) {
+            this.supplier = supplier;
+            this.timeout = TimeUnit.MILLISECONDS.toNanos(timeout);
+            this.count = new MonotonicValue();
+            this.total = new MonotonicValue();
+        }
+
+        synchronized long getCount() {
+            refresh();
+            return monotonicCount;
+        }
+
+        synchronized double getTotal() {
+            refresh();
+            return monotonicTotal;
+        }
+
+        synchronized double getValueAtPercentile(double percentile) {
+            refresh();
+            return snapshot != null ? snapshot.getValueAtPercentile(percentile)
+                    : 0;
+        }
+
+        private void refresh() {
+            long now = System.nanoTime();
+            if (initialized && now - timestamp < timeout) {
+                return;
+            }
+            initialized = true;
+            timestamp = now;
+            snapshot = supplier.get();
+            monotonicCount = count.update(snapshot != null ? snapshot
+                    .getCount() : 0);
+            monotonicTotal = total.update(snapshot != null ? snapshot
+                    .getTotal() : 0);
+        }
+
+    }
+
+}
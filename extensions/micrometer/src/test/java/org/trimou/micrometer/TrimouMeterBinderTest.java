@@ -0,0 +1,155 @@
+package org.trimou.micrometer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.trimou.Mustache;
+import org.trimou.engine.MustacheEngine;
+import org.trimou.engine.MustacheEngineBuilder;
+import org.trimou.engine.interpolation.NoOpMissingValueHandler;
+import org.trimou.engine.listener.LogLinearHistogram.Snapshot;
+import org.trimou.engine.locator.MapTemplateLocator;
+import org.trimou.metrics.TrimouMetrics;
+
+import com.google.common.collect.ImmutableMap;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ *
+ * @author Martin Kouba
+ */
+public class TrimouMeterBinderTest {
+
+    @Test
+    public void testRenderingTimer() {
+        TrimouMetrics metrics = new TrimouMetrics();
+        MustacheEngine engine = buildEngine(metrics);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        new TrimouMeterBinder(engine, metrics, Tags.of("engine", "test"),
+                t -> true, TrimouMeterBinder.DEFAULT_MAX_TEMPLATES, 0)
+                .bindTo(registry);
+
+        Mustache foo = engine.getMustache("foo");
+        for (int i = 0; i < 3; i++) {
+            assertEquals("bar", foo.render(ImmutableMap.of("foo", "bar")));
+        }
+        FunctionTimer rendering = registry.find("trimou.rendering")
+                .tags("template", "foo", "engine", "test").functionTimer();
+        assertNotNull(rendering);
+        assertEquals(3, rendering.count(), 0);
+        double total = rendering.totalTime(TimeUnit.NANOSECONDS);
+        assertTrue(total > 0);
+        TimeGauge p99 = registry.find("trimou.rendering.percentile")
+                .tags("template", "foo", "phi", "0.99").timeGauge();
+        assertNotNull(p99);
+        assertTrue(p99.value(TimeUnit.NANOSECONDS) > 0);
+        assertNotNull(registry.find("trimou.compilation")
+                .tags("template", "foo").functionTimer());
+        FunctionCounter requests = registry.find("trimou.cache.requests")
+                .tags("cache", "template").functionCounter();
+        assertNotNull(requests);
+        assertTrue(requests.count() > 0);
+
+        // The timer must not go backwards
+        metrics.clearData();
+        assertEquals(3, rendering.count(), 0);
+        foo.render(ImmutableMap.of("foo", "bar"));
+        assertEquals(4, rendering.count(), 0);
+        assertTrue(rendering.totalTime(TimeUnit.NANOSECONDS) > total);
+    }
+
+    @Test
+    public void testMissingValues() {
+        TrimouMetrics metrics = new TrimouMetrics();
+        MustacheEngine engine = buildEngine(metrics);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        new TrimouMeterBinder(engine, metrics).bindTo(registry);
+
+        Mustache missing = engine.getMustache("missing");
+        missing.render(null);
+        missing.render(null);
+        FunctionCounter counter = registry.find("trimou.missing.values")
+                .functionCounter();
+        assertNotNull(counter);
+        assertEquals(2, counter.count(), 0);
+
+        // The counter must not go backwards
+        metrics.clearData();
+        assertEquals(2, counter.count(), 0);
+        missing.render(null);
+        assertEquals(3, counter.count(), 0);
+    }
+
+    @Test
+    public void testOneSnapshotPerScrape() {
+        final AtomicInteger snapshots = new AtomicInteger();
+        TrimouMetrics metrics = new TrimouMetrics() {
+            @Override
+            public Snapshot getRenderingSnapshot(String templateName) {
+                snapshots.incrementAndGet();
+                return super.getRenderingSnapshot(templateName);
+            }
+        };
+        MustacheEngine engine = buildEngine(metrics);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        new TrimouMeterBinder(engine, metrics, Tags.empty(), t -> true,
+                TrimouMeterBinder.DEFAULT_MAX_TEMPLATES,
+                TimeUnit.MINUTES.toMillis(1)).bindTo(registry);
+        engine.getMustache("foo").render(ImmutableMap.of("foo", "bar"));
+
+        FunctionTimer rendering = registry.find("trimou.rendering")
+                .tags("template", "foo").functionTimer();
+        assertEquals(1, rendering.count(), 0);
+        assertTrue(rendering.totalTime(TimeUnit.NANOSECONDS) > 0);
+        assertTrue(registry.find("trimou.rendering.percentile")
+                .tags("template", "foo", "phi", "0.95").timeGauge()
+                .value(TimeUnit.NANOSECONDS) > 0);
+        assertTrue(registry.find("trimou.rendering.percentile")
+                .tags("template", "foo", "phi", "0.99").timeGauge()
+                .value(TimeUnit.NANOSECONDS) > 0);
+        assertEquals(1, snapshots.get());
+    }
+
+    @Test
+    public void testMaxTemplates() {
+        TrimouMetrics metrics = new TrimouMetrics();
+        MustacheEngine engine = buildEngine(metrics);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        new TrimouMeterBinder(engine, metrics, Tags.empty(),
+                t -> !t.startsWith("ignored"), 2).bindTo(registry);
+        engine.compileMustache("ignored", "{{foo}}").render(null);
+        for (int i = 0; i < 5; i++) {
+            engine.compileMustache("generated" + i, "{{foo}}").render(null);
+        }
+        assertNull(registry.find("trimou.rendering")
+                .tags("template", "ignored").functionTimer());
+        assertEquals(2, registry.find("trimou.rendering").functionTimers()
+                .size());
+        assertEquals(2, registry.find("trimou.compilation").functionTimers()
+                .size());
+    }
+
+    private MustacheEngine buildEngine(TrimouMetrics metrics) {
+        return MustacheEngineBuilder
+                .newBuilder()
+                .addMustacheListener(metrics)
+                .setMissingValueHandler(
+                        metrics.countMissingValues(new NoOpMissingValueHandler()))
+                .addTemplateLocator(
+                        new MapTemplateLocator(ImmutableMap.of("foo",
+                                "{{foo}}", "missing", "{{missing}}")))
+                .build();
+    }
+
+}
@@ -17,13 +17,18 @@ package org.trimou.spring.web.view;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.web.servlet.support.RequestContextUtils;
 import org.springframework.web.servlet.view.AbstractTemplateView;
+import org.trimou.Mustache;
 import org.trimou.engine.MustacheEngine;
 import org.trimou.exception.MustacheException;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Writer;
+import java.nio.charset.Charset;
 import java.util.Enumeration;
 import java.util.Map;
 
@@ -40,19 +45,53 @@ public class TrimouView extends AbstractTemplateView {
 
     private MustacheEngine engine;
 
+    private boolean localizedTemplates;
+
+    private boolean byteOutput;
+
     @Override
     protected void renderMergedTemplateModel(Map<String, Object> model, HttpServletRequest request,
                                              HttpServletResponse response) throws Exception {
         response.setContentType(getContentType());
         exposeRequestAttributesAsModel(model, request);
-        final Writer writer = response.getWriter();
+        final OutputStream output = byteOutput ? getOutputStream(response) : null;
+        if (output != null) {
+            // Write directly to the output stream so that the static parts of the template are not re-encoded
+            try {
+                getTemplate(request).render(output, model, Charset.forName(response.getCharacterEncoding()));
+            } catch (NullPointerException e) {
+                throw new MustacheException(getUrl() + " is not exist.", e);
+            } finally {
+                output.flush();
+            }
+        } else {
+            final Writer writer = response.getWriter();
+            try {
+                getTemplate(request).render(writer, model);
+            } catch (NullPointerException e) {
+                throw new MustacheException(getUrl() + " is not exist.", e);
+            } finally {
+                writer.flush();
+            }
+        }
+    }
+
+    private OutputStream getOutputStream(HttpServletResponse response) throws IOException {
         try {
-            engine.getMustache(viewName).render(writer, model);
-        } catch (NullPointerException e) {
-            throw new MustacheException(getUrl() + " is not exist.", e);
-        } finally {
-            writer.flush();
+            return response.getOutputStream();
+        } catch (IllegalStateException e) {
+            // The writer was already obtained, e.g. by a filter
+            logger.debug("Unable to obtain the output stream for {} - falling back to the writer", getUrl());
+            return null;
+        }
+    }
+
+    private Mustache getTemplate(HttpServletRequest request) {
+        if (localizedTemplates) {
+            // E.g. foo_de_DE, foo_de and then foo
+            return engine.getMustache(viewName, RequestContextUtils.getLocale(request));
         }
+        return engine.getMustache(viewName);
     }
 
     private void exposeRequestAttributesAsModel(Map<String, Object> model, HttpServletRequest request) {
@@ -75,4 +114,12 @@ public class TrimouView extends AbstractTemplateView {
     public void setEngine(MustacheEngine engine) {
         this.engine = engine;
     }
+
+    public void setLocalizedTemplates(boolean localizedTemplates) {
+        this.localizedTemplates = localizedTemplates;
+    }
+
+    public void setByteOutput(boolean byteOutput) {
+        this.byteOutput = byteOutput;
+    }
 }
@@ -41,6 +41,9 @@ public class TrimouViewResolver extends AbstractTemplateViewResolver
     private boolean debug = false;
     private boolean preCompile = false;
     private long cacheExpiration = 0l;
+    private int outputFlushThreshold = 0;
+    private boolean localizedTemplates = false;
+    private boolean byteOutput = false;
     private Map<String, Helper> helpers = Maps.newHashMap();
     private MustacheEngine engine;
 
@@ -54,6 +57,8 @@ public class TrimouViewResolver extends AbstractTemplateViewResolver
         try {
             view.setViewName(viewName);
             view.setEngine(engine);
+            view.setLocalizedTemplates(localizedTemplates);
+            view.setByteOutput(byteOutput);
             // Validate the template exists
             engine.getMustache(viewName);
             return view;
@@ -75,6 +80,7 @@ public class TrimouViewResolver extends AbstractTemplateViewResolver
                         .setProperty(EngineConfigurationKey.HANDLEBARS_SUPPORT_ENABLED, isHandlebarsSupport())
                         .setProperty(EngineConfigurationKey.DEBUG_MODE, isDebug())
                         .setProperty(EngineConfigurationKey.PRECOMPILE_ALL_TEMPLATES, isPreCompile())
+                        .setProperty(EngineConfigurationKey.OUTPUT_FLUSH_THRESHOLD, getOutputFlushThreshold())
                         .registerHelpers(helpers)
                         .addTemplateLocator(
                                 new ServletContextTemplateLocator(PRIORITY, getPrefix(),
@@ -133,6 +139,52 @@ public class TrimouViewResolver extends AbstractTemplateViewResolver
         this.cacheExpiration = cacheExpiration;
     }
 
+    public int getOutputFlushThreshold() {
+        return outputFlushThreshold;
+    }
+
+    /**
+     * @param outputFlushThreshold
+     * @see EngineConfigurationKey#OUTPUT_FLUSH_THRESHOLD
+     */
+    public void setOutputFlushThreshold(int outputFlushThreshold) {
+        this.outputFlushThreshold = outputFlushThreshold;
+    }
+
+    public boolean isLocalizedTemplates() {
+        return localizedTemplates;
+    }
+
+    /**
+     * If set to <code>true</code> the template variant for the current locale
+     * is rendered if available, e.g. <code>home_de</code> instead of
+     * <code>home</code>.
+     *
+     * @param localizedTemplates
+     * @see MustacheEngine#getMustache(String, java.util.Locale)
+     */
+    public void setLocalizedTemplates(boolean localizedTemplates) {
+        this.localizedTemplates = localizedTemplates;
+    }
+
+    public boolean isByteOutput() {
+        return byteOutput;
+    }
+
+    /**
+     * If set to <code>true</code> the template is rendered directly to the
+     * response output stream so that the static parts of the template are
+     * only encoded once. Falls back to the response writer if it was already
+     * obtained, e.g. by a servlet filter. The writer is used by default.
+     *
+     * @param byteOutput
+     * @see org.trimou.Mustache#render(java.io.OutputStream, Object,
+     *      java.nio.charset.Charset)
+     */
+    public void setByteOutput(boolean byteOutput) {
+        this.byteOutput = byteOutput;
+    }
+
     public Map<String, Helper> getHelpers() {
         return helpers;
     }
@@ -5,8 +5,10 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.PrintWriter;
+import java.util.Locale;
 import java.util.Map;
 
+import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -17,6 +19,7 @@ import org.mockito.runners.MockitoJUnitRunner;
 import org.trimou.Mustache;
 import org.trimou.engine.MustacheEngine;
 
+import com.google.common.base.Charsets;
 import com.google.common.collect.Maps;
 
 /**
@@ -24,11 +27,15 @@ import com.google.common.collect.Maps;
  */
 @RunWith(MockitoJUnitRunner.class)
 public class TrimouViewTest {
+    @Mock
+    private HttpServletRequest request;
     @Mock
     private HttpServletResponse response;
     @Mock
     private PrintWriter writer;
     @Mock
+    private ServletOutputStream output;
+    @Mock
     private MustacheEngine engine;
     @Mock
     private Mustache template;
@@ -55,4 +62,70 @@ public class TrimouViewTest {
         verify(template).render(writer, model);
         verify(writer).flush();
     }
+
+    @Test
+    public void rendersALocalizedTemplate() throws Exception {
+        //given
+        final Map<String, Object> model = Maps.newHashMap();
+        final String viewName = "foo.mustache";
+
+        //when
+        when(request.getLocale()).thenReturn(Locale.GERMAN);
+        when(engine.getMustache(viewName, Locale.GERMAN)).thenReturn(template);
+        when(response.getWriter()).thenReturn(writer);
+
+        TrimouView view = new TrimouView();
+        view.setEngine(engine);
+        view.setViewName(viewName);
+        view.setLocalizedTemplates(true);
+        view.renderMergedTemplateModel(model, request, response);
+
+        //then
+        verify(template).render(writer, model);
+        verify(writer).flush();
+    }
+
+    @Test
+    public void rendersToTheOutputStreamIfEnabled() throws Exception {
+        //given
+        final Map<String, Object> model = Maps.newHashMap();
+        final String viewName = "foo.mustache";
+
+        //when
+        when(engine.getMustache(viewName)).thenReturn(template);
+        when(response.getOutputStream()).thenReturn(output);
+        when(response.getCharacterEncoding()).thenReturn("UTF-8");
+
+        TrimouView view = new TrimouView();
+        view.setEngine(engine);
+        view.setViewName(viewName);
+        view.setByteOutput(true);
+        view.renderMergedTemplateModel(model, null, response);
+
+        //then
+        verify(template).render(output, model, Charsets.UTF_8);
+        verify(output).flush();
+    }
+
+    @Test
+    public void fallsBackToTheWriterIfTheOutputStreamIsNotAvailable() throws Exception {
+        //given
+        final Map<String, Object> model = Maps.newHashMap();
+        final String viewName = "foo.mustache";
+
+        //when
+        when(engine.getMustache(viewName)).thenReturn(template);
+        when(response.getOutputStream()).thenThrow(new IllegalStateException());
+        when(response.getWriter()).thenReturn(writer);
+
+        TrimouView view = new TrimouView();
+        view.setEngine(engine);
+        view.setViewName(viewName);
+        view.setByteOutput(true);
+        view.renderMergedTemplateModel(model, null, response);
+
+        //then
+        verify(template).render(writer, model);
+        verify(writer).flush();
+    }
 }